@@ -0,0 +1,343 @@
+package app.actors;
+
+import org.apache.pekko.actor.typed.Behavior;
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.Signal;
+import org.apache.pekko.actor.typed.Terminated;
+import org.apache.pekko.actor.typed.javadsl.*;
+import org.apache.pekko.stream.KillSwitches;
+import org.apache.pekko.stream.Materializer;
+import org.apache.pekko.stream.UniqueKillSwitch;
+import org.apache.pekko.stream.javadsl.Keep;
+import org.apache.pekko.stream.javadsl.Sink;
+
+import app.analytics.AnalyticsUpdate;
+import app.models.Article;
+import app.services.ArticleFeed;
+import app.services.NewsApiService;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FeedRegistryActor
+ *
+ * Shared registry that maps every normalized query to exactly one live
+ * {@link ArticleFeed} and reference-counts the sessions subscribed to it.
+ * One instance is spawned in {@link modules.Module} next to {@code search-actor}.
+ * In cluster mode {@link ShardedFeedRegistryActor} takes its place with the
+ * same protocol.
+ *
+ * <p><b>Responsibilities</b></p>
+ * <ul>
+ *   <li>Start a feed when the first subscriber of a query arrives</li>
+ *   <li>Attach further subscribers to the same feed (one upstream poller per distinct query)</li>
+ *   <li>Tear the feed down when its last subscriber leaves</li>
+ *   <li>Replace a feed that ended on its own, moving its subscribers to the new one</li>
+ *   <li>Watch subscribers, so a session that stops without {@link UnsubscribeAll}
+ *       is detached from every feed</li>
+ * </ul>
+ *
+ * <p>INPUT MESSAGE TYPES:</p>
+ * <ul>
+ *   <li>{@link Subscribe} – start receiving {@link FeedUpdate}s for a query</li>
+ *   <li>{@link Unsubscribe} – stop receiving updates for one query</li>
+ *   <li>{@link UnsubscribeAll} – stop receiving updates for every query (session ended)</li>
+ * </ul>
+ *
+ * <p>OUTPUT:</p>
+ * <ul>
+ *   <li>{@link FeedUpdate} – batch of new articles and changed analytics, sent to each subscriber;
+ *       a late subscriber first gets the feed's recent articles and current analytics snapshot</li>
+ * </ul>
+ *
+ * @author Sara Ezzati
+ */
+public final class FeedRegistryActor extends AbstractBehavior<FeedRegistryActor.Command> {
+
+    /**
+     * Marker interface for all messages that {@link FeedRegistryActor} can handle.
+     */
+    public interface Command { }
+
+    /**
+     * Subscribes {@code subscriber} to the live feed of {@code query}.
+     * Subscribing twice to the same query is a no-op.
+     */
+    public static final class Subscribe implements Command {
+        public final String query;
+        public final ActorRef<FeedUpdate> subscriber;
+
+        public Subscribe(String query, ActorRef<FeedUpdate> subscriber) {
+            this.query = query;
+            this.subscriber = subscriber;
+        }
+    }
+
+    /**
+     * Removes {@code subscriber} from the live feed of {@code query}.
+     */
+    public static final class Unsubscribe implements Command {
+        public final String query;
+        public final ActorRef<FeedUpdate> subscriber;
+
+        public Unsubscribe(String query, ActorRef<FeedUpdate> subscriber) {
+            this.query = query;
+            this.subscriber = subscriber;
+        }
+    }
+
+    /**
+     * Removes {@code subscriber} from every feed it is attached to.
+     */
+    public static final class UnsubscribeAll implements Command {
+        public final ActorRef<FeedUpdate> subscriber;
+
+        public UnsubscribeAll(ActorRef<FeedUpdate> subscriber) {
+            this.subscriber = subscriber;
+        }
+    }
+
+    /**
+     * Incremental batch of articles the feed of {@code query} has not emitted
+     * before, with the analytics aggregates they changed ({@code analytics} may
+     * be null; for the snapshot sent on subscribe, {@code articles} are the
+     * feed's recent articles).
+     */
+    public static final class FeedUpdate {
+        public final String query;
+        public final List<Article> articles;
+        public final AnalyticsUpdate analytics;
+
+        public FeedUpdate(String query, List<Article> articles) {
+            this(query, articles, null);
+        }
+
+        public FeedUpdate(String query, List<Article> articles, AnalyticsUpdate analytics) {
+            this.query = query;
+            this.articles = articles;
+            this.analytics = analytics;
+        }
+    }
+
+    /**
+     * A feed's hub upstream ended. Sent to self via {@code pipeToSelf}; only
+     * acted on if {@code feed} is still the query's entry, i.e. the registry
+     * did not shut it down itself.
+     */
+    private static final class FeedTerminated implements Command {
+        final String key;
+        final ArticleFeed feed;
+        final Throwable failure;
+
+        FeedTerminated(String key, ArticleFeed feed, Throwable failure) {
+            this.key = key;
+            this.feed = feed;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Thread-safe gauges describing the registry, shared like {@link SearchActor.Stats}.
+     * <ul>
+     *   <li>{@code feeds}         – distinct queries currently polled upstream (in cluster
+     *                               mode: {@link QueryFeedEntity} feeds hosted on this node)</li>
+     *   <li>{@code subscriptions} – (session, query) pairs attached to those feeds</li>
+     * </ul>
+     */
+    public static final class Stats {
+        final AtomicInteger feeds = new AtomicInteger();
+        final AtomicInteger subscriptions = new AtomicInteger();
+
+        public int feeds() { return feeds.get(); }
+
+        public int subscriptions() { return subscriptions.get(); }
+    }
+
+    /** One running feed and the per-subscriber consumers of its hub. */
+    private static final class Entry {
+        final ArticleFeed feed;
+        final Map<ActorRef<FeedUpdate>, UniqueKillSwitch> subscribers = new HashMap<>();
+
+        Entry(ArticleFeed feed) {
+            this.feed = feed;
+        }
+    }
+
+    private final NewsApiService newsApi;
+    private final Duration pollInterval;
+    private final Stats stats;
+    private final Materializer materializer;
+
+    /** Normalized query → running feed and its subscribers. */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Subscriber → queries it is attached to (for {@link UnsubscribeAll}). */
+    private final Map<ActorRef<FeedUpdate>, Set<String>> bySubscriber = new HashMap<>();
+
+    /**
+     * Factory method used by {@link modules.Module} to create this actor.
+     *
+     * @param api          NewsAPI client the feeds poll
+     * @param pollInterval delay between two polls of one query
+     * @param stats        gauges updated as feeds start and stop
+     * @return a {@link Behavior} that can be spawned as {@code FeedRegistryActor}
+     */
+    public static Behavior<Command> create(NewsApiService api, Duration pollInterval, Stats stats) {
+        return Behaviors.setup(ctx -> new FeedRegistryActor(ctx, api, pollInterval, stats));
+    }
+
+    private FeedRegistryActor(ActorContext<Command> ctx, NewsApiService api, Duration pollInterval, Stats stats) {
+        super(ctx);
+        this.newsApi = api;
+        this.pollInterval = pollInterval;
+        this.stats = stats;
+        this.materializer = Materializer.matFromSystem(ctx.getSystem());
+    }
+
+    @Override
+    public Behavior<Command> onMessage(Command msg) {
+        if (msg instanceof Subscribe m) {
+            return onSubscribe(m);
+        }
+        if (msg instanceof Unsubscribe m) {
+            return onUnsubscribe(m);
+        }
+        if (msg instanceof UnsubscribeAll m) {
+            return onUnsubscribeAll(m);
+        }
+        if (msg instanceof FeedTerminated m) {
+            return onFeedTerminated(m);
+        }
+        // Unknown message type – ignore and keep same behavior
+        return this;
+    }
+
+    /**
+     * Attaches a subscriber to the query's feed, starting the feed on first use.
+     */
+    private Behavior<Command> onSubscribe(Subscribe msg) {
+        final String key = SearchActor.normalize(msg.query);
+        if (key.isEmpty()) return this;
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(startFeed(key));
+            entries.put(key, entry);
+            stats.feeds.incrementAndGet();
+            getContext().getLog().debug("Started feed '{}'", key);
+        }
+        if (entry.subscribers.containsKey(msg.subscriber)) return this;
+
+        final ActorRef<FeedUpdate> subscriber = msg.subscriber;
+        List<Article> recent = entry.feed.recentArticles();
+        AnalyticsUpdate snapshot = entry.feed.analyticsSnapshot();
+        if (snapshot != null || !recent.isEmpty()) subscriber.tell(new FeedUpdate(key, recent, snapshot));
+
+        entry.subscribers.put(subscriber, consume(key, entry.feed, subscriber));
+        bySubscriber.computeIfAbsent(subscriber, s -> {
+            getContext().watch(s);
+            return new HashSet<>();
+        }).add(key);
+        stats.subscriptions.incrementAndGet();
+        return this;
+    }
+
+    private ArticleFeed startFeed(String key) {
+        ArticleFeed feed = ArticleFeed.start(key, newsApi, pollInterval, materializer);
+        getContext().pipeToSelf(feed.terminated(), (done, err) -> new FeedTerminated(key, feed, err));
+        return feed;
+    }
+
+    /** Runs one subscriber's consumer of the feed's hub. */
+    private UniqueKillSwitch consume(String key, ArticleFeed feed, ActorRef<FeedUpdate> subscriber) {
+        return feed.source()
+                .viaMat(KillSwitches.single(), Keep.right())
+                .to(Sink.foreach(batch -> subscriber.tell(new FeedUpdate(key, batch.articles, batch.analytics))))
+                .run(materializer);
+    }
+
+    /**
+     * A feed ended without the registry shutting it down: its subscribers
+     * would silently stop receiving updates and new ones would attach to a
+     * completed hub, so a fresh feed takes its place.
+     */
+    private Behavior<Command> onFeedTerminated(FeedTerminated msg) {
+        Entry entry = entries.get(msg.key);
+        if (entry == null || entry.feed != msg.feed) return this;
+
+        getContext().getLog().warn("Feed '{}' ended unexpectedly, restarting it", msg.key, msg.failure);
+        Entry replacement = new Entry(startFeed(msg.key));
+        for (Map.Entry<ActorRef<FeedUpdate>, UniqueKillSwitch> e : entry.subscribers.entrySet()) {
+            e.getValue().shutdown();
+            replacement.subscribers.put(e.getKey(), consume(msg.key, replacement.feed, e.getKey()));
+        }
+        entries.put(msg.key, replacement);
+        return this;
+    }
+
+    private Behavior<Command> onUnsubscribe(Unsubscribe msg) {
+        final String key = SearchActor.normalize(msg.query);
+        detach(key, msg.subscriber);
+
+        Set<String> queries = bySubscriber.get(msg.subscriber);
+        if (queries != null) {
+            queries.remove(key);
+            if (queries.isEmpty()) {
+                bySubscriber.remove(msg.subscriber);
+                getContext().unwatch(msg.subscriber);
+            }
+        }
+        return this;
+    }
+
+    private Behavior<Command> onUnsubscribeAll(UnsubscribeAll msg) {
+        getContext().unwatch(msg.subscriber);
+        detachAll(msg.subscriber);
+        return this;
+    }
+
+    /**
+     * A subscriber stopped without unsubscribing (crashed session, lost
+     * message): detach it so its feeds do not keep polling for nobody.
+     */
+    @Override
+    public Behavior<Command> onSignal(Signal signal) {
+        if (signal instanceof Terminated t) {
+            detachAll(t.getRef());
+        }
+        return this;
+    }
+
+    private void detachAll(ActorRef<?> subscriber) {
+        Set<String> queries = bySubscriber.remove(subscriber);
+        if (queries != null) {
+            for (String key : queries) detach(key, subscriber);
+        }
+    }
+
+    /**
+     * Cancels one subscriber's consumer and tears the feed down if it was the last one.
+     */
+    private void detach(String key, ActorRef<?> subscriber) {
+        Entry entry = entries.get(key);
+        if (entry == null) return;
+
+        UniqueKillSwitch consumer = entry.subscribers.remove(subscriber);
+        if (consumer == null) return;
+        consumer.shutdown();
+        stats.subscriptions.decrementAndGet();
+
+        if (entry.subscribers.isEmpty()) {
+            entry.feed.shutdown();
+            entries.remove(key);
+            stats.feeds.decrementAndGet();
+            getContext().getLog().debug("Stopped feed '{}' (last subscriber left)", key);
+        }
+    }
+}
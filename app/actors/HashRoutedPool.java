@@ -0,0 +1,258 @@
+package app.actors;
+
+import org.apache.pekko.actor.typed.Behavior;
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.MailboxSelector;
+import org.apache.pekko.actor.typed.Signal;
+import org.apache.pekko.actor.typed.Terminated;
+import org.apache.pekko.actor.typed.javadsl.*;
+
+import com.typesafe.config.Config;
+
+import app.dedup.Hashing;
+import app.metrics.InstrumentedMailbox;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * HashRoutedPool
+ *
+ * Router that spreads messages over a resizable pool of identical workers,
+ * choosing the worker by consistent hashing of a per-message key.
+ *
+ * <p>Used in {@link modules.Module} in place of the single {@code search-actor}
+ * and {@code resource-actor}: all messages for the same normalized query (or
+ * the same source filters) land on the same worker, so per-query coalescing
+ * and fallback state stay local, while different queries are processed on
+ * different mailboxes in parallel. Callers still see one
+ * {@code ActorRef<T>}.</p>
+ *
+ * <p><b>Resizing:</b> every {@code resizeInterval} the router compares the
+ * messages it routed per worker with the configured thresholds and adds or
+ * removes one worker (within {@code [min, max]}). Each worker owns
+ * {@code virtualNodes} points on the hash ring, so a resize only remaps the
+ * keys adjacent to that worker's points.</p>
+ *
+ * <p><b>Draining:</b> a worker removed on shrink is first taken off the ring,
+ * then sent the pool's {@code drain} message; it answers the calls it already
+ * has in flight and stops itself. Workers are watched: one that stops on its
+ * own is taken off the ring and replaced, so its keys never reach dead letters.</p>
+ *
+ * <p>INPUT MESSAGE TYPES:</p>
+ * <ul>
+ *   <li>any {@code T} – forwarded to the worker owning {@code hashKey(T)}</li>
+ * </ul>
+ *
+ * @author Sara Ezzati
+ */
+public final class HashRoutedPool<T> extends AbstractBehavior<Object> {
+
+    /**
+     * Pool settings, read from {@code notilytics.pool}.
+     */
+    public static final class Settings {
+        public final int min;
+        public final int max;
+        public final Duration resizeInterval;
+        public final int upperMessagesPerWorker;
+        public final int lowerMessagesPerWorker;
+        public final int virtualNodes;
+
+        public Settings(int min, int max, Duration resizeInterval,
+                        int upperMessagesPerWorker, int lowerMessagesPerWorker, int virtualNodes) {
+            this.min = Math.max(1, min);
+            this.max = Math.max(this.min, max);
+            this.resizeInterval = resizeInterval;
+            this.upperMessagesPerWorker = upperMessagesPerWorker;
+            this.lowerMessagesPerWorker = lowerMessagesPerWorker;
+            this.virtualNodes = virtualNodes;
+        }
+
+        /**
+         * @param config application configuration
+         * @param pool   pool name under {@code notilytics.pool} ({@code search}, {@code resource})
+         */
+        public static Settings fromConfig(Config config, String pool) {
+            Config c = config.getConfig("notilytics.pool");
+            Config p = c.getConfig(pool);
+            return new Settings(p.getInt("min"), p.getInt("max"),
+                    c.getDuration("resizeInterval"),
+                    c.getInt("upperMessagesPerWorker"), c.getInt("lowerMessagesPerWorker"),
+                    c.getInt("virtualNodes"));
+        }
+    }
+
+    /**
+     * Thread-safe pool gauges.
+     * <ul>
+     *   <li>{@code workers} – current pool size</li>
+     *   <li>{@code routed}  – messages routed since start</li>
+     * </ul>
+     */
+    public static final class Stats {
+        private final String pool;
+        private final AtomicInteger workers = new AtomicInteger();
+        private final LongAdder routed = new LongAdder();
+
+        /** @param pool pool name used in metrics ({@code search}, {@code resource}) */
+        public Stats(String pool) {
+            this.pool = pool;
+        }
+
+        public String pool() { return pool; }
+
+        public int workers() { return workers.get(); }
+
+        public long routed() { return routed.sum(); }
+    }
+
+    /** Internal timer message. */
+    private enum ResizeTick { INSTANCE }
+
+    private final String name;
+    private final Behavior<T> worker;
+    private final Function<T, String> hashKey;
+    private final T drain;
+    private final Settings settings;
+    private final Stats stats;
+
+    /** Hash ring: point → worker. */
+    private final TreeMap<Long, ActorRef<T>> ring = new TreeMap<>();
+    private final List<ActorRef<T>> workers = new ArrayList<>();
+    /** Workers off the ring, finishing their in-flight calls before they stop. */
+    private final Set<ActorRef<T>> draining = new HashSet<>();
+    private int nextWorkerId;
+    private long routedSinceTick;
+
+    /**
+     * Factory method used by {@link modules.Module}.
+     *
+     * @param name     prefix of the worker actor names
+     * @param worker   behavior of one worker, supervised to restart in place so its ring slot stays live
+     * @param hashKey  key a message is routed by; equal keys always reach the same worker
+     * @param drain    message telling a worker to stop once its in-flight calls are answered
+     * @param settings pool bounds and resize thresholds
+     * @param stats    gauges updated on routing and resizing
+     * @return router behavior accepting the workers' protocol
+     */
+    public static <T> Behavior<T> create(String name,
+                                         Behavior<T> worker,
+                                         Function<T, String> hashKey,
+                                         T drain,
+                                         Settings settings,
+                                         Stats stats) {
+        Behavior<Object> router = Behaviors.setup(ctx -> Behaviors.withTimers(timers -> {
+            timers.startTimerWithFixedDelay(ResizeTick.INSTANCE, settings.resizeInterval);
+            return new HashRoutedPool<>(ctx, name, worker, hashKey, drain, settings, stats);
+        }));
+        return router.narrow();
+    }
+
+    private HashRoutedPool(ActorContext<Object> ctx,
+                           String name,
+                           Behavior<T> worker,
+                           Function<T, String> hashKey,
+                           T drain,
+                           Settings settings,
+                           Stats stats) {
+        super(ctx);
+        this.name = name;
+        this.worker = worker;
+        this.hashKey = hashKey;
+        this.drain = drain;
+        this.settings = settings;
+        this.stats = stats;
+        for (int i = 0; i < settings.min; i++) addWorker();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Behavior<Object> onMessage(Object msg) {
+        if (msg == ResizeTick.INSTANCE) {
+            return onResizeTick();
+        }
+        T m = (T) msg;
+        workerFor(hashKey.apply(m)).tell(m);
+        routedSinceTick++;
+        stats.routed.increment();
+        return this;
+    }
+
+    /**
+     * A drained worker has stopped as expected; any other worker that stopped
+     * is taken off the ring and replaced.
+     */
+    @Override
+    public Behavior<Object> onSignal(Signal signal) {
+        if (signal instanceof Terminated t) {
+            ActorRef<?> ref = t.getRef();
+            if (draining.remove(ref)) {
+                getContext().getLog().debug("{} worker {} drained and stopped", name, ref.path().name());
+            } else if (workers.remove(ref)) {
+                ring.values().removeIf(r -> r.equals(ref));
+                getContext().getLog().warn("{} worker {} stopped unexpectedly, replacing it", name, ref.path().name());
+                addWorker();
+            }
+        }
+        return this;
+    }
+
+    private ActorRef<T> workerFor(String key) {
+        long h = Hashing.hash64(key == null ? "" : key);
+        Map.Entry<Long, ActorRef<T>> e = ring.ceilingEntry(h);
+        return (e != null ? e : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * Grows by one worker when each worker handled more than the upper threshold
+     * in the last interval, shrinks by one below the lower threshold.
+     */
+    private Behavior<Object> onResizeTick() {
+        long perWorker = routedSinceTick / workers.size();
+        routedSinceTick = 0;
+
+        if (perWorker > settings.upperMessagesPerWorker && workers.size() < settings.max) {
+            addWorker();
+            getContext().getLog().info("{} pool grew to {} workers ({} msgs/worker)", name, workers.size(), perWorker);
+        } else if (perWorker < settings.lowerMessagesPerWorker && workers.size() > settings.min) {
+            removeWorker();
+            getContext().getLog().info("{} pool shrank to {} workers ({} msgs/worker)", name, workers.size(), perWorker);
+        }
+        return this;
+    }
+
+    private void addWorker() {
+        String workerName = name + "-" + nextWorkerId++;
+        // Workers run on the router's dispatcher (the upstream bulkhead in Module), with mailbox gauges.
+        ActorRef<T> ref = getContext().spawn(worker, workerName,
+                MailboxSelector.fromConfig(InstrumentedMailbox.CONFIG_PATH).withDispatcherSameAsParent());
+        getContext().watch(ref);
+        workers.add(ref);
+        for (int v = 0; v < settings.virtualNodes; v++) {
+            ring.put(Hashing.hash64(workerName + "#" + v), ref);
+        }
+        stats.workers.set(workers.size());
+    }
+
+    /**
+     * Removes the newest worker: its keys move to their ring successors at
+     * once, and it is drained (not stopped) so that callers waiting on its
+     * in-flight calls still get their replies.
+     */
+    private void removeWorker() {
+        ActorRef<T> ref = workers.remove(workers.size() - 1);
+        ring.values().removeIf(r -> r.equals(ref));
+        draining.add(ref);
+        ref.tell(drain);
+        stats.workers.set(workers.size());
+    }
+}
@@ -0,0 +1,195 @@
+package app.actors;
+
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.Behavior;
+import org.apache.pekko.actor.typed.PostStop;
+import org.apache.pekko.actor.typed.Signal;
+import org.apache.pekko.actor.typed.javadsl.*;
+import org.apache.pekko.actor.typed.pubsub.Topic;
+import org.apache.pekko.cluster.sharding.typed.javadsl.ClusterSharding;
+import org.apache.pekko.cluster.sharding.typed.javadsl.EntityTypeKey;
+import org.apache.pekko.stream.Materializer;
+import org.apache.pekko.stream.javadsl.Sink;
+
+import app.analytics.AnalyticsUpdate;
+import app.cluster.FeedSerializable;
+import app.models.Article;
+import app.services.ArticleFeed;
+import app.services.NewsApiService;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QueryFeedEntity
+ *
+ * Cluster-sharded owner of one query's live {@link ArticleFeed} (cluster mode
+ * only, see {@link ShardedFeedRegistryActor}). The entity id is the
+ * normalized query, so the query is polled upstream once per cluster, on
+ * whichever node hosts its shard.
+ *
+ * <p>Every batch is published to the query's {@link Topic}
+ * ({@link #topicName}); each node with sessions on the query subscribes one
+ * local registry to it and fans the batch out to its sessions.</p>
+ *
+ * <p>Nodes hold a lease: they send {@link Watch} every
+ * {@code notilytics.cluster.leaseInterval}. When no node renewed within
+ * {@code leaseTimeout}, the entity passivates and its feed stops. After a
+ * rebalance the next {@link Watch} restarts the feed on the new host.</p>
+ *
+ * <p>INPUT MESSAGE TYPES:</p>
+ * <ul>
+ *   <li>{@link Watch} – a node still has sessions on the query (optionally asking for a snapshot
+ *       for one new session)</li>
+ * </ul>
+ *
+ * <p>OUTPUT:</p>
+ * <ul>
+ *   <li>{@link FeedBatch} – published to the query's topic; a snapshot (recent articles and analytics)
+ *       is sent to the asking node directly, carrying the {@link Watch}'s tag</li>
+ * </ul>
+ *
+ * @author Sara Ezzati
+ */
+public final class QueryFeedEntity extends AbstractBehavior<QueryFeedEntity.Command> {
+
+    public static final EntityTypeKey<Command> TYPE_KEY = EntityTypeKey.create(Command.class, "query-feed");
+
+    /**
+     * Marker interface for all messages that {@link QueryFeedEntity} can handle.
+     */
+    public interface Command { }
+
+    /** {@link Watch#snapshotTag} of a plain lease renewal, and {@link FeedBatch#snapshotTag} of a topic batch. */
+    public static final long NO_SNAPSHOT = 0L;
+
+    /**
+     * Lease renewal from one node's {@link ShardedFeedRegistryActor}.
+     * A non-zero {@code snapshotTag} asks for a snapshot, which is always sent
+     * (possibly empty) and carries the tag back, so the node can hand it to
+     * the one session that asked.
+     */
+    public static final class Watch implements Command, FeedSerializable {
+        /** The node's registry; also where the snapshot goes. */
+        public final ActorRef<FeedBatch> node;
+        public final long snapshotTag;
+
+        public Watch(ActorRef<FeedBatch> node, long snapshotTag) {
+            this.node = node;
+            this.snapshotTag = snapshotTag;
+        }
+    }
+
+    /**
+     * One incremental batch of a query's feed, as {@link FeedRegistryActor.FeedUpdate}
+     * but sent between nodes. A snapshot has the tag of the {@link Watch} that
+     * asked for it; a topic batch has {@link #NO_SNAPSHOT}.
+     */
+    public static final class FeedBatch implements FeedSerializable {
+        public final String query;
+        public final List<Article> articles;
+        public final AnalyticsUpdate analytics;
+        public final long snapshotTag;
+
+        public FeedBatch(String query, List<Article> articles, AnalyticsUpdate analytics) {
+            this(query, articles, analytics, NO_SNAPSHOT);
+        }
+
+        public FeedBatch(String query, List<Article> articles, AnalyticsUpdate analytics, long snapshotTag) {
+            this.query = query;
+            this.articles = articles;
+            this.analytics = analytics;
+            this.snapshotTag = snapshotTag;
+        }
+    }
+
+    private enum LeaseCheck implements Command { INSTANCE }
+
+    /**
+     * @param query normalized query
+     * @return name of the topic the query's batches are published to
+     */
+    public static String topicName(String query) {
+        return "notilytics-feed:" + query;
+    }
+
+    private final String query;
+    private final ActorRef<ClusterSharding.ShardCommand> shard;
+    private final Duration leaseTimeout;
+    private final FeedRegistryActor.Stats stats;
+    private final ArticleFeed feed;
+
+    /** Node registry → when it last renewed its lease (nanoTime). */
+    private final Map<ActorRef<FeedBatch>, Long> leases = new HashMap<>();
+
+    /**
+     * Factory used by {@link modules.Module} in {@code ClusterSharding.init}.
+     *
+     * @param query         normalized query (the entity id)
+     * @param shard         the entity's shard, for passivation
+     * @param api           NewsAPI client the feed polls
+     * @param pollInterval  delay between two polls
+     * @param leaseInterval how often leases are checked
+     * @param leaseTimeout  how long a lease lasts without renewal
+     * @param stats         this node's feed gauges
+     * @return a {@link Behavior} for {@code Entity.of(TYPE_KEY, ...)}
+     */
+    public static Behavior<Command> create(String query, ActorRef<ClusterSharding.ShardCommand> shard,
+                                           NewsApiService api, Duration pollInterval,
+                                           Duration leaseInterval, Duration leaseTimeout,
+                                           FeedRegistryActor.Stats stats) {
+        return Behaviors.setup(ctx -> Behaviors.withTimers(timers -> {
+            timers.startTimerWithFixedDelay(LeaseCheck.INSTANCE, leaseInterval);
+            return new QueryFeedEntity(ctx, query, shard, api, pollInterval, leaseTimeout, stats);
+        }));
+    }
+
+    private QueryFeedEntity(ActorContext<Command> ctx, String query, ActorRef<ClusterSharding.ShardCommand> shard,
+                            NewsApiService api, Duration pollInterval, Duration leaseTimeout,
+                            FeedRegistryActor.Stats stats) {
+        super(ctx);
+        this.query = query;
+        this.shard = shard;
+        this.leaseTimeout = leaseTimeout;
+        this.stats = stats;
+
+        Materializer materializer = Materializer.matFromSystem(ctx.getSystem());
+        ActorRef<Topic.Command<FeedBatch>> topic = ctx.spawn(Topic.create(FeedBatch.class, topicName(query)), "topic");
+        this.feed = ArticleFeed.start(query, api, pollInterval, materializer);
+        feed.source().runWith(Sink.foreach(batch ->
+                topic.tell(Topic.publish(new FeedBatch(query, batch.articles, batch.analytics)))), materializer);
+
+        stats.feeds.incrementAndGet();
+        ctx.getLog().debug("Started cluster feed '{}'", query);
+    }
+
+    @Override
+    public Behavior<Command> onMessage(Command msg) {
+        if (msg instanceof Watch m) {
+            leases.put(m.node, System.nanoTime());
+            if (m.snapshotTag != NO_SNAPSHOT) {
+                m.node.tell(new FeedBatch(query, feed.recentArticles(), feed.analyticsSnapshot(), m.snapshotTag));
+            }
+            return this;
+        }
+        if (msg == LeaseCheck.INSTANCE) {
+            long expired = System.nanoTime() - leaseTimeout.toNanos();
+            leases.values().removeIf(renewed -> renewed - expired < 0);
+            if (leases.isEmpty()) shard.tell(new ClusterSharding.Passivate<>(getContext().getSelf()));
+            return this;
+        }
+        return this;
+    }
+
+    @Override
+    public Behavior<Command> onSignal(Signal signal) {
+        if (signal instanceof PostStop) {
+            feed.shutdown();
+            stats.feeds.decrementAndGet();
+            getContext().getLog().debug("Stopped cluster feed '{}' (no node renewed its lease)", query);
+        }
+        return this;
+    }
+}
@@ -1,27 +1,42 @@
 
 package app.actors;
 
+import org.apache.pekko.actor.Scheduler;
 import org.apache.pekko.actor.typed.Behavior;
 import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.PreRestart;
+import org.apache.pekko.actor.typed.Signal;
 import org.apache.pekko.actor.typed.javadsl.*;
 
+import app.services.BreakerNewsApiService;
+import app.services.EndpointBreaker;
 import app.services.NewsApiService;
+import app.services.NewsApiThrottledException;
+import app.services.SourceCatalog;
+import app.services.SourceCatalogRefresher;
 import app.models.SourceInfo;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletionStage;
 
 /**
  * ResourceNewsActor
  *
  * Reactive actor responsible for retrieving <b>news sources</b> from the News API.
- * One shared instance of this actor is created in the Guice {@code Module} and
- * used by {@link app.actors.UserActor} to implement the "News Sources" feature.
+ * A pool of these actors (see {@link HashRoutedPool}) is created in the Guice
+ * {@code Module} and used by {@link app.actors.UserActor} to implement the "News Sources" feature.
  *
  * <p><b>Delivery 2 responsibilities (group part + news sources):</b></p>
  * <ul>
  *   <li>Accept filters for country, category, and language</li>
- *   <li>Call {@link NewsApiService#getSources(String, String, String)} asynchronously</li>
+ *   <li>Answer them from the shared {@link SourceCatalog} snapshot once it is loaded</li>
+ *   <li>Until then, call {@link NewsApiService#getSources(String, String, String)} asynchronously,
+ *       (guarded by the {@code sources} {@link EndpointBreaker} underneath the rate limiter)</li>
+ *   <li>Always reply; on failure with the last good list for the same filters</li>
  *   <li>Return a {@link SourcesResponse} to the requester (typically {@link app.actors.UserActor})</li>
  *   <li>Remain fully non-blocking (no join/get/sleep)</li>
  * </ul>
@@ -78,33 +93,145 @@ public final class ResourceNewsActor extends AbstractBehavior<ResourceNewsActor.
      *
      * <p>OUTPUT:</p>
      * <ul>
-     *   <li>{@code sources} – list of sources returned from NewsAPI</li>
+     *   <li>{@code sources}   – list of sources returned from NewsAPI</li>
+     *   <li>{@code throttled} – {@code true} if the upstream rate limiter rejected the call (sources is empty)</li>
      * </ul>
      */
     public static final class SourcesResponse {
         public final List<SourceInfo> sources;
+        public final boolean throttled;
 
         public SourcesResponse(List<SourceInfo> sources) {
+            this(sources, false);
+        }
+
+        private SourcesResponse(List<SourceInfo> sources, boolean throttled) {
             this.sources = sources;
+            this.throttled = throttled;
+        }
+
+        /** @return the reply sent when the NewsAPI call queue is full */
+        public static SourcesResponse throttled() {
+            return new SourcesResponse(List.of(), true);
+        }
+    }
+
+    /**
+     * Sent by {@link HashRoutedPool} to a worker it took off its ring: the
+     * worker answers the requests it has in flight, then stops.
+     */
+    public enum Drain implements Command { INSTANCE }
+
+    /**
+     * One upstream call and the caller waiting on it. Compared by identity, so
+     * a completion only answers a call of the incarnation that started it.
+     */
+    private static final class PendingCall {
+        final String key;
+        final ActorRef<SourcesResponse> replyTo;
+
+        PendingCall(String key, ActorRef<SourcesResponse> replyTo) {
+            this.key = key;
+            this.replyTo = replyTo;
         }
     }
 
+    /**
+     * Internal message: the upstream call for one {@link GetSources} has completed.
+     * Piped to self so the fallback table is only touched from the actor thread.
+     */
+    private static final class SourcesCompleted implements Command {
+        final PendingCall call;
+        final List<SourceInfo> sources;
+        final Throwable failure;
+
+        SourcesCompleted(PendingCall call, List<SourceInfo> sources, Throwable failure) {
+            this.call = call;
+            this.sources = sources;
+            this.failure = failure;
+        }
+    }
+
+    /** Filter combinations whose last good list is kept as a fallback. */
+    private static final int FALLBACK_ENTRIES = 128;
+
     /** Non-blocking NewsAPI facade injected via Guice. */
     private final NewsApiService newsApi;
 
+    /** Breaker of the NewsAPI sources endpoint (applied by the client chain); records fallbacks served. */
+    private final EndpointBreaker breaker;
+
+    /** Shared, periodically refreshed catalog of every source. */
+    private final SourceCatalogRefresher catalog;
+
+    /** Upstream calls of this incarnation not yet answered. */
+    private final Set<PendingCall> inFlight = new HashSet<>();
+
+    /** Set by {@link Drain}: stop once {@link #inFlight} is empty. */
+    private boolean draining;
+
+    /** Filter key → last successful list (LRU), served when upstream fails. */
+    private final Map<String, List<SourceInfo>> lastGood = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<SourceInfo>> eldest) {
+            return size() > FALLBACK_ENTRIES;
+        }
+    };
+
     /**
-     * Factory method used by {@link modules.Module} to create this actor.
+     * Factory method that creates this actor with default breakers that
+     * {@code api} is wrapped in ({@link BreakerNewsApiService}) and no source
+     * catalog: nothing refreshes it, so every {@link GetSources} calls
+     * {@code api} (benchmarks, {@code BehaviorTestKit}).
      *
      * @param api asynchronous News API client implementation
      * @return {@link Behavior} instance that can be spawned as {@code ResourceNewsActor}
      */
     public static Behavior<Command> create(NewsApiService api) {
-        return Behaviors.setup(ctx -> new ResourceNewsActor(ctx, api));
+        return Behaviors.setup(ctx -> {
+            Scheduler scheduler = ctx.getSystem().classicSystem().scheduler();
+            EndpointBreaker search = new EndpointBreaker("search", scheduler, EndpointBreaker.Settings.DEFAULTS);
+            EndpointBreaker breaker = new EndpointBreaker("sources", scheduler, EndpointBreaker.Settings.DEFAULTS);
+            NewsApiService guarded = new BreakerNewsApiService(api, search, breaker);
+            SourceCatalogRefresher noCatalog = new SourceCatalogRefresher(guarded); // never refreshed: stays empty
+            return new ResourceNewsActor(ctx, guarded, breaker, noCatalog);
+        });
+    }
+
+    /**
+     * Factory method that shares the endpoint breaker and the source catalog with the caller.
+     *
+     * @param api     asynchronous News API client implementation
+     * @param breaker circuit breaker of the sources endpoint
+     * @param catalog source catalog refreshed by the caller
+     * @return {@link Behavior} instance that can be spawned as {@code ResourceNewsActor}
+     */
+    public static Behavior<Command> create(NewsApiService api, EndpointBreaker breaker,
+                                           SourceCatalogRefresher catalog) {
+        return Behaviors.setup(ctx -> new ResourceNewsActor(ctx, api, breaker, catalog));
     }
 
-    private ResourceNewsActor(ActorContext<Command> ctx, NewsApiService api) {
+    private ResourceNewsActor(ActorContext<Command> ctx, NewsApiService api, EndpointBreaker breaker,
+                              SourceCatalogRefresher catalog) {
         super(ctx);
         this.newsApi = api;
+        this.breaker = breaker;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Key {@code resource-actor}'s pool routes on: requests for the same
+     * filters always reach the same worker and its fallback list.
+     *
+     * @param msg any command sent to the pool
+     * @return {@code country|category|language} for {@link GetSources}, empty otherwise
+     */
+    public static String routingKey(Command msg) {
+        return msg instanceof GetSources m ? filterKey(m) : "";
+    }
+
+    private static String filterKey(GetSources msg) {
+        return msg.country + "|" + msg.category + "|" + msg.language;
     }
 
     @Override
@@ -112,17 +239,24 @@ public final class ResourceNewsActor extends AbstractBehavior<ResourceNewsActor.
         if (msg instanceof GetSources m) {
             return onGetSources(m);
         }
+        if (msg instanceof SourcesCompleted m) {
+            return onSourcesCompleted(m);
+        }
+        if (msg == Drain.INSTANCE) {
+            draining = true;
+            return stopIfDrained();
+        }
         // Unknown message type – ignore and keep behavior.
         return this;
     }
 
     /**
-     * Handles {@link GetSources} by querying the NewsAPI sources endpoint.
+     * Handles {@link GetSources}, locally from the catalog snapshot when there
+     * is one, otherwise by querying the NewsAPI sources endpoint.
      *
-     * <p>This method MUST remain non-blocking. It calls
-     * {@link NewsApiService#getSources(String, String, String)} and, when
-     * the {@link java.util.concurrent.CompletionStage} completes, sends a
-     * {@link SourcesResponse} back to the requester.</p>
+     * <p>This method MUST remain non-blocking. Without a snapshot it calls
+     * {@link NewsApiService#getSources(String, String, String)} and pipes the
+     * completion back as {@link SourcesCompleted}.</p>
      *
      * @param msg the {@link GetSources} command with filters and replyTo
      * @return current {@link Behavior} so the actor can continue processing messages
@@ -132,13 +266,70 @@ public final class ResourceNewsActor extends AbstractBehavior<ResourceNewsActor.
         final String category = msg.category;
         final String language = msg.language;
 
-        CompletionStage<List<SourceInfo>> future =
-                newsApi.getSources(country, category, language);
+        SourceCatalog snapshot = catalog.current();
+        if (snapshot != null) {
+            catalog.recordServed();
+            msg.replyTo.tell(new SourcesResponse(snapshot.filter(country, category, language)));
+            return this;
+        }
+
+        final PendingCall call = new PendingCall(filterKey(msg), msg.replyTo);
 
-        future.thenAccept(list ->
-                msg.replyTo.tell(new SourcesResponse(list))
+        CompletionStage<List<SourceInfo>> future = newsApi.getSources(country, category, language);
+
+        inFlight.add(call);
+        getContext().pipeToSelf(future, (list, err) ->
+                new SourcesCompleted(call, list, err)
         );
 
         return this;
     }
+
+    /**
+     * Replies to the requester: the fresh list, a throttled marker, or on
+     * failure (error, timeout or open breaker) the last good list for the same filters.
+     *
+     * @param msg completion of one upstream call
+     * @return current {@link Behavior}
+     */
+    private Behavior<Command> onSourcesCompleted(SourcesCompleted msg) {
+        // started before a restart: its caller was already answered on PreRestart
+        if (!inFlight.remove(msg.call)) return this;
+
+        PendingCall call = msg.call;
+        if (msg.failure == null) {
+            lastGood.put(call.key, msg.sources);
+            call.replyTo.tell(new SourcesResponse(msg.sources));
+        } else if (NewsApiThrottledException.isThrottled(msg.failure)) {
+            call.replyTo.tell(SourcesResponse.throttled());
+        } else {
+            List<SourceInfo> fallback = lastGood.get(call.key);
+            getContext().getLog().warn("Sources '{}' failed, {}: {}",
+                    call.key, fallback == null ? "no fallback" : "serving last good list", msg.failure.toString());
+            if (fallback != null) breaker.recordFallback();
+            call.replyTo.tell(new SourcesResponse(fallback == null ? List.of() : fallback));
+        }
+        return stopIfDrained();
+    }
+
+    /**
+     * The supervisor is about to restart this worker: the new incarnation
+     * does not know these calls, so a later {@link Drain} could stop it before
+     * they complete. Answer every caller now, from the last good list for its
+     * filters or with an empty one, rather than never.
+     */
+    @Override
+    public Behavior<Command> onSignal(Signal signal) {
+        if (signal instanceof PreRestart) {
+            for (PendingCall call : inFlight) {
+                call.replyTo.tell(new SourcesResponse(lastGood.getOrDefault(call.key, List.of())));
+            }
+            inFlight.clear();
+        }
+        return this;
+    }
+
+    private Behavior<Command> stopIfDrained() {
+        return draining && inFlight.isEmpty() ? Behaviors.stopped() : this;
+    }
 }
@@ -1,27 +1,51 @@
 
 package app.actors;
 
+import org.apache.pekko.actor.Scheduler;
 import org.apache.pekko.actor.typed.Behavior;
 import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.PreRestart;
+import org.apache.pekko.actor.typed.Signal;
 import org.apache.pekko.actor.typed.javadsl.*;
 
+import app.analytics.SentimentScorer;
+import app.index.ArticleIndex;
 import app.models.Article;
+import app.services.BreakerNewsApiService;
+import app.services.EndpointBreaker;
 import app.services.NewsApiService;
+import app.services.NewsApiThrottledException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * SearchActor
  *
  * Reactive actor responsible for querying the News API for articles.
- * One shared instance of this actor is created in the Guice {@code Module}
- * and used by all {@link app.actors.UserActor} instances.
+ * A pool of these actors, consistent-hashed on the normalized query (see
+ * {@link HashRoutedPool}), is created in the Guice {@code Module} and used by
+ * all {@link app.actors.UserActor} instances.
  *
  * <p><b>Delivery 2 responsibilities (group part + news feature)</b></p>
  * <ul>
  *   <li>Receive search commands (user-entered query)</li>
  *   <li>Invoke {@link NewsApiService#searchArticles(String)} asynchronously</li>
+ *   <li>Coalesce concurrent identical queries into a single upstream call (single-flight)</li>
+ *   <li>Answer failures (including timeouts and an open {@code search}
+ *       {@link EndpointBreaker}, applied underneath the rate limiter) from the
+ *       last good result of the query</li>
+ *   <li>Score the sentiment of each fresh result once, off the actor thread
+ *       ({@link SentimentScorer}), before it is fanned out</li>
+ *   <li>Index every scored result in the shared {@link ArticleIndex}, and
+ *       answer callers that accept it with a local preview while the
+ *       upstream call is in flight</li>
  *   <li>Send results back to the caller (typically {@link app.actors.UserActor})</li>
  *   <li>Never block (no join/get/sleep)</li>
  * </ul>
@@ -52,15 +76,31 @@ public final class SearchActor extends AbstractBehavior<SearchActor.Command> {
      * <ul>
      *   <li>{@code query} – non-null search string (can be a phrase)</li>
      *   <li>{@code replyTo} – actor reference that will receive {@link SearchResults}</li>
+     *   <li>{@code correlationId} – optional id echoed in the reply and in logs, to trace one search end to end</li>
+     *   <li>{@code acceptsPreview} – if true, a {@link SearchResults#preview} reply from the local index
+     *       may precede the final one</li>
      * </ul>
      */
     public static final class SearchArticles implements Command {
         public final String query;
         public final ActorRef<SearchResults> replyTo;
+        public final String correlationId;
+        public final boolean acceptsPreview;
 
         public SearchArticles(String query, ActorRef<SearchResults> replyTo) {
+            this(query, replyTo, null, false);
+        }
+
+        public SearchArticles(String query, ActorRef<SearchResults> replyTo, String correlationId) {
+            this(query, replyTo, correlationId, false);
+        }
+
+        public SearchArticles(String query, ActorRef<SearchResults> replyTo, String correlationId,
+                              boolean acceptsPreview) {
             this.query = query;
             this.replyTo = replyTo;
+            this.correlationId = correlationId;
+            this.acceptsPreview = acceptsPreview;
         }
     }
 
@@ -69,33 +109,217 @@ public final class SearchActor extends AbstractBehavior<SearchActor.Command> {
      *
      * <p>OUTPUT:</p>
      * <ul>
-     *   <li>{@code articles} – list of articles matching the original query</li>
+     *   <li>{@code articles}  – list of articles matching the original query</li>
+     *   <li>{@code throttled} – {@code true} if the upstream rate limiter rejected the call (articles is empty)</li>
+     *   <li>{@code preview}   – {@code true} for the early answer from the local index; the final reply follows</li>
+     *   <li>{@code sentiment} – mean sentiment of the articles, each of which carries its own; null if unscored</li>
+     *   <li>{@code correlationId} – the request's correlation id, or null</li>
      * </ul>
      */
     public static final class SearchResults {
         public final List<Article> articles;
+        public final boolean throttled;
+        public final boolean preview;
+        public final Double sentiment;
+        public final String correlationId;
 
         public SearchResults(List<Article> articles) {
+            this(articles, false, false, null, null);
+        }
+
+        SearchResults(SentimentScorer.Scored scored) {
+            this(scored.articles, false, false, scored.query, null);
+        }
+
+        private SearchResults(List<Article> articles, boolean throttled, boolean preview, Double sentiment,
+                              String correlationId) {
+            this.articles = articles;
+            this.throttled = throttled;
+            this.preview = preview;
+            this.sentiment = sentiment;
+            this.correlationId = correlationId;
+        }
+
+        /** @return the reply sent when the NewsAPI call queue is full */
+        public static SearchResults throttled() {
+            return new SearchResults(List.of(), true, false, null, null);
+        }
+
+        /** @return an early answer from the local index, addressed to {@code correlationId} */
+        static SearchResults preview(List<Article> articles, String correlationId) {
+            return new SearchResults(articles, false, true, null, correlationId);
+        }
+
+        /** @return the same results addressed to the request with {@code correlationId} */
+        SearchResults forRequest(String correlationId) {
+            return correlationId == null
+                    ? this
+                    : new SearchResults(articles, throttled, preview, sentiment, correlationId);
+        }
+    }
+
+    /**
+     * Sent by {@link HashRoutedPool} to a worker it took off its ring: the
+     * worker answers the searches it has in flight, then stops.
+     */
+    public enum Drain implements Command { INSTANCE }
+
+    /**
+     * Internal message: the upstream call for a normalized query has completed.
+     * Sent to self via {@code pipeToSelf} so that the in-flight table is only
+     * ever touched from the actor thread.
+     */
+    private static final class UpstreamCompleted implements Command {
+        final String key;
+        final long startNanos;
+        final List<Article> articles;
+        final Throwable failure;
+
+        UpstreamCompleted(String key, long startNanos, List<Article> articles, Throwable failure) {
+            this.key = key;
+            this.startNanos = startNanos;
             this.articles = articles;
+            this.failure = failure;
         }
     }
 
+    /**
+     * Internal message: the fresh result of {@code key} has been scored
+     * (or scoring failed, in which case the unscored articles are sent).
+     */
+    private static final class ScoringCompleted implements Command {
+        final String key;
+        final long startNanos;
+        final SearchResults results;
+
+        ScoringCompleted(String key, long startNanos, SearchResults results) {
+            this.key = key;
+            this.startNanos = startNanos;
+            this.results = results;
+        }
+    }
+
+    /**
+     * Thread-safe counters describing how much upstream work coalescing saved.
+     *
+     * <p>One instance is shared by the actor and whoever wants to observe it
+     * (bound in {@link modules.Module}), so it can be read without asking the actor.</p>
+     * <ul>
+     *   <li>{@code issued}    – searches that triggered a NewsAPI call</li>
+     *   <li>{@code coalesced} – searches that joined an identical in-flight call</li>
+     * </ul>
+     */
+    public static final class Stats {
+        private final LongAdder issued = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+
+        public long issued() { return issued.sum(); }
+
+        public long coalesced() { return coalesced.sum(); }
+    }
+
     /** Non-blocking NewsAPI facade injected via Guice. */
     private final NewsApiService newsApi;
 
+    /** Shared coalescing counters. */
+    private final Stats stats;
+
+    /** Queries whose last good result is kept as a fallback. */
+    private static final int FALLBACK_ENTRIES = 256;
+
+    /** Breaker of the NewsAPI search endpoint (applied by the client chain); records fallbacks served. */
+    private final EndpointBreaker breaker;
+
+    /** Shared sentiment scorer (own fork-join pool, memo by article id). */
+    private final SentimentScorer scorer;
+
+    /** Shared index of recently fetched articles, for previews. */
+    private final ArticleIndex index;
+
+    /** Articles in a preview reply (one NewsAPI page). */
+    private static final int PREVIEW_LIMIT = 20;
+
+    /** Normalized query → requests waiting for the single upstream call in flight. */
+    private final Map<String, List<SearchArticles>> inFlight = new HashMap<>();
+
+    /** Set by {@link Drain}: stop once {@link #inFlight} is empty. */
+    private boolean draining;
+
+    /** Normalized query → last successful (scored) result (LRU), served when upstream fails. */
+    private final Map<String, SearchResults> lastGood = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SearchResults> eldest) {
+            return size() > FALLBACK_ENTRIES;
+        }
+    };
+
     /**
-     * Factory method used by Guice {@link modules.Module} to create this actor.
+     * Factory method that creates this actor with private counters, a private
+     * index and default breakers that {@code api} is wrapped in
+     * ({@link BreakerNewsApiService}). The scorer owns a thread pool, so it is
+     * always passed in and shared, never created per actor.
      *
-     * @param api asynchronous News API client implementation
+     * @param api    asynchronous News API client implementation
+     * @param scorer sentiment scorer shared with the caller
      * @return a {@link Behavior} that can be spawned as {@code SearchActor}
      */
-    public static Behavior<Command> create(NewsApiService api) {
-        return Behaviors.setup(ctx -> new SearchActor(ctx, api));
+    public static Behavior<Command> create(NewsApiService api, SentimentScorer scorer) {
+        return Behaviors.setup(ctx -> {
+            Scheduler scheduler = ctx.getSystem().classicSystem().scheduler();
+            EndpointBreaker breaker = new EndpointBreaker("search", scheduler, EndpointBreaker.Settings.DEFAULTS);
+            EndpointBreaker sources = new EndpointBreaker("sources", scheduler, EndpointBreaker.Settings.DEFAULTS);
+            return new SearchActor(ctx, new BreakerNewsApiService(api, breaker, sources), new Stats(), breaker,
+                    scorer, new ArticleIndex(ArticleIndex.Settings.DEFAULTS));
+        });
     }
 
-    private SearchActor(ActorContext<Command> ctx, NewsApiService api) {
+    /**
+     * Factory method used by Guice {@link modules.Module}; shares counters, the
+     * endpoint breaker, the sentiment scorer and the article index with the caller.
+     *
+     * @param api     asynchronous News API client implementation
+     * @param stats   counters updated for every search handled by this actor
+     * @param breaker circuit breaker of the search endpoint
+     * @param scorer  sentiment scorer shared by every worker of the pool
+     * @param index   index of recent results shared by every worker of the pool
+     * @return a {@link Behavior} that can be spawned as {@code SearchActor}
+     */
+    public static Behavior<Command> create(NewsApiService api, Stats stats, EndpointBreaker breaker,
+                                           SentimentScorer scorer, ArticleIndex index) {
+        return Behaviors.setup(ctx -> new SearchActor(ctx, api, stats, breaker, scorer, index));
+    }
+
+    private SearchActor(ActorContext<Command> ctx, NewsApiService api, Stats stats, EndpointBreaker breaker,
+                        SentimentScorer scorer, ArticleIndex index) {
         super(ctx);
         this.newsApi = api;
+        this.stats = stats;
+        this.breaker = breaker;
+        this.scorer = scorer;
+        this.index = index;
+    }
+
+    /**
+     * Normalizes a free-text query so that trivially different spellings
+     * ({@code " Bitcoin "}, {@code "bitcoin"}) share one upstream call.
+     *
+     * @param query raw user query (may be null)
+     * @return trimmed, lower-cased query with inner whitespace collapsed
+     */
+    public static String normalize(String query) {
+        if (query == null) return "";
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Key {@code search-actor}'s pool routes on: identical queries always reach
+     * the same worker, so single-flight coalescing still works across the pool.
+     *
+     * @param msg any command sent to the pool
+     * @return the normalized query for {@link SearchArticles}, empty otherwise
+     */
+    public static String routingKey(Command msg) {
+        return msg instanceof SearchArticles m ? normalize(m.query) : "";
     }
 
     @Override
@@ -103,6 +327,16 @@ public final class SearchActor extends AbstractBehavior<SearchActor.Command> {
         if (msg instanceof SearchArticles m) {
             return onSearchArticles(m);
         }
+        if (msg instanceof UpstreamCompleted m) {
+            return onUpstreamCompleted(m);
+        }
+        if (msg instanceof ScoringCompleted m) {
+            return onScoringCompleted(m);
+        }
+        if (msg == Drain.INSTANCE) {
+            draining = true;
+            return stopIfDrained();
+        }
         // Unknown message type – ignore and keep same behavior
         return this;
     }
@@ -110,24 +344,131 @@ public final class SearchActor extends AbstractBehavior<SearchActor.Command> {
     /**
      * Handles {@link SearchArticles} by asynchronously querying the News API.
      *
-     * <p>This method MUST be non-blocking. It triggers the HTTP call via
-     * {@link NewsApiService#searchArticles(String)} and, once the future completes,
-     * sends a {@link SearchResults} message to the {@code replyTo} actor.</p>
+     * <p>This method MUST be non-blocking. If an identical (normalized) query is
+     * already in flight, the caller is simply added to its waiters. Otherwise the
+     * HTTP call is triggered via {@link NewsApiService#searchArticles(String)} and
+     * its completion is piped back to this actor as {@link UpstreamCompleted}.
+     * Either way, a caller that accepts previews first gets whatever the local
+     * {@link ArticleIndex} already holds for the query.</p>
      *
      * @param msg the {@link SearchArticles} message containing query and replyTo
      * @return current {@link Behavior} (actor remains available for more messages)
      */
     private Behavior<Command> onSearchArticles(SearchArticles msg) {
-        // Defensive null-handling – treat null query as empty string.
-        final String query = msg.query == null ? "" : msg.query;
+        // Defensive null-handling – normalize() treats a null query as empty string.
+        final String key = normalize(msg.query);
+
+        if (msg.acceptsPreview) {
+            List<Article> local = index.search(key, PREVIEW_LIMIT);
+            if (!local.isEmpty()) msg.replyTo.tell(SearchResults.preview(local, msg.correlationId));
+        }
 
-        CompletionStage<List<Article>> future = newsApi.searchArticles(query);
+        List<SearchArticles> waiters = inFlight.get(key);
+        if (waiters != null) {
+            waiters.add(msg);
+            stats.coalesced.increment();
+            getContext().getLog().debug("[{}] search '{}' joined the call in flight", msg.correlationId, key);
+            return this;
+        }
+
+        waiters = new ArrayList<>();
+        waiters.add(msg);
+        inFlight.put(key, waiters);
+        stats.issued.increment();
+
+        final long start = System.nanoTime();
+        CompletionStage<List<Article>> future = newsApi.searchArticles(key);
 
-        // Asynchronously send SearchResults to the caller, without blocking this actor.
-        future.thenAccept(articles ->
-                msg.replyTo.tell(new SearchResults(articles))
+        // Completion is handled on the actor thread, without blocking this actor.
+        getContext().pipeToSelf(future, (articles, err) ->
+                new UpstreamCompleted(key, start, articles, err)
         );
 
         return this;
     }
+
+    /**
+     * Handles a completed upstream call.
+     *
+     * <p>A fresh result is first scored on the {@link SentimentScorer}'s pool;
+     * its waiters stay in flight meanwhile, so identical searches keep joining
+     * it. On failure (error, timeout or open breaker) every waiter gets the
+     * query's last good result, or an empty list if there is none.</p>
+     *
+     * @param msg completion of the single upstream call for {@code msg.key}
+     * @return current {@link Behavior}
+     */
+    private Behavior<Command> onUpstreamCompleted(UpstreamCompleted msg) {
+        if (msg.failure == null) {
+            final List<Article> unscored = msg.articles;
+            getContext().pipeToSelf(scorer.score(unscored), (scored, err) ->
+                    new ScoringCompleted(msg.key, msg.startNanos,
+                            err == null ? new SearchResults(scored) : new SearchResults(unscored)));
+            return this;
+        }
+
+        List<SearchArticles> waiters = inFlight.remove(msg.key);
+        if (waiters == null) return this;
+
+        SearchResults results;
+        if (NewsApiThrottledException.isThrottled(msg.failure)) {
+            results = SearchResults.throttled();
+        } else {
+            SearchResults fallback = lastGood.get(msg.key);
+            getContext().getLog().warn("Search '{}' failed for {} caller(s), {}: {}",
+                    msg.key, waiters.size(), fallback == null ? "no fallback" : "serving last good result",
+                    msg.failure.toString());
+            if (fallback != null) breaker.recordFallback();
+            results = fallback == null ? new SearchResults(List.of()) : fallback;
+        }
+        return reply(msg.key, msg.startNanos, waiters, results);
+    }
+
+    /**
+     * Fans a scored result out to every caller that waited on it.
+     *
+     * @param msg scored result of the upstream call for {@code msg.key}
+     * @return current {@link Behavior}
+     */
+    private Behavior<Command> onScoringCompleted(ScoringCompleted msg) {
+        List<SearchArticles> waiters = inFlight.remove(msg.key);
+        if (waiters == null) return this;
+
+        lastGood.put(msg.key, msg.results);
+        index.addAll(msg.results.articles);
+        return reply(msg.key, msg.startNanos, waiters, msg.results);
+    }
+
+    private Behavior<Command> reply(String key, long startNanos, List<SearchArticles> waiters, SearchResults results) {
+        for (SearchArticles request : waiters) {
+            request.replyTo.tell(results.forRequest(request.correlationId));
+        }
+        getContext().getLog().debug("[{}] search '{}' answered {} caller(s) in {} ms",
+                waiters.get(0).correlationId, key, waiters.size(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+        return stopIfDrained();
+    }
+
+    /**
+     * The supervisor is about to restart this worker and the in-flight table
+     * goes with it: answer every waiter now, from the query's last good
+     * result or with an empty list, rather than never.
+     */
+    @Override
+    public Behavior<Command> onSignal(Signal signal) {
+        if (signal instanceof PreRestart) {
+            for (Map.Entry<String, List<SearchArticles>> e : inFlight.entrySet()) {
+                SearchResults results = lastGood.getOrDefault(e.getKey(), new SearchResults(List.of()));
+                for (SearchArticles request : e.getValue()) {
+                    request.replyTo.tell(results.forRequest(request.correlationId));
+                }
+            }
+            inFlight.clear();
+        }
+        return this;
+    }
+
+    private Behavior<Command> stopIfDrained() {
+        return draining && inFlight.isEmpty() ? Behaviors.stopped() : this;
+    }
 }
@@ -0,0 +1,272 @@
+package actors;
+
+import org.apache.pekko.actor.typed.ActorRef;
+
+import com.typesafe.config.Config;
+
+import app.services.OutboundStats;
+import app.services.ReplayBuffer;
+import app.services.SessionOutbound;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SessionRegistry
+ *
+ * Resumable WebSocket sessions, by resume token.
+ *
+ * <p>A session outlives its WebSocket: when the browser disconnects, the
+ * {@link UserActor} keeps its queries, feed subscriptions and seen ids for
+ * {@code notilytics.session.grace}, and keeps numbering frames into the
+ * session's {@link ReplayBuffer}. A browser that reconnects with
+ * {@code /ws?session=<token>&lastSeq=<n>} within the grace period gets the
+ * same actor back and only the frames after {@code n}.</p>
+ *
+ * <p>Every ring is capped on its own and all of them together are held to
+ * {@code notilytics.session.replayBudget}: a frame that takes the total over
+ * the budget evicts whole rings, those of detached sessions first (longest
+ * detached first), then those of attached sessions (oldest first). A session
+ * whose ring was evicted resyncs on its next reconnect.</p>
+ *
+ * <p>INPUT: new WebSockets ({@link #open}) and resume tokens ({@link #claim})<br>
+ * OUTPUT: the {@link Session} to attach the WebSocket to</p>
+ *
+ * <p>Thread-safety: the registry is shared by every request thread; a
+ * {@link Session}'s replay ring and current outbound are owned by its
+ * UserActor.</p>
+ *
+ * AUTHOR: Sara Ezzati
+ */
+public final class SessionRegistry {
+
+    /**
+     * Session settings, read from {@code notilytics.session}.
+     */
+    public static final class Settings {
+        public final Duration grace;
+        public final int replayFrames;
+        public final long replayBytes;
+        /** Characters kept by all replay rings together. */
+        public final long replayBudget;
+
+        public Settings(Duration grace, int replayFrames, long replayBytes, long replayBudget) {
+            this.grace = grace;
+            this.replayFrames = replayFrames;
+            this.replayBytes = replayBytes;
+            this.replayBudget = replayBudget;
+        }
+
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("notilytics.session");
+            return new Settings(c.getDuration("grace"), c.getInt("replayFrames"), c.getBytes("replayBytes"),
+                    c.getBytes("replayBudget"));
+        }
+    }
+
+    /**
+     * One resumable session. Survives both reconnects and restarts of its UserActor.
+     */
+    public static final class Session {
+        /** Unguessable resume token sent to the browser. */
+        public final String token;
+        /** Session id (names the UserActor, prefixes correlation ids). */
+        public final String id;
+        /** Shared outbound gauges (kept here: they are needed while detached too). */
+        public final OutboundStats stats;
+
+        final ReplayBuffer replay;
+        /** WebSocket currently attached, or null while detached (UserActor only). */
+        SessionOutbound outbound;
+
+        private volatile ActorRef<UserActor.Command> user;
+        /** A resume was claimed and its message is on the way to the UserActor. */
+        private boolean resumePending;
+        private boolean expired;
+
+        /** Eviction order: when the session opened, and when it lost its WebSocket (0 while attached). */
+        private final long openedNanos = System.nanoTime();
+        private volatile long detachedNanos;
+
+        Session(String token, String id, SessionOutbound outbound, Settings settings, AtomicLong replayTotal) {
+            this.token = token;
+            this.id = id;
+            this.outbound = outbound;
+            this.stats = outbound.stats();
+            this.replay = new ReplayBuffer(settings.replayFrames, settings.replayBytes, replayTotal);
+        }
+
+        /** @return the session's UserActor */
+        public ActorRef<UserActor.Command> user() {
+            return user;
+        }
+
+        /** @param user the UserActor spawned for this session */
+        public void attach(ActorRef<UserActor.Command> user) {
+            this.user = user;
+        }
+
+        synchronized boolean tryClaim() {
+            if (expired) return false;
+            resumePending = true;
+            return true;
+        }
+
+        synchronized void resumed() {
+            resumePending = false;
+            detachedNanos = 0;
+        }
+
+        /** The WebSocket closed; the ring now goes before those of attached sessions. */
+        void detached() {
+            detachedNanos = System.nanoTime();
+        }
+
+        /** @return true if the session may stop: no resume is on its way */
+        synchronized boolean tryExpire() {
+            if (resumePending) return false;
+            expired = true;
+            return true;
+        }
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Settings settings;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    /** Characters kept by every session's ring. */
+    private final AtomicLong replayBytes = new AtomicLong();
+    /** Held by the one thread evicting rings; others go on appending. */
+    private final ReentrantLock evicting = new ReentrantLock();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder resumes = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder replayedFrames = new LongAdder();
+    private final LongAdder evictedRings = new LongAdder();
+
+    public SessionRegistry(Settings settings) {
+        this.settings = settings;
+    }
+
+    /** @return grace period and replay limits */
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * Registers a new session with a fresh token.
+     *
+     * @param id       session id
+     * @param outbound the WebSocket it starts attached to
+     * @return the session; {@link Session#attach} its UserActor next
+     */
+    public Session open(String id, SessionOutbound outbound) {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes),
+                id, outbound, settings, replayBytes);
+        sessions.put(session.token, session);
+        opened.increment();
+        return session;
+    }
+
+    /**
+     * Claims a session for a reconnecting WebSocket. Once claimed, the
+     * session's UserActor will not expire before it handles the resume.
+     *
+     * @param token resume token from the browser (may be null)
+     * @return the session, or null if the token is unknown or its grace period ran out
+     */
+    public Session claim(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        return session != null && session.user() != null && session.tryClaim() ? session : null;
+    }
+
+    /** Forgets a session (its UserActor has stopped) and frees its ring. */
+    void remove(Session session) {
+        sessions.remove(session.token, session);
+        session.replay.clear();
+    }
+
+    /**
+     * Numbers a frame into the session's ring, then evicts rings while all of
+     * them together are over the budget.
+     *
+     * @param session session the frame belongs to
+     * @param frame   serialized frame
+     * @return the frame carrying its {@code "seq"}
+     */
+    String append(Session session, String frame) {
+        String stamped = session.replay.append(frame);
+        if (replayBytes.get() > settings.replayBudget && evicting.tryLock()) {
+            try {
+                evictRings();
+            } finally {
+                evicting.unlock();
+            }
+        }
+        return stamped;
+    }
+
+    private void evictRings() {
+        List<Session> order = new ArrayList<>(sessions.values());
+        order.sort(EVICTION_ORDER);
+        for (Session s : order) {
+            if (replayBytes.get() <= settings.replayBudget) return;
+            if (s.replay.clear() > 0) evictedRings.increment();
+        }
+    }
+
+    /** Detached sessions first, longest detached first; then attached ones, oldest first. */
+    private static final Comparator<Session> EVICTION_ORDER = (a, b) -> {
+        long da = a.detachedNanos, db = b.detachedNanos;
+        if ((da == 0) != (db == 0)) return da != 0 ? -1 : 1;
+        return da != 0 ? Long.compare(da - db, 0) : Long.compare(a.openedNanos - b.openedNanos, 0);
+    };
+
+    void recordResume(int frames, boolean resync) {
+        resumes.increment();
+        replayedFrames.add(frames);
+        if (resync) resyncs.increment();
+    }
+
+    void recordExpired() {
+        expirations.increment();
+    }
+
+    /** @return sessions alive, attached or within their grace period */
+    public int size() { return sessions.size(); }
+
+    /** @return sessions opened */
+    public long opened() { return opened.sum(); }
+
+    /** @return reconnects that picked up an existing session */
+    public long resumes() { return resumes.sum(); }
+
+    /** @return resumes whose missed frames were no longer buffered */
+    public long resyncs() { return resyncs.sum(); }
+
+    /** @return sessions stopped after their grace period */
+    public long expirations() { return expirations.sum(); }
+
+    /** @return frames replayed to reconnecting browsers */
+    public long replayedFrames() { return replayedFrames.sum(); }
+
+    /** @return characters kept by all replay rings */
+    public long replayBytes() { return replayBytes.get(); }
+
+    /** @return replay rings evicted to stay within the budget */
+    public long evictedRings() { return evictedRings.sum(); }
+}
@@ -0,0 +1,261 @@
+package app.actors;
+
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.Behavior;
+import org.apache.pekko.actor.typed.Signal;
+import org.apache.pekko.actor.typed.Terminated;
+import org.apache.pekko.actor.typed.javadsl.*;
+import org.apache.pekko.actor.typed.pubsub.Topic;
+import org.apache.pekko.cluster.sharding.typed.javadsl.ClusterSharding;
+
+import app.actors.FeedRegistryActor.FeedUpdate;
+import app.actors.QueryFeedEntity.FeedBatch;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ShardedFeedRegistryActor
+ *
+ * Cluster-mode replacement for {@link FeedRegistryActor}, with the same
+ * protocol, so {@code UserActor} does not know which one it talks to.
+ * One instance runs on every node.
+ *
+ * <p>Instead of polling, it subscribes this node to the {@link Topic} of each
+ * query its sessions watch and fans every {@link FeedBatch} out to them as a
+ * {@link FeedUpdate}. The feed itself runs once per cluster in the query's
+ * {@link QueryFeedEntity}, which this registry keeps alive by renewing a
+ * {@link QueryFeedEntity.Watch} lease every {@code leaseInterval} while the
+ * node has subscribers.</p>
+ *
+ * <p>A new subscriber's {@link QueryFeedEntity.Watch} carries a fresh tag; the
+ * entity's snapshot comes back with that tag and goes to that subscriber
+ * only. A tag is dropped when its subscriber leaves the query, and expires
+ * after {@code leaseTimeout} if the snapshot never came back (the entity
+ * was rebalancing or its node went down). Subscribers are watched and
+ * detached when they stop.</p>
+ *
+ * <p>INPUT MESSAGE TYPES: those of {@link FeedRegistryActor}
+ * ({@link FeedRegistryActor.Subscribe}, {@link FeedRegistryActor.Unsubscribe},
+ * {@link FeedRegistryActor.UnsubscribeAll}), plus topic batches</p>
+ *
+ * <p>OUTPUT: {@link FeedUpdate} to each local subscriber of the batch's query</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class ShardedFeedRegistryActor extends AbstractBehavior<FeedRegistryActor.Command> {
+
+    /** A batch from a query's topic, or a snapshot from its entity. */
+    private static final class BatchReceived implements FeedRegistryActor.Command {
+        final FeedBatch batch;
+
+        BatchReceived(FeedBatch batch) {
+            this.batch = batch;
+        }
+    }
+
+    private enum RenewLeases implements FeedRegistryActor.Command { INSTANCE }
+
+    /** A snapshot asked for one subscriber and not yet received. */
+    private static final class PendingSnapshot {
+        final ActorRef<FeedUpdate> subscriber;
+        final String key;
+        final long sentNanos;
+
+        PendingSnapshot(ActorRef<FeedUpdate> subscriber, String key, long sentNanos) {
+            this.subscriber = subscriber;
+            this.key = key;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    /** This node's topic subscription and sessions for one query. */
+    private static final class Local {
+        final ActorRef<Topic.Command<FeedBatch>> topic;
+        final Set<ActorRef<FeedUpdate>> subscribers = new HashSet<>();
+
+        Local(ActorRef<Topic.Command<FeedBatch>> topic) {
+            this.topic = topic;
+        }
+    }
+
+    private final ClusterSharding sharding;
+    private final FeedRegistryActor.Stats stats;
+    private final Duration leaseTimeout;
+    private final ActorRef<FeedBatch> batchAdapter;
+
+    /** Normalized query → topic subscription and local subscribers. */
+    private final Map<String, Local> locals = new HashMap<>();
+
+    /** Subscriber → queries it is attached to (for {@link FeedRegistryActor.UnsubscribeAll}). */
+    private final Map<ActorRef<FeedUpdate>, Set<String>> bySubscriber = new HashMap<>();
+
+    /** Snapshot tag → the subscriber that asked for it. */
+    private final Map<Long, PendingSnapshot> pendingSnapshots = new HashMap<>();
+    private long snapshotSeq;
+
+    /** Names topic children uniquely (queries are not valid actor names). */
+    private long topicSeq;
+
+    /**
+     * Factory method used by {@link modules.Module} in cluster mode.
+     *
+     * @param sharding      cluster sharding with {@link QueryFeedEntity#TYPE_KEY} initialized
+     * @param leaseInterval how often leases of watched queries are renewed
+     * @param leaseTimeout  how long a snapshot is waited for
+     * @param stats         gauges updated as subscriptions come and go
+     * @return a {@link Behavior} that can be spawned as {@code feed-registry}
+     */
+    public static Behavior<FeedRegistryActor.Command> create(ClusterSharding sharding, Duration leaseInterval,
+                                                             Duration leaseTimeout, FeedRegistryActor.Stats stats) {
+        return Behaviors.setup(ctx -> Behaviors.withTimers(timers -> {
+            timers.startTimerWithFixedDelay(RenewLeases.INSTANCE, leaseInterval);
+            return new ShardedFeedRegistryActor(ctx, sharding, leaseTimeout, stats);
+        }));
+    }
+
+    private ShardedFeedRegistryActor(ActorContext<FeedRegistryActor.Command> ctx, ClusterSharding sharding,
+                                     Duration leaseTimeout, FeedRegistryActor.Stats stats) {
+        super(ctx);
+        this.sharding = sharding;
+        this.leaseTimeout = leaseTimeout;
+        this.stats = stats;
+        this.batchAdapter = ctx.messageAdapter(FeedBatch.class, BatchReceived::new);
+    }
+
+    @Override
+    public Behavior<FeedRegistryActor.Command> onMessage(FeedRegistryActor.Command msg) {
+        if (msg instanceof BatchReceived m) {
+            return onBatch(m.batch);
+        }
+        if (msg instanceof FeedRegistryActor.Subscribe m) {
+            return onSubscribe(m);
+        }
+        if (msg instanceof FeedRegistryActor.Unsubscribe m) {
+            return onUnsubscribe(m);
+        }
+        if (msg instanceof FeedRegistryActor.UnsubscribeAll m) {
+            return onUnsubscribeAll(m);
+        }
+        if (msg == RenewLeases.INSTANCE) {
+            for (String key : locals.keySet()) watch(key, QueryFeedEntity.NO_SNAPSHOT);
+            long expired = System.nanoTime() - leaseTimeout.toNanos();
+            pendingSnapshots.values().removeIf(p -> p.sentNanos - expired < 0);
+            return this;
+        }
+        return this;
+    }
+
+    /**
+     * Subscribes the node to the query's topic on first use and asks the
+     * entity for a snapshot for every new subscriber.
+     */
+    private Behavior<FeedRegistryActor.Command> onSubscribe(FeedRegistryActor.Subscribe msg) {
+        final String key = SearchActor.normalize(msg.query);
+        if (key.isEmpty()) return this;
+
+        Local local = locals.get(key);
+        if (local == null) {
+            ActorRef<Topic.Command<FeedBatch>> topic = getContext().spawn(
+                    Topic.create(FeedBatch.class, QueryFeedEntity.topicName(key)), "topic-" + (++topicSeq));
+            topic.tell(Topic.subscribe(batchAdapter));
+            local = new Local(topic);
+            locals.put(key, local);
+            getContext().getLog().debug("Node subscribed to cluster feed '{}'", key);
+        }
+        if (!local.subscribers.add(msg.subscriber)) return this;
+
+        long tag = ++snapshotSeq;
+        pendingSnapshots.put(tag, new PendingSnapshot(msg.subscriber, key, System.nanoTime()));
+        watch(key, tag);
+        bySubscriber.computeIfAbsent(msg.subscriber, s -> {
+            getContext().watch(s);
+            return new HashSet<>();
+        }).add(key);
+        stats.subscriptions.incrementAndGet();
+        return this;
+    }
+
+    private Behavior<FeedRegistryActor.Command> onUnsubscribe(FeedRegistryActor.Unsubscribe msg) {
+        final String key = SearchActor.normalize(msg.query);
+        detach(key, msg.subscriber);
+
+        Set<String> queries = bySubscriber.get(msg.subscriber);
+        if (queries != null) {
+            queries.remove(key);
+            if (queries.isEmpty()) {
+                bySubscriber.remove(msg.subscriber);
+                getContext().unwatch(msg.subscriber);
+            }
+        }
+        return this;
+    }
+
+    private Behavior<FeedRegistryActor.Command> onUnsubscribeAll(FeedRegistryActor.UnsubscribeAll msg) {
+        getContext().unwatch(msg.subscriber);
+        detachAll(msg.subscriber);
+        return this;
+    }
+
+    /** A subscriber stopped without unsubscribing: detach it from every query. */
+    @Override
+    public Behavior<FeedRegistryActor.Command> onSignal(Signal signal) {
+        if (signal instanceof Terminated t) {
+            detachAll(t.getRef());
+        }
+        return this;
+    }
+
+    private void detachAll(ActorRef<?> subscriber) {
+        Set<String> queries = bySubscriber.remove(subscriber);
+        if (queries != null) {
+            for (String key : queries) detach(key, subscriber);
+        }
+    }
+
+    /**
+     * Fans a topic batch out to every local subscriber of its query; a
+     * snapshot goes only to the subscriber whose tag it carries.
+     */
+    private Behavior<FeedRegistryActor.Command> onBatch(FeedBatch batch) {
+        Local local = locals.get(batch.query);
+        if (batch.snapshotTag != QueryFeedEntity.NO_SNAPSHOT) {
+            PendingSnapshot pending = pendingSnapshots.remove(batch.snapshotTag);
+            boolean empty = batch.articles.isEmpty() && batch.analytics == null;
+            if (pending != null && !empty && local != null && local.subscribers.contains(pending.subscriber)) {
+                pending.subscriber.tell(new FeedUpdate(batch.query, batch.articles, batch.analytics));
+            }
+            return this;
+        }
+        if (local == null) return this;
+        FeedUpdate update = new FeedUpdate(batch.query, batch.articles, batch.analytics);
+        for (ActorRef<FeedUpdate> subscriber : local.subscribers) subscriber.tell(update);
+        return this;
+    }
+
+    /**
+     * Removes one subscriber and its pending snapshot of the query; when the
+     * node has none left for the query, it
+     * leaves the topic and stops renewing the lease, and the entity stops once
+     * every other node has done the same.
+     */
+    private void detach(String key, ActorRef<?> subscriber) {
+        pendingSnapshots.values().removeIf(p -> p.key.equals(key) && p.subscriber.equals(subscriber));
+        Local local = locals.get(key);
+        if (local == null || !local.subscribers.remove(subscriber)) return;
+        stats.subscriptions.decrementAndGet();
+
+        if (local.subscribers.isEmpty()) {
+            getContext().stop(local.topic);
+            locals.remove(key);
+            getContext().getLog().debug("Node left cluster feed '{}' (last local subscriber left)", key);
+        }
+    }
+
+    private void watch(String key, long snapshotTag) {
+        sharding.entityRefFor(QueryFeedEntity.TYPE_KEY, key).tell(new QueryFeedEntity.Watch(batchAdapter, snapshotTag));
+    }
+}
@@ -4,6 +4,10 @@ package actors;
 import org.apache.pekko.actor.typed.*;
 import org.apache.pekko.actor.typed.javadsl.*;
 
+import app.actors.FeedRegistryActor;
+import app.actors.ResourceNewsActor;
+import app.actors.SearchActor;
+
 /**
  * SupervisorActor (D2 Requirement)
  *
@@ -56,12 +60,20 @@ public class SupervisorActor {
     /**
      * Factory used by HomeController → SupervisorActor → UserActor linkage.
      *
-     * @param out WebSocket output actor
-     * @return Behavior<UserActor.Command>
+     * @param session       the resumable session (its outbound queue, replay ring and token)
+     * @param sessions      registry the session is listed in
+     * @param searchActor   shared SearchActor used for initial snapshots
+     * @param resourceActor shared ResourceNewsActor used for source lists
+     * @param feedRegistry  shared registry of live feeds, one per query
+     * @return Behavior<UserActor.Command>, restarted on failure
      */
-    public static Behavior<Command> createUserActor(ActorRef<String> out) {
-        return Behaviors.setup(ctx ->
-            (Behavior<Command>) UserActor.createLinked(ctx, out)
-        );
+    public static Behavior<UserActor.Command> createUserActor(SessionRegistry.Session session,
+                                                              SessionRegistry sessions,
+                                                              ActorRef<SearchActor.Command> searchActor,
+                                                              ActorRef<ResourceNewsActor.Command> resourceActor,
+                                                              ActorRef<FeedRegistryActor.Command> feedRegistry) {
+        return supervise(Behaviors.<UserActor.Command>setup(ctx ->
+            UserActor.createLinked(ctx, session, sessions, searchActor, resourceActor, feedRegistry)
+        ));
     }
 }
@@ -4,10 +4,28 @@ package actors;
 import org.apache.pekko.actor.typed.*;
 import org.apache.pekko.actor.typed.javadsl.*;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+
+import app.actors.FeedRegistryActor;
+import app.actors.ResourceNewsActor;
+import app.actors.SearchActor;
+import app.analytics.AnalyticsUpdate;
+import app.dedup.NearDuplicateIndex;
+import app.dedup.SeenIds;
+import app.dedup.SimHash;
+import app.json.Frames;
+import app.json.JsonWriter;
 import app.models.Article;
 import app.models.SourceInfo;
+import app.services.SentSources;
+import app.services.SessionOutbound;
+
+import java.time.Duration;
 import java.util.*;
 
+import play.libs.Json;
+
 /**
  * UserActor (Core of D2 Reactive Push)
  *
@@ -17,16 +35,30 @@ import java.util.*;
  *  - Receive search requests from WebSocket
  *  - Forward requests to SearchActor and ResourceNewsActor
  *  - Receive streaming results and push them to WebSocket
- *  - Filter duplicates, maintain history
+ *    (initial snapshot from SearchActor, then incremental batches from the
+ *     shared feed of every active query, via FeedRegistryActor, together
+ *     with the query's word-frequency and readability analytics)
+ *  - Filter duplicates, maintain history; collapse the same story from
+ *    several sources into one article with a source count (NearDuplicateIndex)
+ *  - Send a source list as the difference to the previous one (SentSources)
+ *  - Number every frame into the session's replay ring and, when the
+ *    WebSocket drops, keep the session for a grace period so a reconnect
+ *    resumes it and only receives the frames it missed (see SessionRegistry)
  *
  * INPUT TYPES:
  *   - UserSearch(query)
  *   - UserRequestSources(country, category, language)
- *   - IncomingArticles(List<Article>)
+ *   - ResyncSources (browser missed a source delta and wants the full list)
+ *   - IncomingArticles(List<Article>, correlationId, sentiment, preview)
+ *   - IncomingFeedUpdate(List<Article>, AnalyticsUpdate) (live feed batch)
  *   - IncomingSources(List<SourceInfo>)
+ *   - UpstreamThrottled(request, correlationId) (NewsAPI rate limit queue full)
+ *   - ClientDisconnected(outbound) (WebSocket closed by the browser)
+ *   - ClientResumed(outbound, lastSeq) (browser reconnected with the session token)
+ *   - GraceExpired (nobody reconnected in time)
  *
  * OUTPUT:
- *   - JSON strings pushed to the WebSocket
+ *   - JSON strings offered to the session's SessionOutbound queue
  *
  * AUTHOR: Sara Ezzati
  */
@@ -52,9 +84,33 @@ public class UserActor extends AbstractBehavior<UserActor.Command> {
         }
     }
 
+    /** The browser missed a source delta: send the full list again. */
+    public static final class ResyncSources implements Command {
+        public ResyncSources() { }
+    }
+
     public static final class IncomingArticles implements Command {
         public final List<Article> articles;
-        public IncomingArticles(List<Article> a) { this.articles = a; }
+        /** Set on the reply to this session's own search; null for feed updates. */
+        public final String correlationId;
+        /** Mean sentiment of the search result; null for feed updates. */
+        public final Double sentiment;
+        /** True for the early answer from the local index; the final reply follows. */
+        public final boolean preview;
+        public IncomingArticles(List<Article> a) { this(a, null); }
+        public IncomingArticles(List<Article> a, String correlationId) { this(a, correlationId, null, false); }
+        public IncomingArticles(List<Article> a, String correlationId, Double sentiment, boolean preview) {
+            this.articles = a; this.correlationId = correlationId; this.sentiment = sentiment; this.preview = preview;
+        }
+    }
+
+    /** Live feed batch: new articles and/or the query's changed analytics. */
+    public static final class IncomingFeedUpdate implements Command {
+        public final List<Article> articles;
+        public final AnalyticsUpdate analytics;
+        public IncomingFeedUpdate(List<Article> a, AnalyticsUpdate analytics) {
+            this.articles = a; this.analytics = analytics;
+        }
     }
 
     public static final class IncomingSources implements Command {
@@ -67,24 +123,185 @@ public class UserActor extends AbstractBehavior<UserActor.Command> {
         public PushToWebSocket(String json) { this.payload = json; }
     }
 
+    public static final class UpstreamThrottled implements Command {
+        public final String request;
+        /** The throttled search's correlation id; null for sources. */
+        public final String correlationId;
+        public UpstreamThrottled(String request) { this(request, null); }
+        public UpstreamThrottled(String request, String correlationId) {
+            this.request = request; this.correlationId = correlationId;
+        }
+    }
+
+    public static final class ClientDisconnected implements Command {
+        /** The WebSocket that closed; null for whichever is attached. */
+        public final SessionOutbound outbound;
+        public ClientDisconnected() { this(null); }
+        public ClientDisconnected(SessionOutbound outbound) { this.outbound = outbound; }
+    }
+
+    /** A reconnecting browser claimed this session (see {@link SessionRegistry#claim}). */
+    public static final class ClientResumed implements Command {
+        public final SessionOutbound outbound;
+        /** Last frame number the browser received. */
+        public final long lastSeq;
+        public ClientResumed(SessionOutbound outbound, long lastSeq) {
+            this.outbound = outbound; this.lastSeq = lastSeq;
+        }
+    }
+
+    private enum GraceExpired implements Command { INSTANCE }
+
+    /**
+     * Parses a text frame from the browser into a command.
+     *
+     * <pre>
+     *   {"type":"search","query":"bitcoin"}
+     *   {"type":"sources","country":"us","category":"technology","language":"en"}
+     *   {"type":"sourcesResync"}
+     * </pre>
+     *
+     * @param text raw WebSocket text frame
+     * @return the command, or {@code null} if the frame is malformed or of an unknown type
+     */
+    public static Command fromClient(String text) {
+        JsonNode node;
+        try {
+            node = Json.parse(text);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        switch (node.path("type").asText("")) {
+            case "search":
+                return new UserSearch(node.path("query").asText(""));
+            case "sources":
+                return new UserRequestSources(
+                        node.path("country").asText(null),
+                        node.path("category").asText(null),
+                        node.path("language").asText(null));
+            case "sourcesResync":
+                return new ResyncSources();
+            default:
+                return null;
+        }
+    }
+
     /* ============================================================
        INTERNAL FIELDS
        ============================================================ */
 
-    private final ActorRef<String> websocketOut;
-    private final Set<String> seenIds = new HashSet<>();
+    /** Oldest query stops streaming once a session watches more than this many. */
+    private static final int MAX_ACTIVE_QUERIES = 10;
+
+    private final SessionRegistry.Session session;
+    private final SessionRegistry sessions;
+    private final TimerScheduler<Command> timers;
+    private final ActorRef<SearchActor.Command> searchActor;
+    private final ActorRef<ResourceNewsActor.Command> resourceActor;
+    private final ActorRef<FeedRegistryActor.Command> feedRegistry;
+    private final ActorRef<SearchActor.SearchResults> searchResultsAdapter;
+    private final ActorRef<ResourceNewsActor.SourcesResponse> sourcesAdapter;
+    private final ActorRef<FeedRegistryActor.FeedUpdate> feedAdapter;
+    private final SeenIds seenIds;
+
+    /** Stories already shown, by SimHash; null if near-duplicate detection is disabled. */
+    private final NearDuplicateIndex nearDuplicates;
+
+    /** Source list last sent to the browser; later lists go out as deltas. */
+    private final SentSources sentSources = new SentSources();
+
+    /** Frame buffer reused for every push of this session (actor-confined). */
+    private final JsonWriter json = new JsonWriter(8 * 1024);
+
+    /** Normalized queries this session is subscribed to (insertion ordered). */
+    private final LinkedHashSet<String> activeQueries = new LinkedHashSet<>();
+
+    /** A search awaiting its final reply. */
+    private static final class PendingSearch {
+        final String key;
+        final long startNanos;
+
+        PendingSearch(String key, long startNanos) {
+            this.key = key;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /** Correlation id → searches awaiting their final results (bounded). */
+    private final Map<String, PendingSearch> pendingSearches = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PendingSearch> eldest) {
+            return size() > MAX_ACTIVE_QUERIES;
+        }
+    };
+
+    /** Searches re-run after a resync: their results are pushed even if already seen. */
+    private final Set<String> resyncSearches = new HashSet<>();
+
+    /** Numbers this session's searches; with the session id it forms the correlation id. */
+    private long searchSeq;
 
     /* ============================================================
        FACTORY
        ============================================================ */
 
-    public static Behavior<Command> createLinked(ActorContext<?> parentCtx, ActorRef<String> wsOut) {
-        return Behaviors.setup(ctx -> new UserActor(ctx, wsOut));
+    public static Behavior<Command> createLinked(ActorContext<?> parentCtx,
+                                                 SessionRegistry.Session session,
+                                                 SessionRegistry sessions,
+                                                 ActorRef<SearchActor.Command> searchActor,
+                                                 ActorRef<ResourceNewsActor.Command> resourceActor,
+                                                 ActorRef<FeedRegistryActor.Command> feedRegistry) {
+        return Behaviors.setup(ctx -> {
+            Config config = ctx.getSystem().settings().config();
+            return Behaviors.withTimers(timers -> new UserActor(ctx, timers, session, sessions, searchActor,
+                    resourceActor, feedRegistry, SeenIds.fromConfig(config), NearDuplicateIndex.fromConfig(config)));
+        });
     }
 
-    private UserActor(ActorContext<Command> ctx, ActorRef<String> wsOut) {
+    /**
+     * Creates a session actor with an explicit dedup structure instead of the
+     * configured one, no near-duplicate collapsing and no grace period
+     * (benchmarks, {@code BehaviorTestKit}).
+     */
+    public static Behavior<Command> create(SessionOutbound wsOut,
+                                           ActorRef<SearchActor.Command> searchActor,
+                                           ActorRef<ResourceNewsActor.Command> resourceActor,
+                                           ActorRef<FeedRegistryActor.Command> feedRegistry,
+                                           SeenIds seenIds) {
+        SessionRegistry sessions = new SessionRegistry(new SessionRegistry.Settings(Duration.ZERO, 64, 64 << 10, 64 << 10));
+        SessionRegistry.Session session = sessions.open(wsOut.id(), wsOut);
+        return Behaviors.setup(ctx -> Behaviors.withTimers(timers -> new UserActor(ctx, timers, session, sessions,
+                searchActor, resourceActor, feedRegistry, seenIds, null)));
+    }
+
+    private UserActor(ActorContext<Command> ctx,
+                      TimerScheduler<Command> timers,
+                      SessionRegistry.Session session,
+                      SessionRegistry sessions,
+                      ActorRef<SearchActor.Command> searchActor,
+                      ActorRef<ResourceNewsActor.Command> resourceActor,
+                      ActorRef<FeedRegistryActor.Command> feedRegistry,
+                      SeenIds seenIds,
+                      NearDuplicateIndex nearDuplicates) {
         super(ctx);
-        this.websocketOut = wsOut;
+        this.session = session;
+        this.sessions = sessions;
+        this.timers = timers;
+        this.searchActor = searchActor;
+        this.resourceActor = resourceActor;
+        this.feedRegistry = feedRegistry;
+        this.seenIds = seenIds;
+        this.nearDuplicates = nearDuplicates;
+        this.searchResultsAdapter = ctx.messageAdapter(
+                SearchActor.SearchResults.class,
+                r -> r.throttled
+                        ? new UpstreamThrottled("search", r.correlationId)
+                        : new IncomingArticles(r.articles, r.correlationId, r.sentiment, r.preview));
+        this.sourcesAdapter = ctx.messageAdapter(
+                ResourceNewsActor.SourcesResponse.class,
+                r -> r.throttled ? new UpstreamThrottled("sources") : new IncomingSources(r.sources));
+        this.feedAdapter = ctx.messageAdapter(
+                FeedRegistryActor.FeedUpdate.class, u -> new IncomingFeedUpdate(u.articles, u.analytics));
     }
 
     /* ============================================================
@@ -96,15 +313,43 @@ public class UserActor extends AbstractBehavior<UserActor.Command> {
 
         if (msg instanceof UserSearch m) return onSearch(m.query);
 
-        if (msg instanceof IncomingArticles m) return onIncomingArticles(m.articles);
+        if (msg instanceof UserRequestSources m) return onRequestSources(m);
+
+        if (msg instanceof IncomingArticles m) return onIncomingArticles(m);
+
+        if (msg instanceof IncomingFeedUpdate m) return onIncomingFeedUpdate(m);
 
         if (msg instanceof IncomingSources m) return onIncomingSources(m.sources);
 
+        if (msg instanceof ResyncSources) return onResyncSources();
+
+        if (msg instanceof UpstreamThrottled m) return onUpstreamThrottled(m);
+
         if (msg instanceof PushToWebSocket m) {
-            websocketOut.tell(m.payload);
+            push(m.payload);
             return this;
         }
 
+        if (msg instanceof ClientDisconnected m) return onClientDisconnected(m);
+
+        if (msg instanceof ClientResumed m) return onClientResumed(m);
+
+        if (msg == GraceExpired.INSTANCE) return onGraceExpired();
+
+        return this;
+    }
+
+    @Override
+    public Behavior<Command> onSignal(Signal signal) {
+        if (signal instanceof PostStop || signal instanceof PreRestart) {
+            // Release every shared feed; the registry stops feeds nobody else watches.
+            feedRegistry.tell(new FeedRegistryActor.UnsubscribeAll(feedAdapter));
+            activeQueries.clear();
+        }
+        if (signal instanceof PostStop) {
+            sessions.remove(session);
+            if (session.outbound != null) session.outbound.complete();
+        }
         return this;
     }
 
@@ -112,54 +357,259 @@ public class UserActor extends AbstractBehavior<UserActor.Command> {
        MESSAGE HANDLERS
        ============================================================ */
 
+    /**
+     * Starts streaming a query: asks SearchActor for the initial snapshot
+     * (preceded by a preview from the local index when it has matches) and
+     * subscribes to the query's shared feed for incremental batches.
+     * Re-submitting an already active query is a no-op.
+     */
     private Behavior<Command> onSearch(String query) {
-        // TODO: integrate SearchActor when its API is provided
+        String key = SearchActor.normalize(query);
+        if (key.isEmpty() || !activeQueries.add(key)) return this;
+
+        String correlationId = startSearch(key, true);
+        getContext().getLog().debug("[{}] search '{}'", correlationId, key);
+        feedRegistry.tell(new FeedRegistryActor.Subscribe(key, feedAdapter));
+
+        if (activeQueries.size() > MAX_ACTIVE_QUERIES) {
+            Iterator<String> oldest = activeQueries.iterator();
+            feedRegistry.tell(new FeedRegistryActor.Unsubscribe(oldest.next(), feedAdapter));
+            oldest.remove();
+        }
+        return this;
+    }
+
+    /**
+     * Asks SearchActor for a query's snapshot.
+     *
+     * @param acceptsPreview false for resync searches: their single reply must
+     *                       carry the full result, since the browser cleared its articles
+     * @return the search's correlation id
+     */
+    private String startSearch(String key, boolean acceptsPreview) {
+        String correlationId = session.id + "-" + (++searchSeq);
+        pendingSearches.put(correlationId, new PendingSearch(key, System.nanoTime()));
+        searchActor.tell(new SearchActor.SearchArticles(key, searchResultsAdapter, correlationId, acceptsPreview));
+        return correlationId;
+    }
+
+    /**
+     * Tells the browser a request was throttled. A throttled search is
+     * forgotten entirely (pending entry, resync mark, active query and its
+     * feed), so that submitting the same query again retries it.
+     */
+    private Behavior<Command> onUpstreamThrottled(UpstreamThrottled msg) {
+        if (msg.correlationId != null) {
+            resyncSearches.remove(msg.correlationId);
+            PendingSearch pending = pendingSearches.remove(msg.correlationId);
+            if (pending != null && activeQueries.remove(pending.key)) {
+                feedRegistry.tell(new FeedRegistryActor.Unsubscribe(pending.key, feedAdapter));
+            }
+        }
+        push(Frames.throttled(json, msg.request));
+        return this;
+    }
+
+    private Behavior<Command> onRequestSources(UserRequestSources msg) {
+        resourceActor.tell(new ResourceNewsActor.GetSources(
+                msg.country, msg.category, msg.language, sourcesAdapter));
         return this;
     }
 
-    private Behavior<Command> onIncomingArticles(List<Article> list) {
+    private Behavior<Command> onIncomingArticles(IncomingArticles msg) {
+        List<Article> list = msg.articles;
         List<Article> fresh = new ArrayList<>();
+        boolean resync = msg.correlationId != null && resyncSearches.remove(msg.correlationId);
 
         for (Article a : list) {
-            if (!seenIds.contains(a.id)) {
-                seenIds.add(a.id);
+            if (seenIds.add(a.id) || resync) {
                 fresh.add(a);
             }
         }
 
+        int unseen = fresh.size();
+        int[] sourceCounts = nearDuplicates == null || fresh.isEmpty() ? null : collapse(fresh, resync);
         if (!fresh.isEmpty()) {
-            websocketOut.tell(toJsonArticles(fresh));
+            push(Frames.articles(json, fresh, sourceCounts, msg.sentiment));
+        } else if (msg.sentiment != null && !msg.preview) {
+            // every result was already shown (e.g. by the preview); the query's sentiment still is new
+            push(Frames.articles(json, List.of(), null, msg.sentiment));
+        }
+        session.stats.recordArticles(fresh.size(), list.size() - unseen, unseen - fresh.size());
+
+        if (msg.correlationId != null) {
+            // a preview is timed on its own; the search stays pending until the final reply
+            PendingSearch pending = msg.preview
+                    ? pendingSearches.get(msg.correlationId)
+                    : pendingSearches.remove(msg.correlationId);
+            if (pending != null) {
+                long nanos = System.nanoTime() - pending.startNanos;
+                (msg.preview ? session.stats.previewLatency() : session.stats.searchLatency()).observeNanos(nanos);
+                getContext().getLog().debug("[{}] {} {}result(s) pushed after {} ms",
+                        msg.correlationId, fresh.size(), msg.preview ? "preview " : "", nanos / 1_000_000);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Removes from {@code fresh} every article whose story the session already
+     * shows or that repeats an earlier article of the batch, adding its source
+     * to the story instead. Stories shown before this batch whose source count
+     * grew are pushed as one {@code duplicates} frame.
+     *
+     * <p>In a resync reply the browser has lost earlier articles, so the first
+     * article of an already known story is shown again and becomes its
+     * representative.</p>
+     *
+     * @return source count of each article left in {@code fresh}
+     */
+    private int[] collapse(List<Article> fresh, boolean resync) {
+        int[] slots = new int[fresh.size()];
+        int kept = 0;
+        List<Integer> grown = new ArrayList<>();
+
+        for (int i = 0; i < fresh.size(); i++) {
+            Article a = fresh.get(i);
+            long fingerprint = SimHash.of(a.title, a.description);
+            int slot = fingerprint == 0L ? NearDuplicateIndex.NONE : nearDuplicates.find(fingerprint);
+
+            if (slot == NearDuplicateIndex.NONE) {
+                if (fingerprint != 0L) slot = nearDuplicates.add(fingerprint, a.id, a.sourceName);
+            } else if (contains(slots, kept, slot)) {
+                nearDuplicates.addSource(slot, a.sourceName);
+                continue;
+            } else if (resync) {
+                nearDuplicates.represent(slot, a.id);
+                nearDuplicates.addSource(slot, a.sourceName);
+                grown.remove(Integer.valueOf(slot));
+            } else {
+                if (nearDuplicates.addSource(slot, a.sourceName) && !grown.contains(slot)) grown.add(slot);
+                continue;
+            }
+            fresh.set(kept, a);
+            slots[kept++] = slot;
+        }
+        fresh.subList(kept, fresh.size()).clear();
+
+        if (!grown.isEmpty()) {
+            List<String> ids = new ArrayList<>(grown.size());
+            int[] counts = new int[grown.size()];
+            for (int i = 0; i < counts.length; i++) {
+                ids.add(nearDuplicates.representative(grown.get(i)));
+                counts[i] = nearDuplicates.sourceCount(grown.get(i));
+            }
+            push(Frames.duplicates(json, ids, counts));
+        }
+
+        int[] sourceCounts = new int[kept];
+        for (int i = 0; i < kept; i++) {
+            sourceCounts[i] = slots[i] == NearDuplicateIndex.NONE ? 1 : nearDuplicates.sourceCount(slots[i]);
         }
+        return sourceCounts;
+    }
+
+    private static boolean contains(int[] slots, int n, int slot) {
+        for (int i = 0; i < n; i++) {
+            if (slots[i] == slot) return true;
+        }
+        return false;
+    }
 
+    private Behavior<Command> onIncomingFeedUpdate(IncomingFeedUpdate msg) {
+        if (!msg.articles.isEmpty()) onIncomingArticles(new IncomingArticles(msg.articles));
+        if (msg.analytics != null) push(Frames.analytics(json, msg.analytics));
         return this;
     }
 
+    /**
+     * Sends the new list as added/removed against the previous one, or in
+     * full if it is the first list or the delta would not be smaller.
+     */
     private Behavior<Command> onIncomingSources(List<SourceInfo> list) {
-        websocketOut.tell(toJsonSources(list));
+        SentSources.Delta delta = sentSources.update(list);
+        if (delta == null) {
+            push(toJsonSources(list));
+        } else {
+            push(Frames.sourcesDelta(json, delta.version, delta.added, delta.positions, delta.removed));
+        }
+        session.stats.recordSources(delta != null);
         return this;
     }
 
-    /* ============================================================
-       JSON HELPERS
-       ============================================================ */
+    private Behavior<Command> onResyncSources() {
+        if (sentSources.version() > 0) {
+            push(toJsonSources(sentSources.current()));
+            session.stats.recordSources(false);
+        }
+        return this;
+    }
+
+    /**
+     * Detaches the closed WebSocket. The session stays alive (queries,
+     * feeds, seen ids, replay ring) for the grace period; frames pushed
+     * meanwhile are only numbered into the ring.
+     */
+    private Behavior<Command> onClientDisconnected(ClientDisconnected msg) {
+        // A late close of a socket that a resume already replaced.
+        if (msg.outbound != null && msg.outbound != session.outbound) return this;
+
+        session.outbound = null;
+        session.detached();
+        Duration grace = sessions.settings().grace;
+        if (grace.isZero()) return onGraceExpired();
+
+        timers.startSingleTimer(GraceExpired.INSTANCE, grace);
+        getContext().getLog().debug("[{}] detached, kept for {}", session.id, grace);
+        return this;
+    }
 
-    private String toJsonArticles(List<Article> list) {
-        StringBuilder sb = new StringBuilder("{"articles":[");
-        for (int i = 0; i < list.size(); i++) {
-            sb.append(list.get(i).toJson());
-            if (i < list.size() - 1) sb.append(",");
+    /**
+     * Attaches a reconnected WebSocket and sends it the frames after
+     * {@code lastSeq} as one batch. If some were already evicted from the
+     * ring, the browser is told to resync and every active query is searched
+     * again with its results pushed in full.
+     */
+    private Behavior<Command> onClientResumed(ClientResumed msg) {
+        session.resumed();
+        timers.cancel(GraceExpired.INSTANCE);
+        if (session.outbound != null && session.outbound != msg.outbound) session.outbound.complete();
+        session.outbound = msg.outbound;
+
+        List<String> missed = session.replay.since(msg.lastSeq);
+        boolean resync = missed == null;
+        msg.outbound.offer(Frames.session(json, session.token, true, resync));
+        if (resync) {
+            resyncSearches.clear();
+            for (String key : activeQueries) resyncSearches.add(startSearch(key, false));
+            onResyncSources();
+        } else if (!missed.isEmpty()) {
+            msg.outbound.offer(Frames.batch(missed));
         }
-        sb.append("]}");
-        return sb.toString();
+        sessions.recordResume(resync ? 0 : missed.size(), resync);
+        getContext().getLog().debug("[{}] resumed after seq {}, {}", session.id, msg.lastSeq,
+                resync ? "resync" : missed.size() + " frame(s) replayed");
+        return this;
+    }
+
+    private Behavior<Command> onGraceExpired() {
+        // A resume claimed the session and is already in the mailbox.
+        if (!session.tryExpire()) return this;
+        if (!sessions.settings().grace.isZero()) sessions.recordExpired();
+        return Behaviors.stopped();
+    }
+
+    /** Numbers a frame into the replay ring and sends it if a WebSocket is attached. */
+    private void push(String frame) {
+        String stamped = sessions.append(session, frame);
+        if (session.outbound != null) session.outbound.offer(stamped);
     }
 
+    /* ============================================================
+       JSON HELPERS
+       ============================================================ */
+
     private String toJsonSources(List<SourceInfo> list) {
-        StringBuilder sb = new StringBuilder("{"sources":[");
-        for (int i = 0; i < list.size(); i++) {
-            sb.append(list.get(i).toJson());
-            if (i < list.size() - 1) sb.append(",");
-        }
-        sb.append("]}");
-        return sb.toString();
+        return Frames.sources(json, list, sentSources.version());
     }
 }
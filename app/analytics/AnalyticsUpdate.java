@@ -0,0 +1,97 @@
+package app.analytics;
+
+import app.json.JsonWriter;
+
+import java.util.List;
+
+/**
+ * Changed aggregates of one query's article stream, pushed to browsers as an
+ * {@code {"analytics":{...}}} frame.
+ *
+ * <p>{@code topTerms} and {@code readability} are null when they did not change
+ * since the previous update; a full snapshot (sent to a new subscriber)
+ * carries both.</p>
+ *
+ * <pre>
+ *   { "query": "bitcoin", "articles": 120,
+ *     "topTerms": [ { "term": "etf", "count": 14 }, ... ],
+ *     "readability": 48.7 }
+ * </pre>
+ *
+ * <p>Immutable; its JSON is encoded once and shared by every session of the query.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class AnalyticsUpdate {
+
+    /** One heavy-hitter term and its estimated count. */
+    public static final class Term {
+        public final String term;
+        public final int count;
+
+        public Term(String term, int count) {
+            this.term = term;
+            this.count = count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Term t && t.count == count && t.term.equals(term);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * term.hashCode() + count;
+        }
+    }
+
+    public final String query;
+    public final long articles;
+    public final List<Term> topTerms;
+    public final Double readability;
+
+    private String json;
+
+    /**
+     * Built by {@link QueryAnalytics}; public so an update received from
+     * another cluster node can be rebuilt ({@code FeedSerializer}).
+     */
+    public AnalyticsUpdate(String query, long articles, List<Term> topTerms, Double readability) {
+        this.query = query;
+        this.articles = articles;
+        this.topTerms = topTerms;
+        this.readability = readability;
+    }
+
+    /** Encodes the update once, then returns the cached fragment. */
+    public String toJson() {
+        String s = json;
+        if (s == null) {
+            s = encode(new JsonWriter(512)).toString();
+            json = s;
+        }
+        return s;
+    }
+
+    /** Splices the cached fragment into a frame being written. */
+    public JsonWriter writeJson(JsonWriter w) {
+        return w.rawValue(toJson());
+    }
+
+    private JsonWriter encode(JsonWriter w) {
+        w.beginObject()
+                .name("query").value(query)
+                .name("articles").value(articles);
+        if (topTerms != null) {
+            w.name("topTerms").beginArray();
+            for (Term t : topTerms) {
+                w.beginObject().name("term").value(t.term).name("count").value(t.count).endObject();
+            }
+            w.endArray();
+        }
+        if (readability != null) {
+            w.name("readability").value(Math.round(readability * 10) / 10.0);
+        }
+        return w.endObject();
+    }
+}
@@ -0,0 +1,72 @@
+package app.analytics;
+
+/**
+ * Count-Min sketch over 64-bit term hashes, with conservative update.
+ *
+ * <p>{@code depth} rows of {@code width} int counters, in one flat array.
+ * An estimate never undercounts. It overcounts by at most
+ * {@code e / width × total} with probability {@code 1 - e^-depth}.
+ * Memory is fixed ({@code 4 × depth × width} bytes) however many distinct
+ * terms a query's stream contains.</p>
+ *
+ * <p>Not thread-safe; owned by one {@link QueryAnalytics}.</p>
+ *
+ * @author Sara Ezzati
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final int[] counts;
+
+    /**
+     * @param depth number of hash rows
+     * @param width counters per row (rounded up to a power of two)
+     */
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.counts = new int[depth * this.width];
+    }
+
+    /**
+     * Counts one occurrence; only the row counters at the current minimum are
+     * raised (conservative update), which tightens later estimates.
+     *
+     * @param hash well-mixed 64-bit term hash
+     * @return the term's estimated count including this occurrence
+     */
+    int add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counts[index(i, h1, h2)]);
+        }
+        int estimate = min + 1;
+        for (int i = 0; i < depth; i++) {
+            int idx = index(i, h1, h2);
+            if (counts[idx] < estimate) counts[idx] = estimate;
+        }
+        return estimate;
+    }
+
+    /** @return estimated count of the term, never below the true count */
+    int estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counts[index(i, h1, h2)]);
+        }
+        return min;
+    }
+
+    private int index(int row, int h1, int h2) {
+        return row * width + ((h1 + row * h2) & mask);
+    }
+}
@@ -0,0 +1,90 @@
+package app.analytics;
+
+import app.models.Article;
+
+import java.util.List;
+
+/**
+ * Incremental word-frequency and readability aggregates of one query's
+ * article stream.
+ *
+ * <p>Each batch of new articles is scanned once (titles and descriptions).
+ * Terms are counted in a {@link CountMinSketch} that tracks the heavy hitters in
+ * {@link TopTerms}, and readability totals are added up in {@link TextStats}.
+ * Nothing is recomputed over earlier articles, and memory stays fixed per
+ * query.</p>
+ *
+ * <p>{@link #update} returns only what changed since the previous update;
+ * {@link #snapshot} returns everything (for a subscriber joining late).
+ * Both are synchronized: updates come from the feed's stream stage, snapshots
+ * from {@code FeedRegistryActor}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class QueryAnalytics {
+
+    /** Top terms pushed per query. */
+    public static final int TOP_K = 10;
+
+    /** Readability changes smaller than this are not pushed. */
+    private static final double READABILITY_STEP = 0.5;
+
+    private final String query;
+    private final CountMinSketch sketch = new CountMinSketch(4, 1024);
+    private final TopTerms top = new TopTerms(TOP_K);
+    private final TextStats text = new TextStats();
+    private final TextStats.TermVisitor counter = this::count;
+
+    private long articles;
+    private List<AnalyticsUpdate.Term> pushedTop = List.of();
+    private double pushedReadability = Double.NaN;
+
+    public QueryAnalytics(String query) {
+        this.query = query;
+    }
+
+    /**
+     * Folds a batch of new articles into the aggregates.
+     *
+     * @param batch articles not seen before by this query's feed
+     * @return the changed aggregates ({@code topTerms} / {@code readability}
+     *         null when unchanged), or null for an empty batch
+     */
+    public synchronized AnalyticsUpdate update(List<Article> batch) {
+        if (batch.isEmpty()) return null;
+
+        for (Article a : batch) {
+            text.scan(a.title, counter);
+            text.scan(a.description, counter);
+        }
+        articles += batch.size();
+
+        List<AnalyticsUpdate.Term> currentTop = top.sorted();
+        List<AnalyticsUpdate.Term> changedTop = null;
+        if (!currentTop.equals(pushedTop)) {
+            changedTop = currentTop;
+            pushedTop = currentTop;
+        }
+
+        double score = text.fleschReadingEase();
+        Double changedReadability = null;
+        if (!Double.isNaN(score)
+                && (Double.isNaN(pushedReadability) || Math.abs(score - pushedReadability) >= READABILITY_STEP)) {
+            changedReadability = score;
+            pushedReadability = score;
+        }
+
+        return new AnalyticsUpdate(query, articles, changedTop, changedReadability);
+    }
+
+    /** @return every aggregate, or null if no article has been counted yet */
+    public synchronized AnalyticsUpdate snapshot() {
+        if (articles == 0) return null;
+        double score = text.fleschReadingEase();
+        return new AnalyticsUpdate(query, articles, top.sorted(), Double.isNaN(score) ? null : score);
+    }
+
+    private void count(long hash, String source, int from, int to) {
+        top.offer(hash, source, from, to, sketch.add(hash));
+    }
+}
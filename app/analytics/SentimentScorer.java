@@ -0,0 +1,330 @@
+package app.analytics;
+
+import app.dedup.Hashing;
+import app.models.Article;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lexicon-based sentiment of articles (title and description), scored in
+ * batches on a bounded fork-join pool and memoized by article id.
+ *
+ * <p>Each word or emoticon found in the lexicon adds its weight (−3 … +3);
+ * a negation ({@code not}, {@code never}, {@code ...n't}) flips the next
+ * scored word within three tokens. The sum {@code s} is normalized to
+ * {@code s / sqrt(s² + 15)}, in (−1, 1). Words are matched by their hash
+ * against a sorted primitive table, so a scan allocates nothing per word.</p>
+ *
+ * <p>{@link #score} never runs on the caller's thread. A batch takes the memo
+ * lock twice (look up all ids, then store the new scores), and only the
+ * articles not scored before are split across the pool's workers. An article
+ * returned by many queries or seen by many sessions is scored once.</p>
+ *
+ * <p>The memo keeps the scored copy of each article, not just its score, so a
+ * memo hit returns the same {@link Article} instance every time and its
+ * cached JSON is encoded once rather than once per reply. A memo entry is
+ * only used while the incoming article has the same content; an article
+ * republished under its id with an edited title or description is scored
+ * again and replaces the entry. An article that already carries a sentiment
+ * is passed through as is.</p>
+ *
+ * <p>INPUT: a reply's {@code List<Article>}<br>
+ * OUTPUT: {@link Scored} – the articles with their {@code sentiment} set, and
+ * the query's mean sentiment</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class SentimentScorer {
+
+    /**
+     * Scored batch.
+     *
+     * <ul>
+     *   <li>{@code articles} – the input articles, in order, each with {@code sentiment} set</li>
+     *   <li>{@code query}    – mean article sentiment, or null for an empty batch</li>
+     * </ul>
+     */
+    public static final class Scored {
+        public final List<Article> articles;
+        public final Double query;
+
+        Scored(List<Article> articles, Double query) {
+            this.articles = articles;
+            this.query = query;
+        }
+    }
+
+    /** Articles scored by one worker before a batch is split further. */
+    private static final int SPLIT_THRESHOLD = 8;
+
+    /** Normalization constant: a raw sum of ±4 maps to about ±0.72. */
+    private static final double ALPHA = 15.0;
+
+    /** Tokens after a negation within which the next scored word is flipped. */
+    private static final int NEGATION_SCOPE = 3;
+
+    private static final String[] WORDS = {
+            "good:2", "great:3", "excellent:3", "best:3", "better:2", "positive:2", "win:2", "wins:2", "won:2",
+            "success:2", "successful:2", "gain:2", "gains:2", "growth:2", "grow:1", "rise:1", "rises:1",
+            "surge:2", "surges:2", "rally:2", "rallies:2", "record:1", "boost:2", "boosts:2", "improve:2",
+            "improved:2", "recovery:2", "recover:2", "strong:2", "stronger:2", "happy:3", "hope:2", "hopes:2",
+            "optimistic:2", "optimism:2", "celebrate:3", "celebrates:3", "praise:3", "praised:3", "love:3",
+            "breakthrough:3", "safe:1", "secure:1", "agreement:1", "deal:1", "peace:2", "support:2", "benefit:2",
+            "bad:-3", "worse:-3", "worst:-3", "negative:-2", "loss:-3", "losses:-3", "lose:-3", "lost:-3",
+            "fail:-2", "fails:-2", "failed:-2", "failure:-2", "fall:-1", "falls:-1", "fell:-1", "drop:-1",
+            "drops:-1", "plunge:-2", "plunges:-2", "crash:-2", "crashes:-2", "slump:-2", "decline:-1",
+            "weak:-2", "weaker:-2", "crisis:-3", "fear:-2", "fears:-2", "worry:-2", "worries:-2", "concern:-1",
+            "concerns:-1", "risk:-2", "risks:-2", "threat:-2", "threats:-2", "war:-2", "attack:-1", "attacks:-1",
+            "kill:-3", "killed:-3", "dead:-3", "death:-2", "deaths:-2", "scandal:-3", "fraud:-3", "lawsuit:-2",
+            "sad:-2", "angry:-3", "anger:-3", "warn:-2", "warns:-2", "warning:-3", "cut:-1", "cuts:-1",
+            "layoffs:-2", "bankrupt:-3", "bankruptcy:-3", "recession:-2", "inflation:-1", "hack:-1", "hacked:-2"
+    };
+
+    private static final String[] EMOTICONS = {
+            ":-)", ":)", "=)", ":D", ";)", ";-)", "<3", ":-(", ":(", "=(", ":'(", ":/", ":-/"
+    };
+    private static final int[] EMOTICON_WEIGHTS = {
+            2, 2, 2, 3, 2, 2, 3, -2, -2, -2, -3, -1, -1
+    };
+
+    private static final String[] NEGATIONS = { "not", "no", "never", "none", "nobody", "nothing", "without" };
+
+    private static final long[] WORD_HASHES;
+    private static final byte[] WORD_WEIGHTS;
+    private static final long[] NEGATION_HASHES;
+
+    static {
+        long[][] table = new long[WORDS.length][];
+        for (int i = 0; i < WORDS.length; i++) {
+            int sep = WORDS[i].indexOf(':');
+            table[i] = new long[] { Hashing.hash64(WORDS[i].substring(0, sep)),
+                    Integer.parseInt(WORDS[i].substring(sep + 1)) };
+        }
+        Arrays.sort(table, (a, b) -> Long.compare(a[0], b[0]));
+        WORD_HASHES = new long[table.length];
+        WORD_WEIGHTS = new byte[table.length];
+        for (int i = 0; i < table.length; i++) {
+            WORD_HASHES[i] = table[i][0];
+            WORD_WEIGHTS[i] = (byte) table[i][1];
+        }
+
+        NEGATION_HASHES = new long[NEGATIONS.length];
+        for (int i = 0; i < NEGATIONS.length; i++) NEGATION_HASHES[i] = Hashing.hash64(NEGATIONS[i]);
+        Arrays.sort(NEGATION_HASHES);
+    }
+
+    private final ForkJoinPool pool;
+    private final Map<String, Article> memo;
+
+    private final LongAdder scored = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+
+    /**
+     * @param parallelism  worker threads of the scoring pool (also its maximum size)
+     * @param memoEntries  scored articles remembered (LRU)
+     */
+    public SentimentScorer(int parallelism, int memoEntries) {
+        // Never grows past parallelism: a worker joining a sub-task helps or waits instead.
+        this.pool = new ForkJoinPool(parallelism, SentimentScorer::newWorker, null, false,
+                0, parallelism, 1, saturated -> true, 60, TimeUnit.SECONDS);
+        this.memo = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Article> eldest) {
+                return size() > memoEntries;
+            }
+        };
+    }
+
+    /**
+     * Scores a batch off the caller's thread.
+     *
+     * @param articles articles of one reply
+     * @return the scored batch, completed on the scoring pool
+     */
+    public CompletionStage<Scored> score(List<Article> articles) {
+        return CompletableFuture.supplyAsync(() -> scoreBatch(articles), pool);
+    }
+
+    /** @return articles scored (memo misses) */
+    public long scored() {
+        return scored.sum();
+    }
+
+    /** @return article scores answered from the memo */
+    public long memoHits() {
+        return memoHits.sum();
+    }
+
+    private Scored scoreBatch(List<Article> articles) {
+        int n = articles.size();
+        if (n == 0) return new Scored(articles, null);
+
+        Article[] out = new Article[n];
+        float[] scores = new float[n];
+        int[] missing = new int[n];
+        int m = 0;
+        int hits = 0;
+        synchronized (memo) {
+            for (int i = 0; i < n; i++) {
+                Article a = articles.get(i);
+                Article known = a.sentiment != null ? a : a.id == null ? null : memo.get(a.id);
+                if (known != null && known != a && !sameContent(known, a)) known = null;
+                if (known == null) {
+                    missing[m++] = i;
+                } else {
+                    out[i] = known;
+                    if (known != a) hits++;
+                }
+            }
+        }
+        memoHits.add(hits);
+
+        if (m > 0) {
+            new ScoreTask(articles, scores, missing, 0, m).invoke();
+            for (int k = 0; k < m; k++) {
+                out[missing[k]] = articles.get(missing[k]).withSentiment(scores[missing[k]]);
+            }
+            synchronized (memo) {
+                for (int k = 0; k < m; k++) {
+                    Article a = out[missing[k]];
+                    if (a.id != null) memo.put(a.id, a);
+                }
+            }
+            scored.add(m);
+        }
+
+        double sum = 0;
+        for (Article a : out) sum += a.sentiment;
+        return new Scored(List.of(out), sum / n);
+    }
+
+    /** @return whether a memoized copy still shows what {@code a} shows */
+    private static boolean sameContent(Article memoized, Article a) {
+        return Objects.equals(memoized.title, a.title)
+                && Objects.equals(memoized.description, a.description)
+                && Objects.equals(memoized.url, a.url)
+                && Objects.equals(memoized.sourceName, a.sourceName);
+    }
+
+    /** Scores {@code missing[from..to)}, splitting the range across the pool. */
+    private static final class ScoreTask extends RecursiveAction {
+        private final List<Article> articles;
+        private final float[] scores;
+        private final int[] missing;
+        private final int from;
+        private final int to;
+
+        ScoreTask(List<Article> articles, float[] scores, int[] missing, int from, int to) {
+            this.articles = articles;
+            this.scores = scores;
+            this.missing = missing;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int k = from; k < to; k++) {
+                    Article a = articles.get(missing[k]);
+                    scores[missing[k]] = (float) normalize(rawScore(a.title) + rawScore(a.description));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreTask(articles, scores, missing, from, mid),
+                    new ScoreTask(articles, scores, missing, mid, to));
+        }
+    }
+
+    /** @return sentiment of {@code text} in (−1, 1); 0 when nothing matched */
+    static double score(String text) {
+        return normalize(rawScore(text));
+    }
+
+    private static double normalize(int sum) {
+        return sum / Math.sqrt((double) sum * sum + ALPHA);
+    }
+
+    /** Sum of lexicon weights in {@code text}, with negations applied. */
+    static int rawScore(String text) {
+        if (text == null) return 0;
+        int n = text.length();
+        int sum = 0;
+        int negated = 0;
+        int i = 0;
+
+        while (i < n) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                int e = emoticonAt(text, i);
+                if (e >= 0) {
+                    sum += EMOTICON_WEIGHTS[e];
+                    i += EMOTICONS[e].length();
+                } else {
+                    i++;
+                }
+                continue;
+            }
+
+            int from = i;
+            long h = Hashing.FNV_OFFSET;
+            while (i < n && (Character.isLetterOrDigit(text.charAt(i)) || isInnerApostrophe(text, i))) {
+                h ^= Character.toLowerCase(text.charAt(i));
+                h *= Hashing.FNV_PRIME;
+                i++;
+            }
+            long hash = Hashing.mix64(h);
+
+            int w = Arrays.binarySearch(WORD_HASHES, hash);
+            if (w >= 0) {
+                sum += negated > 0 ? -WORD_WEIGHTS[w] : WORD_WEIGHTS[w];
+                negated = 0;
+            } else if (Arrays.binarySearch(NEGATION_HASHES, hash) >= 0 || endsWithNt(text, from, i)) {
+                negated = NEGATION_SCOPE;
+            } else if (negated > 0) {
+                negated--;
+            }
+        }
+        return sum;
+    }
+
+    private static int emoticonAt(String text, int i) {
+        int best = -1;
+        for (int e = 0; e < EMOTICONS.length; e++) {
+            if (text.startsWith(EMOTICONS[e], i) && (best < 0 || EMOTICONS[e].length() > EMOTICONS[best].length())) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    private static boolean endsWithNt(String text, int from, int to) {
+        return to - from > 3
+                && text.charAt(to - 2) == '\''
+                && Character.toLowerCase(text.charAt(to - 3)) == 'n'
+                && Character.toLowerCase(text.charAt(to - 1)) == 't';
+    }
+
+    private static boolean isInnerApostrophe(String text, int i) {
+        return text.charAt(i) == '\'' && i + 1 < text.length() && Character.isLetter(text.charAt(i + 1));
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        t.setName("notilytics-sentiment-" + t.getPoolIndex());
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,135 @@
+package app.analytics;
+
+import app.dedup.Hashing;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Single-pass tokenizer and running readability totals.
+ *
+ * <p>{@link #scan} walks the text once. It hashes each word on the fly (same
+ * hash as {@link Hashing#hash64} of the lower-cased word) and hands the
+ * countable terms to a visitor. No per-word String is allocated. Words,
+ * sentences and estimated syllables are added to running totals, from which
+ * {@link #fleschReadingEase()} is computed in O(1).</p>
+ *
+ * @author Sara Ezzati
+ */
+final class TextStats {
+
+    /** Receives each countable term (3+ characters, not a stopword, not a number). */
+    interface TermVisitor {
+        void term(long hash, String text, int from, int to);
+    }
+
+    private static final String[] STOPWORDS = {
+            "the", "and", "for", "are", "but", "not", "you", "all", "any", "can", "had", "her", "was", "one",
+            "our", "out", "has", "have", "his", "how", "its", "may", "new", "now", "see", "who", "did", "get",
+            "him", "she", "too", "use", "that", "with", "this", "from", "they", "will", "would", "there",
+            "their", "what", "about", "which", "when", "were", "been", "more", "than", "into", "over",
+            "after", "said", "says", "also", "could", "other", "some", "them", "then", "these", "your",
+            "just", "like", "only", "most", "such", "while", "where", "being", "because", "here", "very",
+            "what's", "chars"
+    };
+
+    private static final long[] STOPWORD_HASHES = stopwordHashes();
+
+    private long words;
+    private long sentences;
+    private long syllables;
+
+    /**
+     * Tokenizes {@code text}, updates the totals and visits every countable term.
+     */
+    void scan(String text, TermVisitor visitor) {
+        if (text == null) return;
+        int n = text.length();
+        int i = 0;
+        boolean wordsSinceSentence = false;
+
+        while (i < n) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                if ((c == '.' || c == '!' || c == '?') && wordsSinceSentence) {
+                    sentences++;
+                    wordsSinceSentence = false;
+                }
+                i++;
+                continue;
+            }
+
+            int from = i;
+            long h = Hashing.FNV_OFFSET;
+            boolean hasLetter = false;
+            while (i < n && (Character.isLetterOrDigit(text.charAt(i)) || isInnerApostrophe(text, i))) {
+                char w = Character.toLowerCase(text.charAt(i));
+                hasLetter |= Character.isLetter(w);
+                h ^= w;
+                h *= Hashing.FNV_PRIME;
+                i++;
+            }
+            long hash = Hashing.mix64(h);
+
+            words++;
+            wordsSinceSentence = true;
+            if (hasLetter) {
+                syllables += syllables(text, from, i);
+                if (i - from >= 3 && !isStopword(hash)) visitor.term(hash, text, from, i);
+            }
+        }
+        if (wordsSinceSentence) sentences++;
+    }
+
+    /**
+     * Flesch reading ease of everything scanned so far
+     * ({@code 206.835 − 1.015·words/sentences − 84.6·syllables/words});
+     * higher is easier, news copy typically scores 30–60.
+     *
+     * @return the score, or NaN before any word was scanned
+     */
+    double fleschReadingEase() {
+        if (words == 0) return Double.NaN;
+        return 206.835 - 1.015 * ((double) words / sentences) - 84.6 * ((double) syllables / words);
+    }
+
+    long words() {
+        return words;
+    }
+
+    static String lowerCase(String text, int from, int to) {
+        return text.substring(from, to).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isInnerApostrophe(String text, int i) {
+        return text.charAt(i) == '\'' && i + 1 < text.length() && Character.isLetter(text.charAt(i + 1));
+    }
+
+    /** Vowel groups, minus a silent final 'e', at least one. */
+    private static int syllables(String text, int from, int to) {
+        int count = 0;
+        boolean prevVowel = false;
+        for (int i = from; i < to; i++) {
+            boolean vowel = isVowel(Character.toLowerCase(text.charAt(i)));
+            if (vowel && !prevVowel) count++;
+            prevVowel = vowel;
+        }
+        if (count > 1 && Character.toLowerCase(text.charAt(to - 1)) == 'e') count--;
+        return Math.max(1, count);
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u' || c == 'y';
+    }
+
+    private static boolean isStopword(long hash) {
+        return Arrays.binarySearch(STOPWORD_HASHES, hash) >= 0;
+    }
+
+    private static long[] stopwordHashes() {
+        long[] hashes = new long[STOPWORDS.length];
+        for (int i = 0; i < STOPWORDS.length; i++) hashes[i] = Hashing.hash64(STOPWORDS[i]);
+        Arrays.sort(hashes);
+        return hashes;
+    }
+}
@@ -0,0 +1,69 @@
+package app.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code k} terms with the highest estimated counts (heavy hitters),
+ * fed by a {@link CountMinSketch}.
+ *
+ * <p>Parallel primitive arrays, matched on the term hash. A term's String is
+ * only allocated when it enters the top {@code k}. With {@code k} around 10,
+ * a linear scan for the current minimum costs less than maintaining a heap.</p>
+ *
+ * <p>Not thread-safe; owned by one {@link QueryAnalytics}.</p>
+ *
+ * @author Sara Ezzati
+ */
+final class TopTerms {
+
+    private final long[] hashes;
+    private final int[] counts;
+    private final String[] terms;
+    private int size;
+
+    TopTerms(int k) {
+        this.hashes = new long[k];
+        this.counts = new int[k];
+        this.terms = new String[k];
+    }
+
+    /**
+     * Offers a term with its new estimated count.
+     *
+     * @param hash  term hash
+     * @param text  text the term was found in
+     * @param from  start of the term in {@code text}
+     * @param to    end of the term in {@code text} (exclusive)
+     * @param count estimated count including the current occurrence
+     */
+    void offer(long hash, String text, int from, int to, int count) {
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash) {
+                counts[i] = count;
+                return;
+            }
+        }
+        int slot;
+        if (size < hashes.length) {
+            slot = size++;
+        } else {
+            slot = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[slot]) slot = i;
+            }
+            if (count <= counts[slot]) return;
+        }
+        hashes[slot] = hash;
+        counts[slot] = count;
+        terms[slot] = TextStats.lowerCase(text, from, to);
+    }
+
+    /** @return current top terms, highest count first */
+    List<AnalyticsUpdate.Term> sorted() {
+        List<AnalyticsUpdate.Term> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(new AnalyticsUpdate.Term(terms[i], counts[i]));
+        out.sort((a, b) -> a.count != b.count ? Integer.compare(b.count, a.count) : a.term.compareTo(b.term));
+        return out;
+    }
+}
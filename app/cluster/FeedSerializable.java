@@ -0,0 +1,9 @@
+package app.cluster;
+
+/**
+ * Marker for messages that cross cluster nodes in cluster mode; bound to
+ * {@link FeedSerializer} under {@code notilytics.cluster.pekko.actor.serialization-bindings}.
+ *
+ * @author Sara Ezzati
+ */
+public interface FeedSerializable { }
@@ -0,0 +1,176 @@
+package app.cluster;
+
+import org.apache.pekko.actor.ExtendedActorSystem;
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.ActorRefResolver;
+import org.apache.pekko.actor.typed.javadsl.Adapter;
+import org.apache.pekko.serialization.SerializerWithStringManifest;
+
+import app.actors.QueryFeedEntity;
+import app.analytics.AnalyticsUpdate;
+import app.models.Article;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary serializer for the messages cluster mode sends between nodes:
+ * {@link QueryFeedEntity.Watch} and {@link QueryFeedEntity.FeedBatch}.
+ *
+ * <pre>
+ *   Watch:     str nodeRef, long snapshotTag
+ *   FeedBatch: str query, long snapshotTag, int count, count × article, bool hasAnalytics, [analytics]
+ *     article:   str id, title, description, url, source, bool hasSentiment, [float sentiment]
+ *     analytics: str query, long articles, int terms (-1 = unchanged), terms × (str term, int count),
+ *                bool hasReadability, [double readability]
+ * </pre>
+ *
+ * <p>A {@code str} is its UTF-8 length ({@code -1} for null) followed by the
+ * UTF-8 bytes; unlike {@link DataOutputStream#writeUTF} it has no 64 KiB limit.
+ * Registered under {@code notilytics.cluster.pekko.actor.serializers}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class FeedSerializer extends SerializerWithStringManifest {
+
+    private static final String WATCH = "W";
+    private static final String BATCH = "B";
+
+    private final ActorRefResolver resolver;
+
+    public FeedSerializer(ExtendedActorSystem system) {
+        this.resolver = ActorRefResolver.get(Adapter.toTyped(system));
+    }
+
+    @Override
+    public int identifier() {
+        return 6441;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        if (o instanceof QueryFeedEntity.Watch) return WATCH;
+        if (o instanceof QueryFeedEntity.FeedBatch) return BATCH;
+        throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (o instanceof QueryFeedEntity.Watch w) {
+                writeString(out, resolver.toSerializationFormat(w.node));
+                out.writeLong(w.snapshotTag);
+            } else if (o instanceof QueryFeedEntity.FeedBatch b) {
+                writeBatch(out, b);
+            } else {
+                throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            switch (manifest) {
+                case WATCH: {
+                    ActorRef<QueryFeedEntity.FeedBatch> node = resolver.resolveActorRef(readString(in));
+                    return new QueryFeedEntity.Watch(node, in.readLong());
+                }
+                case BATCH:
+                    return readBatch(in);
+                default:
+                    throw new NotSerializableException("Unknown manifest " + manifest);
+            }
+        } catch (NotSerializableException e) {
+            throw e; // an IOException too, but Pekko expects this one as is
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeBatch(DataOutputStream out, QueryFeedEntity.FeedBatch b) throws IOException {
+        writeString(out, b.query);
+        out.writeLong(b.snapshotTag);
+        out.writeInt(b.articles.size());
+        for (Article a : b.articles) {
+            writeString(out, a.id);
+            writeString(out, a.title);
+            writeString(out, a.description);
+            writeString(out, a.url);
+            writeString(out, a.sourceName);
+            out.writeBoolean(a.sentiment != null);
+            if (a.sentiment != null) out.writeFloat(a.sentiment);
+        }
+
+        AnalyticsUpdate u = b.analytics;
+        out.writeBoolean(u != null);
+        if (u == null) return;
+        writeString(out, u.query);
+        out.writeLong(u.articles);
+        out.writeInt(u.topTerms == null ? -1 : u.topTerms.size());
+        if (u.topTerms != null) {
+            for (AnalyticsUpdate.Term t : u.topTerms) {
+                writeString(out, t.term);
+                out.writeInt(t.count);
+            }
+        }
+        out.writeBoolean(u.readability != null);
+        if (u.readability != null) out.writeDouble(u.readability);
+    }
+
+    private static QueryFeedEntity.FeedBatch readBatch(DataInputStream in) throws IOException {
+        String query = readString(in);
+        long snapshotTag = in.readLong();
+        int n = in.readInt();
+        List<Article> articles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Article a = new Article(readString(in), readString(in), readString(in), readString(in), readString(in));
+            articles.add(in.readBoolean() ? a.withSentiment(in.readFloat()) : a);
+        }
+
+        AnalyticsUpdate analytics = null;
+        if (in.readBoolean()) {
+            String q = readString(in);
+            long count = in.readLong();
+            int terms = in.readInt();
+            List<AnalyticsUpdate.Term> top = null;
+            if (terms >= 0) {
+                top = new ArrayList<>(terms);
+                for (int i = 0; i < terms; i++) top.add(new AnalyticsUpdate.Term(readString(in), in.readInt()));
+            }
+            Double readability = in.readBoolean() ? in.readDouble() : null;
+            analytics = new AnalyticsUpdate(q, count, top, readability);
+        }
+        return new QueryFeedEntity.FeedBatch(query, articles, analytics, snapshotTag);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -1,20 +1,44 @@
 package controllers;
 
-import akka.actor.typed.ActorRef;
-import akka.actor.typed.ActorSystem;
-import akka.stream.Materializer;
+import org.apache.pekko.NotUsed;
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.ActorSystem;
+import org.apache.pekko.actor.typed.MailboxSelector;
+import org.apache.pekko.actor.typed.Props;
+import org.apache.pekko.japi.Pair;
+import org.apache.pekko.stream.javadsl.Flow;
+import org.apache.pekko.stream.javadsl.Sink;
+import org.apache.pekko.stream.javadsl.Source;
+import org.apache.pekko.util.ByteString;
 
 import javax.inject.Inject;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import play.http.websocket.Message;
+import play.libs.F;
 import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
 import play.mvc.WebSocket;
-import play.libs.streams.ActorFlow;
 
+import actors.SessionRegistry;
 import actors.SupervisorActor;
 import actors.UserActor;
+import app.actors.FeedRegistryActor;
+import app.actors.ResourceNewsActor;
+import app.actors.SearchActor;
+import app.json.CborWriter;
+import app.json.Frames;
+import app.json.JsonWriter;
+import app.metrics.InstrumentedMailbox;
+import app.services.OutboundStats;
+import app.services.SessionOutbound;
 
 /**
  * Delivery 2 (D2) WebSocket-only controller for NotiLytics.
@@ -28,6 +52,9 @@ import actors.UserActor;
  * <ul>
  *     <li>Upgrade HTTP request to WebSocket</li>
  *     <li>Create a dedicated {@link UserActor} for each client</li>
+ *     <li>Give each client a bounded {@link SessionOutbound} queue (overflow policy, frame batching)</li>
+ *     <li>Resume a session from its token instead of starting over after a reconnect</li>
+ *     <li>Send CBOR binary frames to clients that offer {@value #CBOR_PROTOCOL} as their first choice</li>
  *     <li>Route all WebSocket messages to the SupervisorActor system</li>
  *     <li>Ensure reactive, asynchronous, non-blocking communication</li>
  * </ul>
@@ -42,22 +69,63 @@ public class HomeController extends Controller {
     /** The root typed actor system that supervises all UserActors. */
     private final ActorSystem<SupervisorActor.Command> supervisor;
 
-    /** Materializer required by ActorFlow to bind streams. */
-    private final Materializer materializer;
+    /** Subprotocol selecting CBOR binary frames (see {@link CborWriter}). */
+    public static final String CBOR_PROTOCOL = "notilytics.cbor.v1";
+
+    /** Session ids are unique per JVM; they also name the UserActors. */
+    private static final AtomicLong SESSION_IDS = new AtomicLong();
+
+    /** UserActors run apart from NewsAPI work (see {@code notilytics.session-dispatcher}), with mailbox gauges. */
+    private static final Props SESSION_PROPS =
+            MailboxSelector.fromConfig(InstrumentedMailbox.CONFIG_PATH)
+                    .withDispatcherFromConfig("notilytics.session-dispatcher");
+
+    /** Shared SearchActor handed to every UserActor for initial snapshots. */
+    private final ActorRef<SearchActor.Command> searchActor;
+
+    /** Shared ResourceNewsActor handed to every UserActor for source lists. */
+    private final ActorRef<ResourceNewsActor.Command> resourceActor;
+
+    /** Shared feed registry handed to every UserActor for streaming results. */
+    private final ActorRef<FeedRegistryActor.Command> feedRegistry;
+
+    /** Outbound buffer, overflow and batching settings for every session. */
+    private final SessionOutbound.Settings outboundSettings;
+
+    /** Shared queue-depth gauges and overflow counters. */
+    private final OutboundStats outboundStats;
+
+    /** Sessions kept alive across reconnects, by resume token. */
+    private final SessionRegistry sessions;
 
     /**
      * Constructs the D2 reactive WebSocket controller.
      *
      * @param supervisor The root actor system housing the SupervisorActor.
-     * @param materializer Stream materializer used by ActorFlow.
+     * @param searchActor Shared SearchActor.
+     * @param resourceActor Shared ResourceNewsActor.
+     * @param feedRegistry Shared registry of per-query live feeds.
+     * @param outboundSettings Per-session outbound queue settings.
+     * @param outboundStats Shared outbound gauges.
+     * @param sessions Registry of resumable sessions.
      */
     @Inject
     public HomeController(
             ActorSystem<SupervisorActor.Command> supervisor,
-            Materializer materializer
+            ActorRef<SearchActor.Command> searchActor,
+            ActorRef<ResourceNewsActor.Command> resourceActor,
+            ActorRef<FeedRegistryActor.Command> feedRegistry,
+            SessionOutbound.Settings outboundSettings,
+            OutboundStats outboundStats,
+            SessionRegistry sessions
     ) {
         this.supervisor = supervisor;
-        this.materializer = materializer;
+        this.searchActor = searchActor;
+        this.resourceActor = resourceActor;
+        this.feedRegistry = feedRegistry;
+        this.outboundSettings = outboundSettings;
+        this.outboundStats = outboundStats;
+        this.sessions = sessions;
     }
 
     /**
@@ -67,6 +135,16 @@ public class HomeController extends Controller {
      * a new {@link UserActor} via the SupervisorActor. The communication is fully
      * asynchronous and actor-driven.
      * </p>
+     * <p>
+     * A reconnecting client passes {@code ?session=<token>&lastSeq=<n>}; if the
+     * session is still within its grace period, the WebSocket is attached to the
+     * existing UserActor, which replays only the frames numbered after {@code n}.
+     * </p>
+     * <p>
+     * A client that offers the {@value #CBOR_PROTOCOL} subprotocol as its first
+     * choice gets every frame below as a binary CBOR frame instead of JSON text,
+     * and sends its requests as UTF-8 JSON in binary frames.
+     * </p>
      *
      * <h3>Input (from frontend)</h3>
      * <pre>
@@ -86,12 +164,21 @@ public class HomeController extends Controller {
      * <h3>Output (to frontend)</h3>
      * <pre>
      * {
+     *   "session": "token", "resumed": false, "resync": false   // first frame of every connection
+     * }
+     *
+     * {
+     *   "seq": 42,                       // every other frame is numbered
      *   "articles": [ ... ]
      * }
      *
      * {
      *   "sources": [ ... ]
      * }
+     *
+     * {
+     *   "batch": [ frame, frame, ... ]   // frames coalesced within notilytics.outbound.batchWindow
+     * }
      * </pre>
      *
      * @return A WebSocket instance connected to a dedicated UserActor.
@@ -99,17 +186,118 @@ public class HomeController extends Controller {
     public WebSocket ws() {
         logger.info("WebSocket connection requested.");
 
-        return WebSocket.Text.accept(request ->
-                ActorFlow.actorRef(
-                        /** For each client, create a new UserActor under SupervisorActor */
-                        (ActorRef<String> out) -> SupervisorActor.createUserActor(out),
+        // Frame sizes are recorded here, once encoded, so both protocols report bytes on the wire.
+        WebSocket text = WebSocket.Text.accept(request -> sessionFlow(request)
+                .map(frame -> {
+                    outboundStats.recordFrameBytes(utf8Length(frame));
+                    return frame;
+                }));
+        WebSocket binary = WebSocket.Binary.accept(request -> {
+            CborWriter cbor = new CborWriter(8 * 1024);
+            return Flow.<ByteString>create()
+                    .map(ByteString::utf8String)
+                    .via(sessionFlow(request))
+                    .map(frame -> {
+                        byte[] encoded = cbor.transcode(frame);
+                        outboundStats.recordFrameBytes(encoded.length);
+                        return ByteString.fromArrayUnsafe(encoded);
+                    });
+        });
+
+        return new WebSocket() {
+            @Override
+            public CompletionStage<F.Either<Result, Flow<Message, Message, ?>>> apply(Http.RequestHeader request) {
+                return offersCbor(request) ? binary.apply(request) : text.apply(request);
+            }
+        };
+    }
+
+    /**
+     * CBOR is used only when it is the browser's first (most preferred) offered
+     * subprotocol; a client listing it after another protocol gets text frames.
+     */
+    private static boolean offersCbor(Http.RequestHeader request) {
+        return request.header("Sec-WebSocket-Protocol")
+                .map(offered -> offered.split(",", 2)[0].trim().equals(CBOR_PROTOCOL))
+                .orElse(false);
+    }
+
+    private Flow<String, String, NotUsed> sessionFlow(Http.RequestHeader request) {
+        return sessionFlow(
+                request.queryString("session").orElse(null),
+                parseSeq(request.queryString("lastSeq").orElse(null)));
+    }
+
+    /** UTF-8 length of {@code s}, without encoding it. */
+    private static int utf8Length(String s) {
+        int bytes = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                bytes += 2;
+                if (Character.isHighSurrogate(c)) i++; // the pair is 4 bytes, counted as 2 + 2
+            } else if (c >= 0x80) {
+                bytes += 1;
+            }
+        }
+        return bytes;
+    }
+
+    private static long parseSeq(String lastSeq) {
+        try {
+            return lastSeq == null ? 0 : Long.parseLong(lastSeq);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Builds the stream for one client:
+     * <pre>
+     *   browser → parse → UserActor → SessionOutbound (bounded, batched) → browser
+     * </pre>
+     * Closing either side closes the other; the UserActor detaches when the
+     * browser leaves and stops once its grace period runs out.
+     *
+     * @param token   resume token sent by a reconnecting browser, or null
+     * @param lastSeq last frame number that browser received
+     */
+    private Flow<String, String, NotUsed> sessionFlow(String token, long lastSeq) {
+        SessionRegistry.Session session = sessions.claim(token);
+        Pair<SessionOutbound, Source<String, NotUsed>> outbound;
+        ActorRef<UserActor.Command> user;
+
+        if (session != null) {
+            outbound = SessionOutbound.create(session.id, outboundSettings, outboundStats);
+            user = session.user();
+            user.tell(new UserActor.ClientResumed(outbound.first(), lastSeq));
+        } else {
+            String sessionId = "user-" + SESSION_IDS.incrementAndGet();
+            outbound = SessionOutbound.create(sessionId, outboundSettings, outboundStats);
+            session = sessions.open(sessionId, outbound.first());
+            outbound.first().offer(Frames.session(new JsonWriter(128), session.token, false, false));
+
+            /** For each client, create a new supervised UserActor on the session bulkhead */
+            user = supervisor.systemActorOf(
+                    SupervisorActor.createUserActor(session, sessions, searchActor, resourceActor, feedRegistry),
+                    sessionId,
+                    SESSION_PROPS
+            );
+            session.attach(user);
+        }
+        SessionOutbound out = outbound.first();
 
-                        /** Provide SupervisorActor system */
-                        supervisor,
+        Sink<String, NotUsed> in = Flow.<String>create()
+                .mapConcat(text -> {
+                    UserActor.Command cmd = UserActor.fromClient(text);
+                    return cmd == null ? List.<UserActor.Command>of() : List.of(cmd);
+                })
+                .to(Sink.<UserActor.Command>foreach(user::tell)
+                        .mapMaterializedValue(done -> {
+                            done.whenComplete((d, err) -> user.tell(new UserActor.ClientDisconnected(out)));
+                            return NotUsed.getInstance();
+                        }));
 
-                        /** Provide materializer */
-                        materializer
-                )
-        );
+        return Flow.fromSinkAndSourceCoupled(in, outbound.second());
     }
 }
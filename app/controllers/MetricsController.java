@@ -0,0 +1,36 @@
+package controllers;
+
+import javax.inject.Inject;
+
+import play.mvc.Controller;
+import play.mvc.Result;
+
+import app.metrics.MetricsRegistry;
+
+/**
+ * Local scrape endpoint for the reactive pipeline's metrics.
+ * <p>
+ * Serves every metric registered in {@link MetricsRegistry} (sessions, mailbox
+ * depths, NewsAPI latency, cache, rate limiter, breakers, pools, dedup and
+ * frame sizes) in the Prometheus text format.
+ * </p>
+ *
+ * <h2>Author</h2>
+ * <p><b>Sara Ezzati</b></p>
+ */
+public class MetricsController extends Controller {
+
+    private final MetricsRegistry metrics;
+
+    @Inject
+    public MetricsController(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the current value of every metric, {@code text/plain; version=0.0.4}
+     */
+    public Result metrics() {
+        return ok(metrics.scrape()).as("text/plain; version=0.0.4; charset=utf-8");
+    }
+}
@@ -0,0 +1,88 @@
+package app.dedup;
+
+import java.util.Arrays;
+
+/**
+ * {@link SeenIds} backed by two rotating Bloom filters.
+ *
+ * <p>Each filter is sized for {@code capacity / 2} ids. Ids are inserted into
+ * the current filter; once it holds its share it becomes the previous filter
+ * and the old previous one is cleared and reused. An id is reported as seen if
+ * either filter contains it, so each filter is built for half of the target
+ * false-positive rate. The session remembers between {@code capacity / 2}
+ * (right after a rotation) and {@code capacity} of its most recent ids.</p>
+ *
+ * <p>A Bloom filter cannot be resized once bits are set, so instead each
+ * filter is allocated when first needed: the current one on the first
+ * {@link #add}, the previous one on the first rotation. A session that never
+ * fills a generation holds one filter, and one that sees no ids holds none.</p>
+ *
+ * <p>The k probe positions are derived from one 64-bit hash by double hashing
+ * ({@code h1 + i * h2}).</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class BloomSeenIds implements SeenIds {
+
+    private final int generationCapacity;
+    private final int numHashes;
+    private final int numBits;
+    /** Null until the first {@link #add}. */
+    private long[] current;
+    /** Null until the first rotation. */
+    private long[] previous;
+    private int currentSize;
+
+    /**
+     * @param capacity          most recent ids remembered between rotations; at least
+     *                          {@code capacity / 2} are remembered at any time
+     * @param falsePositiveRate target probability of reporting an unseen id as seen
+     */
+    public BloomSeenIds(int capacity, double falsePositiveRate) {
+        this.generationCapacity = Math.max(1, (capacity + 1) / 2);
+        double p = Math.max(1e-9, falsePositiveRate / 2);
+        double ln2 = Math.log(2);
+        this.numBits = Math.max(64, (int) Math.ceil(-generationCapacity * Math.log(p) / (ln2 * ln2)));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / generationCapacity * ln2));
+    }
+
+    @Override
+    public boolean add(String id) {
+        if (id == null) return true;
+        long h = Hashing.hash64(id);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+
+        if (mightContain(previous, h1, h2) || mightContain(current, h1, h2)) return false;
+
+        if (current == null) current = new long[(numBits + 63) >>> 6];
+        if (currentSize == generationCapacity) rotate();
+        for (int i = 0; i < numHashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, numBits);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        currentSize++;
+        return true;
+    }
+
+    private boolean mightContain(long[] bits, int h1, int h2) {
+        if (bits == null) return false;
+        for (int i = 0; i < numHashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void rotate() {
+        long[] recycled = previous;
+        if (recycled == null) {
+            recycled = new long[current.length];
+        } else {
+            Arrays.fill(recycled, 0L);
+        }
+        previous = current;
+        current = recycled;
+        currentSize = 0;
+    }
+}
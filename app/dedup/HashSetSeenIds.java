@@ -0,0 +1,21 @@
+package app.dedup;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Exact, unbounded {@link SeenIds} backed by a {@link HashSet}.
+ * Kept as the benchmark baseline; grows for the whole life of a session.
+ *
+ * @author Sara Ezzati
+ */
+public final class HashSetSeenIds implements SeenIds {
+
+    private final Set<String> ids = new HashSet<>();
+
+    @Override
+    public boolean add(String id) {
+        if (id == null) return true;
+        return ids.add(id);
+    }
+}
@@ -0,0 +1,47 @@
+package app.dedup;
+
+/**
+ * 64-bit string hashing shared by the hashed {@link SeenIds} strategies
+ * and the term counters of {@code app.analytics}.
+ *
+ * @author Sara Ezzati
+ */
+public final class Hashing {
+
+    /** FNV-1a state for callers that hash characters as they scan them (see {@code app.analytics}). */
+    public static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    public static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() { }
+
+    /**
+     * FNV-1a over the UTF-16 code units, finished with the MurmurHash3 64-bit
+     * mixer so that every output bit depends on every input bit.
+     *
+     * @param s string to hash (not null)
+     * @return well-mixed 64-bit hash
+     */
+    public static long hash64(CharSequence s) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * MurmurHash3 {@code fmix64} finalizer.
+     *
+     * @param h value to mix
+     * @return mixed value
+     */
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,112 @@
+package app.dedup;
+
+import java.util.Arrays;
+
+/**
+ * {@link SeenIds} that stores 64-bit id hashes in primitive open-addressing tables.
+ *
+ * <p>Two generations of {@code capacity / 2} hashes each are kept. When the
+ * current generation is full it becomes the previous one and the old previous
+ * generation is cleared and reused. The session therefore remembers between
+ * {@code capacity / 2} (right after a rotation) and {@code capacity} of its
+ * most recent ids.</p>
+ *
+ * <p>Tables start at {@code INITIAL_SLOTS} and double (at a 0.5 load factor)
+ * up to the size one generation needs, so a session that sees few ids keeps
+ * small tables. Once both generations reached full size, rotation only clears
+ * and swaps them: 16 bytes per remembered id, and no allocation per
+ * {@link #add}. A false positive requires a full 64-bit hash collision.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class LongHashSeenIds implements SeenIds {
+
+    /** 0 marks an empty slot; a hash that happens to be 0 is remapped. */
+    private static final long EMPTY = 0L;
+
+    /** Slots of a new generation table. */
+    private static final int INITIAL_SLOTS = 16;
+
+    private final int generationCapacity;
+    /** Slots a generation table grows to (0.5 load factor when full). */
+    private final int maxSlots;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+
+    /**
+     * @param capacity most recent ids remembered between rotations; at least
+     *                 {@code capacity / 2} are remembered at any time
+     */
+    public LongHashSeenIds(int capacity) {
+        this.generationCapacity = Math.max(1, (capacity + 1) / 2);
+        this.maxSlots = Integer.highestOneBit(Math.max(2, generationCapacity * 2 - 1)) << 1;
+        this.current = new long[Math.min(INITIAL_SLOTS, maxSlots)];
+        this.previous = new long[1];
+    }
+
+    @Override
+    public boolean add(String id) {
+        if (id == null) return true;
+        long h = Hashing.hash64(id);
+        if (h == EMPTY) h = 1L;
+
+        if (contains(previous, h)) return false;
+
+        int mask = current.length - 1;
+        int i = (int) h & mask;
+        while (current[i] != EMPTY) {
+            if (current[i] == h) return false;
+            i = (i + 1) & mask;
+        }
+
+        if (currentSize == generationCapacity) {
+            rotate();
+            i = slot(current, h);
+        } else if ((currentSize + 1) * 2 > current.length) {
+            grow();
+            i = slot(current, h);
+        }
+        current[i] = h;
+        currentSize++;
+        return true;
+    }
+
+    /** @return the first empty slot on {@code h}'s probe sequence */
+    private static int slot(long[] table, long h) {
+        int mask = table.length - 1;
+        int i = (int) h & mask;
+        while (table[i] != EMPTY) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        long[] old = current;
+        current = new long[old.length * 2];
+        for (long h : old) {
+            if (h != EMPTY) current[slot(current, h)] = h;
+        }
+    }
+
+    private static boolean contains(long[] table, long h) {
+        int mask = table.length - 1;
+        int i = (int) h & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == h) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private void rotate() {
+        long[] recycled = previous;
+        if (recycled.length == maxSlots) {
+            Arrays.fill(recycled, EMPTY);
+        } else {
+            recycled = new long[Math.min(INITIAL_SLOTS, maxSlots)];
+        }
+        previous = current;
+        current = recycled;
+        currentSize = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package app.dedup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exact {@link SeenIds} over a sliding window of the most recent {@code capacity} ids.
+ * Re-seeing an id refreshes it, so ids that keep coming back are never forgotten.
+ *
+ * @author Sara Ezzati
+ */
+public final class LruWindowSeenIds implements SeenIds {
+
+    private final LinkedHashMap<String, Boolean> window;
+
+    /**
+     * @param capacity number of most recently seen ids to remember
+     */
+    public LruWindowSeenIds(int capacity) {
+        this.window = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public boolean add(String id) {
+        if (id == null) return true;
+        return window.put(id, Boolean.TRUE) == null;
+    }
+}
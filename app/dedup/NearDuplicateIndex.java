@@ -0,0 +1,231 @@
+package app.dedup;
+
+import com.typesafe.config.Config;
+
+import java.util.Arrays;
+
+/**
+ * Per-session index of the stories already pushed, keyed by {@link SimHash}
+ * fingerprint, so that one wire story republished by many sources is shown
+ * once with a source count. Used by {@code UserActor} after {@link SeenIds}.
+ *
+ * <p>Each story is a cluster: the fingerprint of its first article, the id of
+ * the article shown for it (its representative) and the distinct sources seen.
+ * Lookups use banded LSH: the fingerprint is cut into {@code maxDistance + 1}
+ * bands, and every cluster is chained under each band's value. Two
+ * fingerprints at most {@code maxDistance} bits apart agree on at least one
+ * band, so probing the article's own band buckets finds every candidate;
+ * candidates are then checked by full Hamming distance.</p>
+ *
+ * <p>Memory follows the number of stories: a ring of up to {@code capacity}
+ * clusters where the oldest is overwritten, and per band a bucket table of
+ * twice as many heads. Both start at {@code INITIAL_SLOTS} clusters and double
+ * (re-chaining every cluster) until the ring reaches {@code capacity}, so a
+ * session that sees few stories stays small. A story older than the ring is
+ * shown again. Not thread-safe (confined to its actor).</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class NearDuplicateIndex {
+
+    /** Returned by {@link #find} when no cluster is close enough. */
+    public static final int NONE = -1;
+
+    /** Distinct sources remembered per cluster; the count stops growing there. */
+    static final int MAX_SOURCES = 32;
+
+    /** Clusters allocated for a new index; doubled as stories arrive. */
+    private static final int INITIAL_SLOTS = 16;
+
+    private final int capacity;
+    private final int maxDistance;
+    private final int bands;
+    private final int bandBits;
+    private int bucketMask;
+
+    private long[] fingerprints;
+    private String[] representatives;
+    private long[][] sources;
+    private int[] sourceCounts;
+
+    /** Per band: bucket → first slot + 1 (0 = empty). */
+    private int[][] heads;
+    /** Per band: slot → next slot + 1 in the same bucket (0 = end). */
+    private int[][] next;
+
+    private int cursor;
+    private int size;
+
+    /**
+     * @param capacity    number of most recent clusters remembered
+     * @param maxDistance largest Hamming distance (bits) still treated as the same story, 0–15
+     */
+    public NearDuplicateIndex(int capacity, int maxDistance) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        if (maxDistance < 0 || maxDistance > 15) throw new IllegalArgumentException("maxDistance must be 0–15");
+        this.capacity = capacity;
+        this.maxDistance = maxDistance;
+        this.bands = maxDistance + 1;
+        this.bandBits = 64 / bands;
+        allocate(Math.min(capacity, INITIAL_SLOTS));
+    }
+
+    /**
+     * Creates the index configured under {@code notilytics.dedup.nearDuplicates}.
+     *
+     * @param config application configuration
+     * @return a new, empty index, or null if near-duplicate detection is disabled
+     */
+    public static NearDuplicateIndex fromConfig(Config config) {
+        Config c = config.getConfig("notilytics.dedup.nearDuplicates");
+        return c.getBoolean("enabled") ? new NearDuplicateIndex(c.getInt("capacity"), c.getInt("maxDistance")) : null;
+    }
+
+    /**
+     * @param fingerprint {@link SimHash} of an article (not 0)
+     * @return slot of the nearest remembered cluster within {@code maxDistance}, or {@link #NONE}
+     */
+    public int find(long fingerprint) {
+        int best = NONE;
+        int bestDistance = maxDistance + 1;
+        for (int band = 0; band < bands; band++) {
+            for (int s = heads[band][bucket(band, fingerprint)]; s != 0; s = next[band][s - 1]) {
+                int d = SimHash.distance(fingerprints[s - 1], fingerprint);
+                if (d < bestDistance) {
+                    best = s - 1;
+                    bestDistance = d;
+                    if (d == 0) return best;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Remembers a new cluster, evicting the oldest one if the ring is full.
+     *
+     * @param fingerprint    {@link SimHash} of the article (not 0)
+     * @param representative id of the article shown for the cluster
+     * @param source         its source name (may be null)
+     * @return slot of the new cluster
+     */
+    public int add(long fingerprint, String representative, String source) {
+        int slot = cursor;
+        cursor = (cursor + 1) % capacity;
+        if (size == capacity) {
+            unlink(slot);
+        } else {
+            if (slot == fingerprints.length) allocate(Math.min(capacity, slot * 2));
+            size++;
+        }
+
+        fingerprints[slot] = fingerprint;
+        representatives[slot] = representative;
+        if (sources[slot] == null) sources[slot] = new long[4];
+        sources[slot][0] = sourceHash(source);
+        sourceCounts[slot] = 1;
+        link(slot);
+        return slot;
+    }
+
+    /**
+     * Records that {@code source} also published the cluster's story.
+     *
+     * @return {@code true} if the source is new to the cluster (its count grew)
+     */
+    public boolean addSource(int slot, String source) {
+        long h = sourceHash(source);
+        long[] seen = sources[slot];
+        int n = sourceCounts[slot];
+        for (int i = 0; i < n; i++) {
+            if (seen[i] == h) return false;
+        }
+        if (n == MAX_SOURCES) return false;
+        if (n == seen.length) sources[slot] = seen = Arrays.copyOf(seen, Math.min(MAX_SOURCES, n * 2));
+        seen[n] = h;
+        sourceCounts[slot] = n + 1;
+        return true;
+    }
+
+    /** Shows {@code id} for the cluster from now on (after a resync re-sent it under another id). */
+    public void represent(int slot, String id) {
+        representatives[slot] = id;
+    }
+
+    /** @return id of the article shown for the cluster */
+    public String representative(int slot) {
+        return representatives[slot];
+    }
+
+    /** @return distinct sources that published the cluster's story (at most {@value #MAX_SOURCES}) */
+    public int sourceCount(int slot) {
+        return sourceCounts[slot];
+    }
+
+    /** @return clusters currently remembered */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sizes the cluster arrays for {@code slots} clusters and the bucket tables
+     * for twice as many, re-chaining the clusters already remembered. Only
+     * called while the ring is filling, when slots {@code [0, size)} are live.
+     */
+    private void allocate(int slots) {
+        int buckets = Integer.highestOneBit(Math.max(2, slots * 2 - 1)) << 1;
+        bucketMask = buckets - 1;
+        if (fingerprints == null) {
+            fingerprints = new long[slots];
+            representatives = new String[slots];
+            sources = new long[slots][];
+            sourceCounts = new int[slots];
+        } else {
+            fingerprints = Arrays.copyOf(fingerprints, slots);
+            representatives = Arrays.copyOf(representatives, slots);
+            sources = Arrays.copyOf(sources, slots);
+            sourceCounts = Arrays.copyOf(sourceCounts, slots);
+        }
+        heads = new int[bands][buckets];
+        next = new int[bands][slots];
+        // oldest first, so each chain keeps the newest cluster at its head
+        for (int slot = 0; slot < size; slot++) link(slot);
+    }
+
+    private void link(int slot) {
+        long fingerprint = fingerprints[slot];
+        for (int band = 0; band < bands; band++) {
+            int b = bucket(band, fingerprint);
+            next[band][slot] = heads[band][b];
+            heads[band][b] = slot + 1;
+        }
+    }
+
+    private void unlink(int slot) {
+        long fingerprint = fingerprints[slot];
+        for (int band = 0; band < bands; band++) {
+            int b = bucket(band, fingerprint);
+            int[] chain = next[band];
+            if (heads[band][b] == slot + 1) {
+                heads[band][b] = chain[slot];
+            } else {
+                int s = heads[band][b];
+                while (chain[s - 1] != slot + 1) s = chain[s - 1];
+                chain[s - 1] = chain[slot];
+            }
+            chain[slot] = 0;
+        }
+    }
+
+    /** Bucket of the fingerprint's {@code band}-th bit range (the last band takes the remainder). */
+    private int bucket(int band, long fingerprint) {
+        int shift = band * bandBits;
+        int width = band == bands - 1 ? 64 - shift : bandBits;
+        long value = width == 64 ? fingerprint : (fingerprint >>> shift) & ((1L << width) - 1);
+        return (int) Hashing.mix64(value + band * 0x9e3779b97f4a7c15L) & bucketMask;
+    }
+
+    private static long sourceHash(String source) {
+        return Hashing.hash64(source == null ? "" : source);
+    }
+}
@@ -0,0 +1,68 @@
+package app.dedup;
+
+import com.typesafe.config.Config;
+
+/**
+ * SeenIds
+ *
+ * Memory of article ids already pushed to one WebSocket session.
+ * Replaces the unbounded {@code HashSet<String>} that used to live in
+ * {@code UserActor}.
+ *
+ * <p>Implementations trade exactness for a bounded footprint:</p>
+ * <ul>
+ *   <li>{@link HashSetSeenIds}  – exact, unbounded (legacy baseline)</li>
+ *   <li>{@link LruWindowSeenIds} – exact within the last {@code capacity} ids</li>
+ *   <li>{@link LongHashSeenIds}  – 64-bit hashes in primitive {@code long} tables, two rotating generations</li>
+ *   <li>{@link BloomSeenIds}     – two rotating Bloom filters with a configurable false-positive rate</li>
+ * </ul>
+ *
+ * <p>Bounded strategies may forget very old ids (which are then pushed again)
+ * and the hashed ones may, very rarely, report an unseen id as seen.</p>
+ *
+ * @author Sara Ezzati
+ */
+public interface SeenIds {
+
+    /**
+     * Records an id. A {@code null} id (NewsAPI omits it for some articles)
+     * is never recorded and always reported as unseen, like the article index
+     * and the sentiment memo treat it.
+     *
+     * @param id article id, may be null
+     * @return {@code true} if the id was not seen before and should be pushed
+     */
+    boolean add(String id);
+
+    /**
+     * Creates a strategy by name.
+     *
+     * @param strategy          {@code hash-set}, {@code lru}, {@code long-hash} or {@code bloom}
+     * @param capacity          recent ids remembered; the rotating strategies ({@code long-hash},
+     *                          {@code bloom}) guarantee only the last {@code capacity / 2} right
+     *                          after a rotation
+     * @param falsePositiveRate target false-positive rate (only used by {@code bloom})
+     * @return a new, empty instance
+     */
+    static SeenIds create(String strategy, int capacity, double falsePositiveRate) {
+        switch (strategy) {
+            case "hash-set":  return new HashSetSeenIds();
+            case "lru":       return new LruWindowSeenIds(capacity);
+            case "long-hash": return new LongHashSeenIds(capacity);
+            case "bloom":     return new BloomSeenIds(capacity, falsePositiveRate);
+            default:
+                throw new IllegalArgumentException("Unknown dedup strategy: " + strategy);
+        }
+    }
+
+    /**
+     * Creates the strategy configured under {@code notilytics.dedup}.
+     *
+     * @param config application configuration
+     * @return a new, empty instance
+     */
+    static SeenIds fromConfig(Config config) {
+        Config c = config.getConfig("notilytics.dedup");
+        return create(c.getString("strategy"), c.getInt("capacity"), c.getDouble("falsePositiveRate"));
+    }
+}
@@ -0,0 +1,114 @@
+package app.dedup;
+
+import java.util.Arrays;
+
+/**
+ * 64-bit SimHash of an article's normalized title and description, used by
+ * {@link NearDuplicateIndex} to recognise one wire story republished by many
+ * sources under different ids.
+ *
+ * <p>Normalization: lower-cased letter/digit runs (no String per word, as in
+ * {@code app.analytics.TextStats}); single characters and stopwords are
+ * dropped, and a trailing {@code " - Source"} / {@code " | Source"} credit is
+ * cut from the title. Features are the remaining words and their adjacent
+ * pairs; title features count twice. Similar texts get fingerprints a few
+ * bits apart ({@link #distance}).</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class SimHash {
+
+    /** A title credit of at most this many characters after the last separator is cut. */
+    private static final int MAX_CREDIT = 40;
+
+    private static final String[] STOPWORDS = {
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it",
+            "its", "of", "on", "or", "that", "the", "this", "to", "was", "were", "will", "with"
+    };
+
+    private static final long[] STOPWORD_HASHES = stopwordHashes();
+
+    private SimHash() { }
+
+    /**
+     * @param title       article title (may be null)
+     * @param description article description (may be null)
+     * @return the fingerprint, or 0 if the text has no usable words
+     */
+    public static long of(String title, String description) {
+        int[] votes = new int[64];
+        int features = 0;
+        if (title != null) features += scan(title, 0, creditStart(title), 2, votes);
+        if (description != null) features += scan(description, 0, description.length(), 1, votes);
+        if (features == 0) return 0L;
+
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint == 0L ? 1L : fingerprint;
+    }
+
+    /** @return number of differing bits between two fingerprints */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Adds every word and word pair of {@code text[from, to)} to the votes.
+     *
+     * @return number of features added
+     */
+    private static int scan(String text, int from, int to, int weight, int[] votes) {
+        int features = 0;
+        long previous = 0L;
+        int i = from;
+        while (i < to) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            long h = Hashing.FNV_OFFSET;
+            while (i < to && Character.isLetterOrDigit(text.charAt(i))) {
+                h ^= Character.toLowerCase(text.charAt(i));
+                h *= Hashing.FNV_PRIME;
+                i++;
+            }
+            long word = Hashing.mix64(h);
+            if (i - start < 2 || isStopword(word)) continue;
+
+            vote(votes, word, weight);
+            features++;
+            if (previous != 0L) {
+                vote(votes, Hashing.mix64(previous * Hashing.FNV_PRIME ^ word), weight);
+                features++;
+            }
+            previous = word;
+        }
+        return features;
+    }
+
+    private static void vote(int[] votes, long feature, int weight) {
+        for (int bit = 0; bit < 64; bit++) {
+            votes[bit] += ((feature >>> bit) & 1L) != 0 ? weight : -weight;
+        }
+    }
+
+    /** @return where a trailing source credit of the title begins, or its length if it has none */
+    private static int creditStart(String title) {
+        int cut = Math.max(title.lastIndexOf(" - "), title.lastIndexOf(" | "));
+        return cut > 0 && title.length() - cut - 3 <= MAX_CREDIT ? cut : title.length();
+    }
+
+    private static boolean isStopword(long hash) {
+        return Arrays.binarySearch(STOPWORD_HASHES, hash) >= 0;
+    }
+
+    private static long[] stopwordHashes() {
+        long[] hashes = new long[STOPWORDS.length];
+        for (int i = 0; i < hashes.length; i++) hashes[i] = Hashing.hash64(STOPWORDS[i]);
+        Arrays.sort(hashes);
+        return hashes;
+    }
+}
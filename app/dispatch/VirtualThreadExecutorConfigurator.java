@@ -0,0 +1,67 @@
+package app.dispatch;
+
+import com.typesafe.config.Config;
+
+import org.apache.pekko.dispatch.DispatcherPrerequisites;
+import org.apache.pekko.dispatch.ExecutorServiceConfigurator;
+import org.apache.pekko.dispatch.ExecutorServiceFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executor for a Pekko dispatcher that runs every task on a new virtual thread.
+ *
+ * <p>Selected per dispatcher in {@code application.conf} with
+ * {@code executor = "app.dispatch.VirtualThreadExecutorConfigurator"}
+ * (or the {@code NOTILYTICS_EXECUTOR} environment variable). Virtual threads
+ * need Java 21. The API is looked up reflectively so the project still builds
+ * and runs on Java 17. There the dispatcher falls back to a fixed pool of
+ * {@code fallback-pool-size} platform threads and logs a warning.</p>
+ *
+ * <p>INPUT: the dispatcher's config block, optionally with
+ * {@code fallback-pool-size} (default: number of cores).</p>
+ *
+ * <p>OUTPUT: the dispatcher's {@link ExecutorService}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class VirtualThreadExecutorConfigurator extends ExecutorServiceConfigurator {
+
+    private static final Logger logger = LoggerFactory.getLogger("application");
+
+    private final int fallbackPoolSize;
+
+    /** Called reflectively by Pekko with the dispatcher's config block. */
+    public VirtualThreadExecutorConfigurator(Config config, DispatcherPrerequisites prerequisites) {
+        super(config, prerequisites);
+        this.fallbackPoolSize = config.hasPath("fallback-pool-size")
+                ? config.getInt("fallback-pool-size")
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public ExecutorServiceFactory createExecutorServiceFactory(String id, ThreadFactory threadFactory) {
+        return () -> create(id, threadFactory);
+    }
+
+    private ExecutorService create(String id, ThreadFactory platformThreads) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, id + "-vt-", 0L);
+            ThreadFactory virtualThreads = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, virtualThreads);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads unavailable on Java {}; dispatcher {} uses {} platform threads",
+                    Runtime.version().feature(), id, fallbackPoolSize);
+            return Executors.newFixedThreadPool(fallbackPoolSize, platformThreads);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package app.index;
+
+import app.dedup.Hashing;
+import app.models.Article;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory inverted index over the articles fetched in the last few
+ * minutes, so that a query overlapping earlier ones ("bitcoin", "bitcoin etf",
+ * "crypto bitcoin") can be answered locally while its NewsAPI call is in flight.
+ *
+ * <p>Articles are appended to time-bucketed segments. Each segment gives its
+ * documents dense int ids and keeps, per term hash, a delta-encoded
+ * {@link Postings} list. Expiry drops whole segments once they fall out of
+ * the window, so nothing is ever deleted from a posting list, and a segment
+ * also rolls over when it reaches {@code maxDocsPerSegment}. An article already
+ * indexed within the window is not indexed again.</p>
+ *
+ * <p>Memory is bounded by count as well as by time: once more than
+ * {@code maxDocuments} articles are indexed, the oldest segments are dropped
+ * early, whatever their age. The newest segment is never dropped, so the
+ * index holds at most {@code max(maxDocuments, maxDocsPerSegment)} articles
+ * plus one segment.</p>
+ *
+ * <p>A query matches documents that contain all of its terms (case-insensitive
+ * words of two or more characters). Posting lists are intersected smallest
+ * first, newest segment first, and the search stops at {@code limit} hits.</p>
+ *
+ * <p>Thread-safe: shared by every {@code SearchActor} worker. Searches run
+ * concurrently under a read lock; additions take the write lock.</p>
+ *
+ * <p>INPUT: scored search results ({@link #addAll})<br>
+ * OUTPUT: newest matching articles ({@link #search})</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class ArticleIndex {
+
+    /**
+     * Index bounds.
+     * <ul>
+     *   <li>{@code window}            – how long an article stays searchable</li>
+     *   <li>{@code segmentSpan}       – time covered by one segment (expiry granularity)</li>
+     *   <li>{@code maxDocsPerSegment} – documents after which a segment rolls over early</li>
+     *   <li>{@code maxDocuments}      – documents after which the oldest segments are dropped early</li>
+     * </ul>
+     */
+    public static final class Settings {
+        public static final Settings DEFAULTS =
+                new Settings(Duration.ofMinutes(10), Duration.ofMinutes(1), 20_000, 100_000);
+
+        public final Duration window;
+        public final Duration segmentSpan;
+        public final int maxDocsPerSegment;
+        public final int maxDocuments;
+
+        public Settings(Duration window, Duration segmentSpan, int maxDocsPerSegment, int maxDocuments) {
+            this.window = window;
+            this.segmentSpan = segmentSpan;
+            this.maxDocsPerSegment = maxDocsPerSegment;
+            this.maxDocuments = maxDocuments;
+        }
+
+        /**
+         * @param config application configuration ({@code notilytics.index} block)
+         */
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("notilytics.index");
+            return new Settings(c.getDuration("window"), c.getDuration("segmentSpan"), c.getInt("maxDocsPerSegment"),
+                    c.getInt("maxDocuments"));
+        }
+    }
+
+    /** Documents of one time bucket and their term → postings table. */
+    private static final class Segment {
+        final long startMillis;
+        final int capacity;
+        // Grows by doubling up to capacity, so a quiet segment does not hold maxDocsPerSegment slots.
+        Article[] docs;
+        int size;
+
+        // Open-addressing table keyed by term hash; 0 marks an empty slot.
+        long[] keys = new long[256];
+        Postings[] values = new Postings[256];
+        int terms;
+
+        Segment(long startMillis, int capacity) {
+            this.startMillis = startMillis;
+            this.capacity = capacity;
+            this.docs = new Article[Math.min(capacity, 16)];
+        }
+
+        boolean isFull() {
+            return size == capacity;
+        }
+
+        int add(Article a) {
+            if (size == docs.length) docs = Arrays.copyOf(docs, (int) Math.min(capacity, 2L * docs.length));
+            int doc = size;
+            docs[size++] = a;
+            return doc;
+        }
+
+        Postings postings(long term) {
+            int mask = keys.length - 1;
+            for (int i = (int) term & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == term) return values[i];
+                if (keys[i] == 0) return null;
+            }
+        }
+
+        void post(long term, int doc) {
+            if ((terms + 1) * 2 > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = (int) term & mask;
+            while (keys[i] != 0 && keys[i] != term) i = (i + 1) & mask;
+            if (keys[i] == 0) {
+                keys[i] = term;
+                values[i] = new Postings();
+                terms++;
+            }
+            values[i].add(doc);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) continue;
+                int i = (int) oldKeys[j] & mask;
+                while (keys[i] != 0) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        long postingBytes() {
+            long bytes = 0;
+            for (Postings p : values) if (p != null) bytes += p.sizeInBytes();
+            return bytes;
+        }
+    }
+
+    /** Words indexed per article (title, then description); NewsAPI descriptions are far shorter. */
+    private static final int MAX_TERMS_PER_DOC = 256;
+
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Oldest segment first. */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    /** Article id → segment it was indexed in (ids of a dropped segment are removed with it). */
+    private final Map<String, Segment> indexed = new HashMap<>();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public ArticleIndex(Settings settings) {
+        this(settings, System::currentTimeMillis);
+    }
+
+    ArticleIndex(Settings settings, LongSupplier clock) {
+        this.settings = settings;
+        this.clock = clock;
+    }
+
+    /**
+     * Indexes the articles not indexed yet within the window.
+     *
+     * @param articles articles of one search result
+     */
+    public void addAll(List<Article> articles) {
+        addAll(articles, clock.getAsLong());
+    }
+
+    /**
+     * Indexes articles fetched at {@code fetchedAtMillis} (results replayed
+     * from the store), so they expire with the window of their original fetch.
+     * A result already older than the window is ignored.
+     *
+     * @param articles        articles of one search result
+     * @param fetchedAtMillis when the result was fetched from NewsAPI
+     */
+    public void addAll(List<Article> articles, long fetchedAtMillis) {
+        if (articles.isEmpty()) return;
+        long now = clock.getAsLong();
+        if (fetchedAtMillis < now - settings.window.toMillis()) return;
+        long stamp = Math.min(fetchedAtMillis, now);
+        long[] terms = new long[MAX_TERMS_PER_DOC];
+
+        lock.writeLock().lock();
+        try {
+            expire(now);
+            for (Article a : articles) {
+                if (a.id == null || indexed.containsKey(a.id)) continue;
+
+                Segment s = segments.peekLast();
+                if (s == null || s.isFull() || stamp - s.startMillis >= settings.segmentSpan.toMillis()) {
+                    // segments stay ordered by start time; an older stamp joins the newest segment
+                    s = new Segment(s == null ? stamp : Math.max(stamp, s.startMillis), settings.maxDocsPerSegment);
+                    segments.addLast(s);
+                }
+                int doc = s.add(a);
+                indexed.put(a.id, s);
+
+                int n = terms(a.title, terms, 0);
+                n = terms(a.description, terms, n);
+                for (int i = 0; i < n; i++) s.post(terms[i], doc);
+            }
+            while (indexed.size() > settings.maxDocuments && segments.size() > 1) {
+                dropOldest();
+                evicted.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Newest articles containing every term of {@code query}.
+     *
+     * @param query free-text query
+     * @param limit maximum number of articles returned
+     * @return matches, newest first (empty if the query has no indexable term)
+     */
+    public List<Article> search(String query, int limit) {
+        searches.increment();
+        long[] terms = new long[16];
+        int n = terms(query, terms, 0);
+        if (n == 0) return List.of();
+        terms = Arrays.copyOf(terms, n);
+
+        long oldest = clock.getAsLong() - settings.window.toMillis();
+        List<Article> out = new ArrayList<>(Math.min(limit, 32));
+
+        lock.readLock().lock();
+        try {
+            Iterator<Segment> newestFirst = segments.descendingIterator();
+            while (newestFirst.hasNext() && out.size() < limit) {
+                Segment s = newestFirst.next();
+                if (s.startMillis + settings.segmentSpan.toMillis() < oldest) break;
+                match(s, terms, limit, out);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!out.isEmpty()) hits.increment();
+        return out;
+    }
+
+    /** @return articles currently indexed */
+    public int documents() {
+        lock.readLock().lock();
+        try {
+            return indexed.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return bytes held by encoded posting lists */
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Segment s : segments) bytes += s.postingBytes();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return searches answered by the index */
+    public long searches() {
+        return searches.sum();
+    }
+
+    /** @return searches that found at least one article */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** @return segments dropped before their time because the index reached {@code maxDocuments} */
+    public long evictedSegments() {
+        return evicted.sum();
+    }
+
+    private static void match(Segment s, long[] terms, int limit, List<Article> out) {
+        Postings[] lists = new Postings[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            lists[i] = s.postings(terms[i]);
+            if (lists[i] == null) return;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.count(), b.count()));
+
+        int[] docs = lists[0].decode();
+        int n = docs.length;
+        for (int i = 1; i < lists.length && n > 0; i++) n = lists[i].retainAll(docs, n);
+
+        for (int i = n - 1; i >= 0 && out.size() < limit; i--) out.add(s.docs[docs[i]]);
+    }
+
+    private void expire(long now) {
+        long oldest = now - settings.window.toMillis();
+        while (!segments.isEmpty() && segments.peekFirst().startMillis + settings.segmentSpan.toMillis() < oldest) {
+            dropOldest();
+        }
+    }
+
+    private void dropOldest() {
+        Segment dropped = segments.pollFirst();
+        for (int i = 0; i < dropped.size; i++) indexed.remove(dropped.docs[i].id);
+    }
+
+    /**
+     * Hashes the words of two or more characters in {@code text} into
+     * {@code out} (same hash as {@link Hashing#hash64} of the lower-cased word),
+     * stopping when {@code out} is full.
+     *
+     * @return new number of terms in {@code out}
+     */
+    private static int terms(String text, long[] out, int n) {
+        if (text == null) return n;
+        int len = text.length();
+        int i = 0;
+        while (i < len && n < out.length) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int from = i;
+            long h = Hashing.FNV_OFFSET;
+            while (i < len && Character.isLetterOrDigit(text.charAt(i))) {
+                h ^= Character.toLowerCase(text.charAt(i));
+                h *= Hashing.FNV_PRIME;
+                i++;
+            }
+            long hash = Hashing.mix64(h);
+            if (i - from >= 2 && hash != 0) out[n++] = hash;
+        }
+        return n;
+    }
+}
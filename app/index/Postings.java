@@ -0,0 +1,102 @@
+package app.index;
+
+import java.util.Arrays;
+
+/**
+ * Postings list of one term in one segment: ascending int doc ids stored as
+ * variable-length deltas (7 bits per byte, high bit = more bytes follow).
+ *
+ * <p>Doc ids within a segment are dense and appended in order, so most deltas
+ * fit in one byte: a list costs about one byte per document instead of four
+ * (int) or sixteen (boxed Integer).</p>
+ *
+ * <p>Not thread-safe; guarded by {@link ArticleIndex}'s lock.</p>
+ *
+ * @author Sara Ezzati
+ */
+final class Postings {
+
+    private byte[] bytes = new byte[4];
+    private int length;
+    private int last = -1;
+    private int count;
+
+    /**
+     * Appends a doc id; ids at or below the last one are ignored, so a term
+     * repeated in one document is posted once.
+     *
+     * @param doc segment-local doc id
+     */
+    void add(int doc) {
+        if (doc <= last) return;
+        int delta = doc - last;
+        last = doc;
+        count++;
+
+        if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        while ((delta & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[length++] = (byte) delta;
+    }
+
+    /** @return number of documents in the list */
+    int count() {
+        return count;
+    }
+
+    /** @return the doc ids, ascending */
+    int[] decode() {
+        int[] out = new int[count];
+        int doc = -1;
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            out[i] = doc;
+        }
+        return out;
+    }
+
+    /**
+     * Keeps the ids of {@code docs[0..n)} that are also in this list.
+     *
+     * @param docs ascending doc ids (filtered in place)
+     * @param n    number of valid entries in {@code docs}
+     * @return number of entries kept
+     */
+    int retainAll(int[] docs, int n) {
+        int kept = 0;
+        int i = 0;
+        int doc = -1;
+        int pos = 0;
+        for (int k = 0; k < count && i < n; k++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+
+            while (i < n && docs[i] < doc) i++;
+            if (i < n && docs[i] == doc) docs[kept++] = docs[i++];
+        }
+        return kept;
+    }
+
+    /** @return bytes used by the encoded list */
+    int sizeInBytes() {
+        return length;
+    }
+}
@@ -0,0 +1,182 @@
+package app.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CborWriter
+ *
+ * Re-encodes a JSON frame (as built by {@link Frames}) into CBOR (RFC 8949)
+ * for browsers that negotiated the binary WebSocket subprotocol.
+ *
+ * <p>Each frame is one stringref namespace (tag 256, see
+ * <a href="http://cbor.schmorp.de/stringref">cbor.schmorp.de/stringref</a>):
+ * a string long enough to be worth it is written once and every repeat is a
+ * tag 25 reference to it. Member names such as {@code "title"} and
+ * {@code "description"}, and repeated values such as source names, are then
+ * sent once per frame instead of once per article. Maps and arrays are written
+ * with indefinite length, so the frame is transcoded in a single streaming
+ * pass without building a tree.</p>
+ *
+ * <p>Numbers: integers as CBOR integers; decimals as float32 when that is
+ * exact, float64 otherwise.</p>
+ *
+ * <p>Not thread-safe: keep one instance per WebSocket (or per thread).</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class CborWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /** Tag 256 (stringref namespace) + tag 25 (stringref) headers. */
+    private static final byte[] NAMESPACE = { (byte) 0xd9, 0x01, 0x00 };
+    private static final int REF_TAG = 0xd8;
+    private static final int REF_TAG_VALUE = 25;
+
+    private static final int MAJOR_UINT = 0;
+    private static final int MAJOR_NINT = 1 << 5;
+    private static final int MAJOR_TEXT = 3 << 5;
+    private static final int INDEFINITE_ARRAY = 0x9f;
+    private static final int INDEFINITE_MAP = 0xbf;
+    private static final int BREAK = 0xff;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT32 = 0xfa;
+    private static final int FLOAT64 = 0xfb;
+
+    private byte[] buf;
+    private int size;
+
+    /** String → index in this frame's stringref table. */
+    private final Map<String, Integer> refs = new HashMap<>();
+
+    /**
+     * @param initialCapacity initial buffer size in bytes; the buffer grows as needed and is kept across frames
+     */
+    public CborWriter(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * @param frame a complete JSON frame
+     * @return the same frame as CBOR
+     */
+    public byte[] transcode(String frame) {
+        size = 0;
+        refs.clear();
+        write(NAMESPACE);
+        try (JsonParser p = JSON.createParser(frame)) {
+            for (JsonToken t = p.nextToken(); t != null; t = p.nextToken()) {
+                switch (t) {
+                    case START_OBJECT: write(INDEFINITE_MAP); break;
+                    case START_ARRAY:  write(INDEFINITE_ARRAY); break;
+                    case END_OBJECT:
+                    case END_ARRAY:    write(BREAK); break;
+                    case FIELD_NAME:   string(p.currentName()); break;
+                    case VALUE_STRING: string(p.getText()); break;
+                    case VALUE_NUMBER_INT: integer(p.getLongValue()); break;
+                    case VALUE_NUMBER_FLOAT: decimal(p.getDoubleValue()); break;
+                    case VALUE_TRUE:   write(TRUE); break;
+                    case VALUE_FALSE:  write(FALSE); break;
+                    default:           write(NULL); break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Not a JSON frame", e);
+        }
+        return Arrays.copyOf(buf, size);
+    }
+
+    /**
+     * Writes a text string, or a reference if it already appeared in this frame.
+     * Follows the stringref rule for which strings enter the table, so the
+     * decoder builds the same table without being told.
+     */
+    private void string(String s) {
+        Integer ref = refs.get(s);
+        if (ref != null) {
+            write(REF_TAG);
+            write(REF_TAG_VALUE);
+            head(MAJOR_UINT, ref);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        head(MAJOR_TEXT, utf8.length);
+        write(utf8);
+        if (utf8.length >= minReferencedLength(refs.size())) refs.put(s, refs.size());
+    }
+
+    /** Shortest string added to a table that already holds {@code n} strings. */
+    private static int minReferencedLength(int n) {
+        if (n < 24) return 3;
+        if (n < 256) return 4;
+        if (n < 65536) return 5;
+        return 7;
+    }
+
+    private void integer(long v) {
+        if (v >= 0) head(MAJOR_UINT, v);
+        else head(MAJOR_NINT, -1 - v);
+    }
+
+    private void decimal(double d) {
+        float f = (float) d;
+        if (f == d) {
+            write(FLOAT32);
+            long bits = Float.floatToIntBits(f);
+            be(bits, 4);
+        } else {
+            write(FLOAT64);
+            be(Double.doubleToLongBits(d), 8);
+        }
+    }
+
+    /** Major type + argument, in the shortest form. */
+    private void head(int major, long v) {
+        if (v < 24) {
+            write(major | (int) v);
+        } else if (v < 0x100) {
+            write(major | 24);
+            write((int) v);
+        } else if (v < 0x10000) {
+            write(major | 25);
+            be(v, 2);
+        } else if (v < 0x1_0000_0000L) {
+            write(major | 26);
+            be(v, 4);
+        } else {
+            write(major | 27);
+            be(v, 8);
+        }
+    }
+
+    private void be(long v, int bytes) {
+        ensure(bytes);
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) buf[size++] = (byte) (v >>> shift);
+    }
+
+    private void write(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + bytes));
+    }
+}
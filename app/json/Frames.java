@@ -0,0 +1,221 @@
+package app.json;
+
+import app.analytics.AnalyticsUpdate;
+import app.models.Article;
+import app.models.SourceInfo;
+
+import java.util.List;
+
+/**
+ * Builders for the WebSocket frames pushed by {@code UserActor}.
+ *
+ * <p>Each frame is written in one pass into the caller's reusable
+ * {@link JsonWriter}; only the final frame String is allocated. Articles and
+ * sources carry their own cached JSON fragment, so a batch broadcast to N
+ * sessions is encoded once and each session's frame only splices fragments.</p>
+ *
+ * <pre>
+ *   { "articles": [ ... ] }
+ *   { "articles": [ ... ], "sentiment": x }      (search reply; each article also carries its score)
+ *   { "duplicates": [ { "id": ..., "sourceCount": n }, ... ] }   (more sources for stories already shown)
+ *   { "sources":  [ ... ] }
+ *   { "sources":  [ ... ], "sourcesVersion": v }
+ *   { "sourcesDelta": { "version": v, "added": [ ... ], "positions": [ i, ... ], "removed": [ id, ... ] } }
+ *   { "batch":    [ frame, frame, ... ] }
+ *   { "throttled": "search" | "sources" }
+ *   { "analytics": { "query": ..., "articles": n, "topTerms": [...], "readability": x } }
+ *   { "session": token, "resumed": true|false, "resync": true|false }
+ * </pre>
+ *
+ * <p>Every frame except {@code session} is also stamped with the session's
+ * {@code "seq"} number (see {@link #sequenced}).</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class Frames {
+
+    private static final String BATCH_PREFIX = "{\"batch\":[";
+
+    private Frames() { }
+
+    /**
+     * Merges several frames into one {@code {"batch":[...]}} frame.
+     * A single frame is returned unchanged; nested batches are flattened.
+     *
+     * @param frames complete frames, in delivery order
+     * @return one frame carrying all of them
+     */
+    public static String batch(List<String> frames) {
+        if (frames.size() == 1) return frames.get(0);
+
+        int size = BATCH_PREFIX.length() + 2;
+        for (String f : frames) size += f.length() + 1;
+
+        StringBuilder sb = new StringBuilder(size).append(BATCH_PREFIX);
+        for (int i = 0; i < frames.size(); i++) {
+            String f = frames.get(i);
+            if (i > 0) sb.append(',');
+            if (f.startsWith(BATCH_PREFIX)) {
+                sb.append(f, BATCH_PREFIX.length(), f.length() - 2);
+            } else {
+                sb.append(f);
+            }
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Stamps a frame with its sequence number without re-serializing it.
+     *
+     * @param frame complete frame (a JSON object)
+     * @param seq   the frame's number in its session
+     * @return {@code {"seq":n, ...frame's fields}}
+     */
+    public static String sequenced(String frame, long seq) {
+        return new StringBuilder(frame.length() + 24)
+                .append("{\"seq\":").append(seq).append(',')
+                .append(frame, 1, frame.length())
+                .toString();
+    }
+
+    /**
+     * @param w       reusable writer (reset by this method)
+     * @param token   resume token of the session
+     * @param resumed whether an existing session was picked up
+     * @param resync  whether frames were lost and the browser must redraw
+     * @return {@code {"session":token,"resumed":b,"resync":b}}
+     */
+    public static String session(JsonWriter w, String token, boolean resumed, boolean resync) {
+        return w.reset().beginObject()
+                .name("session").value(token)
+                .name("resumed").value(resumed)
+                .name("resync").value(resync)
+                .endObject().toString();
+    }
+
+    /**
+     * @param w    reusable writer (reset by this method)
+     * @param list articles to push
+     * @return {@code {"articles":[...]}}
+     */
+    public static String articles(JsonWriter w, List<Article> list) {
+        return articles(w, list, null);
+    }
+
+    /**
+     * @param w         reusable writer (reset by this method)
+     * @param list      articles to push
+     * @param sentiment mean sentiment of the query's result, or null to omit
+     * @return {@code {"articles":[...],"sentiment":x}}
+     */
+    public static String articles(JsonWriter w, List<Article> list, Double sentiment) {
+        return articles(w, list, null, sentiment);
+    }
+
+    /**
+     * @param w            reusable writer (reset by this method)
+     * @param list         articles to push
+     * @param sourceCounts per article, how many sources published its story (parallel to {@code list}), or null
+     * @param sentiment    mean sentiment of the query's result, or null to omit
+     * @return {@code {"articles":[{..., "sourceCount":n}, ...],"sentiment":x}}
+     */
+    public static String articles(JsonWriter w, List<Article> list, int[] sourceCounts, Double sentiment) {
+        w.reset().beginObject().name("articles").beginArray();
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).writeJson(w, sourceCounts == null ? 1 : sourceCounts[i]);
+        }
+        w.endArray();
+        if (sentiment != null) {
+            w.name("sentiment").value(Math.round(sentiment * 1000) / 1000.0);
+        }
+        return w.endObject().toString();
+    }
+
+    /**
+     * @param w            reusable writer (reset by this method)
+     * @param ids          articles already shown whose story was published by more sources
+     * @param sourceCounts new source count of each (parallel to {@code ids})
+     * @return {@code {"duplicates":[{"id":"...","sourceCount":n}, ...]}}
+     */
+    public static String duplicates(JsonWriter w, List<String> ids, int[] sourceCounts) {
+        w.reset().beginObject().name("duplicates").beginArray();
+        for (int i = 0; i < ids.size(); i++) {
+            w.beginObject().name("id").value(ids.get(i)).name("sourceCount").value(sourceCounts[i]).endObject();
+        }
+        return w.endArray().endObject().toString();
+    }
+
+    /**
+     * @param w      reusable writer (reset by this method)
+     * @param update changed aggregates of one query (its JSON is shared)
+     * @return {@code {"analytics":{...}}}
+     */
+    public static String analytics(JsonWriter w, AnalyticsUpdate update) {
+        w.reset().beginObject().name("analytics");
+        update.writeJson(w);
+        return w.endObject().toString();
+    }
+
+    /**
+     * @param w    reusable writer (reset by this method)
+     * @param list sources to push
+     * @return {@code {"sources":[...]}}
+     */
+    public static String sources(JsonWriter w, List<SourceInfo> list) {
+        w.reset().beginObject().name("sources").beginArray();
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).writeJson(w);
+        }
+        return w.endArray().endObject().toString();
+    }
+
+    /**
+     * @param w       reusable writer (reset by this method)
+     * @param list    the session's full source list
+     * @param version its version (see {@code SentSources})
+     * @return {@code {"sources":[...],"sourcesVersion":v}}
+     */
+    public static String sources(JsonWriter w, List<SourceInfo> list, long version) {
+        w.reset().beginObject().name("sources").beginArray();
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).writeJson(w);
+        }
+        return w.endArray().name("sourcesVersion").value(version).endObject().toString();
+    }
+
+    /**
+     * @param w         reusable writer (reset by this method)
+     * @param version   version this delta produces (applies on top of {@code version - 1})
+     * @param added     sources added or changed since the previous version
+     * @param positions index of each added source in the new list (parallel to {@code added})
+     * @param removed   ids of sources no longer in the list
+     * @return {@code {"sourcesDelta":{"version":v,"added":[...],"positions":[...],"removed":[...]}}}
+     */
+    public static String sourcesDelta(JsonWriter w, long version, List<SourceInfo> added, int[] positions,
+                                      List<String> removed) {
+        w.reset().beginObject().name("sourcesDelta").beginObject()
+                .name("version").value(version)
+                .name("added").beginArray();
+        for (int i = 0; i < added.size(); i++) {
+            added.get(i).writeJson(w);
+        }
+        w.endArray().name("positions").beginArray();
+        for (int i = 0; i < positions.length; i++) {
+            w.value(positions[i]);
+        }
+        w.endArray().name("removed").beginArray();
+        for (int i = 0; i < removed.size(); i++) {
+            w.value(removed.get(i));
+        }
+        return w.endArray().endObject().endObject().toString();
+    }
+
+    /**
+     * @param w       reusable writer (reset by this method)
+     * @param request {@code search} or {@code sources}
+     * @return {@code {"throttled":"search"}}
+     */
+    public static String throttled(JsonWriter w, String request) {
+        return w.reset().beginObject().name("throttled").value(request).endObject().toString();
+    }
+}
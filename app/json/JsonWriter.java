@@ -0,0 +1,174 @@
+package app.json;
+
+/**
+ * JsonWriter
+ *
+ * Minimal, allocation-light JSON writer that appends straight into one
+ * reusable {@link StringBuilder}. Used to build every WebSocket frame
+ * (see {@code UserActor}) without per-field {@code String.format} calls or
+ * intermediate Strings.
+ *
+ * <p>Strings are escaped per RFC 8259: quote, backslash and all control
+ * characters, plus U+2028/U+2029 so frames stay valid JavaScript.
+ * A {@code null} value is written as JSON {@code null}.</p>
+ *
+ * <p>Not thread-safe: keep one instance per actor (or per thread) and call
+ * {@link #reset()} before each frame.</p>
+ *
+ * <pre>
+ *   w.reset().beginObject().name("id").value(id).endObject().toString()
+ * </pre>
+ *
+ * @author Sara Ezzati
+ */
+public final class JsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder out;
+
+    /** Whether the next member/element needs a leading comma. */
+    private boolean needComma;
+
+    /**
+     * @param initialCapacity initial buffer size in chars; the buffer grows as needed and is kept across {@link #reset()}
+     */
+    public JsonWriter(int initialCapacity) {
+        this.out = new StringBuilder(initialCapacity);
+    }
+
+    /** Clears the buffer (keeping its capacity) so the writer can build a new document. */
+    public JsonWriter reset() {
+        out.setLength(0);
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        separator();
+        out.append('{');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        out.append('}');
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separator();
+        out.append('[');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        out.append(']');
+        needComma = true;
+        return this;
+    }
+
+    /**
+     * Writes a member name. Names are compile-time constants in this code base,
+     * so they are not escaped.
+     */
+    public JsonWriter name(String name) {
+        separator();
+        out.append('"').append(name).append("\":");
+        needComma = false;
+        return this;
+    }
+
+    /** Writes an escaped string value, or {@code null}. */
+    public JsonWriter value(String s) {
+        separator();
+        if (s == null) {
+            out.append("null");
+        } else {
+            out.append('"');
+            escape(s);
+            out.append('"');
+        }
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long n) {
+        separator();
+        out.append(n);
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(double d) {
+        separator();
+        if (Double.isFinite(d)) out.append(d); else out.append("null");
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean b) {
+        separator();
+        out.append(b);
+        needComma = true;
+        return this;
+    }
+
+    /**
+     * Appends an already serialized JSON value verbatim.
+     *
+     * @param json a complete, valid JSON value
+     */
+    public JsonWriter rawValue(CharSequence json) {
+        separator();
+        out.append(json);
+        needComma = true;
+        return this;
+    }
+
+    /** @return number of chars written since the last {@link #reset()} */
+    public int length() {
+        return out.length();
+    }
+
+    /** @return the document written so far */
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    /* ------------------------------------------------------------ */
+
+    private void separator() {
+        if (needComma) out.append(',');
+    }
+
+    /** Copies runs of safe chars in bulk and escapes the rest. */
+    private void escape(String s) {
+        int start = 0;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') continue;
+
+            out.append(s, start, i);
+            switch (c) {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                default:
+                    out.append("\\u")
+                       .append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                       .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        out.append(s, start, len);
+    }
+}
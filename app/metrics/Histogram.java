@@ -0,0 +1,64 @@
+package app.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free fixed-bucket histogram, exported by {@link MetricsRegistry} in
+ * Prometheus format ({@code _bucket}, {@code _sum}, {@code _count}).
+ *
+ * <p>{@link #observe} is safe from any thread and costs one bucket search plus
+ * three adder increments, so it can sit on actor and stream hot paths.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class Histogram {
+
+    /** Upper bounds in seconds for request latencies (5 ms … 10 s). */
+    public static final double[] LATENCY_SECONDS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /** Upper bounds in bytes for WebSocket frames (256 B … 256 KiB). */
+    public static final double[] SIZE_BYTES = {256, 1024, 4096, 16384, 65536, 262144};
+
+    private final double[] bounds;
+    private final LongAdder[] buckets;
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAdder count = new LongAdder();
+
+    /** @param bounds ascending bucket upper bounds; {@code +Inf} is implicit */
+    public Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    public void observe(double value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) i++;
+        buckets[i].increment();
+        sum.add(value);
+        count.increment();
+    }
+
+    /** Records a duration measured with {@link System#nanoTime()}, in seconds. */
+    public void observeNanos(long nanos) {
+        observe(nanos / 1e9);
+    }
+
+    public long count() { return count.sum(); }
+
+    public double sum() { return sum.sum(); }
+
+    double[] bounds() { return bounds; }
+
+    /** @return cumulative counts per bound, the last entry being {@code +Inf} */
+    long[] cumulativeCounts() {
+        long[] out = new long[buckets.length];
+        long running = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            running += buckets[i].sum();
+            out[i] = running;
+        }
+        return out;
+    }
+}
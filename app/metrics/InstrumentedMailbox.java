@@ -0,0 +1,107 @@
+package app.metrics;
+
+import com.typesafe.config.Config;
+
+import org.apache.pekko.actor.ActorRef;
+import org.apache.pekko.actor.ActorSystem;
+import org.apache.pekko.dispatch.Envelope;
+import org.apache.pekko.dispatch.MailboxType;
+import org.apache.pekko.dispatch.MessageQueue;
+import org.apache.pekko.dispatch.ProducesMessageQueue;
+import org.apache.pekko.dispatch.UnboundedMessageQueueSemantics;
+
+import scala.Option;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Unbounded mailbox that keeps a live count of queued messages per actor group.
+ *
+ * <p>Pekko exposes no mailbox sizes for typed actors, so actors whose backlog
+ * matters are spawned with
+ * {@code MailboxSelector.fromConfig(InstrumentedMailbox.CONFIG_PATH)}. The group
+ * is the actor name with a trailing {@code -<number>} removed, so
+ * {@code search-worker-3} counts under {@code search-worker} and every
+ * {@code user-N} session under {@code user}.</p>
+ *
+ * <p>Pekko creates mailboxes reflectively, so the depths are kept in a static
+ * table. {@link MetricsRegistry} reads that table through
+ * {@link #depthByActor()}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class InstrumentedMailbox implements MailboxType, ProducesMessageQueue<InstrumentedMailbox.Queue> {
+
+    /** Config block declaring this mailbox type ({@code conf/application.conf}). */
+    public static final String CONFIG_PATH = "notilytics.instrumented-mailbox";
+
+    private static final Map<String, LongAdder> DEPTHS = new ConcurrentHashMap<>();
+
+    /** Called reflectively by Pekko. */
+    public InstrumentedMailbox(ActorSystem.Settings settings, Config config) {
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        String group = owner.isDefined() ? group(owner.get().path().name()) : "unknown";
+        return new Queue(DEPTHS.computeIfAbsent(group, g -> new LongAdder()));
+    }
+
+    /** @return messages waiting in instrumented mailboxes, per actor group */
+    public static Map<String, Long> depthByActor() {
+        Map<String, Long> out = new TreeMap<>();
+        DEPTHS.forEach((group, depth) -> out.put(group, depth.sum()));
+        return out;
+    }
+
+    static String group(String actorName) {
+        int i = actorName.length();
+        while (i > 0 && Character.isDigit(actorName.charAt(i - 1))) i--;
+        return i > 1 && i < actorName.length() && actorName.charAt(i - 1) == '-'
+                ? actorName.substring(0, i - 1)
+                : actorName;
+    }
+
+    /** Lock-free FIFO that mirrors its size into the group's counter. */
+    public static final class Queue implements MessageQueue, UnboundedMessageQueueSemantics {
+        private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        private final LongAdder depth;
+
+        Queue(LongAdder depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            queue.offer(handle);
+            depth.increment();
+        }
+
+        @Override
+        public Envelope dequeue() {
+            Envelope e = queue.poll();
+            if (e != null) depth.decrement();
+            return e;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            return queue.size();
+        }
+
+        @Override
+        public boolean hasMessages() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            Envelope e;
+            while ((e = dequeue()) != null) deadLetters.enqueue(owner, e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package app.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of every metric exposed on {@code GET /metrics}, in the Prometheus
+ * text exposition format (version 0.0.4).
+ *
+ * <p>The registry does not own the numbers. Components keep their own
+ * counters (the {@code Stats} objects, {@link Histogram}s), and
+ * {@link modules.Module} registers a reader for each one. Recording therefore
+ * never touches the registry, and a scrape reads the current values.</p>
+ *
+ * <p>Labels are passed as alternating name/value pairs, for example
+ * {@code counter("x_total", "help", supplier, "endpoint", "search")}.
+ * Series with the same metric name are grouped under a single HELP/TYPE
+ * header.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class MetricsRegistry {
+
+    /** Writes one or more sample lines of a family. */
+    private interface Series {
+        void write(StringBuilder out, String name);
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        final List<Series> series = new ArrayList<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /** Registers a monotonically increasing value. */
+    public MetricsRegistry counter(String name, String help, LongSupplier value, String... labels) {
+        String l = labels(labels);
+        return add(name, help, "counter", (out, n) -> sample(out, n, l, value.getAsLong()));
+    }
+
+    /** Registers a value that can go up and down. */
+    public MetricsRegistry gauge(String name, String help, DoubleSupplier value, String... labels) {
+        String l = labels(labels);
+        return add(name, help, "gauge", (out, n) -> sample(out, n, l, value.getAsDouble()));
+    }
+
+    /**
+     * Registers a gauge whose label values are only known at scrape time
+     * (e.g. one series per actor group).
+     *
+     * @param label  label name
+     * @param values label value → gauge value, read on every scrape
+     */
+    public MetricsRegistry gauges(String name, String help, String label,
+                                  Supplier<Map<String, ? extends Number>> values) {
+        return add(name, help, "gauge", (out, n) -> {
+            for (Map.Entry<String, ? extends Number> e : values.get().entrySet()) {
+                sample(out, n, labels(label, e.getKey()), e.getValue().doubleValue());
+            }
+        });
+    }
+
+    /** Registers a {@link Histogram}. */
+    public MetricsRegistry histogram(String name, String help, Histogram histogram, String... labels) {
+        return add(name, help, "histogram", (out, n) -> {
+            double[] bounds = histogram.bounds();
+            long[] counts = histogram.cumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+                String l = labels(append(labels, "le", le));
+                sample(out, n + "_bucket", l, counts[i]);
+            }
+            String l = labels(labels);
+            sample(out, n + "_sum", l, histogram.sum());
+            sample(out, n + "_count", l, counts[counts.length - 1]);
+        });
+    }
+
+    /** @return every registered metric in Prometheus text format */
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        for (Map.Entry<String, Family> e : families.entrySet()) {
+            String name = e.getKey();
+            Family f = e.getValue();
+            out.append("# HELP ").append(name).append(' ').append(f.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(f.type).append('\n');
+            for (Series s : f.series) s.write(out, name);
+        }
+        return out.toString();
+    }
+
+    private synchronized MetricsRegistry add(String name, String help, String type, Series series) {
+        Family f = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!f.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + f.type);
+        }
+        f.series.add(series);
+        return this;
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double v) {
+        if (Double.isNaN(v)) return "NaN";
+        if (Double.isInfinite(v)) return v > 0 ? "+Inf" : "-Inf";
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    private static String labels(String... pairs) {
+        if (pairs.length == 0) return "";
+        if (pairs.length % 2 != 0) throw new IllegalArgumentException("Labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(pairs[i]).append("=\"");
+            String v = pairs[i + 1];
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c == '\\' || c == '"') sb.append('\\').append(c);
+                else if (c == '\n') sb.append("\\n");
+                else sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String[] append(String[] pairs, String name, String value) {
+        String[] out = new String[pairs.length + 2];
+        System.arraycopy(pairs, 0, out, 0, pairs.length);
+        out[pairs.length] = name;
+        out[pairs.length + 1] = value;
+        return out;
+    }
+}
@@ -1,5 +1,7 @@
 package app.models;
 
+import app.json.JsonWriter;
+
 /**
  * Article model representing a single NewsAPI article.
  *
@@ -12,24 +14,72 @@ public class Article {
     public final String description;
     public final String url;
     public final String sourceName;
+    /** Lexicon sentiment in (−1, 1) set by {@code SentimentScorer}, or null if not scored. */
+    public final Float sentiment;
+
+    /**
+     * Serialized form, computed on first use and then shared by every frame
+     * that carries this article. Racy single-check, like {@code String.hash}:
+     * two threads may both compute it, but Strings are safely published.
+     */
+    private String json;
 
     public Article(String id, String title, String description, String url, String sourceName) {
+        this(id, title, description, url, sourceName, null);
+    }
+
+    private Article(String id, String title, String description, String url, String sourceName, Float sentiment) {
         this.id = id;
         this.title = title;
         this.description = description;
         this.url = url;
         this.sourceName = sourceName;
+        this.sentiment = sentiment;
+    }
+
+    /** @return a copy of this article carrying {@code score} */
+    public Article withSentiment(float score) {
+        return new Article(id, title, description, url, sourceName, score);
     }
 
-    /** Converts the article to JSON for WebSocket push. */
+    /** Converts the article to JSON for WebSocket push (encoded once, then cached). */
     public String toJson() {
-        return String.format(
-            "{\"id\":\"%s\",\"title\":\"%s\",\"description\":\"%s\",\"url\":\"%s\",\"source\":\"%s\"}",
-            id, escape(title), escape(description), url, sourceName
-        );
+        String s = json;
+        if (s == null) {
+            s = encode(new JsonWriter(256)).toString();
+            json = s;
+        }
+        return s;
+    }
+
+    /** Appends the article as a JSON object to {@code w}, splicing the cached fragment. */
+    public JsonWriter writeJson(JsonWriter w) {
+        return w.rawValue(toJson());
+    }
+
+    /**
+     * Appends the article as the representative of a near-duplicate cluster:
+     * the cached fragment plus {@code "sourceCount"} when more than one source
+     * published the story.
+     */
+    public JsonWriter writeJson(JsonWriter w, int sourceCount) {
+        if (sourceCount <= 1) return writeJson(w);
+        String s = toJson();
+        return w.rawValue(new StringBuilder(s.length() + 20)
+                .append(s, 0, s.length() - 1)
+                .append(",\"sourceCount\":").append(sourceCount).append('}'));
     }
 
-    private String escape(String s){
-        return s.replace("\"","'");
+    private JsonWriter encode(JsonWriter w) {
+        w.beginObject()
+                .name("id").value(id)
+                .name("title").value(title)
+                .name("description").value(description)
+                .name("url").value(url)
+                .name("source").value(sourceName);
+        if (sentiment != null) {
+            w.name("sentiment").value(Math.round(sentiment * 1000) / 1000.0);
+        }
+        return w.endObject();
     }
 }
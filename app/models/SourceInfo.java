@@ -1,5 +1,7 @@
 package app.models;
 
+import app.json.JsonWriter;
+
 /**
  * SourceInfo model representing a NewsAPI source.
  *
@@ -14,6 +16,9 @@ public class SourceInfo {
     public final String language;
     public final String url;
 
+    /** Serialized form, computed on first use and then shared (see {@link Article}). */
+    private String json;
+
     public SourceInfo(String id, String name, String country, String category, String language, String url) {
         this.id = id;
         this.name = name;
@@ -23,11 +28,29 @@ public class SourceInfo {
         this.url = url;
     }
 
-    /** Converts the source info to JSON for WebSocket push. */
+    /** Converts the source info to JSON for WebSocket push (encoded once, then cached). */
     public String toJson() {
-        return String.format(
-            "{\"id\":\"%s\",\"name\":\"%s\",\"country\":\"%s\",\"category\":\"%s\",\"language\":\"%s\",\"url\":\"%s\"}",
-            id, name, country, category, language, url
-        );
+        String s = json;
+        if (s == null) {
+            s = encode(new JsonWriter(192)).toString();
+            json = s;
+        }
+        return s;
+    }
+
+    /** Appends the source as a JSON object to {@code w}, splicing the cached fragment. */
+    public JsonWriter writeJson(JsonWriter w) {
+        return w.rawValue(toJson());
+    }
+
+    private JsonWriter encode(JsonWriter w) {
+        return w.beginObject()
+                .name("id").value(id)
+                .name("name").value(name)
+                .name("country").value(country)
+                .name("category").value(category)
+                .name("language").value(language)
+                .name("url").value(url)
+                .endObject();
     }
 }
@@ -2,51 +2,368 @@ package modules;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.TypeLiteral;
+import com.typesafe.config.Config;
 
 import org.apache.pekko.actor.typed.ActorRef;
 import org.apache.pekko.actor.typed.ActorSystem;
+import org.apache.pekko.actor.typed.DispatcherSelector;
+import org.apache.pekko.actor.typed.MailboxSelector;
+import org.apache.pekko.actor.typed.Props;
 import org.apache.pekko.actor.typed.javadsl.Behaviors;
+import org.apache.pekko.cluster.sharding.typed.javadsl.ClusterSharding;
+import org.apache.pekko.cluster.sharding.typed.javadsl.Entity;
 
+import actors.SessionRegistry;
+import app.actors.FeedRegistryActor;
+import app.actors.HashRoutedPool;
 import app.actors.SupervisorActor;
 import app.actors.SearchActor;
 import app.actors.ResourceNewsActor;
+import app.actors.QueryFeedEntity;
+import app.actors.ShardedFeedRegistryActor;
+import app.analytics.SentimentScorer;
+import app.index.ArticleIndex;
+import app.metrics.InstrumentedMailbox;
+import app.metrics.MetricsRegistry;
+import app.models.Article;
+import app.models.SourceInfo;
+import app.services.BoundedTtlCache;
+import app.services.BreakerNewsApiService;
+import app.services.CachingNewsApiService;
+import app.services.EndpointBreaker;
+import app.services.FakeNewsApiService;
+import app.services.HttpNewsApiService;
+import app.services.InstrumentedNewsApiService;
 import app.services.NewsApiService;
+import app.services.OutboundStats;
+import app.services.PersistingNewsApiService;
+import app.services.RateLimitedNewsApiService;
+import app.services.SessionOutbound;
+import app.services.SourceCatalog;
+import app.services.SourceCatalogRefresher;
+import app.store.ArticleStore;
+import app.store.ArticleStoreLifecycle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import play.Environment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Clean D2-only Guice Module
  * Wires only the reactive actors required for Delivery 2:
  *  - SupervisorActor
- *  - SearchActor
- *  - ResourceNewsActor
+ *  - SearchActor (consistent-hashed pool)
+ *  - FeedRegistryActor (or, with notilytics.cluster.enabled, ShardedFeedRegistryActor
+ *    over cluster-sharded QueryFeedEntity feeds)
+ *  - ResourceNewsActor (consistent-hashed pool)
  *
  * Author: Sara Ezzati
  */
 public class Module extends AbstractModule {
 
+    private static final Logger logger = LoggerFactory.getLogger("application");
+
+    private final Config config;
+
+    /**
+     * Play instantiates Guice modules with the environment and configuration.
+     *
+     * @param environment Play environment (unused)
+     * @param config      application configuration ({@code newsapi} block)
+     */
+    public Module(Environment environment, Config config) {
+        this.config = config;
+    }
+
     @Override
     protected void configure() {
 
-        // --- Root Actor System ---
-        ActorSystem<SupervisorActor.Command> system =
-                ActorSystem.create(SupervisorActor.create(), "notilytics-reactive-system");
+        // --- Root Actor System (a cluster node when notilytics.cluster.enabled) ---
+        boolean clustered = config.getBoolean("notilytics.cluster.enabled");
+        ActorSystem<SupervisorActor.Command> system = clustered
+                ? ActorSystem.create(SupervisorActor.create(), "notilytics-reactive-system",
+                        config.getConfig("notilytics.cluster").withOnlyPath("pekko").withFallback(config))
+                : ActorSystem.create(SupervisorActor.create(), "notilytics-reactive-system", config);
+
+        // --- Bulkhead for NewsAPI work, separate from the session dispatcher ---
+        DispatcherSelector upstreamDispatcher = DispatcherSelector.fromConfig("notilytics.upstream-dispatcher");
+        Executor upstreamCallbacks = system.dispatchers().lookup(upstreamDispatcher);
+        Props upstreamProps = MailboxSelector.fromConfig(InstrumentedMailbox.CONFIG_PATH)
+                .withDispatcherFromConfig("notilytics.upstream-dispatcher");
+
+        // --- Services (Real Implementation behind the rate limiter and result cache) ---
+        NewsApiService client = "fake".equals(config.getString("newsapi.mode"))
+                ? new FakeNewsApiService(FakeNewsApiService.Settings.fromConfig(config))
+                : new HttpNewsApiService(HttpNewsApiService.Settings.fromConfig(config));
+        InstrumentedNewsApiService instrumentedClient = new InstrumentedNewsApiService(client);
+
+        // --- One circuit breaker per NewsAPI endpoint, below the rate limiter so only upstream time counts ---
+        EndpointBreaker.Settings breakerSettings = EndpointBreaker.Settings.fromConfig(config);
+        EndpointBreaker searchBreaker =
+                new EndpointBreaker("search", system.classicSystem().scheduler(), breakerSettings);
+        EndpointBreaker sourcesBreaker =
+                new EndpointBreaker("sources", system.classicSystem().scheduler(), breakerSettings);
 
-        // --- Services (Real Implementation) ---
-        NewsApiService newsApiService = new NewsApiService();
+        RateLimitedNewsApiService upstream = new RateLimitedNewsApiService(
+                new BreakerNewsApiService(instrumentedClient, searchBreaker, sourcesBreaker),
+                RateLimitedNewsApiService.Settings.fromConfig(config),
+                upstreamCallbacks
+        );
+
+        // --- Local store of fetched results, replayed below for a warm start ---
+        ArticleStore store = config.getBoolean("notilytics.store.enabled")
+                ? new ArticleStore(ArticleStore.Settings.fromConfig(config))
+                : null;
+        NewsApiService recorded = store == null ? upstream : new PersistingNewsApiService(upstream, store);
+
+        CachingNewsApiService newsApiService = new CachingNewsApiService(
+                recorded,
+                config.getInt("newsapi.cacheMaxEntries"),
+                config.getLong("newsapi.cacheTtlSeconds"),
+                config.getLong("newsapi.cacheStaleSeconds")
+        );
+
+        SourceCatalogRefresher sourceCatalog = new SourceCatalogRefresher(recorded);
+        ArticleIndex articleIndex = new ArticleIndex(ArticleIndex.Settings.fromConfig(config));
+
+        // --- Warm start: replay recent results into the cache, the index and the source catalog ---
+        if (store != null) {
+            long since = System.currentTimeMillis() - config.getDuration("notilytics.store.replayWindow").toMillis();
+            int replayed = store.replay(since, new ArticleStore.Replay() {
+                @Override
+                public void articles(String query, List<Article> articles, long writtenAtMillis) {
+                    newsApiService.primeArticles(query, articles, writtenAtMillis);
+                    articleIndex.addAll(articles, writtenAtMillis);
+                }
+
+                @Override
+                public void sources(String country, String category, String language, List<SourceInfo> sources,
+                                    long writtenAtMillis) {
+                    newsApiService.primeSources(country, category, language, sources, writtenAtMillis);
+                    if (country.isEmpty() && category.isEmpty() && language.isEmpty()) {
+                        sourceCatalog.prime(sources, writtenAtMillis);
+                    }
+                }
+            });
+            logger.info("Replayed {} stored NewsAPI result(s)", replayed);
+
+            Duration compactInterval = config.getDuration("notilytics.store.compactInterval");
+            system.classicSystem().scheduler().scheduleAtFixedRate(
+                    compactInterval, compactInterval, store::compact, system.executionContext());
+            bind(ArticleStore.class).toInstance(store);
+            bind(ArticleStoreLifecycle.class).asEagerSingleton();
+        }
+
+        // --- Source catalog: refreshed now (or when the replayed one is due), then periodically ---
+        Duration catalogRefresh = config.getDuration("newsapi.sourcesRefreshInterval");
+        SourceCatalog replayedCatalog = sourceCatalog.current();
+        Duration firstRefresh = replayedCatalog == null
+                ? Duration.ZERO
+                : Duration.ofMillis(Math.max(0, replayedCatalog.loadedAtMillis() + catalogRefresh.toMillis()
+                        - System.currentTimeMillis()));
+        system.classicSystem().scheduler().scheduleAtFixedRate(
+                firstRefresh, catalogRefresh, sourceCatalog::refresh, system.executionContext());
 
         // --- Child Actors registered under Supervisor ---
 
+        // search-actor and resource-actor are consistent-hashed worker pools;
+        // workers share the counters and the endpoint breaker, and restart in place on failure.
+        SearchActor.Stats searchStats = new SearchActor.Stats();
+        SentimentScorer sentimentScorer = new SentimentScorer(
+                config.getInt("notilytics.sentiment.parallelism"),
+                config.getInt("notilytics.sentiment.memoEntries")
+        );
+        HashRoutedPool.Stats searchPoolStats = new HashRoutedPool.Stats("search");
+
         ActorRef<SearchActor.Command> searchActor =
                 system.systemActorOf(
-                        SearchActor.create(newsApiService),
-                        "search-actor"
+                        HashRoutedPool.create(
+                                "search-worker",
+                                SupervisorActor.supervise(SearchActor.create(newsApiService, searchStats,
+                                        searchBreaker, sentimentScorer, articleIndex)),
+                                SearchActor::routingKey,
+                                SearchActor.Drain.INSTANCE,
+                                HashRoutedPool.Settings.fromConfig(config, "search"),
+                                searchPoolStats
+                        ),
+                        "search-actor",
+                        upstreamProps
                 );
 
+        // Live feeds poll upstream directly: the cache would hide new articles for a whole TTL.
+        FeedRegistryActor.Stats feedStats = new FeedRegistryActor.Stats();
+
+        Duration pollInterval = Duration.ofSeconds(config.getLong("newsapi.pollIntervalSeconds"));
+        ActorRef<FeedRegistryActor.Command> feedRegistry;
+        if (clustered) {
+            // One feed per query across the cluster; every node fans it out to its own sessions.
+            Duration leaseInterval = config.getDuration("notilytics.cluster.leaseInterval");
+            Duration leaseTimeout = config.getDuration("notilytics.cluster.leaseTimeout");
+            ClusterSharding sharding = ClusterSharding.get(system);
+            sharding.init(Entity.of(QueryFeedEntity.TYPE_KEY, entity -> QueryFeedEntity.create(
+                    entity.getEntityId(), entity.getShard(), recorded, pollInterval,
+                    leaseInterval, leaseTimeout, feedStats)));
+            feedRegistry = system.systemActorOf(
+                    ShardedFeedRegistryActor.create(sharding, leaseInterval, leaseTimeout, feedStats),
+                    "feed-registry", Props.empty());
+        } else {
+            feedRegistry = system.systemActorOf(
+                    FeedRegistryActor.create(recorded, pollInterval, feedStats), "feed-registry", Props.empty());
+        }
+
+        HashRoutedPool.Stats resourcePoolStats = new HashRoutedPool.Stats("resource");
+
         ActorRef<ResourceNewsActor.Command> resourceActor =
                 system.systemActorOf(
-                        ResourceNewsActor.create(newsApiService),
-                        "resource-actor"
+                        HashRoutedPool.create(
+                                "resource-worker",
+                                SupervisorActor.supervise(
+                                        ResourceNewsActor.create(newsApiService, sourcesBreaker, sourceCatalog)),
+                                ResourceNewsActor::routingKey,
+                                ResourceNewsActor.Drain.INSTANCE,
+                                HashRoutedPool.Settings.fromConfig(config, "resource"),
+                                resourcePoolStats
+                        ),
+                        "resource-actor",
+                        upstreamProps
                 );
 
+        OutboundStats outboundStats = new OutboundStats();
+        SessionRegistry sessions = new SessionRegistry(SessionRegistry.Settings.fromConfig(config));
+
+        // --- Metrics (GET /metrics); the registry only reads the shared Stats objects ---
+        MetricsRegistry metrics = new MetricsRegistry()
+                .gauge("notilytics_sessions", "Open WebSocket sessions", outboundStats::sessions)
+                .gauge("notilytics_outbound_queue_depth_max", "Deepest outbound queue across sessions",
+                        outboundStats::maxDepth)
+                .gauge("notilytics_outbound_queued", "Frames queued across all WebSocket sessions",
+                        outboundStats::totalDepth)
+                .counter("notilytics_ws_frames_total", "Frames written to WebSockets", outboundStats::framesSent)
+                .histogram("notilytics_ws_frame_bytes", "Encoded size of WebSocket frames (UTF-8 text or CBOR)",
+                        outboundStats.frameBytes())
+                .counter("notilytics_outbound_dropped_total", "Frames dropped by drop-oldest", outboundStats::dropped)
+                .counter("notilytics_outbound_conflated_total", "Frames merged by conflate", outboundStats::conflated)
+                .counter("notilytics_outbound_disconnected_total", "Sessions closed as slow consumers",
+                        outboundStats::disconnected)
+                .counter("notilytics_articles_pushed_total", "Articles sent to browsers", outboundStats::articlesPushed)
+                .counter("notilytics_articles_deduped_total", "Articles suppressed as already seen by the session",
+                        outboundStats::articlesDeduped)
+                .counter("notilytics_articles_collapsed_total",
+                        "Articles folded into a near-duplicate story the session already shows",
+                        outboundStats::articlesCollapsed)
+                .histogram("notilytics_search_seconds", "Browser search to final result frame",
+                        outboundStats.searchLatency())
+                .histogram("notilytics_search_preview_seconds", "Browser search to preview frame from the local index",
+                        outboundStats.previewLatency())
+                .counter("notilytics_source_lists_total", "Source lists sent in full", outboundStats::sourceLists)
+                .counter("notilytics_source_deltas_total", "Source lists sent as added/removed",
+                        outboundStats::sourceDeltas)
+                .gauge("notilytics_resumable_sessions", "Sessions attached or within their grace period",
+                        sessions::size)
+                .counter("notilytics_session_resumes_total", "Reconnects that resumed a session", sessions::resumes)
+                .counter("notilytics_session_resyncs_total", "Resumes whose missed frames were no longer buffered",
+                        sessions::resyncs)
+                .counter("notilytics_session_expired_total", "Sessions stopped after their grace period",
+                        sessions::expirations)
+                .counter("notilytics_session_replayed_frames_total", "Frames replayed to reconnecting browsers",
+                        sessions::replayedFrames)
+                .gauge("notilytics_session_replay_bytes", "Characters kept by all session replay rings",
+                        sessions::replayBytes)
+                .gauge("notilytics_session_replay_budget_bytes", "Limit on characters kept by all replay rings",
+                        () -> sessions.settings().replayBudget)
+                .counter("notilytics_session_replay_evictions_total", "Replay rings evicted to stay within the budget",
+                        sessions::evictedRings)
+                .gauges("notilytics_mailbox_depth", "Messages queued in actor mailboxes", "actor",
+                        InstrumentedMailbox::depthByActor)
+                .counter("notilytics_search_issued_total", "Searches that called NewsAPI", searchStats::issued)
+                .counter("notilytics_search_coalesced_total", "Searches that joined an identical call in flight",
+                        searchStats::coalesced)
+                .counter("notilytics_sentiment_scored_total", "Articles scored for sentiment",
+                        sentimentScorer::scored)
+                .counter("notilytics_sentiment_memo_hits_total", "Article sentiment answered from the memo",
+                        sentimentScorer::memoHits)
+                .gauge("notilytics_index_documents", "Articles in the local search index", articleIndex::documents)
+                .gauge("notilytics_index_posting_bytes", "Bytes of encoded posting lists", articleIndex::postingBytes)
+                .counter("notilytics_index_searches_total", "Searches run against the local index",
+                        articleIndex::searches)
+                .counter("notilytics_index_hits_total", "Local index searches that found articles",
+                        articleIndex::hits)
+                .counter("notilytics_index_evicted_segments_total", "Index segments dropped early at maxDocuments",
+                        articleIndex::evictedSegments)
+                .gauge("notilytics_source_catalog_size", "Sources in the local catalog", sourceCatalog::size)
+                .counter("notilytics_source_catalog_refreshes_total", "Successful source catalog refreshes",
+                        sourceCatalog::refreshes)
+                .counter("notilytics_source_catalog_failures_total", "Failed source catalog refreshes",
+                        sourceCatalog::failures)
+                .counter("notilytics_source_catalog_served_total", "Source requests answered from the catalog",
+                        sourceCatalog::served)
+                .gauge("notilytics_feeds", "Live query feeds", feedStats::feeds)
+                .gauge("notilytics_feed_subscriptions", "Session subscriptions to live feeds", feedStats::subscriptions)
+                .counter("notilytics_ratelimit_issued_total", "NewsAPI calls released by the rate limiter",
+                        () -> upstream.stats().issued())
+                .counter("notilytics_ratelimit_delayed_total", "NewsAPI calls that waited for a token",
+                        () -> upstream.stats().delayed())
+                .counter("notilytics_ratelimit_throttled_total", "NewsAPI calls rejected with a full queue",
+                        () -> upstream.stats().throttled())
+                .counter("notilytics_ratelimit_expired_total", "Queued NewsAPI calls failed after maxWait",
+                        () -> upstream.stats().expired())
+                .gauge("notilytics_ratelimit_queued", "NewsAPI calls waiting for a token", upstream::queued);
+
+        for (String endpoint : List.of("search", "sources")) {
+            metrics.histogram("notilytics_newsapi_request_seconds", "NewsAPI response time",
+                            instrumentedClient.latency(endpoint), "endpoint", endpoint)
+                    .counter("notilytics_newsapi_errors_total", "Failed NewsAPI calls",
+                            () -> instrumentedClient.errors(endpoint), "endpoint", endpoint);
+        }
+        for (EndpointBreaker b : List.of(searchBreaker, sourcesBreaker)) {
+            metrics.gauge("notilytics_breaker_state", "Circuit breaker state (0 closed, 1 open, 2 half-open)",
+                            () -> b.state().ordinal(), "endpoint", b.endpoint())
+                    .counter("notilytics_breaker_opened_total", "Times the breaker opened", b::opened,
+                            "endpoint", b.endpoint())
+                    .counter("notilytics_breaker_rejected_total", "Calls rejected by an open breaker", b::rejected,
+                            "endpoint", b.endpoint())
+                    .counter("notilytics_breaker_fallbacks_total", "Failures answered from the last good result",
+                            b::fallbacks, "endpoint", b.endpoint());
+        }
+        for (HashRoutedPool.Stats pool : List.of(searchPoolStats, resourcePoolStats)) {
+            metrics.gauge("notilytics_pool_workers", "Workers in an actor pool", pool::workers, "pool", pool.pool())
+                    .counter("notilytics_pool_routed_total", "Messages routed by an actor pool", pool::routed,
+                            "pool", pool.pool());
+        }
+        for (String tier : List.of("articles", "sources")) {
+            Supplier<BoundedTtlCache.Stats> cache = "articles".equals(tier)
+                    ? newsApiService::articleStats
+                    : newsApiService::sourceStats;
+            metrics.counter("notilytics_cache_hits_total", "Lookups answered with a fresh cached result",
+                            () -> cache.get().hits, "tier", tier)
+                    .counter("notilytics_cache_stale_hits_total", "Lookups answered stale while refreshing",
+                            () -> cache.get().staleHits, "tier", tier)
+                    .counter("notilytics_cache_misses_total", "Lookups that had to call NewsAPI",
+                            () -> cache.get().misses, "tier", tier)
+                    .counter("notilytics_cache_evictions_total", "Entries evicted to stay within cacheMaxEntries",
+                            () -> cache.get().evictions, "tier", tier)
+                    .gauge("notilytics_cache_hit_ratio", "Result cache hit ratio",
+                            () -> cache.get().hitRatio(), "tier", tier)
+                    .gauge("notilytics_cache_entries", "Entries in the result cache",
+                            () -> cache.get().size, "tier", tier);
+        }
+        if (store != null) {
+            metrics.counter("notilytics_store_records_total", "Results appended to the article store",
+                            store::appended)
+                    .counter("notilytics_store_bytes_total", "Bytes appended to the article store",
+                            store::appendedBytes)
+                    .counter("notilytics_store_write_failures_total", "Appends that failed to reach the disk",
+                            store::writeFailures)
+                    .counter("notilytics_store_compactions_total", "Article store compactions", store::compactions)
+                    .gauge("notilytics_store_disk_bytes", "Size of the article store segments", store::diskBytes);
+        }
+
         // --- Bindings for Dependency Injection ---
 
         bind(new TypeLiteral<ActorSystem<SupervisorActor.Command>>() {})
@@ -58,6 +375,37 @@ public class Module extends AbstractModule {
         bind(new TypeLiteral<ActorRef<ResourceNewsActor.Command>>() {})
                 .toInstance(resourceActor);
 
+        bind(SearchActor.Stats.class).toInstance(searchStats);
+
+        bind(SentimentScorer.class).toInstance(sentimentScorer);
+
+        bind(ArticleIndex.class).toInstance(articleIndex);
+
+        bind(SourceCatalogRefresher.class).toInstance(sourceCatalog);
+
+        bind(new TypeLiteral<List<HashRoutedPool.Stats>>() {})
+                .toInstance(List.of(searchPoolStats, resourcePoolStats));
+
         bind(NewsApiService.class).toInstance(newsApiService);
+
+        bind(CachingNewsApiService.class).toInstance(newsApiService);
+
+        bind(RateLimitedNewsApiService.class).toInstance(upstream);
+
+        bind(new TypeLiteral<List<EndpointBreaker>>() {})
+                .toInstance(List.of(searchBreaker, sourcesBreaker));
+
+        bind(new TypeLiteral<ActorRef<FeedRegistryActor.Command>>() {})
+                .toInstance(feedRegistry);
+
+        bind(FeedRegistryActor.Stats.class).toInstance(feedStats);
+
+        bind(SessionOutbound.Settings.class).toInstance(SessionOutbound.Settings.fromConfig(config));
+
+        bind(OutboundStats.class).toInstance(outboundStats);
+
+        bind(SessionRegistry.class).toInstance(sessions);
+
+        bind(MetricsRegistry.class).toInstance(metrics);
     }
 }
@@ -0,0 +1,207 @@
+package app.services;
+
+import app.analytics.AnalyticsUpdate;
+import app.analytics.QueryAnalytics;
+import app.dedup.LongHashSeenIds;
+import app.dedup.SeenIds;
+import app.models.Article;
+
+import org.apache.pekko.Done;
+import org.apache.pekko.NotUsed;
+import org.apache.pekko.japi.Pair;
+import org.apache.pekko.stream.KillSwitches;
+import org.apache.pekko.stream.Materializer;
+import org.apache.pekko.stream.RestartSettings;
+import org.apache.pekko.stream.UniqueKillSwitch;
+import org.apache.pekko.stream.javadsl.BroadcastHub;
+import org.apache.pekko.stream.javadsl.Keep;
+import org.apache.pekko.stream.javadsl.RestartSource;
+import org.apache.pekko.stream.javadsl.Source;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ArticleFeed
+ *
+ * A live, shared polling pipeline for one normalized query.
+ *
+ * <p>The feed is a Pekko Streams graph that is materialized once and then
+ * shared by every subscriber through a {@link BroadcastHub}:</p>
+ * <pre>
+ *   tick(interval) → searchArticles(query) → drop already-emitted ids → analytics → killSwitch → BroadcastHub
+ * </pre>
+ *
+ * <p>Only articles that the feed has not emitted before leave the hub, so each
+ * element is an incremental batch. A failed poll yields an empty batch and the
+ * feed keeps running; any other failure of the polling stages restarts them
+ * with a backoff (the emitted ids and analytics are kept), so the hub itself
+ * only completes through {@link #shutdown()}, which stops polling and
+ * completes every subscriber. {@link #terminated()} tells the owner if the
+ * hub's upstream ends anyway.</p>
+ *
+ * <p>The analytics stage folds each batch into the query's
+ * {@link QueryAnalytics} once, however many sessions watch the feed, and
+ * attaches the changed aggregates to the batch.</p>
+ *
+ * <p>The hub only carries batches emitted after a subscriber attached, so the
+ * feed also keeps its {@code RECENT_ARTICLES} newest articles for
+ * {@link #recentArticles()}: a session joining a running feed is sent those
+ * along with the analytics snapshot.</p>
+ *
+ * <p>INPUT:</p>
+ * <ul>
+ *   <li>{@code query} – normalized query polled on every tick</li>
+ * </ul>
+ *
+ * <p>OUTPUT:</p>
+ * <ul>
+ *   <li>{@link #source()} – hub source of {@link Batch}es: new articles plus changed analytics</li>
+ *   <li>{@link #recentArticles()} – newest articles emitted so far, for a late subscriber</li>
+ * </ul>
+ *
+ * @author Sara Ezzati
+ */
+public final class ArticleFeed {
+
+    /** Subscribers may lag this many batches behind the fastest one. */
+    private static final int HUB_BUFFER_SIZE = 16;
+
+    /** Ids remembered per feed; a query rarely has more than a few hundred live articles. */
+    private static final int EMITTED_IDS_CAPACITY = 4096;
+
+    /** Newest articles replayed to a subscriber joining a running feed. */
+    private static final int RECENT_ARTICLES = 100;
+
+    /** Longest pause between two restarts of failed polling stages. */
+    private static final Duration MAX_RESTART_BACKOFF = Duration.ofMinutes(5);
+
+    /**
+     * One element of the feed: a non-empty batch of new articles and the
+     * aggregates it changed.
+     */
+    public static final class Batch {
+        public final List<Article> articles;
+        public final AnalyticsUpdate analytics;
+
+        Batch(List<Article> articles, AnalyticsUpdate analytics) {
+            this.articles = articles;
+            this.analytics = analytics;
+        }
+    }
+
+    private final String query;
+    private final QueryAnalytics analytics;
+    private final UniqueKillSwitch killSwitch;
+    private final CompletionStage<Done> terminated;
+    private final Source<Batch, NotUsed> source;
+    /** Written by the stream, read by subscribing actors; replaced, never mutated. */
+    private final AtomicReference<List<Article>> recent;
+
+    private ArticleFeed(String query, QueryAnalytics analytics, AtomicReference<List<Article>> recent,
+                        UniqueKillSwitch killSwitch, CompletionStage<Done> terminated,
+                        Source<Batch, NotUsed> source) {
+        this.query = query;
+        this.analytics = analytics;
+        this.recent = recent;
+        this.killSwitch = killSwitch;
+        this.terminated = terminated;
+        this.source = source;
+    }
+
+    /**
+     * Materializes the polling pipeline for a query.
+     *
+     * <p>The first poll happens after one interval: subscribers are expected to
+     * fetch their initial snapshot through {@code SearchActor}. After a
+     * restart the next poll again comes one interval later.</p>
+     *
+     * @param query        normalized query to poll
+     * @param api          NewsAPI client used for polling
+     * @param interval     delay between two polls
+     * @param materializer materializer running the pipeline
+     * @return the running feed
+     */
+    public static ArticleFeed start(String query, NewsApiService api, Duration interval, Materializer materializer) {
+        QueryAnalytics analytics = new QueryAnalytics(query);
+        AtomicReference<List<Article>> recent = new AtomicReference<>(List.of());
+        // outlives restarts; only one materialization of the polling stages runs at a time
+        SeenIds emitted = new LongHashSeenIds(EMITTED_IDS_CAPACITY);
+
+        Source<Batch, NotUsed> polling = RestartSource.withBackoff(
+                RestartSettings.create(interval, max(interval, MAX_RESTART_BACKOFF), 0.2),
+                () -> Source.tick(interval, interval, query)
+                        .mapAsync(1, q -> api.searchArticles(q, NewsApiService.Priority.BACKGROUND)
+                                .exceptionally(err -> List.of()))
+                        .mapConcat(batch -> {
+                            List<Article> fresh = new ArrayList<>();
+                            for (Article a : batch) {
+                                if (emitted.add(a.id)) fresh.add(a);
+                            }
+                            return fresh.isEmpty() ? List.<List<Article>>of() : List.of(fresh);
+                        })
+                        .map(fresh -> {
+                            recent.set(remember(recent.get(), fresh));
+                            return new Batch(fresh, analytics.update(fresh));
+                        }));
+
+        Pair<Pair<UniqueKillSwitch, CompletionStage<Done>>, Source<Batch, NotUsed>> running =
+                polling
+                        .viaMat(KillSwitches.single(), Keep.right())
+                        .watchTermination(Keep.both())
+                        .toMat(BroadcastHub.of(Batch.class, HUB_BUFFER_SIZE), Keep.both())
+                        .run(materializer);
+
+        return new ArticleFeed(query, analytics, recent, running.first().first(), running.first().second(),
+                running.second());
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /** @return the newest {@code RECENT_ARTICLES} of {@code previous} followed by {@code fresh} */
+    private static List<Article> remember(List<Article> previous, List<Article> fresh) {
+        int keep = Math.min(previous.size(), Math.max(0, RECENT_ARTICLES - fresh.size()));
+        List<Article> next = new ArrayList<>(keep + Math.min(fresh.size(), RECENT_ARTICLES));
+        next.addAll(previous.subList(previous.size() - keep, previous.size()));
+        next.addAll(fresh.subList(Math.max(0, fresh.size() - RECENT_ARTICLES), fresh.size()));
+        return List.copyOf(next);
+    }
+
+    /** @return the normalized query this feed polls */
+    public String query() {
+        return query;
+    }
+
+    /** @return a source of new-article batches; may be materialized any number of times */
+    public Source<Batch, NotUsed> source() {
+        return source;
+    }
+
+    /** @return up to {@code RECENT_ARTICLES} newest articles the feed has emitted, oldest first */
+    public List<Article> recentArticles() {
+        return recent.get();
+    }
+
+    /** @return every aggregate of the query so far (for a late subscriber), or null if none yet */
+    public AnalyticsUpdate analyticsSnapshot() {
+        return analytics.snapshot();
+    }
+
+    /**
+     * @return completes once the hub's upstream has ended: normally after
+     *         {@link #shutdown()}, exceptionally if the feed failed on its own
+     */
+    public CompletionStage<Done> terminated() {
+        return terminated;
+    }
+
+    /** Stops polling and completes all subscribers. */
+    public void shutdown() {
+        killSwitch.shutdown();
+    }
+}
@@ -0,0 +1,179 @@
+package app.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, in-heap LRU cache with a time-to-live and a stale window.
+ *
+ * <p>Entries are kept in access order and the least recently used entry is
+ * evicted once {@code maxEntries} is exceeded. Each lookup classifies the
+ * entry by age:</p>
+ * <ul>
+ *   <li>{@code age <= ttl}              – {@link Freshness#FRESH}</li>
+ *   <li>{@code ttl < age <= ttl+stale} – {@link Freshness#STALE} (still served, caller should refresh)</li>
+ *   <li>{@code age > ttl+stale}        – expired, removed and reported as a miss</li>
+ * </ul>
+ *
+ * <p>All operations are O(1) and guarded by the instance monitor; the
+ * critical sections are tiny, so this is cheaper than a concurrent map for
+ * the entry counts we use.</p>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Sara Ezzati
+ */
+public final class BoundedTtlCache<K, V> {
+
+    /** Age classification of a cached value. */
+    public enum Freshness { FRESH, STALE }
+
+    /**
+     * A cached value together with its age classification at lookup time.
+     *
+     * @param <V> value type
+     */
+    public static final class Hit<V> {
+        public final V value;
+        public final Freshness freshness;
+
+        Hit(V value, Freshness freshness) {
+            this.value = value;
+            this.freshness = freshness;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the cache counters.
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long staleHits;
+        public final long misses;
+        public final long evictions;
+        public final int size;
+
+        Stats(long hits, long staleHits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        /** @return fraction of lookups answered from the cache (fresh or stale) */
+        public double hitRatio() {
+            long lookups = hits + staleHits + misses;
+            return lookups == 0 ? 0.0 : (double) (hits + staleHits) / lookups;
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long writtenAt;
+
+        Entry(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries  upper bound on the number of cached keys
+     * @param ttlMillis   age up to which an entry is fresh
+     * @param staleMillis additional age during which an entry is served stale
+     */
+    public BoundedTtlCache(int maxEntries, long ttlMillis, long staleMillis) {
+        this(maxEntries, ttlMillis, staleMillis, System::currentTimeMillis);
+    }
+
+    BoundedTtlCache(int maxEntries, long ttlMillis, long staleMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = staleMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up a key and records a hit, stale hit or miss.
+     *
+     * @param key cache key
+     * @return the cached value with its freshness, or {@code null} on a miss
+     */
+    public Hit<V> get(K key) {
+        long now = clock.getAsLong();
+        Entry<V> e;
+        synchronized (this) {
+            e = entries.get(key);
+            if (e != null && now - e.writtenAt > ttlMillis + staleMillis) {
+                entries.remove(key);
+                e = null;
+            }
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        if (now - e.writtenAt <= ttlMillis) {
+            hits.increment();
+            return new Hit<>(e.value, Freshness.FRESH);
+        }
+        staleHits.increment();
+        return new Hit<>(e.value, Freshness.STALE);
+    }
+
+    /**
+     * Stores (or replaces) a value, stamping it with the current time.
+     *
+     * @param key   cache key
+     * @param value value to cache
+     */
+    public void put(K key, V value) {
+        put(key, value, clock.getAsLong());
+    }
+
+    /**
+     * Stores (or replaces) a value fetched earlier, so it ages from when it
+     * was fetched (used when replaying persisted results).
+     *
+     * @param key           cache key
+     * @param value         value to cache
+     * @param writtenAtMillis when the value was fetched
+     */
+    public void put(K key, V value, long writtenAtMillis) {
+        Entry<V> e = new Entry<>(value, writtenAtMillis);
+        synchronized (this) {
+            entries.put(key, e);
+        }
+    }
+
+    /** @return a snapshot of the hit, miss and eviction counters */
+    public Stats stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), staleHits.sum(), misses.sum(), evictions.sum(), size);
+    }
+}
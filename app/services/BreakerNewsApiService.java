@@ -0,0 +1,57 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Runs every NewsAPI call through its endpoint's {@link EndpointBreaker}.
+ *
+ * <p>Sits on the HTTP client, underneath {@link RateLimitedNewsApiService}, so
+ * the breaker's {@code callTimeout} and failure count only cover the time
+ * NewsAPI takes to answer. Time spent waiting for a token does not count, and
+ * a burst of queued searches cannot open the breaker while NewsAPI is
+ * healthy.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class BreakerNewsApiService implements NewsApiService {
+
+    private final NewsApiService delegate;
+    private final EndpointBreaker search;
+    private final EndpointBreaker sources;
+
+    /**
+     * @param delegate NewsAPI client
+     * @param search   breaker of the {@code search} endpoint
+     * @param sources  breaker of the {@code sources} endpoint
+     */
+    public BreakerNewsApiService(NewsApiService delegate, EndpointBreaker search, EndpointBreaker sources) {
+        this.delegate = delegate;
+        this.search = search;
+        this.sources = sources;
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        return searchArticles(query, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        return getSources(country, category, language, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query, Priority priority) {
+        return search.call(() -> delegate.searchArticles(query, priority));
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language,
+                                                        Priority priority) {
+        return sources.call(() -> delegate.getSources(country, category, language, priority));
+    }
+}
@@ -0,0 +1,154 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caching decorator around a {@link NewsApiService}.
+ *
+ * <p>Results are kept in two bounded {@link BoundedTtlCache} tiers:</p>
+ * <ul>
+ *   <li>articles, keyed on the query string</li>
+ *   <li>sources, keyed on {@code (country, category, language)}</li>
+ * </ul>
+ *
+ * <p>A fresh entry is returned immediately. A stale entry is also returned
+ * immediately, while a single background refresh per key re-populates it
+ * (stale-while-revalidate). Only a miss waits on the upstream call; it keeps
+ * the caller's {@link NewsApiService.Priority}, while revalidation always runs
+ * as {@code BACKGROUND}. Failures are never cached.</p>
+ *
+ * <p>Bound in {@link modules.Module}, so {@code SearchActor} and
+ * {@code ResourceNewsActor} use it transparently.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class CachingNewsApiService implements NewsApiService {
+
+    private static final Logger logger = LoggerFactory.getLogger("application");
+
+    private final NewsApiService delegate;
+    private final BoundedTtlCache<String, List<Article>> articles;
+    private final BoundedTtlCache<String, List<SourceInfo>> sources;
+
+    /** Keys with a background refresh currently running (at most one per key). */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param delegate     upstream NewsAPI client
+     * @param maxEntries   bound on cached keys per tier
+     * @param ttlSeconds   age up to which an entry is served as fresh
+     * @param staleSeconds extra age during which an entry is served while refreshing
+     */
+    public CachingNewsApiService(NewsApiService delegate, int maxEntries, long ttlSeconds, long staleSeconds) {
+        this.delegate = delegate;
+        this.articles = new BoundedTtlCache<>(maxEntries, ttlSeconds * 1000, staleSeconds * 1000);
+        this.sources = new BoundedTtlCache<>(maxEntries, ttlSeconds * 1000, staleSeconds * 1000);
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        return searchArticles(query, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        return getSources(country, category, language, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query, Priority priority) {
+        String key = articleKey(query);
+        return lookup(articles, key, priority, p -> delegate.searchArticles(query, p));
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language,
+                                                        Priority priority) {
+        String key = sourceKey(country, category, language);
+        return lookup(sources, key, priority, p -> delegate.getSources(country, category, language, p));
+    }
+
+    /**
+     * Seeds the article tier with a result fetched before a restart; it is
+     * fresh, stale or expired according to its original age.
+     */
+    public void primeArticles(String query, List<Article> result, long fetchedAtMillis) {
+        articles.put(articleKey(query), result, fetchedAtMillis);
+    }
+
+    /** Seeds the source tier with a result fetched before a restart (see {@link #primeArticles}). */
+    public void primeSources(String country, String category, String language, List<SourceInfo> result,
+                             long fetchedAtMillis) {
+        sources.put(sourceKey(country, category, language), result, fetchedAtMillis);
+    }
+
+    /** @return hit/miss/eviction counters of the article tier */
+    public BoundedTtlCache.Stats articleStats() {
+        return articles.stats();
+    }
+
+    /** @return hit/miss/eviction counters of the source tier */
+    public BoundedTtlCache.Stats sourceStats() {
+        return sources.stats();
+    }
+
+    private <V> CompletionStage<V> lookup(BoundedTtlCache<String, V> cache,
+                                          String key,
+                                          Priority priority,
+                                          Function<Priority, CompletionStage<V>> upstream) {
+        BoundedTtlCache.Hit<V> hit = cache.get(key);
+
+        if (hit == null) {
+            return upstream.apply(priority).thenApply(value -> {
+                cache.put(key, value);
+                return value;
+            });
+        }
+
+        if (hit.freshness == BoundedTtlCache.Freshness.STALE && refreshing.add(key)) {
+            // The completion callback clears the marker; if the loader throws before
+            // returning a stage, it must be cleared here or the key never refreshes again.
+            boolean started = false;
+            try {
+                upstream.apply(Priority.BACKGROUND).whenComplete((value, err) -> {
+                    refreshing.remove(key);
+                    if (err == null) {
+                        cache.put(key, value);
+                    } else {
+                        logger.warn("Background refresh of '{}' failed: {}", key, err.toString());
+                    }
+                });
+                started = true;
+            } catch (RuntimeException e) {
+                logger.warn("Background refresh of '{}' could not start: {}", key, e.toString());
+            } finally {
+                if (!started) refreshing.remove(key);
+            }
+        }
+
+        return CompletableFuture.completedFuture(hit.value);
+    }
+
+    private static String articleKey(String query) {
+        return "q:" + query;
+    }
+
+    private static String sourceKey(String country, String category, String language) {
+        return "s:" + nullToEmpty(country) + "|" + nullToEmpty(category) + "|" + nullToEmpty(language);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
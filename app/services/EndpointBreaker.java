@@ -0,0 +1,119 @@
+package app.services;
+
+import com.typesafe.config.Config;
+
+import org.apache.pekko.actor.Scheduler;
+import org.apache.pekko.pattern.CircuitBreaker;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker and call timeout for one NewsAPI endpoint
+ * ({@code search} or {@code sources}), built on Pekko's {@link CircuitBreaker}.
+ *
+ * <p>After {@code maxFailures} consecutive failures or timeouts the breaker
+ * opens and every call fails fast with {@code CircuitBreakerOpenException}.
+ * After {@code resetTimeout} one probe call is let through (half-open); its
+ * outcome closes or re-opens the breaker. A call that exceeds
+ * {@code callTimeout} fails with a {@code TimeoutException}, so callers never
+ * wait on a hung upstream.</p>
+ *
+ * <p>Throttled calls ({@link NewsApiThrottledException}) never reached NewsAPI
+ * and therefore do not count as failures.</p>
+ *
+ * <p>One instance per endpoint is created in {@link modules.Module} and applied
+ * by {@link BreakerNewsApiService} directly on the HTTP client, underneath the
+ * rate limiter, so queueing for a token never counts toward
+ * {@code callTimeout}. State and metrics are per endpoint.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class EndpointBreaker {
+
+    /** Breaker state, as exposed to metrics. */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Breaker settings, read from {@code newsapi.circuitBreaker}.
+     */
+    public static final class Settings {
+        /** The values of {@code conf/application.conf}, for callers built without a config. */
+        public static final Settings DEFAULTS = new Settings(5, Duration.ofSeconds(8), Duration.ofSeconds(30));
+
+        public final int maxFailures;
+        public final Duration callTimeout;
+        public final Duration resetTimeout;
+
+        public Settings(int maxFailures, Duration callTimeout, Duration resetTimeout) {
+            this.maxFailures = maxFailures;
+            this.callTimeout = callTimeout;
+            this.resetTimeout = resetTimeout;
+        }
+
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("newsapi.circuitBreaker");
+            return new Settings(c.getInt("maxFailures"), c.getDuration("callTimeout"), c.getDuration("resetTimeout"));
+        }
+    }
+
+    private final String endpoint;
+    private final CircuitBreaker breaker;
+    private volatile State state = State.CLOSED;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param endpoint  endpoint name used in metrics ({@code search}, {@code sources})
+     * @param scheduler classic scheduler of the actor system
+     * @param settings  failure threshold and timeouts
+     */
+    public EndpointBreaker(String endpoint, Scheduler scheduler, Settings settings) {
+        this.endpoint = endpoint;
+        this.breaker = CircuitBreaker.create(scheduler, settings.maxFailures, settings.callTimeout, settings.resetTimeout)
+                .addOnOpenListener(() -> {
+                    state = State.OPEN;
+                    opened.increment();
+                })
+                .addOnHalfOpenListener(() -> state = State.HALF_OPEN)
+                .addOnCloseListener(() -> state = State.CLOSED)
+                .addOnCallBreakerOpenListener(rejected::increment);
+    }
+
+    /**
+     * Runs an upstream call through the breaker.
+     *
+     * @param call the NewsAPI call
+     * @return the call's result, or a failure if the breaker is open or the call timed out
+     */
+    public <T> CompletionStage<T> call(Supplier<CompletionStage<T>> call) {
+        return breaker.callWithCircuitBreakerCS(call::get, EndpointBreaker::isFailure);
+    }
+
+    /** Records that a caller answered from its fallback instead of upstream. */
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    private static <T> boolean isFailure(Optional<T> result, Optional<Throwable> err) {
+        return err.isPresent() && !NewsApiThrottledException.isThrottled(err.get());
+    }
+
+    public String endpoint() { return endpoint; }
+
+    public State state() { return state; }
+
+    /** @return times the breaker has opened */
+    public long opened() { return opened.sum(); }
+
+    /** @return calls rejected without reaching upstream because the breaker was open */
+    public long rejected() { return rejected.sum(); }
+
+    /** @return failed calls answered from a fallback result */
+    public long fallbacks() { return fallbacks.sum(); }
+}
@@ -0,0 +1,181 @@
+package app.services;
+
+import app.dedup.Hashing;
+import app.models.Article;
+import app.models.SourceInfo;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for NewsAPI, used for load tests and benchmarks
+ * ({@code newsapi.mode = "fake"}).
+ *
+ * <p>Answers from a synthetic corpus of {@code corpusSize} articles and a fixed
+ * set of sources, after a log-normal delay (median {@code latencyMedian},
+ * spread {@code latencySigma}). A fraction {@code errorRate} of calls fails.
+ * Every query maps to a stable slice of the corpus. The slice advances by
+ * {@code newArticlesPerMinute}, so live-search polling keeps finding new ids
+ * as it would against the real service.</p>
+ *
+ * <p>Nothing blocks: replies are completed by a single daemon timer thread.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class FakeNewsApiService implements NewsApiService {
+
+    /**
+     * Fake settings, read from {@code newsapi.fake}.
+     */
+    public static final class Settings {
+        public final Duration latencyMedian;
+        public final double latencySigma;
+        public final double errorRate;
+        public final int corpusSize;
+        public final int pageSize;
+        public final int newArticlesPerMinute;
+        public final long seed;
+
+        public Settings(Duration latencyMedian, double latencySigma, double errorRate,
+                        int corpusSize, int pageSize, int newArticlesPerMinute, long seed) {
+            this.latencyMedian = latencyMedian;
+            this.latencySigma = latencySigma;
+            this.errorRate = errorRate;
+            this.corpusSize = corpusSize;
+            this.pageSize = Math.min(pageSize, corpusSize);
+            this.newArticlesPerMinute = newArticlesPerMinute;
+            this.seed = seed;
+        }
+
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("newsapi.fake");
+            return new Settings(
+                    c.getDuration("latencyMedian"),
+                    c.getDouble("latencySigma"),
+                    c.getDouble("errorRate"),
+                    c.getInt("corpusSize"),
+                    c.getInt("pageSize"),
+                    c.getInt("newArticlesPerMinute"),
+                    c.getLong("seed"));
+        }
+    }
+
+    private static final String[] WORDS = {
+            "bitcoin", "markets", "election", "climate", "ai", "football", "vaccine", "energy",
+            "startup", "inflation", "space", "chip", "merger", "court", "storm", "tariff",
+            "olympics", "privacy", "battery", "housing", "bank", "oil", "film", "music"
+    };
+    private static final String[] COUNTRIES = {"us", "gb", "ca", "fr", "de", "in"};
+    private static final String[] CATEGORIES = {"business", "technology", "sports", "science", "health", "entertainment", "general"};
+    private static final String[] LANGUAGES = {"en", "fr", "de"};
+
+    private final Settings settings;
+    private final Article[] corpus;
+    private final List<SourceInfo> sources;
+    private final long startMillis = System.currentTimeMillis();
+    private final ScheduledExecutorService timer;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public FakeNewsApiService(Settings settings) {
+        this.settings = settings;
+        Random random = new Random(settings.seed);
+
+        this.sources = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            sources.add(new SourceInfo(
+                    "fake-source-" + i,
+                    "Fake Source " + i,
+                    COUNTRIES[i % COUNTRIES.length],
+                    CATEGORIES[i % CATEGORIES.length],
+                    LANGUAGES[i % LANGUAGES.length],
+                    "https://source" + i + ".example.com"));
+        }
+
+        this.corpus = new Article[settings.corpusSize];
+        for (int i = 0; i < corpus.length; i++) {
+            String a = WORDS[random.nextInt(WORDS.length)];
+            String b = WORDS[random.nextInt(WORDS.length)];
+            String url = "https://news.example.com/" + i;
+            corpus[i] = new Article(url,
+                    capitalize(a) + " and " + b + ": story " + i,
+                    "Synthetic article " + i + " about " + a + " and " + b + ".",
+                    url,
+                    sources.get(i % sources.size()).name);
+        }
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fake-newsapi");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        long drift = (System.currentTimeMillis() - startMillis) * settings.newArticlesPerMinute / 60_000;
+        long start = Math.floorMod(Hashing.hash64(query == null ? "" : query) + drift, (long) corpus.length);
+
+        List<Article> page = new ArrayList<>(settings.pageSize);
+        for (int k = 0; k < settings.pageSize; k++) {
+            page.add(corpus[(int) Math.floorMod(start - k, (long) corpus.length)]);
+        }
+        return reply(page);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        List<SourceInfo> matching = new ArrayList<>();
+        for (SourceInfo s : sources) {
+            if (matches(country, s.country) && matches(category, s.category) && matches(language, s.language)) {
+                matching.add(s);
+            }
+        }
+        return reply(matching);
+    }
+
+    /** @return calls answered so far (including simulated failures) */
+    public long calls() { return calls.sum(); }
+
+    /** @return calls failed on purpose */
+    public long failures() { return failures.sum(); }
+
+    private <T> CompletionStage<T> reply(T value) {
+        calls.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        long delayNanos = (long) (settings.latencyMedian.toNanos() * Math.exp(settings.latencySigma * random.nextGaussian()));
+        boolean fail = random.nextDouble() < settings.errorRate;
+
+        timer.schedule(() -> {
+            if (fail) {
+                failures.increment();
+                result.completeExceptionally(new IllegalStateException("Simulated NewsAPI failure"));
+            } else {
+                result.complete(value);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.isEmpty() || filter.equalsIgnoreCase(value);
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
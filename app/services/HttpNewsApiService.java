@@ -0,0 +1,148 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import play.libs.Json;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The real NewsAPI client ({@code newsapi.mode} other than {@code "fake"}).
+ *
+ * <p>Calls {@code /everything} for searches and {@code /top-headlines/sources}
+ * for sources, with the key from {@code newsapi.key}. The article URL is used as
+ * its id, as in {@link FakeNewsApiService}. A non-2xx answer, or one whose
+ * {@code status} is not {@code "ok"}, fails the returned stage.</p>
+ *
+ * <p>Nothing blocks: requests go through {@link HttpClient#sendAsync}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class HttpNewsApiService implements NewsApiService {
+
+    /**
+     * Client settings, read from {@code newsapi} and {@code play.ws.timeout}.
+     */
+    public static final class Settings {
+        public final String baseUrl;
+        public final String apiKey;
+        public final Duration connectTimeout;
+        public final Duration requestTimeout;
+
+        public Settings(String baseUrl, String apiKey, Duration connectTimeout, Duration requestTimeout) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            this.apiKey = apiKey;
+            this.connectTimeout = connectTimeout;
+            this.requestTimeout = requestTimeout;
+        }
+
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    config.getString("newsapi.baseUrl"),
+                    config.hasPath("newsapi.key") ? config.getString("newsapi.key") : "",
+                    config.getDuration("play.ws.timeout.connection"),
+                    config.getDuration("play.ws.timeout.request"));
+        }
+    }
+
+    private final Settings settings;
+    private final HttpClient http;
+
+    public HttpNewsApiService(Settings settings) {
+        this.settings = settings;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(settings.connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        String url = settings.baseUrl + "/everything?sortBy=publishedAt&q=" + encode(query);
+        return get(url).thenApply(HttpNewsApiService::toArticles);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        StringBuilder url = new StringBuilder(settings.baseUrl).append("/top-headlines/sources");
+        char sep = '?';
+        for (String[] param : new String[][]{{"country", country}, {"category", category}, {"language", language}}) {
+            if (param[1] != null && !param[1].isBlank()) {
+                url.append(sep).append(param[0]).append('=').append(encode(param[1]));
+                sep = '&';
+            }
+        }
+        return get(url.toString()).thenApply(HttpNewsApiService::toSources);
+    }
+
+    private CompletionStage<JsonNode> get(String url) {
+        if (settings.apiKey.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("newsapi.key is not set"));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(settings.requestTimeout)
+                .header("X-Api-Key", settings.apiKey)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(HttpNewsApiService::parse);
+    }
+
+    private static JsonNode parse(HttpResponse<String> response) {
+        JsonNode body = Json.parse(response.body());
+        int code = response.statusCode();
+        if (code / 100 != 2 || !"ok".equals(body.path("status").asText())) {
+            throw new IllegalStateException("NewsAPI answered " + code + " "
+                    + body.path("code").asText("") + ": " + body.path("message").asText(""));
+        }
+        return body;
+    }
+
+    private static List<Article> toArticles(JsonNode body) {
+        List<Article> articles = new ArrayList<>();
+        for (JsonNode a : body.path("articles")) {
+            String url = a.path("url").asText(null);
+            if (url == null || url.isEmpty()) {
+                continue;
+            }
+            articles.add(new Article(url,
+                    a.path("title").asText(""),
+                    a.path("description").asText(""),
+                    url,
+                    a.path("source").path("name").asText("")));
+        }
+        return articles;
+    }
+
+    private static List<SourceInfo> toSources(JsonNode body) {
+        List<SourceInfo> sources = new ArrayList<>();
+        for (JsonNode s : body.path("sources")) {
+            sources.add(new SourceInfo(
+                    s.path("id").asText(""),
+                    s.path("name").asText(""),
+                    s.path("country").asText(""),
+                    s.path("category").asText(""),
+                    s.path("language").asText(""),
+                    s.path("url").asText("")));
+        }
+        return sources;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
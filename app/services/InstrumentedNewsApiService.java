@@ -0,0 +1,74 @@
+package app.services;
+
+import app.metrics.Histogram;
+import app.models.Article;
+import app.models.SourceInfo;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures every NewsAPI call, per endpoint ({@code search}, {@code sources}).
+ *
+ * <p>Sits directly on the HTTP client, underneath the rate limiter and the
+ * cache, so latency is the time NewsAPI takes to answer. Time spent waiting
+ * for a token or answered from cache is not counted.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class InstrumentedNewsApiService implements NewsApiService {
+
+    private final NewsApiService delegate;
+
+    private final Histogram searchLatency = new Histogram(Histogram.LATENCY_SECONDS);
+    private final Histogram sourcesLatency = new Histogram(Histogram.LATENCY_SECONDS);
+    private final LongAdder searchErrors = new LongAdder();
+    private final LongAdder sourcesErrors = new LongAdder();
+
+    public InstrumentedNewsApiService(NewsApiService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        return searchArticles(query, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        return getSources(country, category, language, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query, Priority priority) {
+        long start = System.nanoTime();
+        return timed(delegate.searchArticles(query, priority), start, searchLatency, searchErrors);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language,
+                                                        Priority priority) {
+        long start = System.nanoTime();
+        return timed(delegate.getSources(country, category, language, priority), start,
+                sourcesLatency, sourcesErrors);
+    }
+
+    /** @return latency of answered and failed calls of an endpoint */
+    public Histogram latency(String endpoint) {
+        return "search".equals(endpoint) ? searchLatency : sourcesLatency;
+    }
+
+    /** @return failed calls of an endpoint */
+    public long errors(String endpoint) {
+        return ("search".equals(endpoint) ? searchErrors : sourcesErrors).sum();
+    }
+
+    private static <T> CompletionStage<T> timed(CompletionStage<T> call, long start,
+                                                Histogram latency, LongAdder errors) {
+        return call.whenComplete((value, err) -> {
+            latency.observeNanos(System.nanoTime() - start);
+            if (err != null) errors.increment();
+        });
+    }
+}
@@ -15,11 +15,32 @@ import java.util.concurrent.CompletionStage;
  *  - searchArticles(query): retrieves news articles
  *  - getSources(country, category, language): retrieves news sources
  *
+ * Each call may carry a {@link Priority}; calls without one are interactive.
+ * Decorators such as {@link RateLimitedNewsApiService} use it to serve user
+ * requests ahead of background refreshes.
+ *
  * Author: Sara Ezzati
  */
 public interface NewsApiService {
 
+    /** Scheduling class of an upstream call. */
+    enum Priority {
+        /** A user is waiting on the result. */
+        INTERACTIVE,
+        /** Polling, cache revalidation and other refreshes nobody waits on. */
+        BACKGROUND
+    }
+
     CompletionStage<List<Article>> searchArticles(String query);
 
     CompletionStage<List<SourceInfo>> getSources(String country, String category, String language);
+
+    default CompletionStage<List<Article>> searchArticles(String query, Priority priority) {
+        return searchArticles(query);
+    }
+
+    default CompletionStage<List<SourceInfo>> getSources(String country, String category, String language,
+                                                         Priority priority) {
+        return getSources(country, category, language);
+    }
 }
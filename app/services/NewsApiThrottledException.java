@@ -0,0 +1,29 @@
+package app.services;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Completes an upstream call that was rejected by {@link RateLimitedNewsApiService}
+ * because its wait queue was full or it waited too long for a token. No
+ * request was sent to NewsAPI.
+ *
+ * @author Sara Ezzati
+ */
+public final class NewsApiThrottledException extends RuntimeException {
+
+    public NewsApiThrottledException(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * @param err failure of a NewsAPI {@code CompletionStage} (may be wrapped)
+     * @return {@code true} if the call was throttled rather than failed upstream
+     */
+    public static boolean isThrottled(Throwable err) {
+        Throwable t = err;
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof NewsApiThrottledException;
+    }
+}
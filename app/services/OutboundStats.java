@@ -0,0 +1,120 @@
+package app.services;
+
+import app.metrics.Histogram;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gauges and counters for every open {@link SessionOutbound} and its
+ * {@code UserActor}. One shared instance is bound in {@link modules.Module}.
+ *
+ * <ul>
+ *   <li>{@link #maxDepth()}, {@link #totalDepth()} – queued frames across open sessions</li>
+ *   <li>{@code dropped}         – frames discarded by {@code drop-oldest}</li>
+ *   <li>{@code conflated}       – frames merged by {@code conflate}</li>
+ *   <li>{@code disconnected}    – sessions closed by {@code disconnect}</li>
+ *   <li>{@code framesSent}      – frames (after batching) written to WebSockets</li>
+ *   <li>{@code frameBytes}      – encoded size of those frames, as sent (UTF-8 text or CBOR)</li>
+ *   <li>{@code articlesPushed}  – articles sent to browsers</li>
+ *   <li>{@code articlesDeduped} – articles dropped because the session had already seen them</li>
+ *   <li>{@code articlesCollapsed} – articles folded into a near-duplicate story already shown</li>
+ *   <li>{@code searchLatency}   – from a browser's search to its final result frame</li>
+ *   <li>{@code previewLatency}  – from a browser's search to its preview frame (local index)</li>
+ *   <li>{@code sourceLists}     – source lists sent in full</li>
+ *   <li>{@code sourceDeltas}    – source lists sent as a delta to the previous one</li>
+ * </ul>
+ *
+ * @author Sara Ezzati
+ */
+public final class OutboundStats {
+
+    private final Set<SessionOutbound> open = ConcurrentHashMap.newKeySet();
+
+    final LongAdder dropped = new LongAdder();
+    final LongAdder conflated = new LongAdder();
+    final LongAdder disconnected = new LongAdder();
+    final LongAdder framesSent = new LongAdder();
+    private final Histogram frameBytes = new Histogram(Histogram.SIZE_BYTES);
+    private final LongAdder articlesPushed = new LongAdder();
+    private final LongAdder articlesDeduped = new LongAdder();
+    private final LongAdder articlesCollapsed = new LongAdder();
+    private final Histogram searchLatency = new Histogram(Histogram.LATENCY_SECONDS);
+    private final Histogram previewLatency = new Histogram(Histogram.LATENCY_SECONDS);
+    private final LongAdder sourceLists = new LongAdder();
+    private final LongAdder sourceDeltas = new LongAdder();
+
+    void register(SessionOutbound outbound) {
+        open.add(outbound);
+    }
+
+    void unregister(SessionOutbound outbound) {
+        open.remove(outbound);
+    }
+
+    /** @return open sessions */
+    public int sessions() {
+        return open.size();
+    }
+
+    /** @return the deepest queue across open sessions */
+    public int maxDepth() {
+        int max = 0;
+        for (SessionOutbound o : open) max = Math.max(max, o.depth());
+        return max;
+    }
+
+    /** @return frames queued across all open sessions */
+    public long totalDepth() {
+        long total = 0;
+        for (SessionOutbound o : open) total += o.depth();
+        return total;
+    }
+
+    public long dropped() { return dropped.sum(); }
+
+    public long conflated() { return conflated.sum(); }
+
+    public long disconnected() { return disconnected.sum(); }
+
+    public long framesSent() { return framesSent.sum(); }
+
+    public Histogram frameBytes() { return frameBytes; }
+
+    public long articlesPushed() { return articlesPushed.sum(); }
+
+    public long articlesDeduped() { return articlesDeduped.sum(); }
+
+    public long articlesCollapsed() { return articlesCollapsed.sum(); }
+
+    public Histogram searchLatency() { return searchLatency; }
+
+    public Histogram previewLatency() { return previewLatency; }
+
+    public long sourceLists() { return sourceLists.sum(); }
+
+    public long sourceDeltas() { return sourceDeltas.sum(); }
+
+    /** Called by the WebSocket endpoint with the encoded size of each frame it writes. */
+    public void recordFrameBytes(int bytes) {
+        frameBytes.observe(bytes);
+    }
+
+    /** Called by a {@code UserActor} after deduplicating an incoming batch. */
+    public void recordArticles(int pushed, int deduped) {
+        recordArticles(pushed, deduped, 0);
+    }
+
+    /** As {@link #recordArticles(int, int)}, plus articles collapsed as near-duplicates. */
+    public void recordArticles(int pushed, int deduped, int collapsed) {
+        articlesPushed.add(pushed);
+        articlesDeduped.add(deduped);
+        articlesCollapsed.add(collapsed);
+    }
+
+    /** Called by a {@code UserActor} for each source list it sends. */
+    public void recordSources(boolean delta) {
+        (delta ? sourceDeltas : sourceLists).increment();
+    }
+}
@@ -0,0 +1,69 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+import app.store.ArticleStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Records every successful NewsAPI result in the {@link ArticleStore}, so a
+ * restart can replay it instead of calling NewsAPI again.
+ *
+ * <p>Sits on top of the rate limiter, below the cache: only real upstream
+ * results are recorded (cache hits are not), including live-feed polls and
+ * source catalog refreshes. Appending is asynchronous and never delays or
+ * fails the caller: a record that cannot be appended (e.g. the store was
+ * closed on shutdown) is logged and dropped.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class PersistingNewsApiService implements NewsApiService {
+
+    private static final Logger logger = LoggerFactory.getLogger("application");
+
+    private final NewsApiService delegate;
+    private final ArticleStore store;
+
+    public PersistingNewsApiService(NewsApiService delegate, ArticleStore store) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        return searchArticles(query, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        return getSources(country, category, language, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query, Priority priority) {
+        return delegate.searchArticles(query, priority).whenComplete((articles, err) -> {
+            if (err == null) record(() -> store.appendArticles(query, articles));
+        });
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language,
+                                                        Priority priority) {
+        return delegate.getSources(country, category, language, priority).whenComplete((sources, err) -> {
+            if (err == null) record(() -> store.appendSources(country, category, language, sources));
+        });
+    }
+
+    private static void record(Runnable append) {
+        try {
+            append.run();
+        } catch (RuntimeException e) {
+            logger.warn("Could not record a NewsAPI result in the article store: {}", e.toString());
+        }
+    }
+}
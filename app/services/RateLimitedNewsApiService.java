@@ -0,0 +1,301 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Token-bucket rate limiter in front of the NewsAPI client.
+ *
+ * <p>The bucket holds at most {@code burst} tokens and refills at
+ * {@code requestsPerSecond}. A call that finds a token (and nobody queued
+ * ahead of it) goes upstream immediately. Otherwise it waits in one of two
+ * FIFO queues; {@link NewsApiService.Priority#INTERACTIVE} calls are always
+ * released before {@link NewsApiService.Priority#BACKGROUND} ones. Once
+ * {@code maxQueued} calls are waiting, an interactive call takes the place of
+ * the newest queued background call, which fails with
+ * {@link NewsApiThrottledException}; only when no background call is queued
+ * (and for every new background call) the new call itself fails fast.</p>
+ *
+ * <p>A queued call waits at most {@code maxWait}; past that it fails with
+ * {@link NewsApiThrottledException} instead of being sent late. An expired
+ * call spends no token and gives up its place in the queue once found, which
+ * happens on every drain and before a full queue rejects a call.</p>
+ *
+ * <p>Nothing blocks: queued calls are released by a single daemon timer
+ * thread when the next token is due.</p>
+ *
+ * <p>Released calls are started, and every result is completed, on the
+ * {@code callbacks} executor (the {@code notilytics.upstream-dispatcher} in
+ * production). All continuations of a NewsAPI call therefore run on that
+ * bulkhead rather than on the HTTP client's threads or the dispatcher of the
+ * WebSocket session actors.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class RateLimitedNewsApiService implements NewsApiService {
+
+    /**
+     * Limiter settings, read from {@code newsapi.rateLimit}.
+     */
+    public static final class Settings {
+        public final double requestsPerSecond;
+        public final int burst;
+        public final int maxQueued;
+        public final Duration maxWait;
+
+        public Settings(double requestsPerSecond, int burst, int maxQueued, Duration maxWait) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.maxQueued = maxQueued;
+            this.maxWait = maxWait;
+        }
+
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("newsapi.rateLimit");
+            return new Settings(c.getDouble("requestsPerSecond"), c.getInt("burst"), c.getInt("maxQueued"),
+                    c.getDuration("maxWait"));
+        }
+    }
+
+    /**
+     * Limiter counters.
+     * <ul>
+     *   <li>{@code issued}    – calls sent upstream</li>
+     *   <li>{@code delayed}   – calls that had to wait for a token</li>
+     *   <li>{@code throttled} – calls rejected because the queue was full, or evicted for an interactive one</li>
+     *   <li>{@code expired}   – queued calls failed after waiting {@code maxWait}</li>
+     * </ul>
+     */
+    public static final class Stats {
+        private final LongAdder issued = new LongAdder();
+        private final LongAdder delayed = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+
+        public long issued() { return issued.sum(); }
+
+        public long delayed() { return delayed.sum(); }
+
+        public long throttled() { return throttled.sum(); }
+
+        public long expired() { return expired.sum(); }
+    }
+
+    private final NewsApiService delegate;
+    private final Settings settings;
+    private final Stats stats = new Stats();
+    private final ScheduledExecutorService timer;
+    private final Executor callbacks;
+    private final LongSupplier nanoClock;
+
+    /** A call waiting for a token. */
+    private static final class Pending {
+        final Runnable start;
+        final CompletableFuture<?> result;
+        final long deadlineNanos;
+
+        Pending(Runnable start, CompletableFuture<?> result, long deadlineNanos) {
+            this.start = start;
+            this.result = result;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final ArrayDeque<Pending> interactive = new ArrayDeque<>();
+    private final ArrayDeque<Pending> background = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean drainScheduled;
+
+    /**
+     * Completes results on whichever thread the delegate completes them.
+     *
+     * @param delegate upstream NewsAPI client
+     * @param settings bucket size, refill rate and queue bound
+     */
+    public RateLimitedNewsApiService(NewsApiService delegate, Settings settings) {
+        this(delegate, settings, Runnable::run);
+    }
+
+    /**
+     * @param delegate  upstream NewsAPI client
+     * @param settings  bucket size, refill rate and queue bound
+     * @param callbacks executor that starts released calls and completes every result
+     */
+    public RateLimitedNewsApiService(NewsApiService delegate, Settings settings, Executor callbacks) {
+        this(delegate, settings, callbacks, System::nanoTime);
+    }
+
+    RateLimitedNewsApiService(NewsApiService delegate, Settings settings, Executor callbacks, LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.callbacks = callbacks;
+        this.nanoClock = nanoClock;
+        this.tokens = settings.burst;
+        this.lastRefillNanos = nanoClock.getAsLong();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "newsapi-rate-limiter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        return searchArticles(query, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        return getSources(country, category, language, Priority.INTERACTIVE);
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query, Priority priority) {
+        return submit(priority, () -> delegate.searchArticles(query, priority));
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language,
+                                                        Priority priority) {
+        return submit(priority, () -> delegate.getSources(country, category, language, priority));
+    }
+
+    /** @return issued / delayed / throttled counters */
+    public Stats stats() {
+        return stats;
+    }
+
+    /** @return calls currently waiting for a token */
+    public synchronized int queued() {
+        return interactive.size() + background.size();
+    }
+
+    private <T> CompletionStage<T> submit(Priority priority, Supplier<CompletionStage<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            stats.issued.increment();
+            try {
+                call.get().whenCompleteAsync((value, err) -> {
+                    if (err != null) result.completeExceptionally(err);
+                    else result.complete(value);
+                }, callbacks);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+
+        boolean startNow = false;
+        boolean rejected = false;
+        Pending evicted = null;
+        List<Pending> expired = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            long now = nanoClock.getAsLong();
+            boolean nobodyWaiting = interactive.isEmpty() && background.isEmpty();
+            if (nobodyWaiting && tokens >= 1) {
+                tokens -= 1;
+                startNow = true;
+            } else {
+                if (interactive.size() + background.size() >= settings.maxQueued) purge(now, expired);
+                if (interactive.size() + background.size() >= settings.maxQueued) {
+                    if (priority == Priority.BACKGROUND || background.isEmpty()) {
+                        rejected = true;
+                    } else {
+                        evicted = background.pollLast();
+                    }
+                    stats.throttled.increment();
+                }
+                if (!rejected) {
+                    (priority == Priority.INTERACTIVE ? interactive : background)
+                            .addLast(new Pending(start, result, now + settings.maxWait.toNanos()));
+                    stats.delayed.increment();
+                    scheduleDrain();
+                }
+            }
+        }
+        failExpired(expired);
+        if (rejected) return CompletableFuture.failedFuture(queueFull());
+        if (evicted != null) evicted.result.completeExceptionally(queueFull());
+        if (startNow) start.run();
+        return result;
+    }
+
+    private NewsApiThrottledException queueFull() {
+        return new NewsApiThrottledException("NewsAPI call queue full (" + settings.maxQueued + " waiting)");
+    }
+
+    /**
+     * Removes expired calls from both queues. Caller holds the lock.
+     *
+     * @param expired receives the expired calls, to be failed outside the lock
+     */
+    private void purge(long now, List<Pending> expired) {
+        for (ArrayDeque<Pending> queue : List.of(interactive, background)) {
+            queue.removeIf(p -> {
+                if (now - p.deadlineNanos >= 0) {
+                    stats.expired.increment();
+                    expired.add(p);
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    private void failExpired(List<Pending> expired) {
+        for (Pending p : expired) {
+            p.result.completeExceptionally(new NewsApiThrottledException(
+                    "NewsAPI call waited longer than " + settings.maxWait.toMillis() + " ms for a token"));
+        }
+    }
+
+    /** Releases as many queued calls as there are tokens, interactive first. Run by the timer. */
+    void drain() {
+        ArrayDeque<Runnable> ready = new ArrayDeque<>();
+        List<Pending> expired = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+            purge(nanoClock.getAsLong(), expired);
+            while (tokens >= 1 && !(interactive.isEmpty() && background.isEmpty())) {
+                tokens -= 1;
+                ready.addLast((interactive.isEmpty() ? background.pollFirst() : interactive.pollFirst()).start);
+            }
+            if (!(interactive.isEmpty() && background.isEmpty())) scheduleDrain();
+        }
+        failExpired(expired);
+        for (Runnable r : ready) callbacks.execute(r);
+    }
+
+    /** Caller holds the lock. */
+    private void scheduleDrain() {
+        if (drainScheduled) return;
+        drainScheduled = true;
+        long delayNanos = (long) (Math.max(0, 1 - tokens) / settings.requestsPerSecond * 1e9);
+        timer.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Caller holds the lock. */
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(settings.burst, tokens + (now - lastRefillNanos) / 1e9 * settings.requestsPerSecond);
+        lastRefillNanos = now;
+    }
+}
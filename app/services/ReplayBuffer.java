@@ -0,0 +1,130 @@
+package app.services;
+
+import app.json.Frames;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring of the most recent frames of one WebSocket session, numbered by a
+ * per-session sequence, so a reconnecting browser can be sent exactly the
+ * frames it missed.
+ *
+ * <p>Every frame is stamped with its sequence number ({@link Frames#sequenced})
+ * on the way in. The ring keeps at most {@code maxFrames} frames and
+ * {@code maxBytes} characters; older frames are evicted first. The
+ * characters kept are also added to a total shared by every session's ring,
+ * so the session registry can hold all rings to one budget
+ * ({@link #clear}).</p>
+ *
+ * <p>INPUT: frames built by {@code UserActor}, and the last sequence number a
+ * reconnecting browser received<br>
+ * OUTPUT: the stamped frame to send now, and {@link #since} – the frames to
+ * replay on resume</p>
+ *
+ * <p>Thread-safety: written by the session's {@code UserActor}; synchronized
+ * because the session registry may {@link #clear} it from another thread.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class ReplayBuffer {
+
+    private final int maxFrames;
+    private final long maxBytes;
+    private final ArrayDeque<String> frames;
+    /** Characters kept by every ring sharing the budget. */
+    private final AtomicLong totalBytes;
+
+    /** Sequence number of the next frame; the first frame is 1. */
+    private long nextSeq = 1;
+    private long bytes;
+
+    /**
+     * @param maxFrames frames kept for replay
+     * @param maxBytes  characters kept for replay (frames are mostly ASCII JSON)
+     */
+    public ReplayBuffer(int maxFrames, long maxBytes) {
+        this(maxFrames, maxBytes, new AtomicLong());
+    }
+
+    /**
+     * @param maxFrames  frames kept for replay
+     * @param maxBytes   characters kept for replay (frames are mostly ASCII JSON)
+     * @param totalBytes running total of characters kept, shared across rings
+     */
+    public ReplayBuffer(int maxFrames, long maxBytes, AtomicLong totalBytes) {
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+        this.totalBytes = totalBytes;
+        this.frames = new ArrayDeque<>(Math.min(maxFrames, 64));
+    }
+
+    /**
+     * Numbers a frame and keeps it for replay.
+     *
+     * @param frame serialized frame
+     * @return the frame carrying its {@code "seq"}
+     */
+    public synchronized String append(String frame) {
+        String stamped = Frames.sequenced(frame, nextSeq++);
+        long before = bytes;
+        frames.addLast(stamped);
+        bytes += stamped.length();
+        while (frames.size() > maxFrames || (bytes > maxBytes && frames.size() > 1)) {
+            bytes -= frames.pollFirst().length();
+        }
+        totalBytes.addAndGet(bytes - before);
+        return stamped;
+    }
+
+    /**
+     * Evicts every frame kept. Sequence numbering goes on, so a browser that
+     * missed any of them is told to resync.
+     *
+     * @return characters freed
+     */
+    public synchronized long clear() {
+        long freed = bytes;
+        frames.clear();
+        bytes = 0;
+        totalBytes.addAndGet(-freed);
+        return freed;
+    }
+
+    /**
+     * @param lastSeq last sequence number the browser received (0 if none)
+     * @return the frames after {@code lastSeq}, oldest first, or {@code null}
+     *         if some of them were already evicted (the browser must resync)
+     */
+    public synchronized List<String> since(long lastSeq) {
+        long first = nextSeq - frames.size();
+        if (lastSeq < first - 1 || lastSeq >= nextSeq) return null;
+
+        int skip = (int) (lastSeq - first + 1);
+        List<String> missed = new ArrayList<>(frames.size() - skip);
+        Iterator<String> it = frames.iterator();
+        for (int i = 0; it.hasNext(); i++) {
+            String f = it.next();
+            if (i >= skip) missed.add(f);
+        }
+        return missed;
+    }
+
+    /** @return sequence number of the last frame appended (0 if none) */
+    public synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    /** @return frames currently kept */
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    /** @return characters currently kept */
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,104 @@
+package app.services;
+
+import app.models.SourceInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The source list last sent to one WebSocket session, so a new list can be
+ * sent as the difference to it.
+ *
+ * <p>Every list sent bumps {@link #version()}. A delta carries the sources
+ * that were added or changed (by id), each with its position in the new list,
+ * and the ids that were removed; the browser applies it only on top of
+ * {@code version - 1} and otherwise asks for the full list again. Sources in
+ * both lists keep their relative order; if it changed, the full list is
+ * sent.</p>
+ *
+ * <p>INPUT: each {@code List<SourceInfo>} a session is about to receive<br>
+ * OUTPUT: {@link #update} – a {@link Delta}, or null when the full list must
+ * (or is cheaper to) be sent</p>
+ *
+ * <p>Not thread-safe: owned by the session's {@code UserActor}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class SentSources {
+
+    /** Difference between two consecutive lists. */
+    public static final class Delta {
+        public final long version;
+        public final List<SourceInfo> added;
+        /** Index of each added source in the new list (parallel to {@link #added}, ascending). */
+        public final int[] positions;
+        public final List<String> removed;
+
+        Delta(long version, List<SourceInfo> added, int[] positions, List<String> removed) {
+            this.version = version;
+            this.added = added;
+            this.positions = positions;
+            this.removed = removed;
+        }
+    }
+
+    private Map<String, SourceInfo> sent = new LinkedHashMap<>();
+    private long version;
+
+    /**
+     * Records {@code sources} as the list now sent.
+     *
+     * @param sources the session's new list
+     * @return the delta to the previous list, or null if there was none, the
+     *         sources kept were reordered, or the delta would not be smaller
+     *         than the list itself
+     */
+    public Delta update(List<SourceInfo> sources) {
+        Map<String, SourceInfo> next = new LinkedHashMap<>(sources.size() * 2);
+        List<SourceInfo> added = new ArrayList<>();
+        int[] positions = new int[sources.size()];
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            SourceInfo s = sources.get(i);
+            next.put(s.id, s);
+            SourceInfo before = sent.get(s.id);
+            if (before != s && (before == null || !before.toJson().equals(s.toJson()))) {
+                positions[added.size()] = i;
+                added.add(s);
+            } else {
+                kept.add(s.id);
+            }
+        }
+        Set<String> changed = new HashSet<>();
+        for (SourceInfo s : added) changed.add(s.id);
+        List<String> removed = new ArrayList<>();
+        boolean reordered = false;
+        int k = 0;
+        for (String id : sent.keySet()) {
+            if (!next.containsKey(id)) removed.add(id);
+            else if (k < kept.size() && id.equals(kept.get(k))) k++;
+            else if (!changed.contains(id)) reordered = true;
+        }
+
+        boolean first = version == 0;
+        sent = next;
+        version++;
+        if (first || reordered || added.size() + removed.size() >= sources.size()) return null;
+        return new Delta(version, added, Arrays.copyOf(positions, added.size()), removed);
+    }
+
+    /** @return version of the last list sent (0 if none) */
+    public long version() {
+        return version;
+    }
+
+    /** @return the last list sent, in its original order */
+    public List<SourceInfo> current() {
+        return new ArrayList<>(sent.values());
+    }
+}
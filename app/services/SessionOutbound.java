@@ -0,0 +1,231 @@
+package app.services;
+
+import app.json.Frames;
+
+import com.typesafe.config.Config;
+
+import org.apache.pekko.NotUsed;
+import org.apache.pekko.japi.Pair;
+import org.apache.pekko.stream.javadsl.Source;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * SessionOutbound
+ *
+ * Bounded outbound queue between one {@code UserActor} and its WebSocket.
+ * Replaces the fixed buffer of {@code ActorFlow.actorRef}.
+ *
+ * <p>The actor {@link #offer}s frames; the WebSocket stream pulls them as
+ * fast as the browser reads. When the browser is slower than the producer
+ * and the queue is full, the configured {@link Overflow} policy applies:</p>
+ * <ul>
+ *   <li>{@code drop-oldest} – discard the oldest queued frame</li>
+ *   <li>{@code conflate}    – merge the new frame into the newest queued one (nothing is lost);
+ *       once that frame reaches {@code maxConflatedChars}, fall back to {@code drop-oldest}</li>
+ *   <li>{@code disconnect}  – fail the stream at once, which closes the WebSocket even
+ *       if the browser has stopped reading</li>
+ * </ul>
+ *
+ * <p>On the way out, frames arriving within {@code batchWindow} are merged
+ * into a single {@code {"batch":[...]}} frame (see {@link Frames#batch}).</p>
+ *
+ * <p>Thread-safety: {@link #offer} and {@link #complete} may be called from
+ * any thread; the stream side only ever has one pull outstanding.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class SessionOutbound {
+
+    /** What to do with a new frame when the queue is full. */
+    public enum Overflow {
+        DROP_OLDEST, CONFLATE, DISCONNECT;
+
+        static Overflow parse(String s) {
+            return Overflow.valueOf(s.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Outbound settings, read from {@code notilytics.outbound}.
+     */
+    public static final class Settings {
+        public final int bufferSize;
+        public final Overflow overflow;
+        public final Duration batchWindow;
+        public final int maxBatchFrames;
+        /** Largest frame {@code conflate} builds; beyond it the oldest frame is dropped instead. */
+        public final int maxConflatedChars;
+
+        public Settings(int bufferSize, Overflow overflow, Duration batchWindow, int maxBatchFrames,
+                        int maxConflatedChars) {
+            if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be at least 1");
+            this.bufferSize = bufferSize;
+            this.overflow = overflow;
+            this.batchWindow = batchWindow;
+            this.maxBatchFrames = maxBatchFrames;
+            this.maxConflatedChars = maxConflatedChars;
+        }
+
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("notilytics.outbound");
+            return new Settings(
+                    c.getInt("bufferSize"),
+                    Overflow.parse(c.getString("overflow")),
+                    c.getDuration("batchWindow"),
+                    c.getInt("maxBatchFrames"),
+                    c.getInt("maxConflatedChars"));
+        }
+    }
+
+    /** Raised into the stream when the {@code disconnect} policy trips. */
+    public static final class SlowConsumerException extends RuntimeException {
+        SlowConsumerException(String sessionId, int bufferSize) {
+            super("Session " + sessionId + " exceeded its outbound buffer of " + bufferSize + " frames");
+        }
+    }
+
+    private final String id;
+    private final Settings settings;
+    private final OutboundStats stats;
+
+    private final ArrayDeque<String> queue;
+    private CompletableFuture<Optional<String>> waiting;
+    private boolean completed;
+    /** Failed by the {@code disconnect} policy; merged into the stream so it fails without a pull. */
+    private final CompletableFuture<String> disconnected = new CompletableFuture<>();
+
+    private SessionOutbound(String id, Settings settings, OutboundStats stats) {
+        this.id = id;
+        this.settings = settings;
+        this.stats = stats;
+        this.queue = new ArrayDeque<>(Math.min(settings.bufferSize, 64));
+    }
+
+    /**
+     * Creates the queue and the WebSocket source that drains it.
+     *
+     * @param id       session id (used for gauges and logs)
+     * @param settings buffer, overflow and batching settings
+     * @param stats    shared outbound gauges and counters
+     * @return the queue (for the UserActor) and the source (for the WebSocket flow)
+     */
+    public static Pair<SessionOutbound, Source<String, NotUsed>> create(String id, Settings settings, OutboundStats stats) {
+        SessionOutbound outbound = new SessionOutbound(id, settings, stats);
+        stats.register(outbound);
+
+        Source<String, NotUsed> frames =
+                Source.unfoldAsync(outbound, q -> q.pull().thenApply(next -> next.map(f -> Pair.create(q, f))));
+
+        if (!settings.batchWindow.isZero() && settings.maxBatchFrames > 1) {
+            frames = frames
+                    .groupedWithin(settings.maxBatchFrames, settings.batchWindow)
+                    .map(Frames::batch);
+        }
+
+        Source<String, NotUsed> source = frames
+                .map(frame -> {
+                    stats.framesSent.increment();
+                    return frame;
+                })
+                // Only ever fails: a browser that stopped reading never pulls again.
+                .merge(Source.completionStage(outbound.disconnected), true)
+                .watchTermination((notUsed, done) -> {
+                    done.whenComplete((d, err) -> stats.unregister(outbound));
+                    return notUsed;
+                });
+
+        return Pair.create(outbound, source);
+    }
+
+    /** @return session id */
+    public String id() {
+        return id;
+    }
+
+    /** @return shared gauges and counters this session reports to */
+    public OutboundStats stats() {
+        return stats;
+    }
+
+    /** @return frames currently queued and not yet pulled by the WebSocket */
+    public synchronized int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Queues a frame for the WebSocket, applying the overflow policy when full.
+     * Frames offered after {@link #complete()} are ignored.
+     *
+     * @param frame serialized frame
+     */
+    public void offer(String frame) {
+        CompletableFuture<Optional<String>> handOff = null;
+        synchronized (this) {
+            if (completed) return;
+            if (waiting != null) {
+                handOff = waiting;
+                waiting = null;
+            } else if (queue.size() < settings.bufferSize) {
+                queue.addLast(frame);
+            } else {
+                switch (settings.overflow) {
+                    case DROP_OLDEST:
+                        queue.pollFirst();
+                        queue.addLast(frame);
+                        stats.dropped.increment();
+                        break;
+                    case CONFLATE:
+                        String newest = queue.peekLast();
+                        if (newest.length() + frame.length() < settings.maxConflatedChars) {
+                            queue.pollLast();
+                            queue.addLast(Frames.batch(List.of(newest, frame)));
+                            stats.conflated.increment();
+                        } else {
+                            queue.pollFirst();
+                            queue.addLast(frame);
+                            stats.dropped.increment();
+                        }
+                        break;
+                    case DISCONNECT:
+                        completed = true;
+                        queue.clear();
+                        // failed under the lock, so a racing pull() cannot complete the stream normally first
+                        disconnected.completeExceptionally(new SlowConsumerException(id, settings.bufferSize));
+                        stats.disconnected.increment();
+                        break;
+                }
+            }
+        }
+        if (handOff != null) handOff.complete(Optional.of(frame));
+    }
+
+    /** Completes the WebSocket once already queued frames have been sent. */
+    public void complete() {
+        CompletableFuture<Optional<String>> handOff;
+        synchronized (this) {
+            completed = true;
+            handOff = waiting;
+            waiting = null;
+        }
+        if (handOff != null) handOff.complete(Optional.empty());
+    }
+
+    /** Called by the stream for the next frame; at most one pull is outstanding. */
+    private CompletionStage<Optional<String>> pull() {
+        synchronized (this) {
+            if (disconnected.isCompletedExceptionally()) return disconnected.thenApply(Optional::of);
+            String next = queue.pollFirst();
+            if (next != null) return CompletableFuture.completedFuture(Optional.of(next));
+            if (completed) return CompletableFuture.completedFuture(Optional.empty());
+            waiting = new CompletableFuture<>();
+            return waiting;
+        }
+    }
+}
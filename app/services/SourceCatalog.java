@@ -0,0 +1,104 @@
+package app.services;
+
+import app.models.SourceInfo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of every NewsAPI source, indexed for local filtering.
+ *
+ * <p>Each distinct country, category and language maps to a {@link BitSet} of
+ * source positions. A filter ANDs the bitsets of its non-blank fields and
+ * walks the set bits, so any combination is answered in
+ * microseconds without calling NewsAPI. Matching follows NewsAPI: a null or
+ * blank filter matches everything, values compare case-insensitively.</p>
+ *
+ * <p>INPUT: the full {@code List<SourceInfo>} from one unfiltered
+ * {@code getSources} call<br>
+ * OUTPUT: {@link #filter} – the sources matching a filter combination, in
+ * catalog order</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class SourceCatalog {
+
+    /** Marker for a blank filter field (matches everything). */
+    private static final BitSet ANY = new BitSet(0);
+
+    private final SourceInfo[] sources;
+    private final Map<String, BitSet> byCountry;
+    private final Map<String, BitSet> byCategory;
+    private final Map<String, BitSet> byLanguage;
+    private final List<SourceInfo> all;
+    private final long loadedAtMillis;
+
+    /**
+     * @param sources        every source, in upstream order
+     * @param loadedAtMillis when the list was fetched
+     */
+    public SourceCatalog(List<SourceInfo> sources, long loadedAtMillis) {
+        this.sources = sources.toArray(new SourceInfo[0]);
+        this.all = List.of(this.sources);
+        this.loadedAtMillis = loadedAtMillis;
+
+        Map<String, BitSet> country = new HashMap<>();
+        Map<String, BitSet> category = new HashMap<>();
+        Map<String, BitSet> language = new HashMap<>();
+        for (int i = 0; i < this.sources.length; i++) {
+            SourceInfo s = this.sources[i];
+            index(country, s.country, i);
+            index(category, s.category, i);
+            index(language, s.language, i);
+        }
+        this.byCountry = Map.copyOf(country);
+        this.byCategory = Map.copyOf(category);
+        this.byLanguage = Map.copyOf(language);
+    }
+
+    /**
+     * @param country  ISO country code, or null/blank for any
+     * @param category category, or null/blank for any
+     * @param language language, or null/blank for any
+     * @return matching sources, in catalog order
+     */
+    public List<SourceInfo> filter(String country, String category, String language) {
+        BitSet match = null;
+        for (BitSet b : new BitSet[] { lookup(byCountry, country), lookup(byCategory, category),
+                lookup(byLanguage, language) }) {
+            if (b == ANY) continue;
+            if (b == null) return List.of();
+            if (match == null) match = (BitSet) b.clone();
+            else match.and(b);
+        }
+        if (match == null) return all;
+
+        List<SourceInfo> out = new ArrayList<>(match.cardinality());
+        for (int i = match.nextSetBit(0); i >= 0; i = match.nextSetBit(i + 1)) out.add(sources[i]);
+        return out;
+    }
+
+    /** @return number of sources in the snapshot */
+    public int size() {
+        return sources.length;
+    }
+
+    /** @return when the snapshot's list was fetched */
+    public long loadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    private static BitSet lookup(Map<String, BitSet> index, String value) {
+        if (value == null || value.isBlank()) return ANY;
+        return index.get(value.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static void index(Map<String, BitSet> index, String value, int position) {
+        if (value == null || value.isBlank()) return;
+        index.computeIfAbsent(value.trim().toLowerCase(Locale.ROOT), v -> new BitSet()).set(position);
+    }
+}
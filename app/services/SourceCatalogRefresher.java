@@ -0,0 +1,105 @@
+package app.services;
+
+import app.models.SourceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the current {@link SourceCatalog} and replaces it on every refresh.
+ *
+ * <p>A refresh is one unfiltered, background-priority {@code getSources} call
+ * (through the {@code sources} {@link EndpointBreaker} underneath the rate
+ * limiter). The new snapshot is
+ * built off to the side and published with a single
+ * {@link AtomicReference#set}, so readers never block and never see a
+ * half-built catalog. A failed refresh keeps the previous snapshot.</p>
+ *
+ * <p>{@link modules.Module} schedules {@link #refresh()} every
+ * {@code newsapi.sourcesRefreshInterval}; every {@code ResourceNewsActor} worker
+ * reads {@link #current()}.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class SourceCatalogRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger("application");
+
+    private final NewsApiService upstream;
+    private final AtomicReference<SourceCatalog> current = new AtomicReference<>();
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder served = new LongAdder();
+
+    /**
+     * @param upstream NewsAPI client (uncached: a refresh must see the current list)
+     */
+    public SourceCatalogRefresher(NewsApiService upstream) {
+        this.upstream = upstream;
+    }
+
+    /** @return the latest snapshot, or null until a refresh succeeds or {@link #prime} installs one */
+    public SourceCatalog current() {
+        return current.get();
+    }
+
+    /**
+     * Installs a catalog fetched before a restart, unless a refresh already
+     * produced a newer one.
+     *
+     * @param sources         the full source list
+     * @param loadedAtMillis when it was fetched
+     */
+    public void prime(List<SourceInfo> sources, long loadedAtMillis) {
+        SourceCatalog catalog = new SourceCatalog(sources, loadedAtMillis);
+        current.accumulateAndGet(catalog,
+                (old, fresh) -> old == null || old.loadedAtMillis() < fresh.loadedAtMillis() ? fresh : old);
+    }
+
+    /**
+     * Fetches the full source list and swaps in a new snapshot.
+     *
+     * @return the snapshot in use once the call completes (the old one on failure)
+     */
+    public CompletionStage<SourceCatalog> refresh() {
+        return upstream.getSources("", "", "", NewsApiService.Priority.BACKGROUND)
+                .handle((List<SourceInfo> list, Throwable err) -> {
+                    if (err != null) {
+                        failures.increment();
+                        logger.warn("Source catalog refresh failed, keeping {}: {}",
+                                current.get() == null ? "no catalog" : "the previous catalog", err.toString());
+                        return current.get();
+                    }
+                    SourceCatalog catalog = new SourceCatalog(list, System.currentTimeMillis());
+                    current.set(catalog);
+                    refreshes.increment();
+                    return catalog;
+                });
+    }
+
+    /** Counts a request answered from the snapshot. */
+    public void recordServed() {
+        served.increment();
+    }
+
+    /** @return successful refreshes */
+    public long refreshes() { return refreshes.sum(); }
+
+    /** @return failed refreshes */
+    public long failures() { return failures.sum(); }
+
+    /** @return source requests answered from the snapshot */
+    public long served() { return served.sum(); }
+
+    /** @return sources in the current snapshot (0 before the first refresh) */
+    public int size() {
+        SourceCatalog c = current.get();
+        return c == null ? 0 : c.size();
+    }
+}
@@ -0,0 +1,379 @@
+package app.store;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import com.typesafe.config.Config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Append-only on-disk log of fetched articles and sources, replayed at
+ * startup so the process comes up with warm caches and indexes.
+ *
+ * <p>Records ({@link StoreCodec}) are appended to numbered segment files
+ * ({@code 000000000001.seg}, ...) in a directory. The active segment rolls over
+ * at {@code segmentBytes}. Appends are encoded and written on one daemon
+ * thread, so callers (NewsAPI completions) never wait on the disk, and
+ * nothing is fsynced per record: losing the last few records in a crash only
+ * costs a few upstream calls.</p>
+ *
+ * <p>{@link #replay} maps each segment read-only and decodes records straight
+ * from the mapping, skipping those older than the requested window. A torn
+ * record at the tail of the last segment is cut off when the store opens.</p>
+ *
+ * <p>{@link #compact} seals the active segment, then rewrites all sealed
+ * segments into one. It keeps only the newest record per key (query, or
+ * source filters) within {@code retention}.</p>
+ *
+ * <p>INPUT: successful NewsAPI results ({@link #appendArticles}, {@link #appendSources})<br>
+ * OUTPUT: the same results, replayed newest-last into a {@link Replay}</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class ArticleStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger("application");
+
+    private static final String SUFFIX = ".seg";
+
+    /**
+     * Store location and bounds.
+     * <ul>
+     *   <li>{@code directory}    – where segment files live (created if missing)</li>
+     *   <li>{@code segmentBytes} – size at which the active segment rolls over</li>
+     *   <li>{@code retention}    – records older than this are dropped by compaction</li>
+     * </ul>
+     */
+    public static final class Settings {
+        public final Path directory;
+        public final long segmentBytes;
+        public final Duration retention;
+
+        public Settings(Path directory, long segmentBytes, Duration retention) {
+            this.directory = directory;
+            this.segmentBytes = segmentBytes;
+            this.retention = retention;
+        }
+
+        /**
+         * @param config application configuration ({@code notilytics.store} block)
+         */
+        public static Settings fromConfig(Config config) {
+            Config c = config.getConfig("notilytics.store");
+            return new Settings(Path.of(c.getString("directory")), c.getBytes("segmentBytes"),
+                    c.getDuration("retention"));
+        }
+    }
+
+    /** Receives replayed records, oldest first. */
+    public interface Replay {
+        void articles(String query, List<Article> articles, long writtenAtMillis);
+
+        void sources(String country, String category, String language, List<SourceInfo> sources,
+                     long writtenAtMillis);
+    }
+
+    private final Settings settings;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "notilytics-store-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Touched only on the writer thread after the constructor.
+    private long activeSeq;
+    private FileChannel active;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    /**
+     * Opens (or creates) the store and repairs a torn tail.
+     *
+     * @throws UncheckedIOException if the directory cannot be used
+     */
+    public ArticleStore(Settings settings) {
+        this.settings = settings;
+        try {
+            Files.createDirectories(settings.directory);
+            List<Path> segments = segments();
+            if (segments.isEmpty()) {
+                activeSeq = 1;
+            } else {
+                Path last = segments.get(segments.size() - 1);
+                activeSeq = seqOf(last);
+                truncateTornTail(last);
+            }
+            active = openForAppend(activeSeq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open article store in " + settings.directory, e);
+        }
+    }
+
+    /** Appends the result of one search, asynchronously. */
+    public void appendArticles(String query, List<Article> articles) {
+        if (articles.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        submit(() -> write(StoreCodec.articles(query, articles, now)));
+    }
+
+    /** Appends the result of one sources call, asynchronously. */
+    public void appendSources(String country, String category, String language, List<SourceInfo> sources) {
+        long now = System.currentTimeMillis();
+        String key = nullToEmpty(country) + "|" + nullToEmpty(category) + "|" + nullToEmpty(language);
+        submit(() -> write(StoreCodec.sources(key, sources, now)));
+    }
+
+    /**
+     * Decodes every record written since {@code sinceMillis}, oldest first.
+     * Call before appending (at startup).
+     *
+     * @param sinceMillis oldest record to replay
+     * @param replay      receiver of the records
+     * @return number of records replayed
+     */
+    public int replay(long sinceMillis, Replay replay) {
+        int count = 0;
+        try {
+            for (Path segment : segments()) {
+                MappedByteBuffer map = map(segment);
+                while (true) {
+                    int length = StoreCodec.check(map);
+                    if (length < 0) break;
+                    ByteBuffer body = map.slice(map.position() + StoreCodec.HEADER_BYTES, length);
+                    map.position(map.position() + StoreCodec.HEADER_BYTES + length);
+                    if (StoreCodec.writtenAt(body) < sinceMillis) continue;
+                    deliver(body, replay);
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Article store replay stopped after {} record(s): {}", count, e.toString());
+        }
+        return count;
+    }
+
+    /**
+     * Seals the active segment, if it holds anything, and rewrites the sealed ones, keeping the
+     * newest record per key within the retention. Runs on the writer thread.
+     */
+    public void compact() {
+        submit(() -> {
+            try {
+                compactNow();
+            } catch (IOException e) {
+                logger.warn("Article store compaction failed: {}", e.toString());
+            }
+        });
+    }
+
+    /** @return records appended since start */
+    public long appended() { return appended.sum(); }
+
+    /** @return bytes appended since start */
+    public long appendedBytes() { return appendedBytes.sum(); }
+
+    /** @return appends that failed to reach the disk */
+    public long writeFailures() { return writeFailures.sum(); }
+
+    /** @return compactions run since start */
+    public long compactions() { return compactions.sum(); }
+
+    /** @return bytes used by all segment files */
+    public long diskBytes() {
+        long bytes = 0;
+        try {
+            for (Path p : segments()) bytes += Files.size(p);
+        } catch (IOException e) {
+            // a segment removed by a concurrent compaction; the next scrape sees the new files
+        }
+        return bytes;
+    }
+
+    /** Flushes pending appends and closes the active segment; later calls do nothing. */
+    @Override
+    public synchronized void close() {
+        if (writer.isShutdown()) return;
+        writer.execute(() -> {
+            try {
+                active.force(false);
+                active.close();
+            } catch (IOException e) {
+                logger.warn("Closing the article store failed: {}", e.toString());
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Runs {@code task} on the writer thread; after {@link #close} the task is dropped and logged. */
+    private void submit(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Article store is closed, dropping a write");
+        }
+    }
+
+    /* ---------------- writer thread ---------------- */
+
+    private void write(ByteBuffer record) {
+        try {
+            if (active.size() > 0 && active.size() + record.remaining() > settings.segmentBytes) roll();
+            int bytes = record.remaining();
+            while (record.hasRemaining()) active.write(record);
+            appended.increment();
+            appendedBytes.add(bytes);
+        } catch (IOException e) {
+            writeFailures.increment();
+            logger.warn("Article store append failed: {}", e.toString());
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        active = openForAppend(++activeSeq);
+    }
+
+    private void compactNow() throws IOException {
+        // An idle node has nothing to seal, but its sealed segments still age out of the retention.
+        if (active.size() > 0) roll();
+
+        List<Path> sealed = new ArrayList<>(segments());
+        sealed.removeIf(p -> seqOf(p) == activeSeq);
+        if (sealed.isEmpty()) return;
+
+        long oldest = System.currentTimeMillis() - settings.retention.toMillis();
+        long before = 0;
+        Map<String, ByteBuffer> newest = new LinkedHashMap<>();
+        for (Path segment : sealed) {
+            before += Files.size(segment);
+            MappedByteBuffer map = map(segment);
+            while (true) {
+                int length = StoreCodec.check(map);
+                if (length < 0) break;
+                int start = map.position();
+                ByteBuffer body = map.slice(start + StoreCodec.HEADER_BYTES, length);
+                map.position(start + StoreCodec.HEADER_BYTES + length);
+                if (StoreCodec.writtenAt(body) < oldest) continue;
+
+                String key = StoreCodec.type(body) + StoreCodec.key(body);
+                newest.remove(key);
+                newest.put(key, map.slice(start, StoreCodec.HEADER_BYTES + length));
+            }
+        }
+
+        // Rewrite under the last sealed number (still older than the active segment), then drop the rest.
+        // When every record has expired there is nothing to rewrite and all sealed segments go.
+        Path target = newest.isEmpty() ? null : sealed.get(sealed.size() - 1);
+        long after = 0;
+        if (target != null) {
+            Path tmp = settings.directory.resolve("compact.tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (ByteBuffer record : newest.values()) {
+                    after += record.remaining();
+                    while (record.hasRemaining()) out.write(record);
+                }
+                out.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        for (Path p : sealed) {
+            if (!p.equals(target)) Files.deleteIfExists(p);
+        }
+        compactions.increment();
+        logger.info("Article store compacted {} segment(s): {} → {} bytes, {} record(s) kept",
+                sealed.size(), before, after, newest.size());
+    }
+
+    /* ---------------- files ---------------- */
+
+    private void deliver(ByteBuffer body, Replay replay) {
+        long writtenAt = StoreCodec.writtenAt(body);
+        String key = StoreCodec.key(body);
+        if (StoreCodec.type(body) == StoreCodec.ARTICLES) {
+            replay.articles(key, StoreCodec.readArticles(body), writtenAt);
+        } else if (StoreCodec.type(body) == StoreCodec.SOURCES) {
+            String[] f = key.split("\\|", -1);
+            replay.sources(f[0], f[1], f[2], StoreCodec.readSources(body), writtenAt);
+        }
+    }
+
+    /** Cuts the last segment after its last intact record. */
+    private void truncateTornTail(Path segment) throws IOException {
+        MappedByteBuffer map = map(segment);
+        while (true) {
+            int length = StoreCodec.check(map);
+            if (length < 0) break;
+            map.position(map.position() + StoreCodec.HEADER_BYTES + length);
+        }
+        long valid = map.position();
+        if (valid < Files.size(segment)) {
+            logger.warn("Article store: dropping {} torn byte(s) at the end of {}",
+                    Files.size(segment) - valid, segment.getFileName());
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+            }
+        }
+    }
+
+    private MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    private FileChannel openForAppend(long seq) throws IOException {
+        return FileChannel.open(settings.directory.resolve(String.format("%012d%s", seq, SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /** @return segment files, oldest first */
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(settings.directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long seqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,24 @@
+package app.store;
+
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Closes the {@link ArticleStore} when Play stops the application, including
+ * on a dev-mode reload, before the reloaded application opens the store
+ * directory again. Bound as an eager singleton by {@link modules.Module}
+ * when the store is enabled.
+ *
+ * @author Sara Ezzati
+ */
+@Singleton
+public final class ArticleStoreLifecycle {
+
+    @Inject
+    public ArticleStoreLifecycle(ArticleStore store, ApplicationLifecycle lifecycle) {
+        lifecycle.addStopHook(() -> CompletableFuture.runAsync(store::close));
+    }
+}
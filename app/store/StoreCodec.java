@@ -0,0 +1,194 @@
+package app.store;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of one {@link ArticleStore} record.
+ *
+ * <pre>
+ *   int   length           bytes of the body that follows the crc
+ *   int   crc32            of the body
+ *   body:
+ *     byte  type           {@link #ARTICLES} | {@link #SOURCES}
+ *     long  writtenAtMillis
+ *     str   key            query, or country|category|language
+ *     varint count
+ *     count × item         Article: id, title, description, url, source, float sentiment (NaN = none)
+ *                          SourceInfo: id, name, country, category, language, url
+ * </pre>
+ *
+ * <p>A {@code str} is a varint of {@code UTF-8 length + 1} followed by the
+ * bytes; {@code 0} encodes null. Big-endian, as {@link ByteBuffer} defaults.</p>
+ *
+ * @author Sara Ezzati
+ */
+final class StoreCodec {
+
+    static final byte ARTICLES = 1;
+    static final byte SOURCES = 2;
+
+    /** {@code length} and {@code crc32}. */
+    static final int HEADER_BYTES = 8;
+
+    private StoreCodec() { }
+
+    static ByteBuffer articles(String query, List<Article> articles, long writtenAtMillis) {
+        Body body = new Body(256 + articles.size() * 512);
+        body.header(ARTICLES, writtenAtMillis, query, articles.size());
+        for (Article a : articles) {
+            body.string(a.id).string(a.title).string(a.description).string(a.url).string(a.sourceName)
+                    .floatValue(a.sentiment == null ? Float.NaN : a.sentiment);
+        }
+        return body.seal();
+    }
+
+    static ByteBuffer sources(String key, List<SourceInfo> sources, long writtenAtMillis) {
+        Body body = new Body(256 + sources.size() * 256);
+        body.header(SOURCES, writtenAtMillis, key, sources.size());
+        for (SourceInfo s : sources) {
+            body.string(s.id).string(s.name).string(s.country).string(s.category).string(s.language).string(s.url);
+        }
+        return body.seal();
+    }
+
+    /**
+     * Checks the record starting at {@code buf}'s position.
+     *
+     * @return the body length, or -1 if the record is truncated or corrupt
+     *         (a torn write at the tail of a segment)
+     */
+    static int check(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES) return -1;
+        int start = buf.position();
+        int length = buf.getInt(start);
+        int crc = buf.getInt(start + 4);
+        if (length <= 0 || buf.remaining() - HEADER_BYTES < length) return -1;
+
+        CRC32 c = new CRC32();
+        c.update(buf.slice(start + HEADER_BYTES, length));
+        return (int) c.getValue() == crc ? length : -1;
+    }
+
+    static byte type(ByteBuffer body) {
+        return body.get(0);
+    }
+
+    static long writtenAt(ByteBuffer body) {
+        return body.getLong(1);
+    }
+
+    /** @return the record's key; leaves {@code body} positioned at the item count */
+    static String key(ByteBuffer body) {
+        body.position(9);
+        return readString(body);
+    }
+
+    /** @param body positioned at the item count (after {@link #key}) */
+    static List<Article> readArticles(ByteBuffer body) {
+        int n = readVarint(body);
+        List<Article> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Article a = new Article(readString(body), readString(body), readString(body),
+                    readString(body), readString(body));
+            float sentiment = body.getFloat();
+            out.add(Float.isNaN(sentiment) ? a : a.withSentiment(sentiment));
+        }
+        return out;
+    }
+
+    /** @param body positioned at the item count (after {@link #key}) */
+    static List<SourceInfo> readSources(ByteBuffer body) {
+        int n = readVarint(body);
+        List<SourceInfo> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(new SourceInfo(readString(body), readString(body), readString(body),
+                    readString(body), readString(body), readString(body)));
+        }
+        return out;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = readVarint(buf) - 1;
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /** Growable body writer; the header is filled in by {@link #seal}. */
+    private static final class Body {
+        ByteBuffer buffer;
+
+        Body(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+            buffer.position(HEADER_BYTES);
+        }
+
+        void header(byte type, long writtenAtMillis, String key, int count) {
+            buffer.put(type).putLong(writtenAtMillis);
+            string(key);
+            varint(count);
+        }
+
+        Body string(String s) {
+            if (s == null) {
+                varint(0);
+                return this;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1);
+            buffer = ensure(bytes.length);
+            buffer.put(bytes);
+            return this;
+        }
+
+        Body floatValue(float f) {
+            buffer = ensure(4);
+            buffer.putFloat(f);
+            return this;
+        }
+
+        void varint(int v) {
+            buffer = ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buffer.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buffer.put((byte) v);
+        }
+
+        ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() >= bytes) return buffer;
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            return bigger.put(buffer);
+        }
+
+        ByteBuffer seal() {
+            int length = buffer.position() - HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), HEADER_BYTES, length);
+            buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+            return buffer.flip();
+        }
+    }
+}
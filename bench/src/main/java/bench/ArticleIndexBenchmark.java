@@ -0,0 +1,69 @@
+package bench;
+
+import app.index.ArticleIndex;
+import app.models.Article;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to a local preview: {@link ArticleIndex#search} over a window of
+ * {@code documents} recently fetched articles, for a one-term and a two-term
+ * query. This is what a new search waits before its first result frame,
+ * against one NewsAPI round trip otherwise.
+ *
+ * <p>{@code sbt "bench/Jmh/run bench.ArticleIndexBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleIndexBenchmark {
+
+    private static final String[] TOPICS = {
+            "bitcoin", "etf", "crypto", "markets", "fed", "rates", "chips", "oil", "election", "climate"
+    };
+
+    @Param({"10000", "50000"})
+    public int documents;
+
+    private ArticleIndex index;
+
+    @Setup
+    public void setup() {
+        index = new ArticleIndex(ArticleIndex.Settings.DEFAULTS);
+        Random random = new Random(42);
+        List<Article> page = new ArrayList<>(StubNewsApiService.PAGE_SIZE);
+        for (int i = 0; i < documents; i++) {
+            String url = "https://news.example.com/2026/10/16/story-" + i;
+            page.add(new Article(url,
+                    TOPICS[random.nextInt(TOPICS.length)] + " and " + TOPICS[random.nextInt(TOPICS.length)]
+                            + " headline " + i,
+                    "Analysts weigh " + TOPICS[random.nextInt(TOPICS.length)] + " outlook, item " + i,
+                    url, "Example Wire"));
+            if (page.size() == StubNewsApiService.PAGE_SIZE) {
+                index.addAll(page);
+                page = new ArrayList<>(StubNewsApiService.PAGE_SIZE);
+            }
+        }
+        index.addAll(page);
+    }
+
+    @Benchmark
+    public List<Article> oneTerm() {
+        return index.search("bitcoin", 20);
+    }
+
+    @Benchmark
+    public List<Article> twoTerms() {
+        return index.search("bitcoin etf", 20);
+    }
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import app.actors.ResourceNewsActor;
+import app.actors.SearchActor;
+import app.analytics.SentimentScorer;
+
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.ActorSystem;
+import org.apache.pekko.actor.typed.Props;
+import org.apache.pekko.actor.typed.javadsl.AskPattern;
+import org.apache.pekko.actor.typed.javadsl.Behaviors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one ask round-trip through a single {@link SearchActor} and a
+ * single {@link ResourceNewsActor}, whose NewsAPI stub answers at once:
+ * mailbox, breaker, {@code pipeToSelf} and the reply, without network.
+ *
+ * <p>{@code sbt "bench/Jmh/run -prof gc bench.AskRoundTripBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AskRoundTripBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private ActorSystem<Void> system;
+    private ActorRef<SearchActor.Command> search;
+    private ActorRef<ResourceNewsActor.Command> resource;
+
+    @Setup
+    public void setup() {
+        system = ActorSystem.create(Behaviors.empty(), "ask-bench");
+        StubNewsApiService api = new StubNewsApiService();
+        search = system.systemActorOf(SearchActor.create(api, new SentimentScorer(1, 1024)), "search", Props.empty());
+        resource = system.systemActorOf(ResourceNewsActor.create(api), "resource", Props.empty());
+    }
+
+    @TearDown
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public SearchActor.SearchResults searchAsk() {
+        return AskPattern.<SearchActor.Command, SearchActor.SearchResults>ask(
+                search, replyTo -> new SearchActor.SearchArticles("bitcoin", replyTo), TIMEOUT, system.scheduler())
+                .toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public ResourceNewsActor.SourcesResponse sourcesAsk() {
+        return AskPattern.<ResourceNewsActor.Command, ResourceNewsActor.SourcesResponse>ask(
+                resource, replyTo -> new ResourceNewsActor.GetSources("us", "business", "en", replyTo),
+                TIMEOUT, system.scheduler())
+                .toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import app.json.CborWriter;
+import app.json.Frames;
+import app.json.JsonWriter;
+import app.models.Article;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text vs binary WebSocket frames for one article batch: CPU to produce the
+ * frame ({@link Frames#articles} alone for {@code text}, plus
+ * {@link CborWriter#transcode} for {@code cbor}), and bytes on the wire,
+ * printed once per parameter set at the end of the trial.
+ *
+ * <p>{@code sbt "bench/Jmh/run -prof gc bench.FrameEncodingBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameEncodingBenchmark {
+
+    @Param({"1", "20", "100"})
+    public int articlesPerBatch;
+
+    private final JsonWriter json = new JsonWriter(8 * 1024);
+    private final CborWriter cbor = new CborWriter(8 * 1024);
+    private List<Article> batch;
+
+    @Setup
+    public void setup() {
+        batch = StubNewsApiService.articles(articlesPerBatch, 0);
+    }
+
+    @TearDown
+    public void wireBytes() {
+        String text = Frames.articles(json, batch, 0.125);
+        int textBytes = text.getBytes(StandardCharsets.UTF_8).length;
+        int cborBytes = cbor.transcode(text).length;
+        System.out.printf("%n%d article(s): text %d bytes, cbor %d bytes (%.0f%%)%n",
+                articlesPerBatch, textBytes, cborBytes, 100.0 * cborBytes / textBytes);
+    }
+
+    @Benchmark
+    public String text() {
+        return Frames.articles(json, batch, 0.125);
+    }
+
+    @Benchmark
+    public byte[] cbor() {
+        return cbor.transcode(Frames.articles(json, batch, 0.125));
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import app.json.Frames;
+import app.json.JsonWriter;
+import app.models.Article;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame serialization: the previous {@code String.format} path versus
+ * {@link Frames#articles(JsonWriter, List)} writing into a reused buffer.
+ * {@code jsonWriter} splices cached article fragments (the broadcast case:
+ * the batch was already encoded for another session); {@code jsonWriterColdBatch}
+ * encodes a batch nobody has serialized yet.
+ *
+ * <p>Run with the GC profiler to see bytes allocated per frame:
+ * {@code sbt "bench/Jmh/run -prof gc bench.JsonBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"20", "100"})
+    public int batchSize;
+
+    private List<Article> batch;
+    private final JsonWriter writer = new JsonWriter(8 * 1024);
+
+    @Setup
+    public void setup() {
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new Article(
+                    "https://news.example.com/2026/10/16/markets/story-" + i,
+                    "Bitcoin \"ETF\" inflows hit record as markets rally, story " + i,
+                    "Spot bitcoin exchange-traded funds drew their largest daily inflows since launch.\nAnalysts say the trend may continue.",
+                    "https://news.example.com/2026/10/16/markets/story-" + i,
+                    "Example Wire"));
+        }
+    }
+
+    /** The path used before: String.format per article, then concatenation. */
+    @Benchmark
+    public String legacyStringFormat() {
+        StringBuilder sb = new StringBuilder("{\"articles\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            Article a = batch.get(i);
+            sb.append(String.format(
+                    "{\"id\":\"%s\",\"title\":\"%s\",\"description\":\"%s\",\"url\":\"%s\",\"source\":\"%s\"}",
+                    a.id, a.title.replace("\"", "'"), a.description.replace("\"", "'"), a.url, a.sourceName));
+            if (i < batch.size() - 1) sb.append(",");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String jsonWriter() {
+        return Frames.articles(writer, batch);
+    }
+
+    @Benchmark
+    public String jsonWriterColdBatch() {
+        List<Article> cold = new ArrayList<>(batch.size());
+        for (Article a : batch) {
+            cold.add(new Article(a.id, a.title, a.description, a.url, a.sourceName));
+        }
+        return Frames.articles(writer, cold);
+    }
+}
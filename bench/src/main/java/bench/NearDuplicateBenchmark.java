@@ -0,0 +1,110 @@
+package bench;
+
+import app.dedup.NearDuplicateIndex;
+import app.dedup.SimHash;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the near-duplicate stage {@code UserActor} runs on every unseen article.
+ *
+ * <p>{@code fingerprint} is the {@link SimHash} of a realistic title and
+ * description; {@code lookup} is fingerprint plus {@link NearDuplicateIndex}
+ * probe-or-insert on a stream where about a third of the articles rewrite an
+ * earlier story under another source credit. The retained heap
+ * of one session's index is printed at the end of each trial (JOL).</p>
+ *
+ * <p>Run: {@code sbt "bench/Jmh/run -prof gc bench.NearDuplicateBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearDuplicateBenchmark {
+
+    private static final int STREAM_MASK = (1 << 14) - 1;
+
+    private static final String[] SOURCES = {"Reuters", "AP", "CNN", "BBC News", "Bloomberg", "The Guardian"};
+
+    @Param({"1024"})
+    public int capacity;
+
+    @Param({"6"})
+    public int maxDistance;
+
+    private String[] titles;
+    private String[] descriptions;
+    private NearDuplicateIndex index;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildStream() {
+        SplittableRandom random = new SplittableRandom(42);
+        titles = new String[STREAM_MASK + 1];
+        descriptions = new String[titles.length];
+        String[] vocabulary = new String[2_000];
+        for (int w = 0; w < vocabulary.length; w++) vocabulary[w] = word(new SplittableRandom(w));
+        for (int i = 0; i < titles.length; i++) {
+            // every third article retells a recent story under another source credit
+            int story = i % 3 == 2 ? i - 1 - random.nextInt(Math.min(i, 64)) : i;
+            SplittableRandom s = new SplittableRandom(story);
+            titles[i] = words(s, vocabulary, 9) + " - " + SOURCES[random.nextInt(SOURCES.length)];
+            descriptions[i] = words(s, vocabulary, 24) + ".";
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void freshSession() {
+        index = new NearDuplicateIndex(capacity, maxDistance);
+        cursor = 0;
+    }
+
+    @Benchmark
+    public long fingerprint() {
+        int i = cursor++ & STREAM_MASK;
+        return SimHash.of(titles[i], descriptions[i]);
+    }
+
+    @Benchmark
+    public int lookup() {
+        int i = cursor++ & STREAM_MASK;
+        long fingerprint = SimHash.of(titles[i], descriptions[i]);
+        int slot = index.find(fingerprint);
+        return slot != NearDuplicateIndex.NONE ? slot : index.add(fingerprint, titles[i], null);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportFootprint() {
+        NearDuplicateIndex session = new NearDuplicateIndex(capacity, maxDistance);
+        for (int i = 0; i < titles.length; i++) {
+            long fingerprint = SimHash.of(titles[i], descriptions[i]);
+            if (session.find(fingerprint) == NearDuplicateIndex.NONE) session.add(fingerprint, "id", null);
+        }
+        long bytes = GraphLayout.parseInstance(session).totalSize();
+        System.out.printf("%n[footprint] capacity=%d maxDistance=%d: %,d bytes per session (excluding ids)%n",
+                capacity, maxDistance, bytes);
+    }
+
+    private static String words(SplittableRandom random, String[] vocabulary, int n) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) text.append(' ');
+            text.append(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String word(SplittableRandom random) {
+        char[] letters = new char[3 + random.nextInt(8)];
+        for (int i = 0; i < letters.length; i++) letters[i] = (char) ('a' + random.nextInt(26));
+        return new String(letters);
+    }
+}
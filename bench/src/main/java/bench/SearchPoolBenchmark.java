@@ -0,0 +1,76 @@
+package bench;
+
+import app.actors.HashRoutedPool;
+import app.actors.SearchActor;
+import app.analytics.SentimentScorer;
+
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.ActorSystem;
+import org.apache.pekko.actor.typed.javadsl.AskPattern;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search throughput of the {@code search-actor} pool as the number of
+ * workers grows. Eight client threads ask for queries drawn from a large
+ * set (little coalescing), against a NewsAPI stub that answers immediately,
+ * so the actors themselves are the bottleneck. Resizing is disabled
+ * ({@code min == max}).
+ *
+ * <p>{@code sbt "bench/Jmh/run bench.SearchPoolBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SearchPoolBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private static final int DISTINCT_QUERIES = 10_000;
+
+    private ActorSystem<SearchActor.Command> system;
+    private String[] queries;
+
+    @Setup
+    public void setup() {
+        HashRoutedPool.Settings settings =
+                new HashRoutedPool.Settings(workers, workers, Duration.ofHours(1), Integer.MAX_VALUE, 0, 64);
+        system = ActorSystem.create(
+                HashRoutedPool.create("search-worker",
+                        SearchActor.create(new StubNewsApiService(), new SentimentScorer(1, 1024)),
+                        SearchActor::routingKey, SearchActor.Drain.INSTANCE, settings,
+                        new HashRoutedPool.Stats("search")),
+                "search-pool-bench");
+
+        queries = new String[DISTINCT_QUERIES];
+        for (int i = 0; i < queries.length; i++) queries[i] = "Query " + i;
+    }
+
+    @TearDown
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public SearchActor.SearchResults search() {
+        String q = queries[ThreadLocalRandom.current().nextInt(queries.length)];
+        CompletionStage<SearchActor.SearchResults> reply = AskPattern.ask(
+                system,
+                (ActorRef<SearchActor.SearchResults> replyTo) -> new SearchActor.SearchArticles(q, replyTo),
+                Duration.ofSeconds(5),
+                system.scheduler());
+        return reply.toCompletableFuture().join();
+    }
+}
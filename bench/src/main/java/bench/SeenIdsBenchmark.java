@@ -0,0 +1,84 @@
+package bench;
+
+import app.dedup.SeenIds;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link SeenIds} strategies used by {@code UserActor}.
+ *
+ * <p>{@code add} measures ops/sec on a stream of realistic article ids where
+ * roughly half of the ids have been seen before. At the end of each trial the
+ * retained heap of one session's structure after {@link #SESSION_IDS} distinct
+ * ids is printed (JOL), which is the per-session memory cost.</p>
+ *
+ * <p>Run: {@code sbt "bench/Jmh/run -prof gc bench.SeenIdsBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeenIdsBenchmark {
+
+    /** Distinct ids pushed over a long-lived session (a few hours of live search). */
+    private static final int SESSION_IDS = 50_000;
+
+    private static final int STREAM_MASK = (1 << 16) - 1;
+
+    @Param({"hash-set", "lru", "long-hash", "bloom"})
+    public String strategy;
+
+    @Param({"4096"})
+    public int capacity;
+
+    @Param({"0.001"})
+    public double falsePositiveRate;
+
+    private String[] stream;
+    private SeenIds seen;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildStream() {
+        SplittableRandom random = new SplittableRandom(42);
+        stream = new String[STREAM_MASK + 1];
+        for (int i = 0; i < stream.length; i++) {
+            // ~2 x capacity distinct ids → about half of the adds are repeats
+            stream[i] = articleId(random.nextInt(capacity * 2));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void freshSession() {
+        seen = SeenIds.create(strategy, capacity, falsePositiveRate);
+        cursor = 0;
+    }
+
+    @Benchmark
+    public boolean add() {
+        return seen.add(stream[cursor++ & STREAM_MASK]);
+    }
+
+    @TearDown(Level.Trial)
+    public void reportFootprint() {
+        SeenIds session = SeenIds.create(strategy, capacity, falsePositiveRate);
+        for (int i = 0; i < SESSION_IDS; i++) {
+            session.add(articleId(i));
+        }
+        long bytes = GraphLayout.parseInstance(session).totalSize();
+        System.out.printf("%n[footprint] %s capacity=%d after %d ids: %,d bytes per session%n",
+                strategy, capacity, SESSION_IDS, bytes);
+    }
+
+    private static String articleId(int n) {
+        return "https://news.example.com/2026/10/16/world/story-" + n;
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import app.json.Frames;
+import app.json.JsonWriter;
+import app.models.Article;
+import app.models.SourceInfo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item and per-frame serialization cost: {@link Article#toJson()} on a
+ * fresh article (nothing cached yet), and the {@code articles} / {@code sources}
+ * frames built by {@link Frames} (the former {@code toJsonArticles} /
+ * {@code toJsonSources}).
+ *
+ * <p>{@code sbt "bench/Jmh/run -prof gc bench.SerializationBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private final JsonWriter writer = new JsonWriter(8 * 1024);
+    private List<Article> articles;
+    private List<SourceInfo> sources;
+    private Article template;
+
+    @Setup
+    public void setup() {
+        articles = StubNewsApiService.articles(StubNewsApiService.PAGE_SIZE, 0);
+        template = articles.get(0);
+
+        sources = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            sources.add(new SourceInfo("source-" + i, "Example \"Source\" " + i, "us", "business", "en",
+                    "https://source" + i + ".example.com"));
+        }
+    }
+
+    @Benchmark
+    public String articleToJsonCold() {
+        Article a = new Article(template.id, template.title, template.description, template.url, template.sourceName);
+        return a.toJson();
+    }
+
+    @Benchmark
+    public String articlesFrame() {
+        return Frames.articles(writer, articles);
+    }
+
+    @Benchmark
+    public String sourcesFrame() {
+        return Frames.sources(writer, sources);
+    }
+}
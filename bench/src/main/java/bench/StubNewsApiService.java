@@ -0,0 +1,58 @@
+package bench;
+
+import app.models.Article;
+import app.models.SourceInfo;
+import app.services.NewsApiService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * NewsAPI stub for benchmarks: every call completes at once with the same
+ * {@link #PAGE_SIZE} articles or sources, so only the actor path is measured.
+ *
+ * @author Sara Ezzati
+ */
+final class StubNewsApiService implements NewsApiService {
+
+    static final int PAGE_SIZE = 20;
+
+    private final CompletableFuture<List<Article>> articles;
+    private final CompletableFuture<List<SourceInfo>> sources;
+
+    StubNewsApiService() {
+        articles = CompletableFuture.completedFuture(List.copyOf(articles(PAGE_SIZE, 0)));
+
+        List<SourceInfo> s = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            s.add(new SourceInfo("source-" + i, "Example Source " + i, "us", "business", "en",
+                    "https://source" + i + ".example.com"));
+        }
+        sources = CompletableFuture.completedFuture(List.copyOf(s));
+    }
+
+    /** @return {@code n} distinct articles with ids starting at {@code from} */
+    static List<Article> articles(int n, int from) {
+        List<Article> list = new ArrayList<>(n);
+        for (int i = from; i < from + n; i++) {
+            String url = "https://news.example.com/2026/10/16/story-" + i;
+            list.add(new Article(url,
+                    "Bitcoin \"ETF\" inflows hit record as markets rally, story " + i,
+                    "Spot bitcoin exchange-traded funds drew their largest daily inflows since launch.",
+                    url, "Example Wire"));
+        }
+        return list;
+    }
+
+    @Override
+    public CompletionStage<List<Article>> searchArticles(String query) {
+        return articles;
+    }
+
+    @Override
+    public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+        return sources;
+    }
+}
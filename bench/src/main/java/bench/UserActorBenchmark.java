@@ -0,0 +1,85 @@
+package bench;
+
+import actors.UserActor;
+import app.actors.FeedRegistryActor;
+import app.actors.ResourceNewsActor;
+import app.actors.SearchActor;
+import app.dedup.SeenIds;
+import app.models.Article;
+import app.services.OutboundStats;
+import app.services.SessionOutbound;
+
+import org.apache.pekko.actor.testkit.typed.javadsl.BehaviorTestKit;
+import org.apache.pekko.actor.testkit.typed.javadsl.TestInbox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code UserActor.onIncomingArticles}: dedup against the session's seen ids,
+ * serialization of the fresh articles and the offer to the outbound queue.
+ *
+ * <p>The actor runs synchronously in a {@link BehaviorTestKit}, so the figure
+ * excludes mailbox and dispatcher cost. Every batch of 20 articles overlaps
+ * the previous one by half, as consecutive polls of a live query do. The
+ * outbound queue is never drained; it stays full and drops the oldest frame.</p>
+ *
+ * <p>The batch sequence is built once per trial and is the same for every
+ * strategy. Each iteration is a single shot through the whole sequence on a
+ * fresh session, so no strategy ever sees the sequence wrap around to ids it
+ * may or may not still remember. Scores are time per batch.</p>
+ *
+ * <p>{@code sbt "bench/Jmh/run -prof gc bench.UserActorBenchmark"}</p>
+ *
+ * @author Sara Ezzati
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = UserActorBenchmark.BATCHES)
+@Measurement(iterations = 50, batchSize = UserActorBenchmark.BATCHES)
+@Fork(1)
+public class UserActorBenchmark {
+
+    static final int BATCHES = 4096;
+
+    @Param({"hash-set", "long-hash", "bloom"})
+    public String dedup;
+
+    private BehaviorTestKit<UserActor.Command> kit;
+    private UserActor.IncomingArticles[] batches;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildSequence() {
+        batches = new UserActor.IncomingArticles[BATCHES];
+        int page = StubNewsApiService.PAGE_SIZE;
+        for (int i = 0; i < BATCHES; i++) {
+            List<Article> articles = StubNewsApiService.articles(page, i * page / 2);
+            batches[i] = new UserActor.IncomingArticles(articles);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void freshSession() {
+        SessionOutbound.Settings settings =
+                new SessionOutbound.Settings(64, SessionOutbound.Overflow.DROP_OLDEST, Duration.ZERO, 1, 262_144);
+        SessionOutbound out = SessionOutbound.create("bench", settings, new OutboundStats()).first();
+
+        kit = BehaviorTestKit.create(UserActor.create(
+                out,
+                TestInbox.<SearchActor.Command>create().getRef(),
+                TestInbox.<ResourceNewsActor.Command>create().getRef(),
+                TestInbox.<FeedRegistryActor.Command>create().getRef(),
+                SeenIds.create(dedup, 4096, 0.001)));
+        cursor = 0;
+    }
+
+    @Benchmark
+    public void incomingArticles() {
+        kit.run(batches[cursor++]);
+    }
+}
@@ -0,0 +1,181 @@
+package bench.cluster;
+
+import app.actors.FeedRegistryActor;
+import app.actors.QueryFeedEntity;
+import app.actors.ShardedFeedRegistryActor;
+import app.models.Article;
+import app.models.SourceInfo;
+import app.services.NewsApiService;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.ActorSystem;
+import org.apache.pekko.actor.typed.Props;
+import org.apache.pekko.actor.typed.javadsl.Behaviors;
+import org.apache.pekko.cluster.MemberStatus;
+import org.apache.pekko.cluster.sharding.typed.javadsl.ClusterSharding;
+import org.apache.pekko.cluster.sharding.typed.javadsl.Entity;
+import org.apache.pekko.cluster.typed.Cluster;
+import org.apache.pekko.cluster.typed.Join;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts several cluster nodes in this JVM and checks cluster mode end to end:
+ * every node subscribes sessions to the same queries, and each query must be
+ * polled upstream by exactly one node while every node receives its batches.
+ *
+ * <p>Each node is a full {@code notilytics-reactive-system} with sharding,
+ * {@link QueryFeedEntity} and {@link ShardedFeedRegistryActor}, configured from
+ * {@code notilytics.cluster} in {@code application.conf} (random ports, joined
+ * programmatically). NewsAPI is a counting stub that returns new articles on
+ * every poll.</p>
+ *
+ * <pre>
+ *   sbt "bench/runMain bench.cluster.ClusterFeedHarness --nodes 3 --queries 4 --seconds 20"
+ * </pre>
+ *
+ * <p>OUTPUT: per query, upstream polls by node and batches received by node;
+ * feeds hosted per node. Exits with status 1 if a query was polled by more
+ * than one node or a node received nothing.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class ClusterFeedHarness {
+
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+
+    /** NewsAPI stub: counts polls per query, a fresh article per poll. */
+    static final class CountingNewsApi implements NewsApiService {
+        final Map<String, LongAdder> polls = new ConcurrentHashMap<>();
+        private final AtomicInteger ids = new AtomicInteger();
+        private final String node;
+
+        CountingNewsApi(String node) {
+            this.node = node;
+        }
+
+        @Override
+        public CompletionStage<List<Article>> searchArticles(String query) {
+            polls.computeIfAbsent(query, q -> new LongAdder()).increment();
+            String id = node + "/" + query + "/" + ids.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of(new Article(id,
+                    "Story about " + query, "Fresh article about " + query, "https://news.example.com/" + id,
+                    "Example Wire")));
+        }
+
+        @Override
+        public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    /** One in-process node and what it observed. */
+    static final class Node {
+        final String name;
+        final ActorSystem<Void> system;
+        final CountingNewsApi api;
+        final FeedRegistryActor.Stats stats = new FeedRegistryActor.Stats();
+        final ActorRef<FeedRegistryActor.Command> registry;
+        final Map<String, LongAdder> received = new ConcurrentHashMap<>();
+
+        Node(int index) {
+            name = "node-" + index;
+            Config base = ConfigFactory.parseString(
+                    "notilytics.cluster.pekko.remote.artery.canonical.port = 0\n"
+                            + "notilytics.cluster.pekko.cluster.seed-nodes = []")
+                    .withFallback(ConfigFactory.load());
+            Config config = base.getConfig("notilytics.cluster").withOnlyPath("pekko").withFallback(base);
+            system = ActorSystem.create(Behaviors.empty(), "notilytics-reactive-system", config);
+            api = new CountingNewsApi(name);
+
+            Duration leaseInterval = base.getDuration("notilytics.cluster.leaseInterval");
+            Duration leaseTimeout = base.getDuration("notilytics.cluster.leaseTimeout");
+            ClusterSharding sharding = ClusterSharding.get(system);
+            sharding.init(Entity.of(QueryFeedEntity.TYPE_KEY, entity -> QueryFeedEntity.create(
+                    entity.getEntityId(), entity.getShard(), api, POLL_INTERVAL, leaseInterval, leaseTimeout, stats)));
+            registry = system.systemActorOf(
+                    ShardedFeedRegistryActor.create(sharding, leaseInterval, leaseTimeout, stats),
+                    "feed-registry", Props.empty());
+        }
+
+        /** Subscribes one stand-in session to {@code query}. */
+        void subscribe(String query) {
+            LongAdder count = received.computeIfAbsent(query, q -> new LongAdder());
+            ActorRef<FeedRegistryActor.FeedUpdate> session = system.systemActorOf(
+                    Behaviors.<FeedRegistryActor.FeedUpdate>receiveMessage(update -> {
+                        if (!update.articles.isEmpty()) count.increment();
+                        return Behaviors.same();
+                    }),
+                    "session-" + query, Props.empty());
+            registry.tell(new FeedRegistryActor.Subscribe(query, session));
+        }
+
+        boolean up() {
+            return Cluster.get(system).selfMember().status() == MemberStatus.up();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int nodes = 3;
+        int queries = 4;
+        int seconds = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--nodes":   nodes = Integer.parseInt(args[i + 1]); break;
+                case "--queries": queries = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<Node> cluster = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) cluster.add(new Node(i));
+        var seed = Cluster.get(cluster.get(0).system).selfMember().address();
+        for (Node n : cluster) Cluster.get(n.system).manager().tell(Join.create(seed));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!cluster.stream().allMatch(Node::up)) {
+            if (System.nanoTime() > deadline) throw new IllegalStateException("Cluster did not form in 30 s");
+            Thread.sleep(200);
+        }
+        System.out.printf("%d node(s) up%n", nodes);
+
+        List<String> topics = new ArrayList<>();
+        for (int q = 0; q < queries; q++) topics.add("topic" + q);
+        for (Node n : cluster) topics.forEach(n::subscribe);
+        Thread.sleep(seconds * 1000L);
+
+        boolean ok = true;
+        for (String q : topics) {
+            StringBuilder polls = new StringBuilder();
+            StringBuilder received = new StringBuilder();
+            int pollingNodes = 0;
+            for (Node n : cluster) {
+                long p = n.api.polls.getOrDefault(q, new LongAdder()).sum();
+                long r = n.received.get(q).sum();
+                if (p > 0) pollingNodes++;
+                if (r == 0) ok = false;
+                polls.append(' ').append(n.name).append('=').append(p);
+                received.append(' ').append(n.name).append('=').append(r);
+            }
+            if (pollingNodes != 1) ok = false;
+            System.out.printf("%-8s polls:%s | batches received:%s%n", q, polls, received);
+        }
+        for (Node n : cluster) System.out.printf("%s hosts %d feed(s)%n", n.name, n.stats.feeds());
+
+        cluster.forEach(n -> n.system.terminate());
+        System.out.println(ok ? "OK: one poller per query, every node received batches" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,293 @@
+package bench.load;
+
+import com.typesafe.config.ConfigFactory;
+
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.test.Helpers;
+import play.test.TestServer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end WebSocket load driver for the
+ * {@code HomeController → UserActor → SearchActor} path.
+ *
+ * <p>Opens {@code --connections} sockets to {@code /ws} over {@code --ramp}.
+ * Each socket sends one search and one sources request, then
+ * {@code --searches - 1} more searches spread over {@code --duration}.</p>
+ *
+ * <p>With {@code --embedded} the application is started in this JVM with
+ * {@code conf/loadtest.conf} (fake NewsAPI, rate limit opened up), so heap
+ * figures cover the server. Without it, start the server yourself
+ * ({@code sbt -Dconfig.resource=loadtest.conf run}) and point {@code --url} at it.</p>
+ *
+ * <pre>
+ *   sbt "bench/runMain bench.load.WsLoadDriver --embedded --connections 2000 --duration 60"
+ * </pre>
+ *
+ * <p>OUTPUT: connection setup and first-result latency percentiles,
+ * frames/sec, failures and heap used per connection.</p>
+ *
+ * @author Sara Ezzati
+ */
+public final class WsLoadDriver {
+
+    private static final String[] TOPICS = {
+            "bitcoin", "markets", "election", "climate", "ai", "football", "vaccine", "energy",
+            "startup", "inflation", "space", "chip", "merger", "court", "storm", "tariff"
+    };
+
+    /** Command-line options. */
+    static final class Options {
+        String url = "ws://localhost:9000/ws";
+        int connections = 1000;
+        int rampSeconds = 10;
+        int durationSeconds = 60;
+        int searches = 3;
+        int distinctQueries = 200;
+        boolean embedded;
+        int port = 19000;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url": o.url = args[++i]; break;
+                    case "--connections": o.connections = Integer.parseInt(args[++i]); break;
+                    case "--ramp": o.rampSeconds = Integer.parseInt(args[++i]); break;
+                    case "--duration": o.durationSeconds = Integer.parseInt(args[++i]); break;
+                    case "--searches": o.searches = Math.max(1, Integer.parseInt(args[++i])); break;
+                    case "--distinct-queries": o.distinctQueries = Integer.parseInt(args[++i]); break;
+                    case "--embedded": o.embedded = true; break;
+                    case "--port": o.port = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (o.embedded) o.url = "ws://localhost:" + o.port + "/ws";
+            return o;
+        }
+    }
+
+    /** Latency samples in nanoseconds; percentiles are computed once at the end. */
+    static final class Samples {
+        private final ConcurrentLinkedQueue<Long> values = new ConcurrentLinkedQueue<>();
+
+        void add(long nanos) { values.add(nanos); }
+
+        String summary() {
+            long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length == 0) return "n=0";
+            return String.format("n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                    sorted.length, ms(pct(sorted, 50)), ms(pct(sorted, 95)), ms(pct(sorted, 99)),
+                    ms(sorted[sorted.length - 1]));
+        }
+
+        private static long pct(long[] sorted, double p) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100 * sorted.length) - 1)];
+        }
+
+        private static double ms(long nanos) { return nanos / 1e6; }
+    }
+
+    private final Options options;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+    private final Samples connectLatency = new Samples();
+    private final Samples firstResultLatency = new Samples();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger closedByServer = new AtomicInteger();
+    private final List<WebSocket> sockets = new ArrayList<>();
+
+    private WsLoadDriver(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        TestServer server = null;
+        if (options.embedded) {
+            Application app = new GuiceApplicationBuilder()
+                    .loadConfig(ConfigFactory.load("loadtest.conf"))
+                    .build();
+            server = Helpers.testServer(options.port, app);
+            server.start();
+        }
+        try {
+            new WsLoadDriver(options).run();
+        } finally {
+            if (server != null) server.stop();
+        }
+        System.exit(0);
+    }
+
+    private void run() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeapAfterGc(memory);
+
+        CountDownLatch connected = new CountDownLatch(options.connections);
+        long rampNanos = TimeUnit.SECONDS.toNanos(options.rampSeconds);
+        for (int i = 0; i < options.connections; i++) {
+            long delay = options.connections == 1 ? 0 : rampNanos * i / (options.connections - 1);
+            scheduler.schedule(() -> connect(connected), delay, TimeUnit.NANOSECONDS);
+        }
+        connected.await(options.rampSeconds + 30L, TimeUnit.SECONDS);
+
+        long heapConnected = usedHeapAfterGc(memory);
+        long framesStart = frames.sum();
+        long bytesStart = bytes.sum();
+        long start = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long framesDuring = frames.sum() - framesStart;
+        long bytesDuring = bytes.sum() - bytesStart;
+        long heapLoaded = usedHeapAfterGc(memory);
+        int openAtEnd = open.get();
+        int closedEarly = closedByServer.get();
+        int failures = failed.get();
+
+        synchronized (sockets) {
+            for (WebSocket ws : sockets) ws.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+        scheduler.shutdownNow();
+
+        System.out.println("==== NotiLytics WebSocket load test ====");
+        System.out.println("target            " + options.url + (options.embedded ? " (embedded, fake NewsAPI)" : ""));
+        System.out.println("connections       " + options.connections + " requested, " + openAtEnd
+                + " open at end, " + failures + " failed, " + closedEarly + " closed by server");
+        System.out.println("connection setup  " + connectLatency.summary());
+        System.out.println("first result      " + firstResultLatency.summary());
+        System.out.printf("throughput        %.0f frames/s, %.1f KiB/s over %.0f s%n",
+                framesDuring / seconds, bytesDuring / 1024.0 / seconds, seconds);
+        if (options.embedded) {
+            System.out.printf("heap (after GC)   idle %.1f MiB, connected %.1f MiB, after load %.1f MiB, %.1f KiB/connection%n",
+                    mib(heapBefore), mib(heapConnected), mib(heapLoaded),
+                    (heapLoaded - heapBefore) / 1024.0 / Math.max(1, openAtEnd));
+        } else {
+            System.out.printf("heap (driver only) %.1f MiB; use --embedded to include the server%n", mib(heapLoaded));
+        }
+    }
+
+    private void connect(CountDownLatch connected) {
+        Session session = new Session();
+        long t0 = System.nanoTime();
+        http.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(URI.create(options.url), session)
+                .whenComplete((ws, err) -> {
+                    if (err != null) {
+                        failed.incrementAndGet();
+                    } else {
+                        connectLatency.add(System.nanoTime() - t0);
+                        open.incrementAndGet();
+                        synchronized (sockets) {
+                            sockets.add(ws);
+                        }
+                        session.start(ws);
+                    }
+                    connected.countDown();
+                });
+    }
+
+    /** One simulated browser tab. */
+    private final class Session implements WebSocket.Listener {
+        private final StringBuilder partial = new StringBuilder();
+        private volatile long searchSentNanos;
+        private volatile boolean gotFirstResult;
+        /** Last send; {@link WebSocket#sendText} fails if the previous send has not completed. */
+        private CompletableFuture<WebSocket> sends;
+        private final AtomicBoolean sendFailed = new AtomicBoolean();
+
+        void start(WebSocket ws) {
+            synchronized (this) {
+                sends = CompletableFuture.completedFuture(ws);
+            }
+            search();
+            send("{\"type\":\"sources\",\"language\":\"en\"}");
+
+            long gap = TimeUnit.SECONDS.toNanos(options.durationSeconds) / options.searches;
+            for (int i = 1; i < options.searches; i++) {
+                scheduler.schedule(this::search, gap * i, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void search() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String query = TOPICS[random.nextInt(TOPICS.length)] + " " + random.nextInt(options.distinctQueries);
+            if (searchSentNanos == 0) searchSentNanos = System.nanoTime();
+            send("{\"type\":\"search\",\"query\":\"" + query + "\"}");
+        }
+
+        /** Queues a frame behind the previous send; a failed send fails the session once. */
+        private synchronized void send(String frame) {
+            sends = sends.thenCompose(w -> w.sendText(frame, true));
+            sends.whenComplete((w, err) -> {
+                if (err != null && sendFailed.compareAndSet(false, true)) failed.incrementAndGet();
+            });
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String frame = partial.toString();
+                partial.setLength(0);
+                frames.increment();
+                bytes.add(frame.getBytes(StandardCharsets.UTF_8).length);
+                if (!gotFirstResult && searchSentNanos != 0 && frame.contains("\"articles\"")) {
+                    gotFirstResult = true;
+                    firstResultLatency.add(System.nanoTime() - searchSentNanos);
+                }
+            }
+            ws.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+            open.decrementAndGet();
+            closedByServer.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket ws, Throwable error) {
+            open.decrementAndGet();
+            failed.incrementAndGet();
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static double mib(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+}
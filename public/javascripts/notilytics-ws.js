@@ -3,47 +3,213 @@
 
 let ws;
 
+// Resumable session: the server numbers every frame; on reconnect we send the
+// token and the last number we saw, and get back only the frames we missed.
+let sessionToken = null;
+let lastSeq = 0;
+let reconnectAttempts = 0;
+
+// Queries of this page, re-sent if the server no longer knows the session
+const activeQueries = [];
+
+// Open the page with ?binary to receive CBOR frames instead of JSON text
+const CBOR_PROTOCOL = "notilytics.cbor.v1";
+const wantBinary = new URLSearchParams(location.search).has("binary");
+
 function connectWS() {
-    ws = new WebSocket("/ws");
+    const resume = sessionToken
+        ? `?session=${encodeURIComponent(sessionToken)}&lastSeq=${lastSeq}`
+        : "";
+    ws = wantBinary ? new WebSocket("/ws" + resume, [CBOR_PROTOCOL]) : new WebSocket("/ws" + resume);
+    ws.binaryType = "arraybuffer";
 
     ws.onopen = () => {
         console.log("WebSocket connected.");
+        reconnectAttempts = 0;
     };
 
     ws.onmessage = (event) => {
         try {
-            const data = JSON.parse(event.data);
-
-            if (data.articles) {
-                appendArticles(data.articles);
-            }
-
-            if (data.sources) {
-                appendSources(data.sources);
-            }
+            handleFrame(typeof event.data === "string" ? JSON.parse(event.data) : decodeCbor(event.data));
         } catch (e) {
-            console.error("Invalid JSON:", event.data);
+            console.error("Invalid frame:", event.data);
         }
     };
 
-    ws.onclose = () => console.log("WebSocket closed.");
+    ws.onclose = () => {
+        console.log("WebSocket closed, reconnecting.");
+        scheduleReconnect();
+    };
     ws.onerror = (err) => console.error("WebSocket error:", err);
 }
 
+// Exponential backoff with full jitter, so a server restart or a load balancer
+// cycling its connections does not bring every tab back at the same instant.
+function scheduleReconnect() {
+    const cap = Math.min(30000, 500 * 2 ** reconnectAttempts++);
+    setTimeout(connectWS, Math.random() * cap);
+}
+
+function onSession(data) {
+    const previous = sessionToken;
+    sessionToken = data.session;
+
+    if (data.resync || (previous && !data.resumed)) {
+        // Missed frames are gone: redraw from fresh results
+        const div = document.getElementById("articles-container");
+        if (div) div.innerHTML = "";
+    }
+    if (previous && !data.resumed) {
+        // New session on the server: it does not know our queries any more
+        lastSeq = 0;
+        sourcesVersion = 0;
+        activeQueries.forEach(q => send({ type: "search", query: q }));
+    }
+}
+
+// The server may merge several frames into {"batch":[frame, ...]}
+function handleFrame(data) {
+    if (data.batch) {
+        data.batch.forEach(handleFrame);
+        return;
+    }
+
+    if (data.session) {
+        onSession(data);
+        return;
+    }
+
+    if (data.seq !== undefined) {
+        if (data.seq <= lastSeq) return; // already shown before the reconnect
+        lastSeq = data.seq;
+    }
+
+    if (data.articles) {
+        appendArticles(data.articles);
+    }
+
+    if (data.duplicates) {
+        updateSourceCounts(data.duplicates);
+    }
+
+    if (data.sentiment !== undefined) {
+        showQuerySentiment(data.sentiment);
+    }
+
+    if (data.sources) {
+        appendSources(data.sources, data.sourcesVersion);
+    }
+
+    if (data.sourcesDelta) {
+        applySourcesDelta(data.sourcesDelta);
+    }
+
+    if (data.analytics) {
+        updateAnalytics(data.analytics);
+    }
+
+    if (data.throttled) {
+        console.warn("NewsAPI is busy, " + data.throttled + " request was throttled. Please retry shortly.");
+    }
+}
+
+// A binary session takes JSON requests as UTF-8 binary frames
+function send(message) {
+    const text = JSON.stringify(message);
+    ws.send(ws.protocol === CBOR_PROTOCOL ? new TextEncoder().encode(text) : text);
+}
+
 function sendSearchQuery(q) {
-    ws.send(JSON.stringify({
+    if (!activeQueries.includes(q) && activeQueries.push(q) > 10) activeQueries.shift();
+    send({
         type: "search",
         query: q
-    }));
+    });
 }
 
 function sendSourceRequest(country, category, language) {
-    ws.send(JSON.stringify({
+    send({
         type: "sources",
         country,
         category,
         language
-    }));
+    });
+}
+
+// Decodes the CBOR frames the server sends on notilytics.cbor.v1 (see CborWriter):
+// maps, arrays, text, numbers, booleans, null, and per-frame stringrefs (tags 256/25).
+function decodeCbor(buffer) {
+    const view = new DataView(buffer);
+    const utf8 = new TextDecoder();
+    const BREAK = Symbol("break");
+    let pos = 0;
+    let refs = null;
+
+    function length(info) {
+        if (info < 24) return info;
+        if (info === 24) return view.getUint8(pos++);
+        if (info === 25) { pos += 2; return view.getUint16(pos - 2); }
+        if (info === 26) { pos += 4; return view.getUint32(pos - 4); }
+        if (info === 27) { pos += 8; return Number(view.getBigUint64(pos - 8)); }
+        return -1; // indefinite
+    }
+
+    function minRefLength(n) {
+        return n < 24 ? 3 : n < 256 ? 4 : n < 65536 ? 5 : 7;
+    }
+
+    function item() {
+        const initial = view.getUint8(pos++);
+        const major = initial >> 5;
+        const info = initial & 31;
+        switch (major) {
+            case 0: return length(info);
+            case 1: return -1 - length(info);
+            case 3: {
+                const n = length(info);
+                const s = utf8.decode(new Uint8Array(buffer, pos, n));
+                pos += n;
+                if (refs && n >= minRefLength(refs.length)) refs.push(s);
+                return s;
+            }
+            case 4: {
+                const n = length(info);
+                const out = [];
+                for (let v; n < 0 ? (v = item()) !== BREAK : out.length < n;) out.push(n < 0 ? v : item());
+                return out;
+            }
+            case 5: {
+                const n = length(info);
+                const out = {};
+                for (let i = 0, k; n < 0 ? (k = item()) !== BREAK : i < n; i++) {
+                    out[n < 0 ? k : item()] = item();
+                }
+                return out;
+            }
+            case 6: {
+                const tag = length(info);
+                if (tag === 256) {
+                    const outer = refs;
+                    refs = [];
+                    const v = item();
+                    refs = outer;
+                    return v;
+                }
+                if (tag === 25) return refs[item()];
+                return item();
+            }
+            case 7:
+                if (info === 20) return false;
+                if (info === 21) return true;
+                if (info === 22) return null;
+                if (info === 26) { pos += 4; return view.getFloat32(pos - 4); }
+                if (info === 27) { pos += 8; return view.getFloat64(pos - 8); }
+                if (info === 31) return BREAK;
+        }
+        throw new Error("Unsupported CBOR item " + initial);
+    }
+
+    return item();
 }
 
 function appendArticles(list) {
@@ -52,10 +218,12 @@ function appendArticles(list) {
 
     list.forEach(a => {
         const card = `
-            <div class="card bg-dark text-light border-secondary mb-3">
+            <div class="card bg-dark text-light border-secondary mb-3" data-article-id="${a.id}">
                 <div class="card-body">
                     <h5 class="card-title">${a.title}</h5>
                     <p class="card-text">${a.description || ""}</p>
+                    <span class="source-count">${sourceCountBadge(a.sourceCount)}</span>
+                    ${sentimentBadge(a.sentiment)}
                     <a href="${a.url}" class="btn btn-outline-info" target="_blank">Open</a>
                 </div>
             </div>`;
@@ -63,18 +231,102 @@ function appendArticles(list) {
     });
 }
 
-function appendSources(list) {
+// The same story from several sources is shown once; the server sends how many published it
+function sourceCountBadge(count) {
+    return count > 1 ? `<span class="badge bg-info text-dark me-2">${count} sources</span>` : "";
+}
+
+function updateSourceCounts(list) {
+    list.forEach(d => {
+        const card = document.querySelector(`[data-article-id="${CSS.escape(d.id)}"] .source-count`);
+        if (card) card.innerHTML = sourceCountBadge(d.sourceCount);
+    });
+}
+
+function sentimentBadge(score) {
+    if (score === undefined) return "";
+    const style = score > 0.05 ? "success" : score < -0.05 ? "danger" : "secondary";
+    return `<span class="badge bg-${style} me-2">sentiment ${score}</span>`;
+}
+
+function showQuerySentiment(score) {
+    const el = document.getElementById("query-sentiment");
+    if (el) el.innerHTML = sentimentBadge(score);
+}
+
+// Source list as last received; later lists arrive as deltas against a version
+let sourcesVersion = 0;
+let sourcesResyncPending = false;
+const sourceCards = new Map(); // id -> card element
+
+function appendSources(list, version) {
     const div = document.getElementById("sources-container");
+    sourcesVersion = version || 0;
+    sourcesResyncPending = false;
+    sourceCards.clear();
+    if (!div) return;
+
+    div.innerHTML = "";
+    list.forEach(s => addSourceCard(div, s));
+}
+
+function applySourcesDelta(delta) {
+    if (delta.version !== sourcesVersion + 1) {
+        // Missed a delta: ask for the full list once
+        if (!sourcesResyncPending) {
+            sourcesResyncPending = true;
+            send({ type: "sourcesResync" });
+        }
+        return;
+    }
+    sourcesVersion = delta.version;
+
+    const div = document.getElementById("sources-container");
+    // Take out removed and changed cards; the rest keep their relative order
+    delta.removed.concat(delta.added.map(s => s.id)).forEach(id => {
+        const card = sourceCards.get(id);
+        if (card) card.remove();
+        sourceCards.delete(id);
+    });
+    // Positions ascend, so every card before an insert point is already in place
+    if (div) delta.added.forEach((s, i) => addSourceCard(div, s, delta.positions[i]));
+}
+
+function addSourceCard(div, s, position) {
+    const card = document.createElement("div");
+    card.className = "card bg-dark text-light border-secondary mb-3";
+    card.innerHTML = `
+        <div class="card-body">
+            <h5 class="card-title">${s.name}</h5>
+            <p>${s.description || ""}</p>
+            <a href="/source/${s.id}" class="btn btn-outline-warning">View</a>
+        </div>`;
+
+    const previous = sourceCards.get(s.id);
+    if (previous) previous.remove();
+    div.insertBefore(card, position === undefined ? null : div.children[position] || null);
+    sourceCards.set(s.id, card);
+}
+
+// Latest aggregates per query; an update only carries the fields that changed
+const analyticsByQuery = {};
+
+function updateAnalytics(update) {
+    const current = Object.assign(analyticsByQuery[update.query] || {}, update);
+    analyticsByQuery[update.query] = current;
+
+    const div = document.getElementById("analytics-container");
     if (!div) return;
 
     div.innerHTML = "";
-    list.forEach(s => {
+    Object.values(analyticsByQuery).forEach(a => {
+        const terms = (a.topTerms || []).map(t => `${t.term} (${t.count})`).join(", ");
         const card = `
             <div class="card bg-dark text-light border-secondary mb-3">
                 <div class="card-body">
-                    <h5 class="card-title">${s.name}</h5>
-                    <p>${s.description || ""}</p>
-                    <a href="/source/${s.id}" class="btn btn-outline-warning">View</a>
+                    <h5 class="card-title">${a.query}</h5>
+                    <p>${a.articles} articles, readability ${a.readability ?? "-"}</p>
+                    <p class="card-text">${terms}</p>
                 </div>
             </div>`;
         div.innerHTML += card;
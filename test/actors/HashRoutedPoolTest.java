@@ -0,0 +1,146 @@
+package app.actors;
+
+import org.apache.pekko.actor.testkit.typed.javadsl.ActorTestKit;
+import org.apache.pekko.actor.testkit.typed.javadsl.TestProbe;
+import org.apache.pekko.actor.typed.ActorRef;
+import org.apache.pekko.actor.typed.Behavior;
+import org.apache.pekko.actor.typed.javadsl.Behaviors;
+
+import com.typesafe.config.ConfigFactory;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routing, resizing, draining and worker replacement of {@link HashRoutedPool},
+ * with workers that answer with their own name.
+ *
+ * @author Sara Ezzati
+ */
+public class HashRoutedPoolTest {
+
+    private static final ActorTestKit testKit = ActorTestKit.create(ConfigFactory.parseString(
+            "notilytics.instrumented-mailbox.mailbox-type = \"app.metrics.InstrumentedMailbox\""));
+
+    /** Resizing is driven by the test: the timer never fires on its own. */
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    interface Cmd { }
+
+    /** Asks the worker owning {@code key} for its name. */
+    static final class Ask implements Cmd {
+        final String key;
+        final ActorRef<String> replyTo;
+
+        Ask(String key, ActorRef<String> replyTo) {
+            this.key = key;
+            this.replyTo = replyTo;
+        }
+    }
+
+    /** Stops the worker owning {@code key} as if it had crashed for good. */
+    static final class Stop implements Cmd {
+        final String key;
+
+        Stop(String key) {
+            this.key = key;
+        }
+    }
+
+    enum Drain implements Cmd { INSTANCE }
+
+    @AfterClass
+    public static void shutdown() {
+        testKit.shutdownTestKit();
+    }
+
+    private static Behavior<Cmd> worker(ActorRef<String> drained) {
+        return Behaviors.setup(ctx -> Behaviors.receive(Cmd.class)
+                .onMessage(Ask.class, m -> {
+                    m.replyTo.tell(ctx.getSelf().path().name());
+                    return Behaviors.same();
+                })
+                .onMessage(Stop.class, m -> Behaviors.stopped())
+                .onMessageEquals(Drain.INSTANCE, () -> {
+                    drained.tell(ctx.getSelf().path().name());
+                    return Behaviors.stopped();
+                })
+                .build());
+    }
+
+    private static String key(Cmd msg) {
+        return msg instanceof Ask a ? a.key : msg instanceof Stop s ? s.key : "";
+    }
+
+    private static ActorRef<Cmd> pool(HashRoutedPool.Settings settings, HashRoutedPool.Stats stats,
+                                      ActorRef<String> drained) {
+        return testKit.spawn(HashRoutedPool.create("w", worker(drained), HashRoutedPoolTest::key,
+                Drain.INSTANCE, settings, stats));
+    }
+
+    private static String owner(ActorRef<Cmd> pool, TestProbe<String> replies, String key) {
+        pool.tell(new Ask(key, replies.getRef()));
+        return replies.receiveMessage();
+    }
+
+    @Test
+    public void routesEqualKeysToTheSameWorkerAndSpreadsDistinctOnes() {
+        TestProbe<String> replies = testKit.createTestProbe();
+        HashRoutedPool.Stats stats = new HashRoutedPool.Stats("test");
+        ActorRef<Cmd> pool = pool(new HashRoutedPool.Settings(4, 4, NEVER, 1000, 0, 64),
+                stats, testKit.<String>createTestProbe().getRef());
+
+        Set<String> workers = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            String first = owner(pool, replies, "query-" + i);
+            assertEquals(first, owner(pool, replies, "query-" + i));
+            workers.add(first);
+        }
+        assertEquals(4, workers.size());
+        assertEquals(4, stats.workers());
+        assertEquals(200, stats.routed());
+    }
+
+    @Test
+    public void growsUnderLoadAndDrainsTheNewestWorkerWhenIdle() {
+        TestProbe<String> replies = testKit.createTestProbe();
+        TestProbe<String> drained = testKit.createTestProbe();
+        HashRoutedPool.Stats stats = new HashRoutedPool.Stats("test");
+        ActorRef<Cmd> pool = pool(new HashRoutedPool.Settings(1, 2, Duration.ofMillis(200), 10, 1, 64),
+                stats, drained.getRef());
+
+        // busy interval: the pool grows to w-0 and w-1; the idle one after it drains w-1 again
+        for (int i = 0; i < 50; i++) owner(pool, replies, "query-" + i);
+        assertEquals("w-1", drained.receiveMessage(Duration.ofSeconds(3)));
+        assertEquals(1, stats.workers());
+        for (int i = 0; i < 20; i++) assertEquals("w-0", owner(pool, replies, "query-" + i));
+    }
+
+    @Test
+    public void replacesAWorkerThatStoppedOnItsOwn() {
+        TestProbe<String> replies = testKit.createTestProbe();
+        HashRoutedPool.Stats stats = new HashRoutedPool.Stats("test");
+        ActorRef<Cmd> pool = pool(new HashRoutedPool.Settings(2, 2, NEVER, 1000, 0, 64),
+                stats, testKit.<String>createTestProbe().getRef());
+
+        String before = owner(pool, replies, "bitcoin");
+        pool.tell(new Stop("bitcoin"));
+
+        // until the pool sees the worker stop, its keys still reach it (and dead letters)
+        replies.awaitAssert(Duration.ofSeconds(10), () -> {
+            pool.tell(new Ask("bitcoin", replies.getRef()));
+            assertNotEquals(before, replies.receiveMessage(Duration.ofMillis(300)));
+            return null;
+        });
+        assertEquals(2, stats.workers());
+        assertTrue(owner(pool, replies, "bitcoin").matches("w-[0-9]+"));
+    }
+}
@@ -0,0 +1,110 @@
+package actors;
+
+import org.apache.pekko.actor.testkit.typed.javadsl.TestInbox;
+
+import app.services.OutboundStats;
+import app.services.SessionOutbound;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Resume tokens, replay windows and expiry of {@link SessionRegistry}
+ * sessions. The UserActor's side (claim, then {@code resumed()} or
+ * {@code tryExpire()}) is played by the test.
+ *
+ * @author Sara Ezzati
+ */
+public class SessionRegistryTest {
+
+    private static final SessionOutbound.Settings OUTBOUND =
+            new SessionOutbound.Settings(16, SessionOutbound.Overflow.DROP_OLDEST, Duration.ZERO, 1, 1 << 16);
+
+    private final SessionRegistry registry =
+            new SessionRegistry(new SessionRegistry.Settings(Duration.ofSeconds(30), 4, 1 << 20, 1 << 20));
+
+    private SessionRegistry.Session open(String id) {
+        SessionOutbound outbound = SessionOutbound.create(id, OUTBOUND, new OutboundStats()).first();
+        SessionRegistry.Session session = registry.open(id, outbound);
+        session.attach(TestInbox.<UserActor.Command>create().getRef());
+        return session;
+    }
+
+    private void push(SessionRegistry.Session session, int frames) {
+        for (int i = 0; i < frames; i++) registry.append(session, "{\"type\":\"articles\",\"n\":" + i + "}");
+    }
+
+    @Test
+    public void resumesInsideTheReplayWindow() {
+        SessionRegistry.Session session = open("s1");
+        push(session, 3);
+        session.detached();
+
+        SessionRegistry.Session claimed = registry.claim(session.token);
+        assertSame(session, claimed);
+        claimed.resumed();
+
+        List<String> missed = claimed.replay.since(1);
+        assertEquals(2, missed.size());
+        assertTrue(missed.get(0).startsWith("{\"seq\":2,"));
+    }
+
+    @Test
+    public void resyncsOnceTheRingOverwroteTheLastSeenFrame() {
+        SessionRegistry.Session session = open("s1");
+        push(session, 10);                  // the ring keeps frames 7..10
+
+        SessionRegistry.Session claimed = registry.claim(session.token);
+        assertSame(session, claimed);
+        assertNull(claimed.replay.since(3));
+        assertEquals(4, claimed.replay.since(6).size());
+    }
+
+    @Test
+    public void refusesUnknownAndUnattachedTokens() {
+        SessionRegistry.Session session = open("s1");
+        assertNull(registry.claim(null));
+        assertNull(registry.claim("not-a-token"));
+
+        SessionOutbound outbound = SessionOutbound.create("s2", OUTBOUND, new OutboundStats()).first();
+        SessionRegistry.Session starting = registry.open("s2", outbound);
+        assertNull(registry.claim(starting.token));
+        assertNotEquals(session.token, starting.token);
+    }
+
+    @Test
+    public void expiredTokensCannotBeClaimed() {
+        SessionRegistry.Session session = open("s1");
+        push(session, 2);
+        session.detached();
+
+        assertTrue(session.tryExpire());
+        assertNull(registry.claim(session.token));
+
+        registry.remove(session);
+        assertNull(registry.claim(session.token));
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.replayBytes());
+    }
+
+    @Test
+    public void aClaimedSessionDoesNotExpireBeforeItsResume() {
+        SessionRegistry.Session session = open("s1");
+        session.detached();
+
+        assertSame(session, registry.claim(session.token));
+        assertFalse(session.tryExpire());
+
+        session.resumed();
+        assertTrue(session.tryExpire());
+    }
+}
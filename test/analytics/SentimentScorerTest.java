@@ -0,0 +1,93 @@
+package app.analytics;
+
+import app.models.Article;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lexicon, negation and emoticons of {@link SentimentScorer}, and its memo of
+ * scored articles by id.
+ *
+ * @author Sara Ezzati
+ */
+public class SentimentScorerTest {
+
+    private static Article article(String id, String title) {
+        return new Article(id, title, null, "https://example.com/" + id, "Wire");
+    }
+
+    private static SentimentScorer.Scored score(SentimentScorer scorer, Article... articles) {
+        return scorer.score(List.of(articles)).toCompletableFuture().join();
+    }
+
+    @Test
+    public void sumsLexiconWeightsCaseInsensitively() {
+        assertEquals(6, SentimentScorer.rawScore("Markets RALLY on strong growth"));
+        assertEquals(-6, SentimentScorer.rawScore("Crisis deepens as losses mount"));
+        assertEquals(0, SentimentScorer.rawScore("Parliament meets on Tuesday"));
+        assertEquals(0, SentimentScorer.rawScore(null));
+    }
+
+    @Test
+    public void normalizesIntoTheOpenUnitInterval() {
+        assertEquals(0.0, SentimentScorer.score("Parliament meets on Tuesday"), 0.0);
+        assertEquals(3 / Math.sqrt(24), SentimentScorer.score("great"), 1e-9);
+        assertEquals(-SentimentScorer.score("great"), SentimentScorer.score("worst"), 1e-9);
+
+        double strong = SentimentScorer.score("great excellent best great excellent best great");
+        assertTrue(strong > 0.98 && strong < 1);
+    }
+
+    @Test
+    public void aNegationFlipsTheNextScoredWordWithinThreeTokens() {
+        assertEquals(-2, SentimentScorer.rawScore("not good"));
+        assertEquals(-2, SentimentScorer.rawScore("this isn't good"));
+        assertEquals(-2, SentimentScorer.rawScore("never a very good year"));
+        assertEquals(2, SentimentScorer.rawScore("not a very big good year"));  // out of scope
+        assertEquals(1, SentimentScorer.rawScore("not good, great"));           // only the next word
+    }
+
+    @Test
+    public void scoresEmoticons() {
+        assertEquals(3, SentimentScorer.rawScore("Launch day :D"));
+        assertEquals(-3, SentimentScorer.rawScore("Delayed again :'("));
+        assertEquals(0, SentimentScorer.rawScore("Ratio 3:1"));
+    }
+
+    @Test
+    public void memoizesScoredArticlesById() {
+        SentimentScorer scorer = new SentimentScorer(2, 16);
+        Article scored = score(scorer, article("1", "Great win")).articles.get(0);
+        assertEquals((float) SentimentScorer.score("Great win"), scored.sentiment, 0f);
+
+        // the same story arriving again, as a new instance, is answered from the memo
+        SentimentScorer.Scored again = score(scorer, article("1", "Great win"), article("2", "Bad loss"));
+        assertSame(scored, again.articles.get(0));
+        assertEquals(2, scorer.scored());
+        assertEquals(1, scorer.memoHits());
+        assertEquals((scored.sentiment + again.articles.get(1).sentiment) / 2, again.query, 1e-6);
+
+        // an edited title under the same id is scored again
+        Article edited = score(scorer, article("1", "Bad win")).articles.get(0);
+        assertNotSame(scored, edited);
+        assertEquals(3, scorer.scored());
+    }
+
+    @Test
+    public void passesArticlesThatAlreadyCarryASentimentThrough() {
+        SentimentScorer scorer = new SentimentScorer(1, 16);
+        Article preScored = article("1", "Great win").withSentiment(-0.5f);
+
+        assertSame(preScored, score(scorer, preScored).articles.get(0));
+        assertEquals(0, scorer.scored());
+        assertNull(scorer.score(List.of()).toCompletableFuture().join().query);
+    }
+}
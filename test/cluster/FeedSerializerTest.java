@@ -0,0 +1,122 @@
+package app.cluster;
+
+import org.apache.pekko.actor.ExtendedActorSystem;
+import org.apache.pekko.actor.testkit.typed.javadsl.ActorTestKit;
+import org.apache.pekko.actor.testkit.typed.javadsl.TestProbe;
+import org.apache.pekko.actor.typed.javadsl.Adapter;
+
+import app.actors.QueryFeedEntity;
+import app.analytics.AnalyticsUpdate;
+import app.models.Article;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.NotSerializableException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Round trip of every message {@link FeedSerializer} carries: lease renewals
+ * and snapshot requests ({@link QueryFeedEntity.Watch}), and topic batches and
+ * snapshots ({@link QueryFeedEntity.FeedBatch}), with and without analytics.
+ *
+ * @author Sara Ezzati
+ */
+public class FeedSerializerTest {
+
+    private static final ActorTestKit testKit = ActorTestKit.create();
+
+    private static final FeedSerializer serializer =
+            new FeedSerializer((ExtendedActorSystem) Adapter.toClassic(testKit.system()));
+
+    @AfterClass
+    public static void shutdown() {
+        testKit.shutdownTestKit();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T message) throws NotSerializableException {
+        return (T) serializer.fromBinary(serializer.toBinary(message), serializer.manifest(message));
+    }
+
+    private static void assertSameArticle(Article expected, Article actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.description, actual.description);
+        assertEquals(expected.url, actual.url);
+        assertEquals(expected.sourceName, actual.sourceName);
+        assertEquals(expected.sentiment, actual.sentiment);
+    }
+
+    private static void assertSameBatch(QueryFeedEntity.FeedBatch expected, QueryFeedEntity.FeedBatch actual) {
+        assertEquals(expected.query, actual.query);
+        assertEquals(expected.snapshotTag, actual.snapshotTag);
+        assertEquals(expected.articles.size(), actual.articles.size());
+        for (int i = 0; i < expected.articles.size(); i++) {
+            assertSameArticle(expected.articles.get(i), actual.articles.get(i));
+        }
+        if (expected.analytics == null) {
+            assertNull(actual.analytics);
+        } else {
+            assertEquals(expected.analytics.query, actual.analytics.query);
+            assertEquals(expected.analytics.articles, actual.analytics.articles);
+            assertEquals(expected.analytics.topTerms, actual.analytics.topTerms);
+            assertEquals(expected.analytics.readability, actual.analytics.readability);
+        }
+    }
+
+    @Test
+    public void roundTripsALeaseRenewalAndASnapshotRequest() throws NotSerializableException {
+        TestProbe<QueryFeedEntity.FeedBatch> node = testKit.createTestProbe();
+
+        for (long tag : new long[]{QueryFeedEntity.NO_SNAPSHOT, 42L, Long.MIN_VALUE}) {
+            QueryFeedEntity.Watch watch = roundTrip(new QueryFeedEntity.Watch(node.ref(), tag));
+            assertEquals(node.ref(), watch.node);
+            assertEquals(tag, watch.snapshotTag);
+        }
+    }
+
+    @Test
+    public void roundTripsATopicBatchWithAnalytics() throws NotSerializableException {
+        QueryFeedEntity.FeedBatch batch = new QueryFeedEntity.FeedBatch("bitcoin etf",
+                List.of(new Article("1", "ETF approved", "Regulators sign off", "https://example.com/1", "Wire")
+                                .withSentiment(0.42f),
+                        new Article(null, "Crypto café ☕", null, "https://example.com/2", null)),
+                new AnalyticsUpdate("bitcoin etf", 17,
+                        List.of(new AnalyticsUpdate.Term("bitcoin", 9), new AnalyticsUpdate.Term("etf", 4)), 61.5));
+
+        assertSameBatch(batch, roundTrip(batch));
+    }
+
+    @Test
+    public void roundTripsASnapshotWithEmptyLists() throws NotSerializableException {
+        QueryFeedEntity.FeedBatch snapshot = new QueryFeedEntity.FeedBatch("quiet", List.of(),
+                new AnalyticsUpdate("quiet", 0, List.of(), null), 7L);
+
+        QueryFeedEntity.FeedBatch copy = roundTrip(snapshot);
+        assertSameBatch(snapshot, copy);
+        assertEquals(List.of(), copy.analytics.topTerms);
+    }
+
+    @Test
+    public void keepsUnchangedTermsAndMissingAnalyticsApart() throws NotSerializableException {
+        QueryFeedEntity.FeedBatch unchangedTerms = new QueryFeedEntity.FeedBatch("ai", List.of(),
+                new AnalyticsUpdate("ai", 3, null, 12.0), 9L);
+        assertNull(roundTrip(unchangedTerms).analytics.topTerms);
+
+        QueryFeedEntity.FeedBatch noAnalytics = new QueryFeedEntity.FeedBatch("ai", List.of(), null);
+        QueryFeedEntity.FeedBatch copy = roundTrip(noAnalytics);
+        assertSameBatch(noAnalytics, copy);
+        assertEquals(QueryFeedEntity.NO_SNAPSHOT, copy.snapshotTag);
+    }
+
+    @Test
+    public void rejectsUnknownMessagesAndManifests() {
+        assertThrows(IllegalArgumentException.class, () -> serializer.manifest("not a feed message"));
+        assertThrows(NotSerializableException.class, () -> serializer.fromBinary(new byte[0], "X"));
+    }
+}
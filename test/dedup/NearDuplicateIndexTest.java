@@ -0,0 +1,107 @@
+package app.dedup;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SimHash} fingerprints of republished and unrelated stories, and
+ * lookup, source counting and eviction in {@link NearDuplicateIndex}.
+ *
+ * @author Sara Ezzati
+ */
+public class NearDuplicateIndexTest {
+
+    /** As configured by default ({@code notilytics.dedup.nearDuplicates.maxDistance}). */
+    private static final int MAX_DISTANCE = 6;
+
+    private static final String FED_TEXT = "The Federal Reserve raised its benchmark interest rate by a quarter "
+            + "percentage point on Wednesday, its tenth increase in just over a year, as officials signalled a "
+            + "pause may come soon.";
+
+    private static final long FED = SimHash.of("Fed raises interest rates by a quarter point - Reuters", FED_TEXT);
+    private static final long FED_REPUBLISHED = SimHash.of("Fed raises interest rates by a quarter point | AP News",
+            FED_TEXT.replace(" soon.", "."));
+    private static final long STORM = SimHash.of("Heavy storm floods coastal towns as residents evacuate",
+            "Torrential rain and high winds battered the coast overnight, forcing thousands of residents from "
+                    + "their homes and cutting power to entire neighbourhoods.");
+    private static final long FINAL = SimHash.of("Local team wins championship after dramatic overtime finish",
+            "Fans poured into the streets after the home side clinched the title in a thrilling overtime "
+                    + "victory on Sunday night.");
+
+    @Test
+    public void fingerprintsIgnoreTheSourceCredit() {
+        String title = "Fed raises interest rates by a quarter point";
+        assertEquals(SimHash.of(title + " - Reuters", FED_TEXT), SimHash.of(title + " | AP News", FED_TEXT));
+        assertEquals(0L, SimHash.of("a", "the of"));  // no usable word
+    }
+
+    @Test
+    public void fingerprintsOfDistinctStoriesAreFarApart() {
+        assertTrue(SimHash.distance(FED, FED_REPUBLISHED) <= MAX_DISTANCE);
+        assertTrue(SimHash.distance(FED, STORM) > 3 * MAX_DISTANCE);
+        assertTrue(SimHash.distance(STORM, FINAL) > 3 * MAX_DISTANCE);
+    }
+
+    @Test
+    public void findsARepublishedStoryButNotAnUnrelatedOne() {
+        NearDuplicateIndex index = new NearDuplicateIndex(64, MAX_DISTANCE);
+        int fed = index.add(FED, "reuters-1", "Reuters");
+        int storm = index.add(STORM, "bbc-7", "BBC News");
+
+        assertEquals(fed, index.find(FED_REPUBLISHED));
+        assertEquals(storm, index.find(STORM));
+        assertEquals(NearDuplicateIndex.NONE, index.find(FINAL));
+        assertEquals("reuters-1", index.representative(fed));
+    }
+
+    @Test
+    public void countsEachSourceOnce() {
+        NearDuplicateIndex index = new NearDuplicateIndex(64, MAX_DISTANCE);
+        int fed = index.add(FED, "reuters-1", "Reuters");
+
+        assertTrue(index.addSource(fed, "AP News"));
+        assertFalse(index.addSource(fed, "AP News"));
+        assertFalse(index.addSource(fed, "Reuters"));
+        assertEquals(2, index.sourceCount(fed));
+
+        for (int i = 0; i < 2 * NearDuplicateIndex.MAX_SOURCES; i++) index.addSource(fed, "Source " + i);
+        assertEquals(NearDuplicateIndex.MAX_SOURCES, index.sourceCount(fed));
+    }
+
+    @Test
+    public void anEvictedStoryNoLongerMatches() {
+        NearDuplicateIndex index = new NearDuplicateIndex(2, MAX_DISTANCE);
+        index.add(FED, "reuters-1", "Reuters");
+        index.add(STORM, "bbc-7", "BBC News");
+        int fin = index.add(FINAL, "espn-3", "ESPN");     // overwrites the Fed story's slot
+
+        assertEquals(2, index.size());
+        assertEquals(NearDuplicateIndex.NONE, index.find(FED_REPUBLISHED));
+        assertEquals(NearDuplicateIndex.NONE, index.find(FED));
+        assertEquals(fin, index.find(FINAL));
+        assertNotEquals(NearDuplicateIndex.NONE, index.find(STORM));
+    }
+
+    @Test
+    public void keepsFindingEveryStoryWhileTheRingGrows() {
+        NearDuplicateIndex index = new NearDuplicateIndex(100, MAX_DISTANCE);
+        long[] fingerprints = new long[100];
+        Random random = new Random(42);
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = random.nextLong() | 1L;
+            assertEquals(i, index.add(fingerprints[i], "id-" + i, null));
+        }
+
+        for (int i = 0; i < fingerprints.length; i++) {
+            assertEquals(i, index.find(fingerprints[i]));
+            // a few bits off still finds the same story
+            assertEquals(i, index.find(fingerprints[i] ^ 0b1010_0100L));
+        }
+    }
+}
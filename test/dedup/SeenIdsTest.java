@@ -0,0 +1,55 @@
+package app.dedup;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks every {@link SeenIds} strategy against the same small id sequences.
+ *
+ * @author Sara Ezzati
+ */
+public class SeenIdsTest {
+
+    private static final String[] STRATEGIES = {"hash-set", "lru", "long-hash", "bloom"};
+
+    private static SeenIds create(String strategy) {
+        return SeenIds.create(strategy, 64, 0.001);
+    }
+
+    @Test
+    public void reportsRepeatedIdsAsSeen() {
+        for (String strategy : STRATEGIES) {
+            SeenIds seen = create(strategy);
+            assertTrue(strategy, seen.add("a"));
+            assertTrue(strategy, seen.add("b"));
+            assertFalse(strategy, seen.add("a"));
+            assertFalse(strategy, seen.add("b"));
+        }
+    }
+
+    @Test
+    public void treatsNullIdsAsUnseen() {
+        for (String strategy : STRATEGIES) {
+            SeenIds seen = create(strategy);
+            assertTrue(strategy, seen.add(null));
+            assertTrue(strategy, seen.add(null));
+            // a null id is not recorded and does not disturb the other ids
+            assertTrue(strategy, seen.add("a"));
+            assertFalse(strategy, seen.add("a"));
+            assertTrue(strategy, seen.add(null));
+        }
+    }
+
+    @Test
+    public void remembersAtLeastHalfTheCapacityAcrossRotations() {
+        for (String strategy : STRATEGIES) {
+            SeenIds seen = create(strategy);
+            for (int i = 0; i < 1_000; i++) seen.add("id-" + i);
+            for (int i = 1_000 - 32; i < 1_000; i++) {
+                assertFalse(strategy + " id-" + i, seen.add("id-" + i));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package app.index;
+
+import app.models.Article;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Matching, segment roll-over, expiry and the document bound of
+ * {@link ArticleIndex}, against a clock the test sets by hand.
+ *
+ * @author Sara Ezzati
+ */
+public class ArticleIndexTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final AtomicLong now = new AtomicLong(100 * MINUTE);
+
+    /** Ten-minute window of one-minute segments. */
+    private ArticleIndex index(int maxDocsPerSegment, int maxDocuments) {
+        return new ArticleIndex(new ArticleIndex.Settings(Duration.ofMinutes(10), Duration.ofMinutes(1),
+                maxDocsPerSegment, maxDocuments), now::get);
+    }
+
+    private static Article article(String id, String title) {
+        return new Article(id, title, null, "https://example.com/" + id, "Wire");
+    }
+
+    private static List<String> ids(List<Article> articles) {
+        List<String> ids = new ArrayList<>();
+        for (Article a : articles) ids.add(a.id);
+        return ids;
+    }
+
+    @Test
+    public void matchesEveryTermCaseInsensitively() {
+        ArticleIndex index = index(100, 1000);
+        index.addAll(List.of(
+                article("1", "Bitcoin ETF approved"),
+                new Article("2", "Markets rally", "bitcoin climbs on ETF news", "https://example.com/2", "Wire"),
+                article("3", "Bitcoin slides")));
+
+        assertEquals(List.of("2", "1"), ids(index.search("bitcoin etf", 10)));
+        assertEquals(List.of("3", "2", "1"), ids(index.search("BITCOIN", 10)));
+        assertEquals(List.of(), ids(index.search("bitcoin gold", 10)));
+        assertEquals(List.of(), ids(index.search("a", 10)));   // no indexable term
+    }
+
+    @Test
+    public void searchesNewestSegmentFirstUpToTheLimit() {
+        ArticleIndex index = index(2, 1000);
+        index.addAll(List.of(article("1", "storm"), article("2", "storm"), article("3", "storm")));
+        now.addAndGet(2 * MINUTE);
+        index.addAll(List.of(article("4", "storm warning")));
+
+        assertEquals(List.of("4", "3", "2", "1"), ids(index.search("storm", 10)));
+        assertEquals(List.of("4", "3"), ids(index.search("storm", 2)));
+    }
+
+    @Test
+    public void growsASegmentAsDocumentsArrive() {
+        ArticleIndex index = index(1000, 10_000);
+        List<Article> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) batch.add(article(Integer.toString(i), "chip shortage " + i));
+        index.addAll(batch);
+
+        assertEquals(100, index.documents());
+        assertEquals(100, index.search("chip", 1000).size());
+        assertEquals(List.of("42"), ids(index.search("shortage 42", 10)));
+    }
+
+    @Test
+    public void dropsSegmentsThatLeftTheWindow() {
+        ArticleIndex index = index(100, 1000);
+        index.addAll(List.of(article("old", "election")));
+        now.addAndGet(5 * MINUTE);
+        index.addAll(List.of(article("mid", "election")));
+
+        now.addAndGet(7 * MINUTE);           // "old" is twelve minutes old, "mid" seven
+        assertEquals(List.of("mid"), ids(index.search("election", 10)));
+
+        index.addAll(List.of(article("new", "election")));
+        assertEquals(2, index.documents());
+        assertEquals(List.of("new", "mid"), ids(index.search("election", 10)));
+    }
+
+    @Test
+    public void indexesAnArticleOnceWithinTheWindowAndIgnoresOldReplays() {
+        ArticleIndex index = index(100, 1000);
+        index.addAll(List.of(article("1", "tariff")));
+        index.addAll(List.of(article("1", "tariff")));
+        index.addAll(List.of(article("2", "tariff")), now.get() - 11 * MINUTE);
+
+        assertEquals(1, index.documents());
+        assertEquals(List.of("1"), ids(index.search("tariff", 10)));
+    }
+
+    @Test
+    public void dropsTheOldestSegmentsPastMaxDocuments() {
+        ArticleIndex index = index(2, 3);
+        index.addAll(List.of(article("1", "oil"), article("2", "oil"), article("3", "oil"),
+                article("4", "oil"), article("5", "oil")));
+
+        assertEquals(3, index.documents());
+        assertEquals(1, index.evictedSegments());
+        assertEquals(List.of("5", "4", "3"), ids(index.search("oil", 10)));
+    }
+}
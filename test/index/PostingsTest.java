@@ -0,0 +1,51 @@
+package app.index;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Varint delta encoding and intersection of {@link Postings}.
+ *
+ * @author Sara Ezzati
+ */
+public class PostingsTest {
+
+    private static Postings of(int... docs) {
+        Postings p = new Postings();
+        for (int doc : docs) p.add(doc);
+        return p;
+    }
+
+    @Test
+    public void decodesWhatWasAddedAcrossVarintWidths() {
+        int[] docs = {0, 1, 127, 128, 16_384, 2_000_000};
+        Postings p = of(docs);
+
+        assertArrayEquals(docs, p.decode());
+        assertEquals(6, p.count());
+        // deltas 1, 1, 126, 1 take a byte each, 16 256 takes two, 1 983 616 takes three
+        assertEquals(9, p.sizeInBytes());
+    }
+
+    @Test
+    public void ignoresRepeatedAndOutOfOrderIds() {
+        Postings p = of(3, 3, 5, 4, 9);
+
+        assertArrayEquals(new int[]{3, 5, 9}, p.decode());
+        assertEquals(3, p.count());
+    }
+
+    @Test
+    public void retainsOnlyTheCommonIds() {
+        Postings p = of(2, 4, 6, 300, 301);
+        int[] docs = {1, 2, 3, 6, 300, 302};
+
+        int kept = p.retainAll(docs, docs.length);
+        assertEquals(3, kept);
+        assertArrayEquals(new int[]{2, 6, 300}, Arrays.copyOf(docs, kept));
+    }
+}
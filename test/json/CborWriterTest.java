@@ -0,0 +1,90 @@
+package app.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link CborWriter} numbers its stringrefs the way a decoder
+ * rebuilds the table ({@code decodeCbor} in {@code public/javascripts/notilytics-ws.js}
+ * follows the same rule). A mismatch would silently corrupt every later
+ * string of the frame, so frames are decoded with Jackson's CBOR parser as
+ * the reference and compared with the original JSON.
+ *
+ * @author Sara Ezzati
+ */
+public class CborWriterTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final CBORMapper CBOR = new CBORMapper();
+
+    /** Numbers compare by value: decimals come back as float32 when that is exact. */
+    private static final Comparator<JsonNode> SAME_VALUE = (a, b) -> {
+        if (a.isNumber() && b.isNumber()) return Double.compare(a.doubleValue(), b.doubleValue());
+        return a.equals(b) ? 0 : 1;
+    };
+
+    private final CborWriter writer = new CborWriter(16);
+
+    @Test
+    public void refersToRepeatedStringsByTheirTableIndex() {
+        // "ab" is below the 3-byte minimum and never enters the table; "abc" becomes index 0.
+        byte[] cbor = writer.transcode("{\"abc\":\"ab\",\"ab\":\"abc\"}");
+        assertArrayEquals(bytes(
+                0xd9, 0x01, 0x00,                   // tag 256: stringref namespace
+                0xbf,                               // indefinite map
+                0x63, 'a', 'b', 'c',                // "abc" → ref 0
+                0x62, 'a', 'b',                     // "ab" (too short)
+                0x62, 'a', 'b',                     // "ab" again, in full
+                0xd8, 0x19, 0x00,                   // tag 25: ref 0 = "abc"
+                0xff), cbor);
+    }
+
+    @Test
+    public void roundTripsRepeatedKeysAndValuesAcrossTheLengthThresholds() throws IOException {
+        // 40 articles put more than 24 strings in the table, so the minimum
+        // length moves from 3 to 4 bytes in the middle of the frame; keys and
+        // values of 2, 3 and 4 bytes (ASCII and multi-byte UTF-8) land on both sides.
+        StringBuilder frame = new StringBuilder("{\"type\":\"articles\",\"ab\":\"ab\",\"abc\":\"abc\",\"articles\":[");
+        for (int i = 0; i < 40; i++) {
+            if (i > 0) frame.append(',');
+            frame.append("{\"id\":\"id-").append(i)
+                    .append("\",\"title\":\"t\",\"sourceName\":\"").append(i % 3 == 0 ? "BBC" : "Reuters")
+                    .append("\",\"xy\":\"xy\",\"abcd\":\"é").append(i % 2)
+                    .append("\",\"n\":").append(i - 20)
+                    .append(",\"s\":").append(i * 0.1)
+                    .append(",\"k").append(i).append("\":\"").append(i % 2 == 0 ? "ab" : "abc").append("\"}");
+        }
+        frame.append("],\"ok\":true,\"none\":null,\"big\":4294967296}");
+
+        assertSameAsJson(frame.toString());
+    }
+
+    @Test
+    public void startsAFreshTableForEveryFrame() throws IOException {
+        assertSameAsJson("{\"source\":\"Reuters\",\"again\":\"Reuters\"}");
+        byte[] second = writer.transcode("{\"other\":\"Reuters\"}");
+        assertEquals(JSON.readTree("{\"other\":\"Reuters\"}"), CBOR.readTree(second));
+    }
+
+    private void assertSameAsJson(String frame) throws IOException {
+        JsonNode expected = JSON.readTree(frame);
+        JsonNode decoded = CBOR.readTree(writer.transcode(frame));
+        assertTrue("decoded " + decoded + "\nexpected " + expected, expected.equals(SAME_VALUE, decoded));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = (byte) values[i];
+        return out;
+    }
+}
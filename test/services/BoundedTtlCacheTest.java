@@ -0,0 +1,136 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TTL, stale window and LRU bound of {@link BoundedTtlCache} against a clock
+ * the test sets by hand, and the stale-while-revalidate refresh that
+ * {@link CachingNewsApiService} builds on it.
+ *
+ * @author Sara Ezzati
+ */
+public class BoundedTtlCacheTest {
+
+    private static final long TTL = 60_000;
+    private static final long STALE = 600_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private BoundedTtlCache<String, String> cache(int maxEntries) {
+        return new BoundedTtlCache<>(maxEntries, TTL, STALE, now::get);
+    }
+
+    @Test
+    public void servesFreshThenStaleThenExpires() {
+        BoundedTtlCache<String, String> cache = cache(8);
+        cache.put("ai", "v1");
+
+        now.addAndGet(TTL);
+        assertEquals(BoundedTtlCache.Freshness.FRESH, cache.get("ai").freshness);
+
+        now.addAndGet(1);
+        BoundedTtlCache.Hit<String> stale = cache.get("ai");
+        assertEquals(BoundedTtlCache.Freshness.STALE, stale.freshness);
+        assertEquals("v1", stale.value);
+
+        now.addAndGet(STALE);
+        assertNull(cache.get("ai"));
+        assertEquals(0, cache.stats().size);   // an expired entry is removed, not kept around
+
+        BoundedTtlCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.staleHits);
+        assertEquals(1, stats.misses);
+    }
+
+    @Test
+    public void agesAReplayedEntryFromWhenItWasFetched() {
+        BoundedTtlCache<String, String> cache = cache(8);
+        cache.put("ai", "replayed", now.get() - TTL - 1);
+
+        assertEquals(BoundedTtlCache.Freshness.STALE, cache.get("ai").freshness);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedKeyPastTheBound() {
+        BoundedTtlCache<String, String> cache = cache(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");                        // "b" is now the least recently used
+        cache.put("c", "3");
+
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a").value);
+        assertEquals("3", cache.get("c").value);
+        assertEquals(2, cache.stats().size);
+        assertEquals(1, cache.stats().evictions);
+    }
+
+    /** Counts searches and leaves each one pending until the test completes it. */
+    private static final class Upstream implements NewsApiService {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile CompletableFuture<List<Article>> pending;
+
+        @Override
+        public CompletionStage<List<Article>> searchArticles(String query) {
+            calls.incrementAndGet();
+            pending = new CompletableFuture<>();
+            return pending;
+        }
+
+        @Override
+        public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    private static List<Article> articles(String title) {
+        return List.of(new Article("id-" + title, title, null, "https://example.com/" + title, "Wire"));
+    }
+
+    @Test
+    public void answersStaleAtOnceAndRefreshesEachKeyOnlyOnce() {
+        Upstream upstream = new Upstream();
+        CachingNewsApiService caching = new CachingNewsApiService(upstream, 8, 60, 600);
+        caching.primeArticles("ai", articles("old"), System.currentTimeMillis() - 120_000);
+
+        CompletableFuture<List<Article>> first = caching.searchArticles("ai").toCompletableFuture();
+        CompletableFuture<List<Article>> second = caching.searchArticles("ai").toCompletableFuture();
+        assertTrue(first.isDone());
+        assertEquals("old", first.join().get(0).title);
+        assertEquals("old", second.join().get(0).title);
+        assertEquals(1, upstream.calls.get());
+
+        upstream.pending.complete(articles("new"));
+        assertEquals("new", caching.searchArticles("ai").toCompletableFuture().join().get(0).title);
+        assertEquals(1, upstream.calls.get());
+        assertEquals(1, caching.articleStats().hits);
+        assertEquals(2, caching.articleStats().staleHits);
+    }
+
+    @Test
+    public void aFailedRefreshKeepsTheStaleValueAndAllowsAnother() {
+        Upstream upstream = new Upstream();
+        CachingNewsApiService caching = new CachingNewsApiService(upstream, 8, 60, 600);
+        caching.primeArticles("ai", articles("old"), System.currentTimeMillis() - 120_000);
+
+        caching.searchArticles("ai");
+        upstream.pending.completeExceptionally(new IllegalStateException("upstream down"));
+
+        assertEquals("old", caching.searchArticles("ai").toCompletableFuture().join().get(0).title);
+        assertEquals(2, upstream.calls.get());
+    }
+}
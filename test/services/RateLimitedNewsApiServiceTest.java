@@ -0,0 +1,201 @@
+package app.services;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Refill, priority, eviction and expiry of {@link RateLimitedNewsApiService},
+ * against a clock the test advances by hand. Each test calls {@code drain()}
+ * where the limiter's timer would; at one token per second the real timer
+ * only fires after the test has finished, and if it fires earlier it finds
+ * the same state.
+ *
+ * @author Sara Ezzati
+ */
+public class RateLimitedNewsApiServiceTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    /** One token per second, two at most, three calls may wait for up to five seconds. */
+    private static final RateLimitedNewsApiService.Settings SETTINGS =
+            new RateLimitedNewsApiService.Settings(1.0, 2, 3, Duration.ofSeconds(5));
+
+    /** Answers every search at once and records the queries it was sent. */
+    private static final class Upstream implements NewsApiService {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public CompletionStage<List<Article>> searchArticles(String query) {
+            sent.add(query);
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        @Override
+        public CompletionStage<List<SourceInfo>> getSources(String country, String category, String language) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    private final AtomicLong now = new AtomicLong();
+    private final Upstream upstream = new Upstream();
+    private final RateLimitedNewsApiService limiter =
+            new RateLimitedNewsApiService(upstream, SETTINGS, Runnable::run, now::get);
+
+    private CompletableFuture<List<Article>> search(String query, NewsApiService.Priority priority) {
+        return limiter.searchArticles(query, priority).toCompletableFuture();
+    }
+
+    private CompletableFuture<List<Article>> search(String query) {
+        return search(query, NewsApiService.Priority.INTERACTIVE);
+    }
+
+    /** Advances the clock and runs a drain, as the timer would. */
+    private void advance(long nanos) {
+        now.addAndGet(nanos);
+        limiter.drain();
+    }
+
+    private static boolean throttled(CompletableFuture<?> result) {
+        if (!result.isCompletedExceptionally()) return false;
+        try {
+            result.join();
+            return false;
+        } catch (CompletionException e) {
+            return NewsApiThrottledException.isThrottled(e);
+        }
+    }
+
+    @Test
+    public void spendsTheBurstThenWaitsForARefill() {
+        assertTrue(search("a").isDone());
+        assertTrue(search("b").isDone());
+        CompletableFuture<List<Article>> c = search("c");
+
+        assertFalse(c.isDone());
+        assertEquals(List.of("a", "b"), upstream.sent);
+        assertEquals(1, limiter.queued());
+
+        advance(SECOND / 2);                 // half a token
+        assertFalse(c.isDone());
+
+        advance(SECOND / 2);
+        assertTrue(c.isDone());
+        assertEquals(List.of("a", "b", "c"), upstream.sent);
+        assertEquals(0, limiter.queued());
+        assertEquals(3, limiter.stats().issued());
+        assertEquals(1, limiter.stats().delayed());
+    }
+
+    @Test
+    public void refillStopsAtTheBurst() {
+        search("a");
+        search("b");
+        advance(60 * SECOND);                // a minute idle refills two tokens, not sixty
+
+        search("c");
+        search("d");
+        CompletableFuture<List<Article>> e = search("e");
+        assertFalse(e.isDone());
+        assertEquals(List.of("a", "b", "c", "d"), upstream.sent);
+    }
+
+    @Test
+    public void releasesInteractiveCallsBeforeBackgroundOnes() {
+        search("a");
+        search("b");
+        CompletableFuture<List<Article>> background = search("bg", NewsApiService.Priority.BACKGROUND);
+        CompletableFuture<List<Article>> interactive = search("ui");
+
+        advance(SECOND);
+        assertTrue(interactive.isDone());
+        assertFalse(background.isDone());
+
+        advance(SECOND);
+        assertTrue(background.isDone());
+        assertEquals(List.of("a", "b", "ui", "bg"), upstream.sent);
+    }
+
+    @Test
+    public void aFullQueueEvictsTheNewestBackgroundCallForAnInteractiveOne() {
+        search("a");
+        search("b");
+        CompletableFuture<List<Article>> bg1 = search("bg1", NewsApiService.Priority.BACKGROUND);
+        CompletableFuture<List<Article>> bg2 = search("bg2", NewsApiService.Priority.BACKGROUND);
+        CompletableFuture<List<Article>> bg3 = search("bg3", NewsApiService.Priority.BACKGROUND);
+
+        CompletableFuture<List<Article>> interactive = search("ui");
+        assertTrue(throttled(bg3));
+        assertFalse(interactive.isDone());
+        assertEquals(3, limiter.queued());
+
+        // a background call never evicts, it fails fast
+        assertTrue(throttled(search("bg4", NewsApiService.Priority.BACKGROUND)));
+        assertEquals(2, limiter.stats().throttled());
+
+        advance(3 * SECOND);                 // the bucket holds two: ui and bg1 go, bg2 waits
+        assertTrue(interactive.isDone());
+        assertTrue(bg1.isDone());
+        assertFalse(bg2.isDone());
+        assertEquals(List.of("a", "b", "ui", "bg1"), upstream.sent);
+    }
+
+    @Test
+    public void aFullQueueOfInteractiveCallsRejectsTheNextOne() {
+        search("a");
+        search("b");
+        search("c");
+        search("d");
+        search("e");
+
+        assertTrue(throttled(search("f")));
+        assertEquals(3, limiter.queued());
+        assertEquals(1, limiter.stats().throttled());
+        assertEquals(List.of("a", "b"), upstream.sent);
+    }
+
+    @Test
+    public void failsACallThatWaitedLongerThanMaxWait() {
+        search("a");
+        search("b");
+        CompletableFuture<List<Article>> late = search("late");
+        now.addAndGet(4 * SECOND);
+        CompletableFuture<List<Article>> next = search("next");   // queued behind "late"
+
+        advance(SECOND);                     // "late" reaches maxWait before the drain releases anything
+        assertTrue(throttled(late));
+        assertTrue(next.isDone());
+        assertFalse(next.isCompletedExceptionally());
+        assertEquals(List.of("a", "b", "next"), upstream.sent);
+        assertEquals(1, limiter.stats().expired());
+    }
+
+    @Test
+    public void expiredCallsMakeRoomBeforeAFullQueueRejects() {
+        search("a");
+        search("b");
+        search("c");
+        search("d");
+        search("e");
+        now.addAndGet(5 * SECOND);           // all three queued calls are past maxWait
+
+        CompletableFuture<List<Article>> f = search("f");
+        assertFalse(f.isCompletedExceptionally());
+        assertEquals(3, limiter.stats().expired());
+        assertEquals(0, limiter.stats().throttled());
+    }
+}
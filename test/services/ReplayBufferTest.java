@@ -0,0 +1,86 @@
+package app.services;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sequencing, wraparound and byte accounting of {@link ReplayBuffer}.
+ *
+ * @author Sara Ezzati
+ */
+public class ReplayBufferTest {
+
+    private static String frame(int n) {
+        return "{\"type\":\"articles\",\"n\":" + n + "}";
+    }
+
+    private static void append(ReplayBuffer ring, int from, int to) {
+        for (int n = from; n <= to; n++) ring.append(frame(n));
+    }
+
+    @Test
+    public void stampsFramesWithConsecutiveSequenceNumbers() {
+        ReplayBuffer ring = new ReplayBuffer(8, 1 << 20);
+        assertEquals("{\"seq\":1,\"type\":\"articles\",\"n\":1}", ring.append(frame(1)));
+        assertEquals("{\"seq\":2,\"type\":\"articles\",\"n\":2}", ring.append(frame(2)));
+        assertEquals(2, ring.lastSeq());
+    }
+
+    @Test
+    public void replaysOnlyTheFramesAfterLastSeq() {
+        ReplayBuffer ring = new ReplayBuffer(8, 1 << 20);
+        append(ring, 1, 5);
+
+        List<String> missed = ring.since(3);
+        assertEquals(2, missed.size());
+        assertTrue(missed.get(0).startsWith("{\"seq\":4,"));
+        assertTrue(missed.get(1).startsWith("{\"seq\":5,"));
+        assertEquals(5, ring.since(0).size());
+        assertEquals(List.of(), ring.since(5));
+    }
+
+    @Test
+    public void asksForAResyncOnceTheRingOverwroteTheNextFrame() {
+        ReplayBuffer ring = new ReplayBuffer(4, 1 << 20);
+        append(ring, 1, 10);                // frames 7..10 are left
+
+        assertEquals(4, ring.size());
+        assertNull(ring.since(5));          // frame 6 is gone
+        assertEquals(4, ring.since(6).size());
+        assertTrue(ring.since(6).get(0).startsWith("{\"seq\":7,"));
+        assertNull(ring.since(11));         // ahead of the session: not a frame it was sent
+    }
+
+    @Test
+    public void evictsByCharactersAndKeepsTheSharedTotal() {
+        AtomicLong total = new AtomicLong();
+        String stamped = "{\"seq\":1,\"type\":\"articles\",\"n\":1}";
+        ReplayBuffer ring = new ReplayBuffer(100, stamped.length() * 3L, total);
+        append(ring, 1, 5);
+
+        assertEquals(3, ring.size());
+        assertEquals(ring.bytes(), total.get());
+        assertNull(ring.since(1));
+        assertEquals(3, ring.since(2).size());
+    }
+
+    @Test
+    public void clearingKeepsNumberingAndForcesAResync() {
+        AtomicLong total = new AtomicLong();
+        ReplayBuffer ring = new ReplayBuffer(8, 1 << 20, total);
+        append(ring, 1, 3);
+
+        assertEquals(total.get(), ring.clear());
+        assertEquals(0, total.get());
+        assertNull(ring.since(2));
+        assertEquals(List.of(), ring.since(3));
+        assertTrue(ring.append(frame(4)).startsWith("{\"seq\":4,"));
+        assertEquals(1, ring.since(3).size());
+    }
+}
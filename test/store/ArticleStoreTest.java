@@ -0,0 +1,205 @@
+package app.store;
+
+import app.models.Article;
+import app.models.SourceInfo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Recovery, compaction and replay of {@link ArticleStore}, on a temporary
+ * directory. Appends are asynchronous, so each test closes the store (which
+ * flushes the writer) before reading it back through a new instance.
+ *
+ * @author Sara Ezzati
+ */
+public class ArticleStoreTest {
+
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Replayed records, as "query:first title" or "sources:key". */
+    private static final class Recorder implements ArticleStore.Replay {
+        final List<String> records = new ArrayList<>();
+        final List<List<Article>> articles = new ArrayList<>();
+
+        @Override
+        public void articles(String query, List<Article> list, long writtenAtMillis) {
+            records.add(query + ":" + list.get(0).title);
+            articles.add(list);
+        }
+
+        @Override
+        public void sources(String country, String category, String language, List<SourceInfo> sources,
+                            long writtenAtMillis) {
+            records.add("sources:" + country + "|" + category + "|" + language + ":" + sources.size());
+        }
+    }
+
+    private ArticleStore open() throws IOException {
+        return new ArticleStore(new ArticleStore.Settings(folder.getRoot().toPath(), 1 << 20, RETENTION));
+    }
+
+    private static List<Article> articles(String title) {
+        return List.of(new Article("id-" + title, title, "about " + title, "https://example.com/" + title, "Wire"));
+    }
+
+    private Recorder replayAll() throws IOException {
+        Recorder recorder = new Recorder();
+        try (ArticleStore store = open()) {
+            store.replay(0, recorder);
+        }
+        return recorder;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.filter(p -> p.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    @Test
+    public void replaysEveryRecordAfterReopening() throws IOException {
+        try (ArticleStore store = open()) {
+            store.appendArticles("ai", List.of(
+                    new Article("1", "first", null, "https://example.com/1", "Wire").withSentiment(0.25f),
+                    new Article(null, "second", "text", "https://example.com/2", null)));
+            store.appendSources("ca", null, "en", List.of(
+                    new SourceInfo("cbc", "CBC News", "ca", "general", "en", "https://cbc.ca")));
+            store.appendArticles("rust", articles("crab"));
+        }
+
+        Recorder replayed = replayAll();
+        assertEquals(List.of("ai:first", "sources:ca||en:1", "rust:crab"), replayed.records);
+
+        List<Article> ai = replayed.articles.get(0);
+        assertEquals(2, ai.size());
+        assertEquals(0.25f, ai.get(0).sentiment, 0f);
+        assertNull(ai.get(0).description);
+        assertNull(ai.get(1).id);
+        assertNull(ai.get(1).sentiment);
+        assertEquals("https://example.com/2", ai.get(1).url);
+    }
+
+    @Test
+    public void replaysOnlyRecordsInsideTheWindow() throws IOException {
+        writeSegment(1, StoreCodec.articles("old", articles("a"), 1_000),
+                StoreCodec.articles("mid", articles("b"), 2_000),
+                StoreCodec.articles("new", articles("c"), 3_000));
+
+        Recorder recorder = new Recorder();
+        try (ArticleStore store = open()) {
+            assertEquals(2, store.replay(2_000, recorder));
+        }
+        assertEquals(List.of("mid:b", "new:c"), recorder.records);
+    }
+
+    @Test
+    public void cutsARecordTruncatedMidWrite() throws IOException {
+        try (ArticleStore store = open()) {
+            store.appendArticles("ai", articles("kept"));
+            store.appendArticles("ai", articles("torn"));
+        }
+        Path segment = segments().get(0);
+        long intact = Files.size(segment);
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.truncate(intact - 5);
+        }
+
+        try (ArticleStore store = open()) {
+            store.appendArticles("ai", articles("after"));
+        }
+        assertEquals(List.of("ai:kept", "ai:after"), replayAll().records);
+    }
+
+    @Test
+    public void dropsARecordWithACorruptedCrc() throws IOException {
+        ByteBuffer first = StoreCodec.articles("ai", articles("kept"), System.currentTimeMillis());
+        ByteBuffer second = StoreCodec.articles("ai", articles("corrupt"), System.currentTimeMillis());
+        int secondStart = first.remaining();
+        writeSegment(1, first, second);
+
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[secondStart + StoreCodec.HEADER_BYTES + 20] ^= 0x5A;
+        Files.write(segment, bytes);
+
+        assertEquals(-1, StoreCodec.check(ByteBuffer.wrap(bytes, secondStart, bytes.length - secondStart).slice()));
+        assertEquals(List.of("ai:kept"), replayAll().records);
+        assertEquals(secondStart, Files.size(segment));
+    }
+
+    @Test
+    public void compactionKeepsTheNewestRecordPerKey() throws IOException {
+        long now = System.currentTimeMillis();
+        writeSegment(1, StoreCodec.articles("expired", articles("gone"), now - RETENTION.toMillis() - 60_000),
+                StoreCodec.articles("ai", articles("v1"), now));
+        writeSegment(2, StoreCodec.articles("rust", articles("crab"), now),
+                StoreCodec.articles("ai", articles("v2"), now),
+                StoreCodec.sources("|business|", List.of(), now));
+        try (ArticleStore store = open()) {
+            store.appendArticles("ai", articles("v3"));
+            store.appendSources(null, "business", null, List.of());
+            store.compact();
+        }
+
+        assertEquals(List.of("rust:crab", "ai:v3", "sources:|business|:0"), replayAll().records);
+        // one compacted segment, then the (empty) segment appends continue in
+        assertEquals(2, segments().size());
+    }
+
+    @Test
+    public void compactionOnAnIdleNodeStillDropsExpiredRecords() throws IOException {
+        long now = System.currentTimeMillis();
+        long expired = now - RETENTION.toMillis() - 60_000;
+        writeSegment(1, StoreCodec.articles("old", articles("gone"), expired));
+        writeSegment(2, StoreCodec.articles("stale", articles("gone"), expired),
+                StoreCodec.articles("ai", articles("kept"), now));
+        writeSegment(3);
+        try (ArticleStore store = open()) {
+            store.compact();
+        }
+
+        assertEquals(List.of("ai:kept"), replayAll().records);
+        assertEquals(2, segments().size());
+    }
+
+    @Test
+    public void compactionRemovesSegmentsWhoseRecordsAllExpired() throws IOException {
+        long expired = System.currentTimeMillis() - RETENTION.toMillis() - 60_000;
+        writeSegment(1, StoreCodec.articles("old", articles("gone"), expired));
+        writeSegment(2);
+        try (ArticleStore store = open()) {
+            store.compact();
+        }
+
+        assertEquals(List.of(), replayAll().records);
+        assertEquals(1, segments().size());
+    }
+
+    private void writeSegment(long seq, ByteBuffer... records) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(String.format("%012d.seg", seq));
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (ByteBuffer record : records) {
+                while (record.hasRemaining()) ch.write(record);
+            }
+        }
+    }
+}